@@ -0,0 +1,51 @@
+package de.tarent.maven.plugins.pkg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures merging target configurations which inherit from each other in a
+ * single chain of the given depth. The configurations are created anew for
+ * every merge as merging can only be done once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MergeConfigurationsBenchmark {
+
+	@Param({ "2", "8", "32" })
+	public int depth;
+
+	@Benchmark
+	public List<TargetConfiguration> mergeAllConfigurations()
+			throws Exception {
+		List<TargetConfiguration> tcs = new ArrayList<TargetConfiguration>();
+		for (int i = 0; i < depth; i++) {
+			TargetConfiguration tc = new TargetConfiguration("target" + i);
+			if (i > 0) {
+				tc.parent = "target" + (i - 1);
+			}
+			tc.setMainClass("org.example.Main" + i);
+			tc.setMaintainer("Maintainer " + i);
+			tcs.add(tc);
+		}
+
+		Utils.mergeAllConfigurations(tcs);
+		return tcs;
+	}
+}
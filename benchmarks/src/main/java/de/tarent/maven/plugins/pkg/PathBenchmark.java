@@ -0,0 +1,53 @@
+package de.tarent.maven.plugins.pkg;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures turning large classpaths into their Unix and Windows form. Every
+ * tenth entry contains a space which needs to be quoted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathBenchmark {
+
+	@Param({ "50", "500" })
+	public int entries;
+
+	private Path path;
+
+	@Setup
+	public void setUp() {
+		path = new Path();
+		for (int i = 0; i < entries; i++) {
+			path.append("/usr/share/java/example/"
+					+ (i % 10 == 0 ? "some library-" : "library-") + i
+					+ ".jar");
+		}
+	}
+
+	@Benchmark
+	public String toUnixPath() {
+		return path.toUnixPath();
+	}
+
+	@Benchmark
+	public String toWindowPath() {
+		return path.toWindowPath();
+	}
+}
@@ -0,0 +1,78 @@
+package de.tarent.maven.plugins.pkg;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures putting a file into a staging directory with the different
+ * staging modes. The file is filled with random data from a fixed seed so
+ * that compressing file systems do not flatter the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StagingBenchmark {
+
+	@Param({ "copy", "link", "reflink" })
+	public String mode;
+
+	@Param({ "1048576", "33554432" })
+	public int size;
+
+	private StagingMode stagingMode;
+
+	private File root;
+
+	private File src;
+
+	private File dst;
+
+	@Setup
+	public void setUp() throws Exception {
+		stagingMode = StagingMode.fromString(mode);
+
+		root = new File(System.getProperty("java.io.tmpdir"),
+				"StagingBenchmark" + System.nanoTime());
+		src = new File(root, "src/artifact.jar");
+		dst = new File(root, "dst/usr/share/java/artifact.jar");
+
+		byte[] content = new byte[size];
+		new Random(4711).nextBytes(content);
+		FileUtils.writeByteArrayToFile(src, content);
+	}
+
+	@Setup(Level.Invocation)
+	public void removeStagedFile() {
+		dst.delete();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(root);
+	}
+
+	@Benchmark
+	public long copyProjectArtifact() throws Exception {
+		return Utils.copyProjectArtifact(null, src, dst, stagingMode);
+	}
+}
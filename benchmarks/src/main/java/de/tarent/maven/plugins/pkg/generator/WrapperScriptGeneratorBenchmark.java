@@ -0,0 +1,71 @@
+package de.tarent.maven.plugins.pkg.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tarent.maven.plugins.pkg.Path;
+
+/**
+ * Measures writing the wrapper script of an application with a large
+ * classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WrapperScriptGeneratorBenchmark {
+
+	private static final int CLASSPATH_ENTRIES = 200;
+
+	private WrapperScriptGenerator generator;
+
+	private File script;
+
+	@Setup
+	public void setUp() throws IOException {
+		Path classpath = new Path();
+		for (int i = 0; i < CLASSPATH_ENTRIES; i++) {
+			classpath.append("/usr/share/java/example/library-" + i + ".jar");
+		}
+		Properties props = new Properties();
+		props.setProperty("example.home", "/usr/share/example");
+		props.setProperty("example.config", "/etc/example");
+
+		generator = new WrapperScriptGenerator();
+		generator.setMainClass("org.example.Main");
+		generator.setClasspath(classpath);
+		generator.setBootClasspath(new Path());
+		generator.setLibraryPath(new Path(new File("/usr/lib/jni")));
+		generator.setProperties(props);
+		generator.setMaxJavaMemory("512M");
+
+		script = File.createTempFile("WrapperScriptGeneratorBenchmark", ".sh");
+	}
+
+	@TearDown
+	public void tearDown() {
+		script.delete();
+	}
+
+	@Benchmark
+	public long generate() throws IOException {
+		generator.generate(script);
+		return script.length();
+	}
+}
@@ -0,0 +1,111 @@
+package de.tarent.maven.plugins.pkg.map;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link Mapping#getEntry} on a synthetic package map with thousands
+ * of ranged entries and compares it with a linear scan over the entries, which
+ * is how lookups used to be done.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+	private static final int ARTIFACTS = 50;
+
+	private static final int RANGES_PER_ARTIFACT = 200;
+
+	/**
+	 * Number of distinct lookups which are cycled through. Kept small so that
+	 * the benchmark does not measure cache misses on the version objects.
+	 */
+	private static final int SAMPLES = 1024;
+
+	private Mapping m;
+
+	private String[] groupIds;
+
+	private String[] artifactIds;
+
+	private ArtifactVersion[] versions;
+
+	@Setup
+	public void setUp() throws Exception {
+		m = new Mapping("benchmark");
+		for (int a = 0; a < ARTIFACTS; a++) {
+			for (int i = 0; i < RANGES_PER_ARTIFACT; i++) {
+				m.putEntry(new Entry("group" + a + ":artifact" + a,
+						VersionRange.createFromVersionSpec("[" + i + ".0," + i
+								+ ".5)"), "lib" + a + "-" + i,
+						new HashSet<String>(), false));
+			}
+			m.putEntry(new Entry("group" + a + ":artifact" + a, null, "lib"
+					+ a, new HashSet<String>(), false));
+		}
+
+		Random r = new Random(4711);
+		groupIds = new String[SAMPLES];
+		artifactIds = new String[SAMPLES];
+		versions = new ArtifactVersion[SAMPLES];
+		for (int i = 0; i < SAMPLES; i++) {
+			int a = r.nextInt(ARTIFACTS);
+			groupIds[i] = "group" + a;
+			artifactIds[i] = "artifact" + a;
+			versions[i] = new DefaultArtifactVersion(
+					r.nextInt(RANGES_PER_ARTIFACT) + "." + r.nextInt(10));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public void indexed(Blackhole bh) {
+		for (int i = 0; i < SAMPLES; i++) {
+			bh.consume(m.getEntry(groupIds[i], artifactIds[i], versions[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public void linearScan(Blackhole bh) {
+		for (int i = 0; i < SAMPLES; i++) {
+			bh.consume(linearScan(groupIds[i], artifactIds[i], versions[i]));
+		}
+	}
+
+	private Entry linearScan(String groupId, String artifactId,
+			ArtifactVersion version) {
+		Entry unranged = null;
+		for (Entry e : m.entryMap.get(groupId + ":" + artifactId)) {
+			if (e.versionRange != null) {
+				if (e.versionRange.containsVersion(version)) {
+					return e;
+				}
+			} else {
+				unranged = e;
+			}
+		}
+		return unranged;
+	}
+}
@@ -0,0 +1,57 @@
+package de.tarent.maven.plugins.pkg.map;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading the shipped package maps (the default document and all
+ * the <code>pm-*.xml</code> documents it includes) and looking up a distro,
+ * once from the XML documents and once from their compiled form.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+	@Param({ "ubuntu_trusty", "debian_wheezy", "centos_6_4" })
+	public String distro;
+
+	private URL xml;
+
+	private URL compiled;
+
+	@Setup
+	public void setUp() {
+		xml = PackageMap.class.getResource("default-package-maps.xml");
+		compiled = PackageMap.class.getResource("default-package-maps.bin");
+		if (xml == null || compiled == null) {
+			throw new IllegalStateException("The package maps are missing.");
+		}
+	}
+
+	@Benchmark
+	public Mapping xml() throws Exception {
+		return new Parser(xml, null).getMapping(distro);
+	}
+
+	@Benchmark
+	public Mapping compiled() throws Exception {
+		return new Parser(new CompiledPackageMap(compiled), null)
+				.getMapping(distro);
+	}
+}
@@ -24,15 +24,26 @@
  */
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 
 /**
  * This class is added to each application that uses the advanced starter and is
@@ -49,6 +60,12 @@ import java.util.LinkedList;
  * </p>
  * 
  * <p>
+ * If a "_classindex" file is available next to it, it lists which classpath
+ * entries contain which packages. Classes are then only looked up in the
+ * entries which contain their package instead of probing every entry in turn.
+ * </p>
+ * 
+ * <p>
  * The starter class can be used on Windows systems when the maximum length of a
  * command-line is a problem for an application.
  * </p>
@@ -104,12 +121,70 @@ public class _Starter {
 		return mainClassName;
 	}
 
+	/**
+	 * Reads the package index. The index consists of lines of the form
+	 * <code>&lt;package&gt; &lt;entry&gt;,&lt;entry&gt;...</code> which name
+	 * the classpath entries (by their position) containing classes of the
+	 * package, with an empty package name denoting the default package. Lines
+	 * of the form <code>-&lt;entry&gt;</code> name the entries which could not
+	 * be indexed.
+	 * 
+	 * @return the index or <code>null</code> if the resource does not exist
+	 */
+	private static Map<String, int[]> parseIndex(String resource,
+			LinkedList<Integer> unindexed) {
+		InputStream is = _Starter.class.getResourceAsStream(resource);
+		if (is == null) {
+			return null;
+		}
+
+		Map<String, int[]> packages = new HashMap<String, int[]>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(is));
+		try {
+			String line = null;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith("#")) {
+					continue;
+				} else if (line.startsWith("-")) {
+					unindexed.add(Integer.valueOf(line.substring(1)));
+				} else {
+					int space = line.lastIndexOf(' ');
+					String[] entries = line.substring(space + 1).split(",");
+					int[] indices = new int[entries.length];
+					for (int i = 0; i < indices.length; i++) {
+						indices[i] = Integer.parseInt(entries[i]);
+					}
+					packages.put(line.substring(0, space), indices);
+				}
+			}
+		} catch (IOException ioe) {
+			throw new RuntimeException("Unable to load _classindex", ioe);
+		} catch (RuntimeException re) {
+			// A broken index only costs speed.
+			System.err.println("Ignoring malformed _classindex: " + re);
+			return null;
+		} finally {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				throw new RuntimeException(
+						"Could not close the _classindex reader", e);
+			}
+		}
+
+		return packages;
+	}
+
 	public static void main(String[] args) {
 		LinkedList<URL> urls = new LinkedList<URL>();
 		String mainClassName = parse("_classpath", urls);
 
-		URLClassLoader ucl = new URLClassLoader(
-				(URL[]) urls.toArray(new URL[urls.size()]));
+		URL[] entries = (URL[]) urls.toArray(new URL[urls.size()]);
+		LinkedList<Integer> unindexed = new LinkedList<Integer>();
+		Map<String, int[]> packages = parseIndex("_classindex", unindexed);
+
+		URLClassLoader ucl = (packages == null) ? new URLClassLoader(entries)
+				: new IndexedClassLoader(entries, packages, unindexed);
 		Method m = null;
 		try {
 			Class<?> klazz = ucl.loadClass(mainClassName);
@@ -143,4 +218,180 @@ public class _Starter {
 			}
 		}
 	}
+
+	/**
+	 * A class loader which only looks for a class in the classpath entries
+	 * which, according to the package index, contain its package. Entries which
+	 * could not be indexed are looked at as well, so that the classpath order
+	 * is kept. Resources are still found the usual way.
+	 */
+	static class IndexedClassLoader extends URLClassLoader {
+
+		private static final int[] NO_ENTRIES = new int[0];
+
+		private final URL[] entries;
+
+		private final File[] files;
+
+		private final Map<String, int[]> packages;
+
+		private final int[] unindexed;
+
+		/**
+		 * The jar files of the entries, opened on first use.
+		 */
+		private final JarFile[] jarFiles;
+
+		IndexedClassLoader(URL[] entries, Map<String, int[]> packages,
+				LinkedList<Integer> unindexed) {
+			super(entries);
+			this.entries = entries;
+			this.packages = packages;
+			this.unindexed = new int[unindexed.size()];
+			for (int i = 0; i < this.unindexed.length; i++) {
+				this.unindexed[i] = unindexed.get(i).intValue();
+			}
+			files = new File[entries.length];
+			for (int i = 0; i < files.length; i++) {
+				try {
+					files[i] = new File(entries[i].toURI());
+				} catch (URISyntaxException e) {
+					files[i] = new File(entries[i].getPath());
+				}
+			}
+			jarFiles = new JarFile[entries.length];
+		}
+
+		protected Class<?> findClass(String name)
+				throws ClassNotFoundException {
+			int dot = name.lastIndexOf('.');
+			String packageName = (dot == -1) ? "" : name.substring(0, dot);
+			String path = name.replace('.', '/') + ".class";
+
+			int[] owners = packages.get(packageName);
+			if (owners == null) {
+				owners = NO_ENTRIES;
+			}
+
+			// Both lists are sorted, so walking them side by side visits the
+			// entries in classpath order.
+			int i = 0;
+			int j = 0;
+			while (i < owners.length || j < unindexed.length) {
+				int entry;
+				if (j == unindexed.length
+						|| (i < owners.length && owners[i] < unindexed[j])) {
+					entry = owners[i++];
+				} else {
+					entry = unindexed[j++];
+				}
+
+				try {
+					Class<?> c = defineClass(entry, name, packageName, path);
+					if (c != null) {
+						return c;
+					}
+				} catch (IOException ioe) {
+					throw new ClassNotFoundException(name, ioe);
+				}
+			}
+
+			// E.g. from a jar given in the Class-Path attribute of a manifest,
+			// which is not part of the index.
+			return super.findClass(name);
+		}
+
+		/**
+		 * Defines the class from the given entry.
+		 * 
+		 * @return the class or <code>null</code> if the entry does not contain
+		 *         it
+		 */
+		private Class<?> defineClass(int entry, String name,
+				String packageName, String path) throws IOException,
+				ClassNotFoundException {
+			if (entry < 0 || entry >= entries.length) {
+				return null;
+			}
+			File f = files[entry];
+
+			byte[] bytes;
+			CodeSigner[] signers = null;
+			Manifest manifest = null;
+			if (f.isDirectory()) {
+				File classFile = new File(f, path.replace('/',
+						File.separatorChar));
+				if (!classFile.isFile()) {
+					return null;
+				}
+				bytes = read(new FileInputStream(classFile));
+			} else {
+				JarFile jar = getJarFile(entry, f);
+				if (jar == null) {
+					return null;
+				}
+				JarEntry je = jar.getJarEntry(path);
+				if (je == null) {
+					return null;
+				}
+				manifest = jar.getManifest();
+				if (isMultiRelease(manifest)) {
+					// Only the plain lookup picks the entry for the running
+					// Java version.
+					return super.findClass(name);
+				}
+				bytes = read(jar.getInputStream(je));
+				// Only available once the entry has been read completely.
+				signers = je.getCodeSigners();
+			}
+
+			if (packageName.length() > 0 && getPackage(packageName) == null) {
+				try {
+					if (manifest != null) {
+						definePackage(packageName, manifest, entries[entry]);
+					} else {
+						definePackage(packageName, null, null, null, null,
+								null, null, null);
+					}
+				} catch (IllegalArgumentException iae) {
+					// Defined concurrently.
+				}
+			}
+
+			return defineClass(name, bytes, 0, bytes.length, new CodeSource(
+					entries[entry], signers));
+		}
+
+		private static boolean isMultiRelease(Manifest manifest) {
+			return manifest != null
+					&& "true".equalsIgnoreCase(manifest.getMainAttributes()
+							.getValue("Multi-Release"));
+		}
+
+		private JarFile getJarFile(int entry, File f) throws IOException {
+			synchronized (jarFiles) {
+				if (jarFiles[entry] == null) {
+					if (!f.isFile()) {
+						return null;
+					}
+					jarFiles[entry] = new JarFile(f);
+				}
+				return jarFiles[entry];
+			}
+		}
+
+		private static byte[] read(InputStream is) throws IOException {
+			try {
+				ByteArrayOutputStream bos = new ByteArrayOutputStream();
+				byte[] buffer = new byte[8192];
+				int n;
+				while ((n = is.read(buffer)) != -1) {
+					bos.write(buffer, 0, n);
+				}
+				return bos.toByteArray();
+			} finally {
+				is.close();
+			}
+		}
+	}
 }
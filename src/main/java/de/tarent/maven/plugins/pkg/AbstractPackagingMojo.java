@@ -79,6 +79,8 @@ package de.tarent.maven.plugins.pkg;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -89,16 +91,27 @@ import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.factory.ArtifactFactory;
 import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
 import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
 import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.artifact.resolver.filter.AndArtifactFilter;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.artifact.resolver.filter.OrArtifactFilter;
+import org.apache.maven.artifact.resolver.filter.ScopeArtifactFilter;
+import org.apache.maven.artifact.resolver.filter.TypeArtifactFilter;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.*;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectBuilder;
+import org.apache.maven.project.ProjectBuildingException;
+import org.apache.maven.project.artifact.InvalidDependencyVersionException;
 
+import de.tarent.maven.plugins.pkg.archive.CompressorPool;
 import de.tarent.maven.plugins.pkg.helper.ArtifactInclusionStrategy;
 import de.tarent.maven.plugins.pkg.helper.Helper;
 import de.tarent.maven.plugins.pkg.map.PackageMap;
+import de.tarent.maven.plugins.pkg.metrics.Metrics;
 
 /**
  * Base Mojo for all packaging mojos. It provides convenient access to a mean to
@@ -315,6 +328,61 @@ public abstract class AbstractPackagingMojo extends AbstractMojo {
 	 */
 	protected boolean keepPkgTmp;
 
+	/**
+	 * Number of target configurations which are processed concurrently. A
+	 * target configuration is only started once all its relations have been
+	 * processed.<br/>
+	 * 
+	 * @parameter expression="${pkgThreads}" default-value="1"
+	 */
+	protected int threads;
+
+	/**
+	 * How dependency artifacts, auxiliary files and the project's artifact
+	 * are put into the staging directory of a package: <code>copy</code>,
+	 * <code>link</code> (hard links) or <code>reflink</code> (copy-on-write
+	 * clones through GNU cp). Files are copied if linking is not possible,
+	 * e.g. because the local repository lives on another file system.<br/>
+	 * 
+	 * @parameter expression="${pkgStagingMode}" default-value="copy"
+	 */
+	protected String stagingMode;
+
+	/**
+	 * If set a report with the time spent in the phases of packaging, the
+	 * bytes staged and the number of subprocesses is written for every target
+	 * configuration. The reports are put into <code>pkg-metrics</code> below
+	 * the build directory as JSON and CSV files.<br/>
+	 * 
+	 * @parameter expression="${pkgMetrics}" default-value="true"
+	 */
+	protected boolean metrics;
+
+	/**
+	 * Number of threads which compress the package contents. They are shared
+	 * by all target configurations. <code>0</code> means one per available
+	 * processor. The memory used by the compressors is limited to a quarter
+	 * of the maximum heap, see the <code>compression</code> option.<br/>
+	 * 
+	 * @parameter expression="${pkgCompressionThreads}" default-value="0"
+	 */
+	protected int compressionThreads;
+
+	/**
+	 * Number of seconds after which an external program (e.g.
+	 * <code>dpkg-deb</code>, <code>rpmbuild</code> or a signing tool) and the
+	 * processes it started are killed and the build fails. <code>0</code>
+	 * means no limit.<br/>
+	 * 
+	 * @parameter expression="${pkgExecTimeout}" default-value="0"
+	 */
+	protected long execTimeout;
+
+	/**
+	 * The metrics of the target configurations processed so far.
+	 */
+	private final List<Metrics> targetMetrics = new ArrayList<Metrics>();
+
 	public MavenSession getSession() {
 		return session;
 	}
@@ -335,6 +403,13 @@ public abstract class AbstractPackagingMojo extends AbstractMojo {
 
 	private File tempRoot;
 
+	/**
+	 * The project's dependencies as resolved by
+	 * {@link #getProjectDependencies(ArtifactFilter)}. The graph is resolved
+	 * only once per execution and shared by all target configurations.
+	 */
+	private Set<Artifact> projectDependencies;
+
 	public String get_7zipExec() {
 		return _7zipExec;
 	}
@@ -343,6 +418,11 @@ public abstract class AbstractPackagingMojo extends AbstractMojo {
 		return buildDir;
 	}
 
+	public StagingMode getStagingMode() throws MojoExecutionException {
+		return stagingMode == null ? StagingMode.COPY : StagingMode
+				.fromString(stagingMode);
+	}
+
 	public ArtifactFactory getFactory() {
 		return factory;
 	}
@@ -434,6 +514,81 @@ public abstract class AbstractPackagingMojo extends AbstractMojo {
 		return tempRoot;
 	}
 
+	/**
+	 * Returns the project's Jar dependencies of the compile, runtime and
+	 * provided scope which are accepted by the given filter.
+	 * 
+	 * <p>
+	 * The transitive dependency graph is resolved for all three scopes at
+	 * once on the first call. Later calls, possibly for other target
+	 * configurations, only filter the remembered result.
+	 * </p>
+	 * 
+	 * @param filter
+	 *            filter to apply to the resolved artifacts or <code>null</code>
+	 *            to get all of them
+	 * @return
+	 * @throws MojoExecutionException
+	 */
+	public Set<Artifact> getProjectDependencies(ArtifactFilter filter)
+			throws MojoExecutionException {
+		Set<Artifact> all;
+		synchronized (this) {
+			if (projectDependencies == null) {
+				Metrics.enter(Metrics.Phase.DEPENDENCY_RESOLUTION);
+				try {
+					projectDependencies = resolveProjectDependencies();
+				} finally {
+					Metrics.exit();
+				}
+			}
+			all = projectDependencies;
+		}
+
+		Set<Artifact> result = new HashSet<Artifact>();
+		for (Artifact a : all) {
+			if (filter == null || filter.include(a)) {
+				result.add(a);
+			}
+		}
+		return result;
+	}
+
+	private Set<Artifact> resolveProjectDependencies()
+			throws MojoExecutionException {
+		// Notice only compilation dependencies which are Jars.
+		// Shared Libraries ("so") are filtered out because the
+		// JNI dependency is solved by the system already.
+		OrArtifactFilter scopeFilter = new OrArtifactFilter();
+		scopeFilter.add(new ScopeArtifactFilter(Artifact.SCOPE_COMPILE));
+		scopeFilter.add(new ScopeArtifactFilter(Artifact.SCOPE_RUNTIME));
+		scopeFilter.add(new ScopeArtifactFilter(Artifact.SCOPE_PROVIDED));
+
+		AndArtifactFilter filter = new AndArtifactFilter();
+		filter.add(scopeFilter);
+		filter.add(new TypeArtifactFilter("jar"));
+
+		getLog().info("resolving dependency artifacts");
+		try {
+			return Collections.unmodifiableSet(new HashSet<Artifact>(Utils
+					.findArtifacts(filter, factory, resolver, project,
+							project.getArtifact(), local, remoteRepos,
+							metadataSource)));
+		} catch (ArtifactNotFoundException anfe) {
+			throw new MojoExecutionException(
+					"Exception while resolving dependencies", anfe);
+		} catch (InvalidDependencyVersionException idve) {
+			throw new MojoExecutionException(
+					"Exception while resolving dependencies", idve);
+		} catch (ProjectBuildingException pbe) {
+			throw new MojoExecutionException(
+					"Exception while resolving dependencies", pbe);
+		} catch (ArtifactResolutionException are) {
+			throw new MojoExecutionException(
+					"Exception while resolving dependencies", are);
+		}
+	}
+
 	/**
 	 * Validates arguments and test tools.
 	 * 
@@ -526,6 +681,23 @@ public abstract class AbstractPackagingMojo extends AbstractMojo {
 	}
 
 	public void execute() throws MojoExecutionException, MojoFailureException {
+		Utils.setExecTimeout(execTimeout * 1000);
+		CompressorPool.setThreads(compressionThreads);
+		try {
+			executeTargets();
+		} finally {
+			writeMetricsReports();
+		}
+	}
+
+	/**
+	 * Processes all requested target configurations.
+	 * 
+	 * @throws MojoExecutionException
+	 * @throws MojoFailureException
+	 */
+	protected void executeTargets() throws MojoExecutionException,
+			MojoFailureException {
 
 		// We will merge all targetConfigurations with their parents,
 		// so tat all configurations are ready to be used from this point on
@@ -536,15 +708,14 @@ public abstract class AbstractPackagingMojo extends AbstractMojo {
 		// instances as a
 		// map. This transformation step also serves as check for double
 		// entries.
-		Map<String, TargetConfiguration> targetConfigurationMap = Utils
+		final Map<String, TargetConfiguration> targetConfigurationMap = Utils
 				.toMap(targetConfigurations);
 
-		// Container for collecting target configurations that have been built.
-		// This
-		// is used to make sure that TCs are not build repeatedly when the given
-		// target
-		// configuration have a dependency to a common target configuration.
-		HashSet<String> finishedTargets = new HashSet<String>();
+		// Collects the target configurations that need to be built. This makes
+		// sure that TCs are not built repeatedly when the given target
+		// configurations have a dependency to a common target configuration
+		// and that relations are built before the TCs depending on them.
+		TargetScheduler scheduler = new TargetScheduler(threads);
 
 		checkIfPackagesWillOverwrite();
 
@@ -560,30 +731,85 @@ public abstract class AbstractPackagingMojo extends AbstractMojo {
 					targetConfigurations);
 
 			for (TargetConfiguration tc : buildChain) {
-				if (!finishedTargets.contains(tc.getTarget()) && tc.isReady()) {
-					WorkspaceSession ws = new WorkspaceSession();
-					ws.setMojo(this); // its us
-					ws.setTargetConfigurationMap(targetConfigurationMap);
-					ws.setTargetConfiguration(tc);
+				if (tc.isReady()) {
+					scheduler.add(tc, d);
+				}
+			}
+		}
 
+		int finishedTargets = scheduler.execute(new TargetScheduler.Task() {
+			public void run(TargetConfiguration tc, String d)
+					throws MojoExecutionException, MojoFailureException {
+				WorkspaceSession ws = new WorkspaceSession();
+				ws.setMojo(AbstractPackagingMojo.this); // its us
+				ws.setTargetConfigurationMap(targetConfigurationMap);
+				ws.setTargetConfiguration(tc);
+
+				Metrics m = new Metrics(tc.getTarget(), d);
+				synchronized (targetMetrics) {
+					targetMetrics.add(m);
+				}
+				Metrics.attach(m);
+				try {
 					// Populates session with PackageMap, Helper and resolved
 					// relations
 					prepareWorkspaceSession(ws, d);
 
 					executeTargetConfiguration(ws);
-
-					// Mark as done.
-					finishedTargets.add(tc.getTarget());
+				} finally {
+					m.finish();
+					Metrics.detach();
 				}
-
 			}
-		}
+		});
+
 		getLog().info(
 				"pkg-maven-plugin goal succesfully executed for "
-						+ finishedTargets.size() + " target(s).");
+						+ finishedTargets + " target(s).");
 		cleanUp();
 	}
 
+	/**
+	 * Writes the metrics of every processed target configuration to
+	 * <code>pkg-metrics</code> in the build directory. Failing to do so does
+	 * not fail the build.
+	 */
+	private void writeMetricsReports() {
+		if (!metrics) {
+			return;
+		}
+
+		List<Metrics> reports;
+		synchronized (targetMetrics) {
+			reports = new ArrayList<Metrics>(targetMetrics);
+			targetMetrics.clear();
+		}
+		if (reports.isEmpty()) {
+			return;
+		}
+
+		File dir = new File(getBuildDir(), "pkg-metrics");
+		String goal = getClass().getSimpleName().toLowerCase();
+		dir.mkdirs();
+		for (Metrics m : reports) {
+			String name = goal + "-" + m.getTarget();
+			try {
+				m.writeJson(new File(dir, name + ".json"));
+				m.writeCsv(new File(dir, name + ".csv"));
+			} catch (IOException ioe) {
+				getLog().warn(
+						"Unable to write the metrics of target "
+								+ m.getTarget() + ": " + ioe.getMessage());
+				continue;
+			}
+			getLog().info(
+					String.format("Target %s took %d ms (%d bytes staged, "
+							+ "%d subprocesses)", m.getTarget(),
+							m.getTotalMillis(), m.getBytesStaged(),
+							m.getSubprocesses()));
+		}
+	}
+
 	/**
 	 * Removes "pkg-tmp" from the target directory of the project. This can be
 	 * overriden if removePkgTmp is set to false.
@@ -650,12 +876,16 @@ public abstract class AbstractPackagingMojo extends AbstractMojo {
 		Helper ph = new Helper();
 		ph.init(mojo, pm, tc, resolvedRelations, distro);
 
+		InstalledSize installedSize = new InstalledSize();
+		ph.setInstalledSize(installedSize);
+
 		// Finally now that we know that our cool newly created work objects are
 		// prepared and can be used (none of them is null) we stuff them
 		// into the session and run the actual packaging steps.
 		ws.setResolvedRelations(resolvedRelations);
 		ws.setPackageMap(pm);
 		ws.setHelper(ph);
+		ws.setInstalledSize(installedSize);
 	}
 
 	protected abstract void executeTargetConfiguration(
@@ -0,0 +1,38 @@
+package de.tarent.maven.plugins.pkg;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+
+/**
+ * Creates hard links through <code>java.nio.file</code>, which is only
+ * available on Java 7 and later. The class is only loaded when a link is
+ * created, see {@link StagingMode#LINK}.
+ */
+final class HardLinks {
+
+	private HardLinks() {
+	}
+
+	/**
+	 * Creates <code>dst</code> as a hard link to <code>src</code>.
+	 *
+	 * @param src
+	 * @param dst
+	 * @return the reason why no link could be created or <code>null</code>
+	 *         if it has been created
+	 * @throws IOException
+	 */
+	static String link(File src, File dst) throws IOException {
+		try {
+			Files.createLink(dst.toPath(), src.toPath());
+			return null;
+		} catch (FileSystemException e) {
+			// Most likely the files are on different file systems.
+			return e.getMessage();
+		} catch (UnsupportedOperationException e) {
+			return e.getMessage();
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package de.tarent.maven.plugins.pkg;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Keeps track of the disk space the files of a package occupy, broken down by
+ * the kind of files.
+ *
+ * <p>
+ * Sizes are accounted the way <code>dpkg-gencontrol</code> does it: Every
+ * file occupies its size rounded up to whole blocks of 1 KiB and every other
+ * file system object (e.g. a directory) a single block.
+ * </p>
+ */
+public class InstalledSize {
+
+	/**
+	 * The size of the blocks sizes are rounded to.
+	 */
+	public static final long BLOCK_SIZE = 1024L;
+
+	/**
+	 * The kinds of files the sizes are tracked for.
+	 */
+	public enum Category {
+		/**
+		 * The project's artifact, bundled dependencies and jar files.
+		 */
+		JARS,
+
+		/**
+		 * JNI libraries.
+		 */
+		JNI,
+
+		/**
+		 * Auxiliary, bin, sbin, data and dataroot files.
+		 */
+		DATA,
+
+		/**
+		 * Sysconf files.
+		 */
+		SYSCONF,
+
+		/**
+		 * Maintainer scripts.
+		 */
+		SCRIPTS
+	}
+
+	private final Map<Category, Long> sizes = new EnumMap<Category, Long>(
+			Category.class);
+
+	/**
+	 * Rounds the given file length up to whole blocks.
+	 *
+	 * @param length
+	 * @return
+	 */
+	public static long round(long length) {
+		return (length + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+	}
+
+	/**
+	 * Adds an amount of bytes (which is expected to be rounded already) to the
+	 * given category and returns it.
+	 *
+	 * @param category
+	 * @param byteAmount
+	 * @return
+	 */
+	public long add(Category category, long byteAmount) {
+		sizes.put(category, get(category) + byteAmount);
+		return byteAmount;
+	}
+
+	/**
+	 * Returns the amount of bytes accounted for the given category.
+	 *
+	 * @param category
+	 * @return
+	 */
+	public long get(Category category) {
+		Long size = sizes.get(category);
+		return size != null ? size : 0L;
+	}
+
+	/**
+	 * Returns the amount of bytes accounted for all categories.
+	 *
+	 * @return
+	 */
+	public long getTotal() {
+		long total = 0;
+		for (Long size : sizes.values()) {
+			total += size;
+		}
+		return total;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Category category : Category.values()) {
+			sb.append(category.name().toLowerCase());
+			sb.append('=');
+			sb.append(get(category) / BLOCK_SIZE);
+			sb.append(" KiB, ");
+		}
+		sb.append("total=");
+		sb.append(getTotal() / BLOCK_SIZE);
+		sb.append(" KiB");
+		return sb.toString();
+	}
+}
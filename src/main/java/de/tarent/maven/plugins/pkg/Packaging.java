@@ -25,10 +25,16 @@
 
 package de.tarent.maven.plugins.pkg;
 
+import java.io.File;
+import java.io.IOException;
+
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 
 import de.tarent.maven.plugins.pkg.packager.Packager;
+import de.tarent.maven.plugins.pkg.state.BuildState;
+import de.tarent.maven.plugins.pkg.state.ChecksumCache;
+import de.tarent.maven.plugins.pkg.state.TargetInputs;
 
 /**
  * Creates a package file for the project and the given distribution.
@@ -40,6 +46,21 @@ import de.tarent.maven.plugins.pkg.packager.Packager;
  */
 public class Packaging extends AbstractPackagingMojo {
 
+	/**
+	 * If set the package of a target configuration is only built if any of
+	 * its inputs changed since the package was built the last time. The
+	 * digests of the inputs are kept in <code>pkg-state</code> below the build
+	 * directory.<br/>
+	 * 
+	 * @parameter expression="${pkgIncremental}" default-value="false"
+	 */
+	protected boolean incremental;
+
+	/**
+	 * Checksums of the input files, shared by all target configurations.
+	 */
+	private ChecksumCache checksumCache;
+
 	/**
 	 * Creates the package for a single given target configuration.
 	 * 
@@ -59,9 +80,64 @@ public class Packaging extends AbstractPackagingMojo {
 		// into the session and run the actual packaging steps.
 		ws.setPackager(packager);
 
+		File packageFile = null;
+		BuildState state = null;
+		String digest = null;
+		if (incremental) {
+			packageFile = packager.getPackageFile(ws);
+			if (packageFile != null) {
+				state = new BuildState(getStateDir(), ws
+						.getTargetConfiguration().getTarget(), ws.getHelper()
+						.getChosenDistro());
+				digest = TargetInputs.digest(ws, getChecksumCache());
+				try {
+					if (state.isUpToDate(digest, packageFile)) {
+						getLog().info(
+								packageFile.getName()
+										+ " is up to date, skipping target "
+										+ ws.getTargetConfiguration()
+												.getTarget());
+						return;
+					}
+				} catch (IOException ioe) {
+					throw new MojoExecutionException(
+							"Unable to read the build state "
+									+ state.getFile(), ioe);
+				}
+				state.invalidate();
+			} else {
+				getLog().info(
+						"Incremental packaging is not supported for target "
+								+ ws.getTargetConfiguration().getTarget());
+			}
+		}
+
 		packager.checkEnvironment(getLog(), ws);
 
 		packager.execute(getLog(), ws);
+
+		if (state != null) {
+			try {
+				state.record(digest, packageFile);
+				getChecksumCache().save();
+			} catch (IOException ioe) {
+				throw new MojoExecutionException(
+						"Unable to write the build state " + state.getFile(),
+						ioe);
+			}
+		}
+	}
+
+	private File getStateDir() {
+		return new File(getBuildDir(), "pkg-state");
+	}
+
+	private synchronized ChecksumCache getChecksumCache() {
+		if (checksumCache == null) {
+			checksumCache = new ChecksumCache(new File(getStateDir(),
+					"checksums.properties"));
+		}
+		return checksumCache;
 	}
 
 	public void setKeepPkgTmp(boolean b) {
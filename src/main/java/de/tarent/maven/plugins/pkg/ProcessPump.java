@@ -0,0 +1,124 @@
+package de.tarent.maven.plugins.pkg;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Drains an output stream of a subprocess on its own thread, so that the
+ * subprocess never blocks on a full pipe.
+ *
+ * <p>
+ * Only a bounded amount of the output is kept. In <em>head</em> mode the
+ * first <code>limit</code> bytes are kept and anything beyond is discarded
+ * (see {@link #isTruncated()}). In <em>tail</em> mode the buffer is used as a
+ * ring, i.e. the last <code>limit</code> bytes are kept, which is what
+ * matters for error messages.
+ * </p>
+ */
+class ProcessPump extends Thread {
+
+	private final InputStream in;
+
+	private final boolean tail;
+
+	private final byte[] buffer;
+
+	/**
+	 * Number of bytes read so far.
+	 */
+	private long count;
+
+	ProcessPump(String name, InputStream in, int limit, boolean tail) {
+		super(name);
+		setDaemon(true);
+		this.in = in;
+		this.tail = tail;
+		this.buffer = new byte[limit];
+	}
+
+	@Override
+	public void run() {
+		byte[] chunk = new byte[8192];
+		try {
+			int n;
+			while ((n = in.read(chunk)) != -1) {
+				append(chunk, n);
+			}
+		} catch (IOException ioe) {
+			// The stream has been closed, the output so far is kept.
+		} finally {
+			try {
+				in.close();
+			} catch (IOException ioe) {
+				// Nothing to do.
+			}
+		}
+	}
+
+	private synchronized void append(byte[] chunk, int n) {
+		for (int i = 0; i < n; i++) {
+			if (count < buffer.length) {
+				buffer[(int) count] = chunk[i];
+			} else if (tail) {
+				buffer[(int) (count % buffer.length)] = chunk[i];
+			}
+			count++;
+		}
+	}
+
+	/**
+	 * Waits for the end of the stream, at most the given time. If the
+	 * stream does not end (e.g. because a grandchild of the process inherited
+	 * it) it is closed and the pump is left behind. Closing only ends a
+	 * blocked read on some platforms, therefore it is not waited for again.
+	 *
+	 * @param millis
+	 *            the time to wait, nothing is waited for if it is not
+	 *            positive
+	 * @throws InterruptedException
+	 */
+	void finish(long millis) throws InterruptedException {
+		if (millis > 0) {
+			join(millis);
+		}
+		if (isAlive()) {
+			try {
+				in.close();
+			} catch (IOException ioe) {
+				// Nothing to do.
+			}
+		}
+	}
+
+	synchronized boolean isTruncated() {
+		return count > buffer.length;
+	}
+
+	/**
+	 * Returns the kept output in the order it was written.
+	 *
+	 * @return
+	 */
+	synchronized byte[] toByteArray() {
+		int length = (int) Math.min(count, buffer.length);
+		byte[] b = new byte[length];
+		if (!tail || count <= buffer.length) {
+			System.arraycopy(buffer, 0, b, 0, length);
+		} else {
+			int start = (int) (count % buffer.length);
+			System.arraycopy(buffer, start, b, 0, buffer.length - start);
+			System.arraycopy(buffer, 0, b, buffer.length - start, start);
+		}
+		return b;
+	}
+
+	InputStream toInputStream() {
+		return new ByteArrayInputStream(toByteArray());
+	}
+
+	@Override
+	public String toString() {
+		return new String(toByteArray());
+	}
+}
@@ -0,0 +1,151 @@
+package de.tarent.maven.plugins.pkg;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Answers the questions about the build host's programs which are asked for
+ * every target configuration: whether a program is available and which
+ * version it reports.
+ *
+ * <p>
+ * The answers do not change while the build runs, so each one is determined
+ * once and kept for the life of the JVM. Availability is looked up in the
+ * <code>PATH</code> directly instead of running <code>which</code>.
+ * </p>
+ *
+ * <p>
+ * Versions are probed once per program: Callers asking for the same program
+ * wait for the running probe, callers asking for other programs do not.
+ * </p>
+ */
+public final class ProgramProbes {
+
+	private static final Map<String, File> LOCATIONS = new HashMap<String, File>();
+
+	private static final Map<String, FutureTask<String>> VERSIONS = new HashMap<String, FutureTask<String>>();
+
+	private ProgramProbes() {
+	}
+
+	/**
+	 * Returns the executable file the given program name resolves to or
+	 * <code>null</code> if there is none. A name containing a path separator
+	 * is taken as the path to the program.
+	 *
+	 * @param programName
+	 * @return
+	 */
+	public static File locate(String programName) {
+		synchronized (LOCATIONS) {
+			if (LOCATIONS.containsKey(programName)) {
+				return LOCATIONS.get(programName);
+			}
+			File location = search(programName);
+			LOCATIONS.put(programName, location);
+			return location;
+		}
+	}
+
+	private static File search(String programName) {
+		if (programName.indexOf('/') >= 0
+				|| programName.indexOf(File.separatorChar) >= 0) {
+			File f = new File(programName);
+			return isExecutable(f) ? f : null;
+		}
+
+		String path = System.getenv("PATH");
+		if (path == null) {
+			return null;
+		}
+		for (String dir : path.split(File.pathSeparator)) {
+			File f = new File(dir.length() == 0 ? "." : dir, programName);
+			if (isExecutable(f)) {
+				return f;
+			}
+		}
+		return null;
+	}
+
+	private static boolean isExecutable(File f) {
+		return f.isFile() && f.canExecute();
+	}
+
+	/**
+	 * Returns the trimmed output of <code>programName --version</code>.
+	 *
+	 * @param programName
+	 * @return
+	 * @throws MojoExecutionException
+	 *             if the program cannot be run
+	 */
+	public static String version(final String programName)
+			throws MojoExecutionException {
+		FutureTask<String> probe;
+		boolean started = false;
+		synchronized (VERSIONS) {
+			probe = VERSIONS.get(programName);
+			if (probe == null) {
+				probe = new FutureTask<String>(new Callable<String>() {
+					public String call() throws MojoExecutionException {
+						return probeVersion(programName);
+					}
+				});
+				VERSIONS.put(programName, probe);
+				started = true;
+			}
+		}
+		if (started) {
+			probe.run();
+		}
+
+		try {
+			return probe.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while waiting for "
+					+ programName + " --version.", e);
+		} catch (ExecutionException e) {
+			// A failed probe is not kept, the next caller tries again.
+			synchronized (VERSIONS) {
+				if (VERSIONS.get(programName) == probe) {
+					VERSIONS.remove(programName);
+				}
+			}
+			if (e.getCause() instanceof MojoExecutionException) {
+				throw (MojoExecutionException) e.getCause();
+			}
+			throw new MojoExecutionException("Error executing " + programName
+					+ ". Aborting!", e.getCause());
+		}
+	}
+
+	private static String probeVersion(String programName)
+			throws MojoExecutionException {
+		return Utils.inputStreamToString(
+				Utils.exec(new String[] { programName, "--version" }, null,
+						programName + " is not available on your system."
+								+ " Check your installation!",
+						"Error executing " + programName + ". Aborting!",
+						null)).trim();
+	}
+
+	/**
+	 * Forgets all answers, e.g. after the build host has been changed by a
+	 * test.
+	 */
+	public static void clear() {
+		synchronized (LOCATIONS) {
+			LOCATIONS.clear();
+		}
+		synchronized (VERSIONS) {
+			VERSIONS.clear();
+		}
+	}
+}
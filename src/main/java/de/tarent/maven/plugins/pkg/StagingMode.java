@@ -0,0 +1,163 @@
+package de.tarent.maven.plugins.pkg;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * The ways in which files can be put into the staging directory of a package.
+ *
+ * <p>
+ * Apart from plain copies the files can be hard linked or copied using
+ * copy-on-write reflinks. Both are much cheaper than copying when the source
+ * and the staging directory reside on the same file system. When that is not
+ * the case (or the file system does not support it) the files are copied.
+ * </p>
+ *
+ * <p>
+ * A hard link shares the file with its source. Staged files must therefore
+ * never be modified in place. Files which are made executable after staging are
+ * always copied for that reason.
+ * </p>
+ */
+public enum StagingMode {
+
+	/**
+	 * Copies the files.
+	 */
+	COPY,
+
+	/**
+	 * Creates hard links to the files.
+	 */
+	LINK {
+		@Override
+		void stageFile(Log l, File src, File dst) throws IOException {
+			if (dst.exists() && !dst.delete()) {
+				throw new IOException("Unable to replace " + dst);
+			}
+
+			String failure;
+			try {
+				failure = HardLinks.link(src, dst);
+			} catch (LinkageError e) {
+				failure = "hard links require Java 7";
+			}
+			if (failure != null) {
+				debug(l, "unable to link " + src + ", copying it: " + failure);
+				super.stageFile(l, src, dst);
+			}
+		}
+	},
+
+	/**
+	 * Creates copy-on-write clones of the files through GNU
+	 * <code>cp --reflink=auto</code> which copies the files if the file system
+	 * does not support that.
+	 */
+	REFLINK {
+		@Override
+		void stageFile(Log l, File src, File dst) throws IOException {
+			try {
+				Utils.exec(new String[] { "cp", "--reflink=auto",
+						"--preserve=timestamps", src.getAbsolutePath(),
+						dst.getAbsolutePath() }, (File) null, "cp failed",
+						"cp failed");
+			} catch (MojoExecutionException e) {
+				debug(l, "unable to reflink " + src + ", copying it: "
+						+ e.getMessage());
+				super.stageFile(l, src, dst);
+			}
+		}
+
+		@Override
+		void stageFiles(Log l, List<File> sources, File dstDir)
+				throws IOException {
+			FileUtils.forceMkdir(dstDir);
+
+			// Keeps the command line well below the limits of the platforms.
+			for (int i = 0; i < sources.size(); i += BATCH_SIZE) {
+				List<File> batch = sources.subList(i,
+						Math.min(sources.size(), i + BATCH_SIZE));
+
+				List<String> args = new ArrayList<String>();
+				args.add("cp");
+				args.add("--reflink=auto");
+				args.add("--preserve=timestamps");
+				for (File src : batch) {
+					args.add(src.getAbsolutePath());
+				}
+				args.add(dstDir.getAbsolutePath() + File.separator);
+
+				try {
+					Utils.exec(args.toArray(new String[args.size()]),
+							(File) null, "cp failed", "cp failed");
+				} catch (MojoExecutionException e) {
+					debug(l, "unable to reflink files, copying them: "
+							+ e.getMessage());
+					super.stageFiles(l, batch, dstDir);
+				}
+			}
+		}
+	};
+
+	private static final int BATCH_SIZE = 256;
+
+	/**
+	 * Returns the mode with the given (case-insensitive) name.
+	 *
+	 * @param name
+	 * @return
+	 * @throws MojoExecutionException
+	 *             if there is no such mode
+	 */
+	public static StagingMode fromString(String name)
+			throws MojoExecutionException {
+		for (StagingMode mode : values()) {
+			if (mode.name().equalsIgnoreCase(name)) {
+				return mode;
+			}
+		}
+		throw new MojoExecutionException("Unknown staging mode: " + name
+				+ " (valid values are copy, link and reflink)");
+	}
+
+	/**
+	 * Stages a single file. The destination's parent directory must exist.
+	 *
+	 * @param l
+	 * @param src
+	 * @param dst
+	 * @throws IOException
+	 */
+	void stageFile(Log l, File src, File dst) throws IOException {
+		FileUtils.copyFile(src, dst);
+	}
+
+	/**
+	 * Stages the given files into a directory keeping their names.
+	 *
+	 * @param l
+	 * @param sources
+	 * @param dstDir
+	 * @throws IOException
+	 */
+	void stageFiles(Log l, List<File> sources, File dstDir) throws IOException {
+		FileUtils.forceMkdir(dstDir);
+		for (File src : sources) {
+			stageFile(l, src, new File(dstDir, src.getName()));
+		}
+	}
+
+	private static void debug(Log l, String msg) {
+		if (l != null) {
+			l.debug(msg);
+		}
+	}
+
+}
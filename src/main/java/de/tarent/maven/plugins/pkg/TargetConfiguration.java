@@ -887,6 +887,43 @@ public class TargetConfiguration {
 	@MergeMe
 	private String customCodeWindows;
 
+	/**
+	 * Denotes whether a class data sharing (CDS) archive is created for the
+	 * application, which makes the VM start faster.
+	 * 
+	 * <p>
+	 * The archive depends on the exact VM and the paths of the jars, so it
+	 * cannot be created when packaging. Instead the post-install script runs
+	 * the start script once with <code>-XX:ArchiveClassesAtExit</code> (Java
+	 * 13 or later) and the archive is put next to the bundled jars. The start
+	 * script uses the archive whenever it exists, the pre-removal script
+	 * deletes it again. Without a suitable VM the package works as before.
+	 * Only takes effect if a <code>mainClass</code> is set.
+	 * </p>
+	 * 
+	 * <p>
+	 * Default is <code>null</code>, after merging it is <code>false</code> or
+	 * the parent's value.
+	 * </p>
+	 */
+	@MergeMe(defaultBoolean = false)
+	private Boolean classDataSharing;
+
+	/**
+	 * Denotes the arguments which are passed to the application when it is
+	 * run to create the class data sharing archive (see
+	 * <code>classDataSharing</code>). The application should terminate on its
+	 * own with these (e.g. <code>--help</code>), it is stopped after 2
+	 * minutes otherwise.
+	 * 
+	 * <p>
+	 * Default is <code>null</code>, after merging it is an empty string or the
+	 * parent's value.
+	 * </p>
+	 */
+	@MergeMe(defaultString = "")
+	private String cdsTrainingArguments;
+
 	/**
 	 * Denothes wether the package should be signed or not. As of now, this
 	 * value is only taken in consideration when building RPM packages.
@@ -950,6 +987,50 @@ public class TargetConfiguration {
      */
     @MergeMe(defaultBoolean = false)
     private Boolean ignoreDependencies;
+
+	/**
+	 * Denotes which tool creates the package file. <code>internal</code> writes
+	 * the package directly from the staged files, <code>external</code> calls
+	 * the distribution's own tool (e.g. <code>fakeroot dpkg-deb</code>).
+	 * 
+	 * <p>
+	 * If not set the packager's default is used. For Debian and IPK packages
+	 * this is <code>internal</code>, for RPM packages it is <code>external</code>
+	 * (<code>rpmbuild</code>). The internal RPM builder cannot sign packages.
+	 * </p>
+	 */
+	@MergeMe(defaultValueIsNull = true)
+	private String packageBuilder;
+
+	/**
+	 * Denotes the compression of the package contents: <code>gzip</code>,
+	 * <code>xz</code> or <code>none</code>.
+	 * 
+	 * <p>
+	 * If not set the packages built by the plugin itself use
+	 * <code>gzip</code> and external builders use their own default. The
+	 * payload of RPM packages cannot be uncompressed.
+	 * </p>
+	 * 
+	 * <p>
+	 * The packages built by the plugin itself are compressed in blocks on all
+	 * available processors (see <code>compressionThreads</code>). Each block
+	 * being compressed needs about 2 MiB for <code>gzip</code> and about 110
+	 * MiB for <code>xz</code> (16 MiB of data and the encoder's 90 MiB at the
+	 * levels 6-9). The compressors never use more than a quarter of the
+	 * maximum heap and wait for memory instead.
+	 * </p>
+	 */
+	@MergeMe(defaultValueIsNull = true)
+	private String compression;
+
+	/**
+	 * Denotes the compression level (0-9). If not set the default of the
+	 * compression is used, which is 9 for <code>gzip</code> and 6 for
+	 * <code>xz</code>.
+	 */
+	@MergeMe(defaultValueIsNull = true)
+	private Integer compressionLevel;
 	
 	public TargetConfiguration() {
 		// Intentionally empty.
@@ -1203,6 +1284,33 @@ public class TargetConfiguration {
 		this.artifactInclusion = artifactInclusion;
 	}
 
+	public String getPackageBuilder() {
+		checkIfReady();
+		return packageBuilder;
+	}
+
+	public void setPackageBuilder(String packageBuilder) {
+		this.packageBuilder = packageBuilder;
+	}
+
+	public String getCompression() {
+		checkIfReady();
+		return compression;
+	}
+
+	public void setCompression(String compression) {
+		this.compression = compression;
+	}
+
+	public Integer getCompressionLevel() {
+		checkIfReady();
+		return compressionLevel;
+	}
+
+	public void setCompressionLevel(Integer compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+
 	public boolean isAdvancedStarter() {
 		checkIfReady();
 		return advancedStarter.booleanValue();
@@ -1445,6 +1553,10 @@ public class TargetConfiguration {
 		appendBoolean(sb, "advancedStarter", advancedStarter);
 		appendBoolean(sb, "sign", sign);
 		appendStringDefault(sb, "source", source);
+		appendStringDefault(sb, "packageBuilder", packageBuilder);
+		appendStringDefault(sb, "compression", compression);
+		appendStringDefault(sb, "compressionLevel",
+				compressionLevel != null ? compressionLevel.toString() : null);
 		sb.append("createWindowsExecutable: " + createWindowsExecutable + "\n");
 		sb.append("createOSXApp: " + createOSXApp + "\n");
 
@@ -1474,6 +1586,8 @@ public class TargetConfiguration {
 		appendStringNotSet(sb, "maxJavaMemory", maxJavaMemory);
 		appendStringNotSet(sb, "customCodeUnix", customCodeUnix);
 		appendStringNotSet(sb, "customCodeWindows", customCodeWindows);
+		appendBoolean(sb, "classDataSharing", classDataSharing);
+		appendStringNotSet(sb, "cdsTrainingArguments", cdsTrainingArguments);
 		sb.append("systemProperties:\n");
 		if (systemProperties != null) {
 			Iterator<?> ite = systemProperties.entrySet().iterator();
@@ -1593,6 +1707,24 @@ public class TargetConfiguration {
 		this.customCodeWindows = customCodeWindows;
 	}
 
+	public boolean isClassDataSharing() {
+		checkIfReady();
+		return classDataSharing.booleanValue();
+	}
+
+	public void setClassDataSharing(boolean classDataSharing) {
+		this.classDataSharing = Boolean.valueOf(classDataSharing);
+	}
+
+	public String getCdsTrainingArguments() {
+		checkIfReady();
+		return cdsTrainingArguments;
+	}
+
+	public void setCdsTrainingArguments(String cdsTrainingArguments) {
+		this.cdsTrainingArguments = cdsTrainingArguments;
+	}
+
 	public boolean isSign() {
 		checkIfReady();
 		return sign.booleanValue();
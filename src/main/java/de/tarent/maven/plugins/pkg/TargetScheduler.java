@@ -0,0 +1,288 @@
+package de.tarent.maven.plugins.pkg;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.AbstractMojoExecutionException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Runs the work for a set of target configurations in an order that respects
+ * their relations: A target configuration is only started after all the
+ * target configurations it relates to have been finished.
+ *
+ * <p>
+ * Target configurations which do not depend on each other are run
+ * concurrently on a fixed number of worker threads. With a single thread
+ * everything happens on the calling thread: Of the target configurations whose
+ * relations are finished the one which was added first is run next. As the
+ * relations of a target come before it in its build chain, build chains which
+ * are added one after the other are run one after the other.
+ * </p>
+ *
+ * <p>
+ * Once a task fails no further tasks are started. The tasks which are already
+ * running are waited for and the first failure is rethrown.
+ * </p>
+ */
+class TargetScheduler {
+
+	/**
+	 * The work to be done for a single target configuration.
+	 */
+	interface Task {
+		void run(TargetConfiguration tc, String distro)
+				throws MojoExecutionException, MojoFailureException;
+	}
+
+	private final int threads;
+
+	private final Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+
+	TargetScheduler(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Schedules a target configuration for the given distro. Adding a target
+	 * configuration that is already scheduled has no effect, so the build
+	 * chains of several targets can be added one after the other.
+	 *
+	 * @param tc
+	 * @param distro
+	 */
+	void add(TargetConfiguration tc, String distro) {
+		if (!nodes.containsKey(tc.getTarget())) {
+			nodes.put(tc.getTarget(), new Node(tc, distro, nodes.size()));
+		}
+	}
+
+	/**
+	 * Runs the task for every scheduled target configuration.
+	 *
+	 * @param task
+	 * @return the number of target configurations that have been processed
+	 * @throws MojoExecutionException
+	 * @throws MojoFailureException
+	 */
+	int execute(Task task) throws MojoExecutionException,
+			MojoFailureException {
+		link();
+
+		if (threads == 1) {
+			return executeSerially(task);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(threads, Math.max(1, nodes.size())),
+				new WorkerThreadFactory());
+		try {
+			return executeConcurrently(task, executor);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Connects every node with the nodes of its relations. Relations which are
+	 * not scheduled are ignored.
+	 */
+	private void link() {
+		for (Node n : nodes.values()) {
+			for (String relation : n.tc.getRelations()) {
+				Node dependency = nodes.get(relation);
+				if (dependency != null && dependency != n) {
+					dependency.dependents.add(n);
+					n.pending++;
+				}
+			}
+		}
+	}
+
+	private int executeSerially(Task task) throws MojoExecutionException,
+			MojoFailureException {
+		LinkedList<Node> ready = getInitiallyReady();
+		int finished = 0;
+
+		while (!ready.isEmpty()) {
+			Node n = removeFirstAdded(ready);
+			task.run(n.tc, n.distro);
+			finished++;
+			release(n, ready);
+		}
+
+		checkAllFinished(finished);
+		return finished;
+	}
+
+	private int executeConcurrently(final Task task, ExecutorService executor)
+			throws MojoExecutionException, MojoFailureException {
+		CompletionService<Node> completion = new ExecutorCompletionService<Node>(
+				executor);
+		Map<Future<Node>, Node> running = new HashMap<Future<Node>, Node>();
+		LinkedList<Node> ready = getInitiallyReady();
+		AbstractMojoExecutionException failure = null;
+		int finished = 0;
+
+		while (true) {
+			// Once something went wrong nothing new is started.
+			while (failure == null && !ready.isEmpty()) {
+				final Node n = ready.removeFirst();
+				running.put(completion.submit(new Callable<Node>() {
+					public Node call() throws MojoExecutionException,
+							MojoFailureException {
+						task.run(n.tc, n.distro);
+						return n;
+					}
+				}), n);
+			}
+
+			if (running.isEmpty()) {
+				break;
+			}
+
+			Future<Node> f;
+			try {
+				f = completion.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MojoExecutionException(
+						"Interrupted while waiting for target configurations.",
+						e);
+			}
+			Node n = running.remove(f);
+
+			try {
+				f.get();
+				finished++;
+				release(n, ready);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MojoExecutionException(
+						"Interrupted while waiting for target configurations.",
+						e);
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = toAbstractMojoExecutionException(n, e.getCause());
+				}
+			}
+		}
+
+		if (failure instanceof MojoFailureException) {
+			throw (MojoFailureException) failure;
+		} else if (failure != null) {
+			throw (MojoExecutionException) failure;
+		}
+
+		checkAllFinished(finished);
+		return finished;
+	}
+
+	private LinkedList<Node> getInitiallyReady() {
+		LinkedList<Node> ready = new LinkedList<Node>();
+		for (Node n : nodes.values()) {
+			if (n.pending == 0) {
+				ready.add(n);
+			}
+		}
+		return ready;
+	}
+
+	private Node removeFirstAdded(List<Node> ready) {
+		Node first = null;
+		for (Node n : ready) {
+			if (first == null || n.index < first.index) {
+				first = n;
+			}
+		}
+		ready.remove(first);
+		return first;
+	}
+
+	/**
+	 * Marks the given node as finished and moves those dependents to the ready
+	 * list which have no unfinished relations left.
+	 */
+	private void release(Node n, List<Node> ready) {
+		for (Node dependent : n.dependents) {
+			if (--dependent.pending == 0) {
+				ready.add(dependent);
+			}
+		}
+	}
+
+	private void checkAllFinished(int finished) throws MojoExecutionException {
+		if (finished < nodes.size()) {
+			List<String> unfinished = new ArrayList<String>();
+			for (Node n : nodes.values()) {
+				if (n.pending > 0) {
+					unfinished.add(n.tc.getTarget());
+				}
+			}
+			throw new MojoExecutionException(
+					"Cyclic relations between target configurations: "
+							+ unfinished);
+		}
+	}
+
+	private AbstractMojoExecutionException toAbstractMojoExecutionException(
+			Node n, Throwable t) {
+		if (t instanceof MojoExecutionException
+				|| t instanceof MojoFailureException) {
+			return (AbstractMojoExecutionException) t;
+		}
+		return new MojoExecutionException("Error while processing target "
+				+ n.tc.getTarget(), t);
+	}
+
+	private static class Node {
+
+		final TargetConfiguration tc;
+
+		final String distro;
+
+		/**
+		 * The position in which the node has been added.
+		 */
+		final int index;
+
+		final List<Node> dependents = new ArrayList<Node>();
+
+		/**
+		 * Number of relations which have not been finished yet. Only accessed
+		 * by the scheduling thread.
+		 */
+		int pending;
+
+		Node(TargetConfiguration tc, String distro, int index) {
+			this.tc = tc;
+			this.distro = distro;
+			this.index = index;
+		}
+	}
+
+	private static class WorkerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "pkg-worker-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
@@ -7,15 +7,21 @@ import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 
 import de.tarent.maven.plugins.pkg.upload.APTUploader;
+import de.tarent.maven.plugins.pkg.upload.AptRepositoryDeployer;
+import de.tarent.maven.plugins.pkg.upload.FileUploader;
 import de.tarent.maven.plugins.pkg.upload.IPkgUploader;
 import de.tarent.maven.plugins.pkg.upload.RepreproDeployer;
+import de.tarent.maven.plugins.pkg.upload.UploadScheduler;
 import de.tarent.maven.plugins.pkg.upload.WagonUploader;
 
 /**
  * Enables the plugin to transfer packages resulting from a TargetConfiguration
  * to external repositories and/or local directories.</br> This goal uses
  * codehaus' wagon-maven-plugin behind the scenes.</br> Tested providers are:
- * ssh (scpexe://), sftp (sftp://), file (file://)</br>
+ * ssh (scpexe://), sftp (sftp://), file (file://)</br> Uploads run
+ * concurrently and failed uploads are retried. Packages which are already
+ * present with the same checksum in a file:// location are not copied again
+ * and interrupted copies are resumed.</br>
  * 
  * @phase deploy
  * @goal upload
@@ -25,8 +31,67 @@ public class Upload extends AbstractPackagingMojo {
 
 	private static final String duploadURIScheme = "dupload://";
 	private static final String repreproURIScheme = "reprepro://";
+	private static final String aptRepositoryURIScheme = "aptrepo://";
 	Log l = getLog();
 
+	/**
+	 * Number of uploads which run concurrently. Only uploads done by the
+	 * plugin itself (<code>file://</code> and <code>aptrepo://</code>) run
+	 * concurrently, all others run one after the other once all target
+	 * configurations have been processed.<br/>
+	 * 
+	 * @parameter expression="${pkgUploadThreads}" default-value="4"
+	 */
+	protected int uploadThreads;
+
+	/**
+	 * How often a failed upload is repeated before the goal fails. Uploads
+	 * through wagon, <code>dupload</code> and <code>reprepro</code> are
+	 * never repeated.<br/>
+	 * 
+	 * @parameter expression="${pkgUploadRetries}" default-value="2"
+	 */
+	protected int uploadRetries;
+
+	/**
+	 * Milliseconds to wait before the first retry of a failed upload. The
+	 * delay doubles with every further retry.<br/>
+	 * 
+	 * @parameter expression="${pkgUploadRetryDelay}" default-value="1000"
+	 */
+	protected long uploadRetryDelay;
+
+	private UploadScheduler uploadScheduler;
+
+	@Override
+	protected void executeTargets() throws MojoExecutionException,
+			MojoFailureException {
+		UploadScheduler scheduler = new UploadScheduler(l, uploadThreads,
+				uploadRetries, uploadRetryDelay);
+		uploadScheduler = scheduler;
+		boolean succeeded = false;
+		try {
+			super.executeTargets();
+			// The targets may have been processed on several threads, only
+			// the plugin's own uploaders may run there.
+			scheduler.runSerialized();
+			succeeded = true;
+		} finally {
+			uploadScheduler = null;
+			if (succeeded) {
+				scheduler.await();
+			} else {
+				// Lets the running uploads finish without hiding the original
+				// failure.
+				try {
+					scheduler.await();
+				} catch (MojoExecutionException e) {
+					l.warn(e.getMessage());
+				}
+			}
+		}
+	}
+
 	@Override
 	protected void executeTargetConfiguration(WorkspaceSession ws)
 			throws MojoExecutionException, MojoFailureException {
@@ -55,7 +120,8 @@ public class Upload extends AbstractPackagingMojo {
 				IPkgUploader iup;
 				iup = getUploaderForProtocol(ws,
 						param.parseUrlPlaceholders(url));
-				iup.uploadPackage();
+				uploadScheduler.submit(packageFile.getName() + " to " + url,
+						iup);
 			}
 		} else {
 			throw new MojoExecutionException("No upload url(s) set for "
@@ -69,8 +135,9 @@ public class Upload extends AbstractPackagingMojo {
 	 * </p>
 	 * At the moment this method only differentiantes between dupload:// (these
 	 * urls will be managed by our own class, which uses dupload in the
-	 * background) and everything else (managed by codehaus'
-	 * wagon-maven-plugin).
+	 * background), reprepro://, aptrepo:// (a local flat APT repository whose
+	 * index is maintained by the plugin itself), file:// (copied by the plugin
+	 * itself) and everything else (managed by codehaus' wagon-maven-plugin).
 	 * 
 	 * @param ws
 	 * @param url
@@ -82,6 +149,11 @@ public class Upload extends AbstractPackagingMojo {
 			return new APTUploader(ws, url.replace(duploadURIScheme, ""));
 		} else if (url.startsWith(repreproURIScheme)) {
 			return new RepreproDeployer(ws, url.replace(repreproURIScheme, ""));
+		} else if (url.startsWith(aptRepositoryURIScheme)) {
+			return new AptRepositoryDeployer(ws, url.replace(
+					aptRepositoryURIScheme, ""));
+		} else if (url.startsWith(FileUploader.URI_SCHEME)) {
+			return new FileUploader(ws, url);
 		} else {
 			return new WagonUploader(ws, url);
 		}
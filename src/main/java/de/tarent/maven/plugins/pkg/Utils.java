@@ -28,15 +28,18 @@ package de.tarent.maven.plugins.pkg;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileFilter;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.io.PrintWriter;
-import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Enumeration;
@@ -46,10 +49,16 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.io.FileUtils;
@@ -79,11 +88,8 @@ import org.codehaus.plexus.archiver.UnArchiver;
 import org.codehaus.plexus.archiver.manager.ArchiverManager;
 import org.codehaus.plexus.archiver.manager.NoSuchArchiverException;
 
-import de.tarent.maven.plugins.pkg.annotations.MergeMe;
-import de.tarent.maven.plugins.pkg.merger.CollectionMerger;
-import de.tarent.maven.plugins.pkg.merger.IMerge;
-import de.tarent.maven.plugins.pkg.merger.ObjectMerger;
-import de.tarent.maven.plugins.pkg.merger.PropertiesMerger;
+import de.tarent.maven.plugins.pkg.merger.MergePlan;
+import de.tarent.maven.plugins.pkg.metrics.Metrics;
 import de.tarent.maven.plugins.pkg.packager.DebPackager;
 import de.tarent.maven.plugins.pkg.packager.IpkPackager;
 import de.tarent.maven.plugins.pkg.packager.IzPackPackager;
@@ -99,6 +105,27 @@ import de.tarent.maven.plugins.pkg.packager.RPMPackager;
 public final class Utils {
 	private static final String STARTER_CLASS = "_Starter.class";
 
+	private static final String STARTER_LOADER_CLASS = "_Starter$IndexedClassLoader.class";
+
+	/**
+	 * Maximum amount of standard output of a program run through
+	 * {@link #exec}.
+	 */
+	public static final int EXEC_OUTPUT_LIMIT = 16 * 1024 * 1024;
+
+	/**
+	 * Amount of error output of a program run through {@link #exec} which is
+	 * kept for diagnostics.
+	 */
+	public static final int EXEC_ERROR_LIMIT = 64 * 1024;
+
+	/**
+	 * How long to wait for the output of a program which has terminated.
+	 */
+	private static final long PUMP_GRACE_PERIOD = 5000;
+
+	private static volatile long execTimeout;
+
 	/**
 	 * Look up Archiver/UnArchiver implementations.
 	 * 
@@ -155,10 +182,7 @@ public final class Utils {
 	public static void makeExecutable(Log l, String f)
 			throws MojoExecutionException {
 		l.info("make executable " + f);
-		exec(new String[] { "chmod", "+x", f }, "Changing the " + f
-				+ " file attributes failed.", "Unable to make " + f
-				+ " file executable.");
-
+		makeExecutable(new File(f), f);
 	}
 
 	/**
@@ -170,10 +194,11 @@ public final class Utils {
 	 */
 	public static void makeExecutable(File f, String item)
 			throws MojoExecutionException {
-		exec(new String[] { "chmod", "+x", f.getAbsolutePath() },
-				"Changing the " + item + " file attributes failed.",
-				"Unable to make " + item + " file executable.");
-
+		// Like chmod +x the file becomes executable for everyone.
+		if (!f.setExecutable(true, false)) {
+			throw new MojoExecutionException("Changing the " + item
+					+ " file attributes failed.");
+		}
 	}
 
 	/**
@@ -181,20 +206,23 @@ public final class Utils {
 	 * 
 	 * <p>
 	 * It fails with a {@link MojoExecutionException} if the program is not
-	 * available.
+	 * available. The answer is looked up once per program, see
+	 * {@link ProgramProbes}.
 	 * 
 	 * @param programName
 	 * @throws MojoExecutionException
 	 */
 	public static void checkProgramAvailability(String programName)
 			throws MojoExecutionException {
-		exec(new String[] { "which", programName }, null, programName
-				+ " is not available on your system. Check your installation!",
-				"Error executing " + programName + ". Aborting!", null);
+		if (ProgramProbes.locate(programName) == null) {
+			throw new MojoExecutionException(programName
+					+ " is not available on your system. Check your installation!");
+		}
 	}
 
 	/**
-	 * Checks whether a certain program is available.
+	 * Returns the output of <code>programName --version</code>. The program
+	 * is only run once, see {@link ProgramProbes}.
 	 * 
 	 * <p>
 	 * It fails with a {@link MojoExecutionException} if the program is not
@@ -205,15 +233,10 @@ public final class Utils {
 	 */
 	public static String getProgramVersionOutput(String programName)
 			throws MojoExecutionException {
-		return inputStreamToString(
-				exec(new String[] { programName, "--version" },
-						null,
-						" dpkg-deb is not available on your system. Check your installation!",
-						"Error executing dpkg-deb" + ". Aborting!", null))
-				.trim();
+		return ProgramProbes.version(programName);
 	}
 
-	private static String inputStreamToString(InputStream in)
+	static String inputStreamToString(InputStream in)
 			throws MojoExecutionException {
 
 		BufferedReader bufferedReader = new BufferedReader(
@@ -264,6 +287,11 @@ public final class Utils {
 	/**
 	 * A method which makes executing programs easier.
 	 * 
+	 * <p>
+	 * The process is killed (including the processes it started) once the
+	 * timeout set through {@link #setExecTimeout(long)} is exceeded.
+	 * </p>
+	 * 
 	 * @param args
 	 * @param failureMsg
 	 * @param ioExceptionMsg
@@ -272,12 +300,72 @@ public final class Utils {
 	public static InputStream exec(String[] args, File workingDir,
 			String failureMsg, String ioExceptionMsg, String userInput)
 			throws MojoExecutionException {
-		/*
-		 * debug code which prints out the execution command-line. Enable if
-		 * neccessary. for(int i=0;i<args.length;i++) { System.err.print(args[i]
-		 * + " "); } System.err.println();
-		 */
+		return exec(args, workingDir, failureMsg, ioExceptionMsg, userInput,
+				execTimeout);
+	}
+
+	/**
+	 * Runs a program and returns its standard output.
+	 * 
+	 * <p>
+	 * Standard output and standard error are drained while the program runs,
+	 * so that it cannot block on a full pipe. At most
+	 * {@link #EXEC_OUTPUT_LIMIT} bytes of the standard output are kept, the
+	 * call fails if the program writes more. Only the last
+	 * {@link #EXEC_ERROR_LIMIT} bytes of the error output are kept; they are
+	 * printed if the program fails.
+	 * </p>
+	 * 
+	 * @param args
+	 * @param workingDir
+	 * @param failureMsg
+	 * @param ioExceptionMsg
+	 * @param userInput
+	 * @param timeout
+	 *            milliseconds after which the program and the processes it
+	 *            started are killed, 0 for no limit
+	 * @return
+	 * @throws MojoExecutionException
+	 */
+	public static InputStream exec(String[] args, File workingDir,
+			String failureMsg, String ioExceptionMsg, String userInput,
+			long timeout) throws MojoExecutionException {
+		InputStream input = null;
+		if (userInput != null) {
+			input = new ByteArrayInputStream((userInput + System
+					.getProperty("line.separator")).getBytes());
+		}
+		return exec(args, workingDir, input, failureMsg, ioExceptionMsg,
+				timeout);
+	}
+
+	/**
+	 * Runs a program with the given data as its standard input and returns
+	 * its standard output. See
+	 * {@link #exec(String[], File, String, String, String, long)} for how the
+	 * output is handled. If the program fails the end of its error output
+	 * is available as the exception's long message.
+	 * 
+	 * @param args
+	 * @param workingDir
+	 * @param input
+	 *            the standard input, which is read and closed, or
+	 *            <code>null</code>
+	 * @param failureMsg
+	 * @param ioExceptionMsg
+	 * @return
+	 * @throws MojoExecutionException
+	 */
+	public static InputStream exec(String[] args, File workingDir,
+			InputStream input, String failureMsg, String ioExceptionMsg)
+			throws MojoExecutionException {
+		return exec(args, workingDir, input, failureMsg, ioExceptionMsg,
+				execTimeout);
+	}
 
+	private static InputStream exec(String[] args, File workingDir,
+			InputStream input, String failureMsg, String ioExceptionMsg,
+			long timeout) throws MojoExecutionException {
 		// Creates process with the defined language setting of LC_ALL=C
 		// That way the textual output of certain commands is predictable.
 		ProcessBuilder pb = new ProcessBuilder(args);
@@ -286,33 +374,194 @@ public final class Utils {
 		env.put("LC_ALL", "C");
 
 		Process p = null;
+		ProcessPump out = null;
+		ProcessPump err = null;
+		Thread watchdog = null;
+		final AtomicBoolean timedOut = new AtomicBoolean();
+		long start = System.nanoTime();
 
 		try {
 
 			p = pb.start();
-
-			if (userInput != null) {
-				PrintWriter writer = new PrintWriter(new OutputStreamWriter(
-						new BufferedOutputStream(p.getOutputStream())), true);
-				writer.println(userInput);
-				writer.flush();
-				writer.close();
+			out = new ProcessPump("pkg-exec-stdout", p.getInputStream(),
+					EXEC_OUTPUT_LIMIT, false);
+			err = new ProcessPump("pkg-exec-stderr", p.getErrorStream(),
+					EXEC_ERROR_LIMIT, true);
+			out.start();
+			err.start();
+
+			if (timeout > 0) {
+				watchdog = startWatchdog(p, timeout, timedOut);
 			}
+
+			IOException writeError = writeInput(input, p.getOutputStream());
 			int exitValue = p.waitFor();
+			long deadline = timeout > 0 ? start + timeout * 1000000L : 0;
+			finishPump(out, deadline, timedOut);
+			finishPump(err, deadline, timedOut);
+			if (deadline != 0 && System.nanoTime() - deadline >= 0
+					&& !timedOut.getAndSet(true)) {
+				// The output did not end in time, a descendant of the
+				// process still holds it.
+				destroyProcessTree(p);
+			}
+			Metrics.subprocess(System.nanoTime() - start);
+
+			if (timedOut.get()) {
+				printErrors(err);
+				throw new MojoExecutionException(args[0], String.format(
+						"(Subprocess killed after %s ms) %s", timeout,
+						failureMsg), err.toString().trim());
+			}
 			if (exitValue != 0) {
-				print(p);
-				throw new MojoExecutionException(String.format(
+				printErrors(err);
+				throw new MojoExecutionException(args[0], String.format(
 						"(Subprocess exit value = %s) %s", exitValue,
-						failureMsg));
+						failureMsg), err.toString().trim());
+			}
+			if (writeError != null) {
+				// Only reported here as a program which failed early is
+				// better explained by its exit value.
+				throw writeError;
+			}
+			if (out.isTruncated()) {
+				throw new MojoExecutionException(String.format(
+						"(Subprocess output exceeds %s bytes) %s",
+						EXEC_OUTPUT_LIMIT, failureMsg));
 			}
 		} catch (IOException ioe) {
+			if (p != null) {
+				destroyProcessTree(p);
+			}
 			throw new MojoExecutionException(ioExceptionMsg + " :"
 					+ ioe.getMessage(), ioe);
 		} catch (InterruptedException ie) {
-			// Cannot happen.
-			throw new MojoExecutionException("InterruptedException", ie);
+			destroyProcessTree(p);
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while running "
+					+ args[0], ie);
+		} finally {
+			if (watchdog != null) {
+				watchdog.interrupt();
+			}
+		}
+		return out.toInputStream();
+	}
+
+	/**
+	 * Copies the input to the process and closes its standard input.
+	 * 
+	 * @return the error which occurred or <code>null</code>
+	 */
+	private static IOException writeInput(InputStream input, OutputStream stdin) {
+		if (input == null) {
+			IOUtils.closeQuietly(stdin);
+			return null;
+		}
+		OutputStream os = new BufferedOutputStream(stdin, 65536);
+		try {
+			IOUtils.copy(input, os);
+			os.close();
+			return null;
+		} catch (IOException ioe) {
+			IOUtils.closeQuietly(os);
+			return ioe;
+		} finally {
+			IOUtils.closeQuietly(input);
+		}
+	}
+
+	/**
+	 * Waits for the end of a process' output, at most until the deadline
+	 * (<code>System.nanoTime()</code>, 0 for none). Once the process has
+	 * been killed for exceeding its timeout the output is not waited for: on
+	 * Java 8 and earlier the processes it started may survive and keep the
+	 * output open, the pump is left behind then.
+	 */
+	private static void finishPump(ProcessPump pump, long deadline,
+			AtomicBoolean timedOut) throws InterruptedException {
+		long millis = PUMP_GRACE_PERIOD;
+		if (deadline != 0) {
+			millis = Math.min(millis, (deadline - System.nanoTime()) / 1000000L);
+		}
+		pump.finish(timedOut.get() ? 0 : millis);
+	}
+
+	/**
+	 * Sets the default timeout of {@link #exec}.
+	 * 
+	 * @param millis
+	 *            the timeout in milliseconds, 0 for no limit
+	 */
+	public static void setExecTimeout(long millis) {
+		execTimeout = millis;
+	}
+
+	private static Thread startWatchdog(final Process p, final long timeout,
+			final AtomicBoolean timedOut) {
+		Thread t = new Thread("pkg-exec-watchdog") {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(timeout);
+				} catch (InterruptedException ie) {
+					// The process finished in time.
+					return;
+				}
+				timedOut.set(true);
+				destroyProcessTree(p);
+			}
+		};
+		t.setDaemon(true);
+		t.start();
+		return t;
+	}
+
+	/**
+	 * Kills the given process and all the processes it started.
+	 * 
+	 * <p>
+	 * The descendants are only known on Java 9 and later
+	 * (<code>ProcessHandle</code>), which is accessed reflectively. On
+	 * earlier versions only the process itself is killed.
+	 * </p>
+	 * 
+	 * @param p
+	 */
+	public static void destroyProcessTree(Process p) {
+		try {
+			Class<?> processHandle = Class.forName("java.lang.ProcessHandle");
+			Method destroyForcibly = processHandle
+					.getMethod("destroyForcibly");
+			Object handle = Process.class.getMethod("toHandle").invoke(p);
+			Object descendants = processHandle.getMethod("descendants")
+					.invoke(handle);
+			Iterator<?> it = (Iterator<?>) Class
+					.forName("java.util.stream.BaseStream")
+					.getMethod("iterator").invoke(descendants);
+			while (it.hasNext()) {
+				destroyForcibly.invoke(it.next());
+			}
+			destroyForcibly.invoke(handle);
+		} catch (ClassNotFoundException e) {
+			// Before Java 9.
+		} catch (NoSuchMethodException e) {
+			// Before Java 9.
+		} catch (IllegalAccessException e) {
+			// Not allowed, the process itself is still destroyed below.
+		} catch (InvocationTargetException e) {
+			// Dito.
+		}
+		p.destroy();
+	}
+
+	private static void printErrors(ProcessPump err) {
+		String errors = err.toString().trim();
+		if (errors.length() > 0) {
+			System.err.println("*** Process output ***");
+			System.err.println(errors);
+			System.err.println("**********************");
 		}
-		return p.getInputStream();
 	}
 
 	/**
@@ -364,6 +613,22 @@ public final class Utils {
 
 	public static long copyProjectArtifact(Log l, File src, File dst)
 			throws MojoExecutionException {
+		return copyProjectArtifact(l, src, dst, StagingMode.COPY);
+	}
+
+	/**
+	 * Puts the project's artifact into the staging directory in the given
+	 * way.
+	 * 
+	 * @param l
+	 * @param src
+	 * @param dst
+	 * @param mode
+	 * @return
+	 * @throws MojoExecutionException
+	 */
+	public static long copyProjectArtifact(Log l, File src, File dst,
+			StagingMode mode) throws MojoExecutionException {
 
 		if (l != null) {
 			l.info("copying artifact: " + src.getAbsolutePath());
@@ -372,8 +637,8 @@ public final class Utils {
 		Utils.createFile(dst, "destination artifact");
 
 		try {
-			FileUtils.copyFile(src, dst);
-			return src.length();
+			mode.stageFile(l, src, dst);
+			return InstalledSize.round(src.length());
 		} catch (IOException ioe) {
 			throw new MojoExecutionException(
 					"IOException while copying artifact file.", ioe);
@@ -426,7 +691,9 @@ public final class Utils {
 	 * property of the <code>AuxFile</code> instance is set however the file is
 	 * copied and renamed to the last part of the path.
 	 * 
-	 * The return value is the amount of copied bytes.
+	 * The return value is the disk space the copied files occupy as
+	 * accounted by {@link InstalledSize}. Directories are copied and accounted
+	 * in a single pass.
 	 * 
 	 * @param l
 	 * @param srcAuxFilesDir
@@ -439,8 +706,39 @@ public final class Utils {
 	public static long copyFiles(Log l, File srcDir, File dstDir,
 			List<? extends AuxFile> auxFiles, String type,
 			boolean makeExecutable) throws MojoExecutionException {
+		return copyFiles(l, srcDir, dstDir, auxFiles, type, makeExecutable,
+				StagingMode.COPY);
+	}
+
+	/**
+	 * Like {@link #copyFiles(Log, File, File, List, String, boolean)} but puts
+	 * the files into the destination in the given way.
+	 * 
+	 * <p>
+	 * Files which are to be made executable are always copied as changing
+	 * the permissions of a hard link would change the source file, too.
+	 * </p>
+	 * 
+	 * @param l
+	 * @param srcDir
+	 * @param dstDir
+	 * @param auxFiles
+	 * @param type
+	 * @param makeExecutable
+	 * @param mode
+	 * @return
+	 * @throws MojoExecutionException
+	 */
+	public static long copyFiles(Log l, File srcDir, File dstDir,
+			List<? extends AuxFile> auxFiles, String type,
+			boolean makeExecutable, StagingMode mode)
+			throws MojoExecutionException {
 		long size = 0;
 
+		if (makeExecutable) {
+			mode = StagingMode.COPY;
+		}
+
 		Iterator<? extends AuxFile> ite = auxFiles.iterator();
 		while (ite.hasNext()) {
 			AuxFile af = (AuxFile) ite.next();
@@ -458,23 +756,19 @@ public final class Utils {
 
 			try {
 				if (from.isDirectory()) {
-					to = new File(to, from.getName());
-					FileUtils.copyDirectory(from, to, FILTER);
-					for (final Iterator<File> files = FileUtils.iterateFiles(
-							from, FILTER, FILTER); files.hasNext();) {
-						final File nextFile = files.next();
-						size += nextFile.length();
-					}
+					size += stageDirectory(l, from,
+							new File(to, from.getName()), mode);
 				} else if (af.isRename()) {
-					FileUtils.copyFile(from, to);
-					size += from.length();
+					mode.stageFile(l, from, to);
+					size += InstalledSize.round(from.length());
 
 					if (makeExecutable) {
 						makeExecutable(l, to.getAbsolutePath());
 					}
 				} else {
-					FileUtils.copyFileToDirectory(from, to);
-					size += from.length();
+					FileUtils.forceMkdir(to);
+					mode.stageFile(l, from, new File(to, from.getName()));
+					size += InstalledSize.round(from.length());
 
 					if (makeExecutable) {
 						makeExecutable(l, to.getAbsolutePath() + File.separator
@@ -490,6 +784,41 @@ public final class Utils {
 		return size;
 	}
 
+	/**
+	 * Recursively stages the contents of a directory accepted by
+	 * {@link #FILTER} and returns the disk space they occupy as accounted by
+	 * {@link InstalledSize}.
+	 * 
+	 * @param l
+	 * @param srcDir
+	 * @param dstDir
+	 * @param mode
+	 * @return
+	 * @throws IOException
+	 */
+	private static long stageDirectory(Log l, File srcDir, File dstDir,
+			StagingMode mode) throws IOException {
+		FileUtils.forceMkdir(dstDir);
+		long size = InstalledSize.BLOCK_SIZE;
+
+		File[] files = srcDir.listFiles((FileFilter) FILTER);
+		if (files == null) {
+			throw new IOException("Unable to list directory " + srcDir);
+		}
+
+		for (File f : files) {
+			File dst = new File(dstDir, f.getName());
+			if (f.isDirectory()) {
+				size += stageDirectory(l, f, dst, mode);
+			} else {
+				mode.stageFile(l, f, dst);
+				size += InstalledSize.round(f.length());
+			}
+		}
+
+		return size;
+	}
+
 	/**
 	 * Converts the artifactId into a package name. Currently this only applies
 	 * to libraries which get a "lib" prefix and a "-java" suffix.
@@ -555,6 +884,31 @@ public final class Utils {
 	 */
 	public static void setupStarter(Log l, String mainClass,
 			File dstStarterRoot, Path classpath) throws MojoExecutionException {
+		setupStarter(l, mainClass, dstStarterRoot, classpath,
+				new HashMap<String, File>());
+	}
+
+	/**
+	 * Copies the starter classfiles to the starter path, prepares the
+	 * classpath properties file and stores it at that location, too.
+	 * 
+	 * <p>
+	 * Additionally a package index is stored for the classpath entries which
+	 * are available at packaging time. The map tells where the entry is staged
+	 * for each classpath entry. Entries which are not in the map (e.g. jars of
+	 * other packages) are searched in classpath order at runtime.
+	 * </p>
+	 * 
+	 * @param l
+	 * @param mainClass
+	 * @param dstStarterRoot
+	 * @param classpath
+	 * @param stagedEntries
+	 * @throws MojoExecutionException
+	 */
+	public static void setupStarter(Log l, String mainClass,
+			File dstStarterRoot, Path classpath, Map<String, File> stagedEntries)
+			throws MojoExecutionException {
 		File destStarterClassFile = new File(dstStarterRoot, STARTER_CLASS);
 
 		Utils.createFile(destStarterClassFile, "starter class");
@@ -563,9 +917,18 @@ public final class Utils {
 				destStarterClassFile,
 				"Unable to store starter class file in destination.");
 
+		File destLoaderClassFile = new File(dstStarterRoot,
+				STARTER_LOADER_CLASS);
+		Utils.createFile(destLoaderClassFile, "starter class loader");
+		Utils.storeInputStream(
+				Utils.class.getResourceAsStream("/" + STARTER_LOADER_CLASS),
+				destLoaderClassFile,
+				"Unable to store starter class loader file in destination.");
+
 		File destClasspathFile = new File(dstStarterRoot, "_classpath");
 		Utils.createFile(destClasspathFile, "starter classpath");
 
+		List<String> entries = new ArrayList<String>();
 		PrintWriter writer = null;
 		try {
 			writer = new PrintWriter(destClasspathFile);
@@ -579,6 +942,7 @@ public final class Utils {
 
 			for (String e : classpath) {
 				writer.println(e);
+				entries.add(e);
 			}
 
 			l.info("created library entries");
@@ -590,14 +954,142 @@ public final class Utils {
 				writer.close();
 			}
 		}
+
+		writeClassIndex(l, new File(dstStarterRoot, "_classindex"), entries,
+				stagedEntries);
+	}
+
+	/**
+	 * Tells whether the classes of a jar can be looked up through the index.
+	 * This is not the case if the jar refers to other jars
+	 * (<code>Class-Path</code>) or contains classes for specific Java
+	 * versions (<code>Multi-Release</code>).
+	 * 
+	 * @param manifest
+	 * @return
+	 */
+	private static boolean isIndexable(Manifest manifest) {
+		if (manifest == null) {
+			return true;
+		}
+		Attributes attributes = manifest.getMainAttributes();
+		return attributes.getValue(Attributes.Name.CLASS_PATH) == null
+				&& !"true".equalsIgnoreCase(attributes
+						.getValue("Multi-Release"));
+	}
+
+	/**
+	 * Writes the package index of the classpath entries for the starter. See
+	 * <code>_Starter</code> for the format.
+	 * 
+	 * @param l
+	 * @param dst
+	 * @param entries
+	 * @param stagedEntries
+	 * @throws MojoExecutionException
+	 */
+	static void writeClassIndex(Log l, File dst, List<String> entries,
+			Map<String, File> stagedEntries) throws MojoExecutionException {
+		// Sorted for a reproducible file, the entry lists are in classpath
+		// order.
+		Map<String, List<Integer>> packages = new TreeMap<String, List<Integer>>();
+		List<Integer> unindexed = new ArrayList<Integer>();
+
+		for (int i = 0; i < entries.size(); i++) {
+			File f = stagedEntries.get(entries.get(i));
+			if (f == null || !f.isFile()) {
+				unindexed.add(i);
+				continue;
+			}
+
+			Set<String> entryPackages = new HashSet<String>();
+			JarFile zf = null;
+			try {
+				zf = new JarFile(f);
+				if (!isIndexable(zf.getManifest())) {
+					unindexed.add(i);
+					continue;
+				}
+				Enumeration<? extends ZipEntry> e = zf.entries();
+				while (e.hasMoreElements()) {
+					String name = e.nextElement().getName();
+					if (name.endsWith(".class") && !name.startsWith("META-INF/")) {
+						int slash = name.lastIndexOf('/');
+						entryPackages.add(slash == -1 ? "" : name.substring(0,
+								slash).replace('/', '.'));
+					}
+				}
+			} catch (IOException ioe) {
+				l.warn("unable to index classpath entry " + f + ": "
+						+ ioe.getMessage());
+				unindexed.add(i);
+				continue;
+			} finally {
+				if (zf != null) {
+					try {
+						zf.close();
+					} catch (IOException ioe) {
+						// Nothing to do.
+					}
+				}
+			}
+
+			for (String p : entryPackages) {
+				List<Integer> owners = packages.get(p);
+				if (owners == null) {
+					owners = new ArrayList<Integer>();
+					packages.put(p, owners);
+				}
+				owners.add(i);
+			}
+		}
+
+		if (unindexed.size() == entries.size()) {
+			// Nothing to gain, the starter falls back to the plain lookup.
+			dst.delete();
+			return;
+		}
+
+		Utils.createFile(dst, "starter class index");
+		PrintWriter writer = null;
+		try {
+			writer = new PrintWriter(dst);
+			writer.println("# This file maps packages to the classpath entries containing them and");
+			writer.println("# is autogenerated. Entries are given by their position in _classpath.");
+			writer.println("# The following lines are the entries which could not be indexed:");
+			for (Integer i : unindexed) {
+				writer.println("-" + i);
+			}
+			writer.println("# The following lines are the packages and their entries:");
+			for (Map.Entry<String, List<Integer>> e : packages.entrySet()) {
+				StringBuilder sb = new StringBuilder(e.getKey()).append(' ');
+				for (Integer i : e.getValue()) {
+					sb.append(i).append(',');
+				}
+				sb.setLength(sb.length() - 1);
+				writer.println(sb);
+			}
+
+			l.info("indexed " + (entries.size() - unindexed.size()) + " of "
+					+ entries.size() + " classpath entries");
+		} catch (IOException e) {
+			throw new MojoExecutionException("storing the class index failed",
+					e);
+		} finally {
+			if (writer != null) {
+				writer.close();
+			}
+		}
 	}
 
 	/**
 	 * Copies the Artifacts contained in the set to the folder denoted by
-	 * <code>dst</code> and returns the amount of bytes copied.
+	 * <code>dst</code> and returns the disk space they occupy as accounted by
+	 * {@link InstalledSize}.
 	 * 
 	 * <p>
-	 * If an artifact is a zip archive it is unzipped in this folder.
+	 * If an artifact is a zip archive it is unzipped in this folder and the
+	 * size of its entries is accounted.
 	 * </p>
 	 * 
 	 * @param l
@@ -608,6 +1100,22 @@ public final class Utils {
 	 */
 	public static long copyArtifacts(Log l, Set<Artifact> artifacts, File dst)
 			throws MojoExecutionException {
+		return copyArtifacts(l, artifacts, dst, StagingMode.COPY);
+	}
+
+	/**
+	 * Puts the given artifacts into the destination directory in the given
+	 * way. ZIP artifacts are unpacked.
+	 * 
+	 * @param l
+	 * @param artifacts
+	 * @param dst
+	 * @param mode
+	 * @return
+	 * @throws MojoExecutionException
+	 */
+	public static long copyArtifacts(Log l, Set<Artifact> artifacts,
+			File dst, StagingMode mode) throws MojoExecutionException {
 		long byteAmount = 0;
 
 		if (artifacts.size() == 0) {
@@ -619,6 +1127,7 @@ public final class Utils {
 		l.info("destination: " + dst.toString());
 
 		try {
+			List<File> files = new ArrayList<File>();
 			Iterator<Artifact> ite = artifacts.iterator();
 			while (ite.hasNext()) {
 				Artifact a = (Artifact) ite.next();
@@ -629,13 +1138,11 @@ public final class Utils {
 					if (a.getType().equals("zip")) {
 						// Assume that this is a ZIP file with native libraries
 						// inside.
-
-						// TODO: Determine size of all entries and add this
-						// to the byteAmount.
 						unpack(a.getFile(), dst);
+						byteAmount += getUnpackedSize(f);
 					} else {
-						FileUtils.copyFileToDirectory(f, dst);
-						byteAmount += (long) f.length();
+						files.add(f);
+						byteAmount += InstalledSize.round(f.length());
 					}
 
 				} else {
@@ -643,6 +1150,8 @@ public final class Utils {
 							+ a + " because it is not locally available.");
 				}
 			}
+
+			mode.stageFiles(l, files, dst);
 		} catch (IOException ioe) {
 			throw new MojoExecutionException(
 					"IOException while copying dependency artifacts.", ioe);
@@ -651,6 +1160,33 @@ public final class Utils {
 		return byteAmount;
 	}
 
+	/**
+	 * Returns the disk space the entries of the given ZIP file occupy after
+	 * unpacking as accounted by {@link InstalledSize}.
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	static long getUnpackedSize(File file) throws IOException {
+		long size = 0;
+		ZipFile zip = new ZipFile(file);
+		try {
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (entry.isDirectory()) {
+					size += InstalledSize.BLOCK_SIZE;
+				} else if (entry.getSize() >= 0) {
+					size += InstalledSize.round(entry.getSize());
+				}
+			}
+		} finally {
+			zip.close();
+		}
+		return size;
+	}
+
 	/**
 	 * Unpacks the given file.
 	 * 
@@ -832,11 +1368,15 @@ public final class Utils {
 	 * (usually KiB). That value can then be used in a ControlFileGenerator
 	 * instance.
 	 * 
+	 * <p>
+	 * Partial blocks are rounded up.
+	 * </p>
+	 * 
 	 * @param byteAmount
 	 * @return
 	 */
 	public static long getInstalledSize(long byteAmount) {
-		return byteAmount / 1024L;
+		return InstalledSize.round(byteAmount) / InstalledSize.BLOCK_SIZE;
 	}
 
 	/**
@@ -1008,70 +1548,16 @@ public final class Utils {
 					child.getTarget()));
 		}
 
-		Field[] allFields = TargetConfiguration.class.getDeclaredFields();
-		for (Field field : allFields) {
-			field.setAccessible(true);
-			if (field.getAnnotation(MergeMe.class) != null) {
-				try {
-					Object defaultValue = new Object();
-					IMerge merger;
-
-					if (field.getAnnotation(MergeMe.class).defaultValueIsNull()) {
-						defaultValue = null;
-					}
-
-					if (field.getType() == Properties.class) {
-						if (defaultValue != null) {
-							defaultValue = new Properties();
-						}
-						merger = new PropertiesMerger();
-
-					} else if (field.getType() == List.class) {
-						if (defaultValue != null) {
-							defaultValue = new ArrayList<Object>();
-						}
-						merger = new CollectionMerger();
-
-					} else if (field.getType() == Set.class) {
-						if (defaultValue != null) {
-							defaultValue = new HashSet<Object>();
-						}
-						merger = new CollectionMerger();
-
-					} else if (field.getType() == String.class) {
-						if (defaultValue != null) {
-							defaultValue = field.getAnnotation(MergeMe.class)
-									.defaultString();
-						}
-						merger = new ObjectMerger();
-
-					} else if (field.getType() == Boolean.class) {
-						defaultValue = field.getAnnotation(MergeMe.class)
-								.defaultBoolean();
-						merger = new ObjectMerger();
-
-					} else {
-						merger = new ObjectMerger();
-					}
-					Object childValue = field.get(child);
-					Object parentValue = field.get(parent);
-					try {
-						field.set(child, merger.merge(childValue, parentValue,
-								defaultValue));
-					} catch (InstantiationException e) {
-						throw new MojoExecutionException(
-								"Error merging configurations", e);
-					}
-
-				} catch (SecurityException e) {
-					throw new MojoExecutionException(e.getMessage(), e);
-				} catch (IllegalArgumentException e) {
-					throw new MojoExecutionException(e.getMessage(), e);
-				} catch (IllegalAccessException e) {
-					throw new MojoExecutionException(e.getMessage(), e);
-				}
-
-			}
+		try {
+			MergePlan.forClass(TargetConfiguration.class).merge(child, parent);
+		} catch (InstantiationException e) {
+			throw new MojoExecutionException("Error merging configurations", e);
+		} catch (SecurityException e) {
+			throw new MojoExecutionException(e.getMessage(), e);
+		} catch (IllegalArgumentException e) {
+			throw new MojoExecutionException(e.getMessage(), e);
+		} catch (IllegalAccessException e) {
+			throw new MojoExecutionException(e.getMessage(), e);
 		}
 		child.setReady(true);
 		return child;
@@ -45,6 +45,8 @@ public class WorkspaceSession {
 
 	ArtifactInclusionStrategy artifactInclusionStrategy;
 
+	InstalledSize installedSize;
+
 	public AbstractPackagingMojo getMojo() {
 		return mojo;
 	}
@@ -111,4 +113,18 @@ public class WorkspaceSession {
 		this.artifactInclusionStrategy = artifactInclusionStrategy;
 	}
 
+	/**
+	 * Returns the disk space of the files which were put into the package,
+	 * broken down by their kind. This is filled while the package is built.
+	 * 
+	 * @return
+	 */
+	public InstalledSize getInstalledSize() {
+		return installedSize;
+	}
+
+	public void setInstalledSize(InstalledSize installedSize) {
+		this.installedSize = installedSize;
+	}
+
 }
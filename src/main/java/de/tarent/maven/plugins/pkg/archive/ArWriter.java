@@ -0,0 +1,247 @@
+package de.tarent.maven.plugins.pkg.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Writes archives in the common Unix <code>ar</code> format as used by Debian
+ * and ipkg packages.
+ *
+ * <p>
+ * In contrast to the ar support of commons-compress the size of a member does
+ * not have to be known in advance. A member can be written as a stream whose
+ * size is patched into the member header once the stream is closed. This
+ * allows compressed tarballs to be written straight into the archive without
+ * an intermediate file.
+ * </p>
+ *
+ * <p>
+ * All members are owned by root (uid and gid 0).
+ * </p>
+ */
+public class ArWriter {
+
+	private static final byte[] GLOBAL_HEADER = { '!', '<', 'a', 'r', 'c',
+			'h', '>', '\n' };
+
+	private static final int HEADER_LENGTH = 60;
+
+	/**
+	 * Offset of the size field within a member header.
+	 */
+	private static final int SIZE_OFFSET = 48;
+
+	private static final int SIZE_LENGTH = 10;
+
+	private final RandomAccessFile raf;
+
+	private final FileChannel channel;
+
+	private final OutputStream os;
+
+	private final long mtime;
+
+	private MemberStream current;
+
+	private ArWriter(File archive, boolean append) throws IOException {
+		// Not opened in append mode as positional writes, which are needed
+		// to patch the member sizes, are not reliable then.
+		raf = new RandomAccessFile(archive, "rw");
+		channel = raf.getChannel();
+		os = Channels.newOutputStream(channel);
+		mtime = System.currentTimeMillis() / 1000;
+
+		if (append) {
+			channel.position(channel.size());
+		} else {
+			channel.truncate(0);
+			os.write(GLOBAL_HEADER);
+		}
+	}
+
+	/**
+	 * Creates a new archive, overwriting an existing file.
+	 *
+	 * @param archive
+	 * @return
+	 * @throws IOException
+	 */
+	public static ArWriter create(File archive) throws IOException {
+		return new ArWriter(archive, false);
+	}
+
+	/**
+	 * Opens an existing archive in order to append further members to it.
+	 *
+	 * @param archive
+	 * @return
+	 * @throws IOException
+	 */
+	public static ArWriter append(File archive) throws IOException {
+		if (!archive.isFile()) {
+			throw new IOException("Archive " + archive + " does not exist.");
+		}
+		return new ArWriter(archive, true);
+	}
+
+	/**
+	 * Adds a member with the given content.
+	 *
+	 * @param name
+	 * @param content
+	 * @throws IOException
+	 */
+	public void putBytes(String name, byte[] content) throws IOException {
+		OutputStream member = putStream(name, 0100644);
+		member.write(content);
+		member.close();
+	}
+
+	/**
+	 * Adds the given file as a member.
+	 *
+	 * @param name
+	 * @param file
+	 * @throws IOException
+	 */
+	public void putFile(String name, File file) throws IOException {
+		OutputStream member = putStream(name, 0100644);
+		InputStream is = new FileInputStream(file);
+		try {
+			IOUtils.copy(is, member);
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+		member.close();
+	}
+
+	/**
+	 * Starts a new member and returns a stream for its content. The stream
+	 * must be closed before the next member can be added. Closing the stream
+	 * does not close the archive.
+	 *
+	 * @param name
+	 * @param mode
+	 * @return
+	 * @throws IOException
+	 */
+	public OutputStream putStream(String name, int mode) throws IOException {
+		if (current != null) {
+			throw new IOException("Member " + current.name
+					+ " has not been closed yet.");
+		}
+		if (name.length() > 16 || name.indexOf(' ') != -1) {
+			throw new IOException("Invalid ar member name: " + name);
+		}
+
+		long headerPosition = channel.position();
+		os.write(header(name, mode, 0));
+		current = new MemberStream(name, headerPosition);
+
+		return current;
+	}
+
+	public void close() throws IOException {
+		if (current != null) {
+			current.close();
+		}
+		raf.close();
+	}
+
+	private byte[] header(String name, int mode, long size) throws IOException {
+		StringBuilder sb = new StringBuilder(HEADER_LENGTH);
+		pad(sb, name, 16);
+		pad(sb, String.valueOf(mtime), 12);
+		pad(sb, "0", 6);
+		pad(sb, "0", 6);
+		pad(sb, Integer.toOctalString(mode), 8);
+		pad(sb, String.valueOf(size), SIZE_LENGTH);
+		sb.append("`\n");
+
+		return sb.toString().getBytes("US-ASCII");
+	}
+
+	private static void pad(StringBuilder sb, String value, int length)
+			throws IOException {
+		if (value.length() > length) {
+			throw new IOException("ar header field too long: " + value);
+		}
+		sb.append(value);
+		for (int i = value.length(); i < length; i++) {
+			sb.append(' ');
+		}
+	}
+
+	/**
+	 * Stream for the content of a single member. On close the size field of
+	 * the member header is overwritten and the member is padded to an even
+	 * length.
+	 */
+	private class MemberStream extends OutputStream {
+
+		private final String name;
+
+		private final long headerPosition;
+
+		private final OutputStream out = new BufferedOutputStream(os, 65536);
+
+		private long size;
+
+		private boolean closed;
+
+		MemberStream(String name, long headerPosition) {
+			this.name = name;
+			this.headerPosition = headerPosition;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			size++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			size += len;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+
+			if (size % 2 != 0) {
+				out.write('\n');
+			}
+			out.flush();
+
+			StringBuilder sb = new StringBuilder(SIZE_LENGTH);
+			pad(sb, String.valueOf(size), SIZE_LENGTH);
+			ByteBuffer bb = ByteBuffer.wrap(sb.toString().getBytes("US-ASCII"));
+			long position = headerPosition + SIZE_OFFSET;
+			while (bb.hasRemaining()) {
+				position += channel.write(bb, position);
+			}
+
+			current = null;
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package de.tarent.maven.plugins.pkg.archive;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Base class for compressors which split their input into blocks of a fixed
+ * size and compress the blocks independently of each other on several
+ * threads.
+ *
+ * <p>
+ * The compressed blocks are written in input order. At most two blocks per
+ * thread are held in memory: once that many blocks are pending the writer
+ * waits for the oldest one. The threads and the memory for the blocks are
+ * shared with all other compressors, see {@link CompressorPool}.
+ * </p>
+ *
+ * @param <B>
+ *            the type of the compressed blocks
+ */
+abstract class BlockCompressorOutputStream<B extends BlockCompressorOutputStream.Block>
+		extends OutputStream {
+
+	/**
+	 * A compressed block.
+	 */
+	static class Block {
+
+		final byte[] data;
+
+		final int length;
+
+		/**
+		 * @param data
+		 *            the compressed data
+		 * @param length
+		 *            the length of the uncompressed data
+		 */
+		Block(byte[] data, int length) {
+			this.data = data;
+			this.length = length;
+		}
+	}
+
+	private final OutputStream out;
+
+	private final int blockSize;
+
+	private final int maxPending;
+
+	private final LinkedList<Future<B>> pending = new LinkedList<Future<B>>();
+
+	/**
+	 * The memory reserved for each pending block, see
+	 * {@link CompressorPool#toPermits(long)}.
+	 */
+	private int permits;
+
+	private byte[] buffer;
+
+	private int count;
+
+	private int blocks;
+
+	private boolean closed;
+
+	/**
+	 * @param out
+	 * @param blockSize
+	 * @param threads
+	 *            the maximum number of blocks of this stream which are
+	 *            compressed at the same time, limited by the size of the
+	 *            {@link CompressorPool}
+	 */
+	protected BlockCompressorOutputStream(OutputStream out, int blockSize,
+			int threads) {
+		this.out = out;
+		this.blockSize = blockSize;
+		this.maxPending = 2 * Math.max(1,
+				Math.min(threads, CompressorPool.getThreads()));
+		this.buffer = new byte[blockSize];
+	}
+
+	/**
+	 * Returns the memory a single compression needs apart from its input and
+	 * output, in bytes.
+	 *
+	 * @return
+	 */
+	protected abstract long getWorkMemory();
+
+	/**
+	 * Compresses a single block. Called concurrently.
+	 *
+	 * @param data
+	 * @param length
+	 * @return the compressed block
+	 * @throws IOException
+	 */
+	protected abstract B compress(byte[] data, int length) throws IOException;
+
+	/**
+	 * Called after a compressed block has been written.
+	 *
+	 * @param block
+	 */
+	protected void blockWritten(B block) {
+		// Nothing to do by default.
+	}
+
+	/**
+	 * Writes whatever has to follow the last block.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	protected void writeTrailer(OutputStream out) throws IOException {
+		// Nothing to do by default.
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (count == blockSize) {
+			submit();
+		}
+		buffer[count++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (count == blockSize) {
+				submit();
+			}
+			int n = Math.min(len, blockSize - count);
+			System.arraycopy(b, off, buffer, count, n);
+			count += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Writes the remaining data and the trailer and closes the underlying
+	 * stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		try {
+			// An empty input results in a single empty block, so that the
+			// output is a valid stream of the format.
+			if (count > 0 || blocks == 0) {
+				submit();
+			}
+			while (!pending.isEmpty()) {
+				writeOldest();
+			}
+			writeTrailer(out);
+		} finally {
+			// Only left after a failure.
+			while (!pending.isEmpty()) {
+				pending.removeFirst().cancel(true);
+				CompressorPool.release(permits);
+			}
+			out.close();
+		}
+	}
+
+	private void submit() throws IOException {
+		reserve();
+
+		final byte[] data = buffer;
+		final int length = count;
+		pending.add(CompressorPool.getExecutor().submit(new Callable<B>() {
+			public B call() throws IOException {
+				return compress(data, length);
+			}
+		}));
+		blocks++;
+
+		buffer = new byte[blockSize];
+		count = 0;
+	}
+
+	/**
+	 * Reserves the memory for another block. Pending blocks are written while
+	 * there is not enough. Only a stream without pending blocks waits for
+	 * others to release memory, therefore the streams cannot block each
+	 * other.
+	 */
+	private void reserve() throws IOException {
+		if (permits == 0) {
+			permits = CompressorPool.toPermits(2L * blockSize
+					+ getWorkMemory());
+		}
+
+		while (true) {
+			if (pending.size() >= maxPending) {
+				writeOldest();
+			} else if (CompressorPool.tryReserve(permits)) {
+				return;
+			} else if (!pending.isEmpty()) {
+				writeOldest();
+			} else {
+				try {
+					CompressorPool.reserve(permits);
+					return;
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException(
+							"Interrupted while compressing");
+				}
+			}
+		}
+	}
+
+	private void writeOldest() throws IOException {
+		B block;
+		try {
+			block = pending.removeFirst().get();
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Interrupted while compressing");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new IOException("Compressing a block failed: " + cause,
+					cause);
+		} finally {
+			CompressorPool.release(permits);
+		}
+
+		out.write(block.data);
+		blockWritten(block);
+	}
+}
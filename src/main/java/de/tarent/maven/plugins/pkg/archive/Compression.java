@@ -0,0 +1,104 @@
+package de.tarent.maven.plugins.pkg.archive;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The compression formats for the tarballs inside of packages.
+ *
+ * <p>
+ * The compressors use the threads of the {@link CompressorPool}, see
+ * {@link ParallelGzipOutputStream} and {@link ParallelXzOutputStream}.
+ * </p>
+ */
+public enum Compression {
+
+	GZIP("gzip", ".gz", 9) {
+		@Override
+		public OutputStream createOutputStream(OutputStream out, int level)
+				throws IOException {
+			return new ParallelGzipOutputStream(out, level, getThreads());
+		}
+	},
+
+	XZ("xz", ".xz", 6) {
+		@Override
+		public OutputStream createOutputStream(OutputStream out, int level)
+				throws IOException {
+			return new ParallelXzOutputStream(out, level, getThreads());
+		}
+	},
+
+	NONE("none", "", 0) {
+		@Override
+		public OutputStream createOutputStream(OutputStream out, int level) {
+			return out;
+		}
+	};
+
+	private final String name;
+
+	private final String extension;
+
+	private final int defaultLevel;
+
+	private Compression(String name, String extension, int defaultLevel) {
+		this.name = name;
+		this.extension = extension;
+		this.defaultLevel = defaultLevel;
+	}
+
+	/**
+	 * Returns the compression with the given name as used by
+	 * <code>dpkg-deb -Z</code>: <code>gzip</code>, <code>xz</code> or
+	 * <code>none</code>.
+	 *
+	 * @param name
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if there is no such compression
+	 */
+	public static Compression fromString(String name) {
+		for (Compression c : values()) {
+			if (c.name.equals(name)) {
+				return c;
+			}
+		}
+		throw new IllegalArgumentException("Unknown compression: " + name
+				+ " (valid values are gzip, xz and none)");
+	}
+
+	/**
+	 * Wraps the given stream with a compressor using the given level (0-9).
+	 * Closing the returned stream finishes the compressed data and closes the
+	 * given stream.
+	 *
+	 * @param out
+	 * @param level
+	 * @return
+	 * @throws IOException
+	 */
+	public abstract OutputStream createOutputStream(OutputStream out,
+			int level) throws IOException;
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the file name extension including the dot or an empty string.
+	 *
+	 * @return
+	 */
+	public String getExtension() {
+		return extension;
+	}
+
+	public int getDefaultLevel() {
+		return defaultLevel;
+	}
+
+	private static int getThreads() {
+		return CompressorPool.getThreads();
+	}
+}
@@ -0,0 +1,109 @@
+package de.tarent.maven.plugins.pkg.archive;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The threads and the memory shared by all block compressors.
+ *
+ * <p>
+ * All tarballs, including those of target configurations which are packaged
+ * concurrently, are compressed on a single pool of threads. Its size defaults
+ * to the number of available processors and can be set through
+ * {@link #setThreads(int)}. Idle threads terminate after a while.
+ * </p>
+ *
+ * <p>
+ * Each block which is waiting for, or being, compressed reserves its input,
+ * its output and the working memory of its compressor (about 90 MiB for
+ * <code>xz</code> at the levels 6-9) from a budget of a quarter of the
+ * maximum heap. A compressor which would exceed the budget waits until other
+ * blocks have been written.
+ * </p>
+ */
+public final class CompressorPool {
+
+	private static final int KIB = 1024;
+
+	private static final ThreadPoolExecutor EXECUTOR;
+
+	/**
+	 * The memory budget in KiB.
+	 */
+	private static final int BUDGET = (int) Math.min(Integer.MAX_VALUE, Math
+			.max(64 * KIB, Runtime.getRuntime().maxMemory() / 4 / KIB));
+
+	private static final Semaphore MEMORY = new Semaphore(BUDGET);
+
+	static {
+		int threads = Runtime.getRuntime().availableProcessors();
+		EXECUTOR = new ThreadPoolExecutor(threads, threads, 30,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "pkg-compressor");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		EXECUTOR.allowCoreThreadTimeOut(true);
+	}
+
+	private CompressorPool() {
+	}
+
+	/**
+	 * Sets the number of compressor threads.
+	 *
+	 * @param threads
+	 *            the number of threads, the number of available processors if
+	 *            not positive
+	 */
+	public static synchronized void setThreads(int threads) {
+		if (threads <= 0) {
+			threads = Runtime.getRuntime().availableProcessors();
+		}
+		if (threads > EXECUTOR.getMaximumPoolSize()) {
+			EXECUTOR.setMaximumPoolSize(threads);
+			EXECUTOR.setCorePoolSize(threads);
+		} else {
+			EXECUTOR.setCorePoolSize(threads);
+			EXECUTOR.setMaximumPoolSize(threads);
+		}
+	}
+
+	public static int getThreads() {
+		return EXECUTOR.getMaximumPoolSize();
+	}
+
+	static ExecutorService getExecutor() {
+		return EXECUTOR;
+	}
+
+	/**
+	 * Returns the number of KiB to reserve for a block. A single block may
+	 * always be compressed, even if it exceeds the budget.
+	 *
+	 * @param bytes
+	 * @return
+	 */
+	static int toPermits(long bytes) {
+		return (int) Math.min(BUDGET, Math.max(1, bytes / KIB));
+	}
+
+	static boolean tryReserve(int permits) {
+		return MEMORY.tryAcquire(permits);
+	}
+
+	static void reserve(int permits) throws InterruptedException {
+		MEMORY.acquire(permits);
+	}
+
+	static void release(int permits) {
+		MEMORY.release(permits);
+	}
+}
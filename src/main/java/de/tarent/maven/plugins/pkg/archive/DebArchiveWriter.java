@@ -0,0 +1,284 @@
+package de.tarent.maven.plugins.pkg.archive;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Creates a Debian binary package directly from a staged package directory,
+ * without the help of <code>dpkg-deb</code> and <code>fakeroot</code>.
+ *
+ * <p>
+ * The staged directory is expected to have the layout <code>dpkg-deb</code>
+ * uses: The control files reside in a <code>DEBIAN</code> subdirectory and
+ * everything else is the content of the package. All entries are written as
+ * owned by root. Executable files keep their executable bit.
+ * </p>
+ *
+ * <p>
+ * Like <code>dpkg-deb</code> the name of the resulting file is built from the
+ * <code>Package</code>, <code>Version</code> and <code>Architecture</code>
+ * fields of the control file.
+ * </p>
+ */
+public class DebArchiveWriter {
+
+	private static final int DIR_MODE = 040755;
+
+	private static final int FILE_MODE = 0100644;
+
+	private static final int EXECUTABLE_MODE = 0100755;
+
+	private final String controlDirName;
+
+	private Compression compression = Compression.GZIP;
+
+	private Integer compressionLevel;
+
+	public DebArchiveWriter() {
+		this("DEBIAN");
+	}
+
+	protected DebArchiveWriter(String controlDirName) {
+		this.controlDirName = controlDirName;
+	}
+
+	/**
+	 * Sets the compression of the data tarball. The control tarball is always
+	 * compressed with gzip. The default is gzip.
+	 *
+	 * @param compression
+	 */
+	public void setCompression(Compression compression) {
+		this.compression = compression;
+	}
+
+	/**
+	 * Sets the compression level (0-9). By default the compression's own
+	 * default is used.
+	 *
+	 * @param compressionLevel
+	 */
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * Creates the package for the given staged directory in the output
+	 * directory.
+	 *
+	 * @param base
+	 *            the staged package directory
+	 * @param outputDirectory
+	 * @return the package file
+	 * @throws IOException
+	 */
+	public File write(File base, File outputDirectory) throws IOException {
+		File controlDir = new File(base, controlDirName);
+		Map<String, String> fields = readControlFields(new File(controlDir,
+				"control"));
+
+		File packageFile = new File(outputDirectory, getPackageFileName(fields));
+		boolean success = false;
+		ArWriter ar = ArWriter.create(packageFile);
+		try {
+			writeMembers(ar, base, controlDir);
+			success = true;
+		} finally {
+			ar.close();
+			if (!success) {
+				packageFile.delete();
+			}
+		}
+
+		return packageFile;
+	}
+
+	/**
+	 * Writes the members of the package: <code>debian-binary</code>, the
+	 * control tarball and the data tarball.
+	 *
+	 * @param ar
+	 * @param base
+	 *            the staged package directory
+	 * @param controlDir
+	 * @throws IOException
+	 */
+	protected void writeMembers(ArWriter ar, File base, File controlDir)
+			throws IOException {
+		ar.putBytes("debian-binary", "2.0\n".getBytes("US-ASCII"));
+		writeControlTarball(ar, controlDir);
+		writeDataTarball(ar, base, controlDir);
+	}
+
+	protected void writeControlTarball(ArWriter ar, File controlDir)
+			throws IOException {
+		writeTarball(ar.putStream("control.tar.gz", FILE_MODE), controlDir,
+				null, Compression.GZIP);
+	}
+
+	protected void writeDataTarball(ArWriter ar, File base, File controlDir)
+			throws IOException {
+		writeTarball(ar.putStream("data.tar" + compression.getExtension(),
+				FILE_MODE), base, controlDir, compression);
+	}
+
+	/**
+	 * Returns the file name <code>dpkg-deb</code> would use for a package with
+	 * the given control fields. An epoch is not part of the file name.
+	 *
+	 * @param fields
+	 * @return
+	 * @throws IOException
+	 */
+	protected String getPackageFileName(Map<String, String> fields)
+			throws IOException {
+		String version = getField(fields, "Version");
+		int colon = version.indexOf(':');
+		if (colon != -1) {
+			version = version.substring(colon + 1);
+		}
+
+		return getField(fields, "Package") + "_" + version + "_"
+				+ getField(fields, "Architecture") + ".deb";
+	}
+
+	protected String getField(Map<String, String> fields, String name)
+			throws IOException {
+		String value = fields.get(name);
+		if (value == null || value.length() == 0) {
+			throw new IOException("Control file does not contain the field "
+					+ name);
+		}
+		return value;
+	}
+
+	/**
+	 * Reads the single line fields of a control file. Continuation lines are
+	 * skipped as they are not needed for naming the package.
+	 *
+	 * @param controlFile
+	 * @return
+	 * @throws IOException
+	 */
+	static Map<String, String> readControlFields(File controlFile)
+			throws IOException {
+		if (!controlFile.isFile()) {
+			throw new IOException("Control file " + controlFile
+					+ " does not exist.");
+		}
+
+		Map<String, String> fields = new HashMap<String, String>();
+		BufferedReader reader = new BufferedReader(new FileReader(controlFile));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int colon = line.indexOf(':');
+				if (colon <= 0 || Character.isWhitespace(line.charAt(0))) {
+					continue;
+				}
+				fields.put(line.substring(0, colon).trim(),
+						line.substring(colon + 1).trim());
+			}
+		} finally {
+			reader.close();
+		}
+
+		return fields;
+	}
+
+	/**
+	 * Writes the given directory tree as a compressed tarball into the stream.
+	 * The stream is closed afterwards.
+	 *
+	 * @param out
+	 * @param root
+	 * @param exclude
+	 *            a subdirectory of root which is left out or <code>null</code>
+	 * @param c
+	 * @throws IOException
+	 */
+	protected void writeTarball(OutputStream out, File root, File exclude,
+			Compression c) throws IOException {
+		int level = compressionLevel != null ? compressionLevel : c
+				.getDefaultLevel();
+
+		TarArchiveOutputStream tar = new TarArchiveOutputStream(
+				c.createOutputStream(out, level));
+		try {
+			tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
+			tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_STAR);
+
+			putDirectory(tar, root, "./", exclude);
+			tar.finish();
+		} finally {
+			tar.close();
+		}
+	}
+
+	private void putDirectory(TarArchiveOutputStream tar, File dir,
+			String name, File exclude) throws IOException {
+		TarArchiveEntry entry = new TarArchiveEntry(name);
+		entry.setMode(DIR_MODE);
+		entry.setModTime(dir.lastModified());
+		setRootOwnership(entry);
+		tar.putArchiveEntry(entry);
+		tar.closeArchiveEntry();
+
+		File[] children = dir.listFiles();
+		if (children == null) {
+			throw new IOException("Could not list contents of " + dir);
+		}
+		// Sorted to get the same archive for the same set of files.
+		Arrays.sort(children);
+
+		for (File child : children) {
+			if (child.equals(exclude)) {
+				continue;
+			}
+
+			if (child.isDirectory()) {
+				putDirectory(tar, child, name + child.getName() + "/", null);
+			} else {
+				putFile(tar, child, name + child.getName());
+			}
+		}
+	}
+
+	private void putFile(TarArchiveOutputStream tar, File file, String name)
+			throws IOException {
+		TarArchiveEntry entry = new TarArchiveEntry(name);
+		entry.setMode(file.canExecute() ? EXECUTABLE_MODE : FILE_MODE);
+		entry.setModTime(file.lastModified());
+		entry.setSize(file.length());
+		setRootOwnership(entry);
+		tar.putArchiveEntry(entry);
+
+		InputStream is = new FileInputStream(file);
+		try {
+			IOUtils.copy(is, tar);
+		} finally {
+			is.close();
+		}
+		tar.closeArchiveEntry();
+	}
+
+	private void setRootOwnership(TarArchiveEntry entry) {
+		entry.setUserId(0);
+		entry.setGroupId(0);
+		entry.setUserName("root");
+		entry.setGroupName("root");
+	}
+
+}
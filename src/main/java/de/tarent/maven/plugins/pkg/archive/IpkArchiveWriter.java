@@ -0,0 +1,47 @@
+package de.tarent.maven.plugins.pkg.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Creates an IPK package directly from a staged package directory, without
+ * the help of <code>ipkg-build</code>.
+ *
+ * <p>
+ * IPK packages are Debian packages with small differences: the control files
+ * reside in a <code>CONTROL</code> subdirectory, the data tarball precedes the
+ * control tarball and the file name ends with <code>.ipk</code>. Like
+ * <code>ipkg-build</code> the writer refuses control files which lack one of
+ * the fields opkg requires.
+ * </p>
+ */
+public class IpkArchiveWriter extends DebArchiveWriter {
+
+	private static final String[] REQUIRED_FIELDS = { "Maintainer",
+			"Description", "Section" };
+
+	public IpkArchiveWriter() {
+		super("CONTROL");
+	}
+
+	@Override
+	protected void writeMembers(ArWriter ar, File base, File controlDir)
+			throws IOException {
+		ar.putBytes("debian-binary", "2.0\n".getBytes("US-ASCII"));
+		writeDataTarball(ar, base, controlDir);
+		writeControlTarball(ar, controlDir);
+	}
+
+	@Override
+	protected String getPackageFileName(Map<String, String> fields)
+			throws IOException {
+		for (String field : REQUIRED_FIELDS) {
+			getField(fields, field);
+		}
+
+		String debName = super.getPackageFileName(fields);
+		return debName.substring(0, debName.length() - ".deb".length())
+				+ ".ipk";
+	}
+}
@@ -0,0 +1,111 @@
+package de.tarent.maven.plugins.pkg.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes gzip data compressed on several threads.
+ *
+ * <p>
+ * Every block of the input becomes a gzip member of its own. A file consisting
+ * of several members is a standard gzip file which decompresses to the
+ * concatenation of the members (see RFC 1952, section 2.2).
+ * </p>
+ */
+public class ParallelGzipOutputStream extends
+		BlockCompressorOutputStream<BlockCompressorOutputStream.Block> {
+
+	/**
+	 * The default block size. Large enough for the per-member overhead and the
+	 * loss of the compression context at block boundaries to be negligible.
+	 */
+	public static final int BLOCK_SIZE = 1024 * 1024;
+
+	private static final int OS_UNIX = 3;
+
+	/**
+	 * The deflater's state and the output buffer, generously.
+	 */
+	private static final long WORK_MEMORY = 512 * 1024;
+
+	/**
+	 * One deflater per compressor thread, they are reset for every block.
+	 */
+	private static final ThreadLocal<Deflater> DEFLATERS = new ThreadLocal<Deflater>();
+
+	private final int level;
+
+	public ParallelGzipOutputStream(OutputStream out, int level, int threads) {
+		this(out, level, threads, BLOCK_SIZE);
+	}
+
+	ParallelGzipOutputStream(OutputStream out, int level, int threads,
+			int blockSize) {
+		super(out, blockSize, threads);
+		this.level = level;
+	}
+
+	@Override
+	protected Block compress(byte[] data, int length) throws IOException {
+		ByteArrayOutputStream member = new ByteArrayOutputStream(
+				length / 2 + 64);
+
+		// Header without modification time and file name.
+		member.write(0x1f);
+		member.write(0x8b);
+		member.write(Deflater.DEFLATED);
+		member.write(0);
+		writeInt(member, 0);
+		member.write(level == Deflater.BEST_COMPRESSION ? 2
+				: level == Deflater.BEST_SPEED ? 4 : 0);
+		member.write(OS_UNIX);
+
+		Deflater deflater = getDeflater();
+		try {
+			deflater.setInput(data, 0, length);
+			deflater.finish();
+			byte[] buf = new byte[65536];
+			while (!deflater.finished()) {
+				int n = deflater.deflate(buf);
+				member.write(buf, 0, n);
+			}
+		} finally {
+			deflater.reset();
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, length);
+		writeInt(member, (int) crc.getValue());
+		writeInt(member, length);
+
+		return new Block(member.toByteArray(), length);
+	}
+
+	@Override
+	protected long getWorkMemory() {
+		return WORK_MEMORY;
+	}
+
+	private Deflater getDeflater() {
+		Deflater deflater = DEFLATERS.get();
+		if (deflater == null) {
+			deflater = new Deflater(level, true);
+			DEFLATERS.set(deflater);
+		} else {
+			// Takes effect as the deflater has just been reset.
+			deflater.setLevel(level);
+		}
+		return deflater;
+	}
+
+	private static void writeInt(OutputStream out, int value)
+			throws IOException {
+		out.write(value);
+		out.write(value >>> 8);
+		out.write(value >>> 16);
+		out.write(value >>> 24);
+	}
+}
@@ -0,0 +1,214 @@
+package de.tarent.maven.plugins.pkg.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+import org.tukaani.xz.BasicArrayCache;
+import org.tukaani.xz.FinishableOutputStream;
+import org.tukaani.xz.FinishableWrapperOutputStream;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.UnsupportedOptionsException;
+
+/**
+ * Writes a single xz stream whose blocks are compressed independently on
+ * several threads, like <code>xz --threads</code> does.
+ *
+ * <p>
+ * The blocks use the LZMA2 filter and a CRC32 check. The stream index with
+ * the sizes of all blocks is written on close.
+ * </p>
+ */
+public class ParallelXzOutputStream extends
+		BlockCompressorOutputStream<ParallelXzOutputStream.XzBlock> {
+
+	/**
+	 * A block together with its size as recorded in the index.
+	 */
+	static class XzBlock extends BlockCompressorOutputStream.Block {
+
+		/**
+		 * The size of the block without the block padding.
+		 */
+		final long unpaddedSize;
+
+		XzBlock(byte[] data, int length, long unpaddedSize) {
+			super(data, length);
+			this.unpaddedSize = unpaddedSize;
+		}
+	}
+
+	/**
+	 * The block size. The dictionary size of the compressor is limited to it
+	 * as a larger dictionary would not be used.
+	 */
+	public static final int BLOCK_SIZE = 8 * 1024 * 1024;
+
+	private static final byte[] HEADER_MAGIC = { (byte) 0xfd, '7', 'z', 'X',
+			'Z', 0 };
+
+	private static final byte[] FOOTER_MAGIC = { 'Y', 'Z' };
+
+	/**
+	 * Stream flags: CRC32 check.
+	 */
+	private static final byte[] STREAM_FLAGS = { 0, 1 };
+
+	private static final int CHECK_SIZE = 4;
+
+	private static final int LZMA2_FILTER_ID = 0x21;
+
+	private final LZMA2Options options;
+
+	private final byte[] blockHeader;
+
+	private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+
+	private long recordCount;
+
+	public ParallelXzOutputStream(OutputStream out, int level, int threads)
+			throws IOException {
+		this(out, level, threads, BLOCK_SIZE);
+	}
+
+	ParallelXzOutputStream(OutputStream out, int level, int threads,
+			int blockSize) throws IOException {
+		super(out, blockSize, threads);
+
+		try {
+			options = new LZMA2Options(level);
+			options.setDictSize(Math.max(LZMA2Options.DICT_SIZE_MIN,
+					Math.min(options.getDictSize(), blockSize)));
+		} catch (UnsupportedOptionsException e) {
+			throw new IOException("Unsupported xz compression level " + level);
+		}
+		blockHeader = createBlockHeader(options.getDictSize());
+
+		out.write(HEADER_MAGIC);
+		out.write(STREAM_FLAGS);
+		writeCrc32(out, STREAM_FLAGS, 0, STREAM_FLAGS.length);
+	}
+
+	@Override
+	protected XzBlock compress(byte[] data, int length) throws IOException {
+		ByteArrayOutputStream block = new ByteArrayOutputStream(
+				length / 2 + 64);
+		block.write(blockHeader);
+
+		// The encoder's buffers are taken from and returned to the cache, so
+		// that they are not allocated for every block.
+		FinishableOutputStream lzma2 = options.getOutputStream(
+				new FinishableWrapperOutputStream(block),
+				BasicArrayCache.getInstance());
+		lzma2.write(data, 0, length);
+		lzma2.close();
+		long unpaddedSize = block.size() + CHECK_SIZE;
+
+		// Block padding
+		while (block.size() % 4 != 0) {
+			block.write(0);
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, length);
+		writeInt(block, (int) crc.getValue());
+
+		return new XzBlock(block.toByteArray(), length, unpaddedSize);
+	}
+
+	@Override
+	protected long getWorkMemory() {
+		return options.getEncoderMemoryUsage() * 1024L;
+	}
+
+	@Override
+	protected void blockWritten(XzBlock block) {
+		writeVli(records, block.unpaddedSize);
+		writeVli(records, block.length);
+		recordCount++;
+	}
+
+	@Override
+	protected void writeTrailer(OutputStream out) throws IOException {
+		ByteArrayOutputStream index = new ByteArrayOutputStream();
+		index.write(0);
+		writeVli(index, recordCount);
+		records.writeTo(index);
+		while (index.size() % 4 != 0) {
+			index.write(0);
+		}
+		byte[] indexBytes = index.toByteArray();
+		out.write(indexBytes);
+		writeCrc32(out, indexBytes, 0, indexBytes.length);
+
+		ByteArrayOutputStream footer = new ByteArrayOutputStream();
+		writeInt(footer, (indexBytes.length + CHECK_SIZE) / 4 - 1);
+		footer.write(STREAM_FLAGS);
+		byte[] footerBytes = footer.toByteArray();
+		writeCrc32(out, footerBytes, 0, footerBytes.length);
+		out.write(footerBytes);
+		out.write(FOOTER_MAGIC);
+	}
+
+	private static byte[] createBlockHeader(int dictSize) throws IOException {
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		// Header size placeholder, block flags: one filter, no optional
+		// sizes.
+		header.write(0);
+		header.write(0);
+		// Filter flags: ID, size of the properties, properties
+		writeVli(header, LZMA2_FILTER_ID);
+		writeVli(header, 1);
+		header.write(encodeDictSize(dictSize));
+		while ((header.size() + CHECK_SIZE) % 4 != 0) {
+			header.write(0);
+		}
+
+		byte[] bytes = header.toByteArray();
+		bytes[0] = (byte) ((bytes.length + CHECK_SIZE) / 4 - 1);
+
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		result.write(bytes);
+		writeCrc32(result, bytes, 0, bytes.length);
+		return result.toByteArray();
+	}
+
+	/**
+	 * Encodes the dictionary size as LZMA2 filter property: the smallest value
+	 * of the form 2^n or 2^n + 2^(n-1) which is not smaller than the given
+	 * size.
+	 */
+	static int encodeDictSize(int dictSize) {
+		for (int b = 0; b < 40; b++) {
+			long size = (2L | (b & 1)) << (b / 2 + 11);
+			if (size >= dictSize) {
+				return b;
+			}
+		}
+		return 40;
+	}
+
+	private static void writeVli(ByteArrayOutputStream out, long value) {
+		while (value >= 0x80) {
+			out.write((int) (value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static void writeInt(OutputStream out, int value)
+			throws IOException {
+		out.write(value);
+		out.write(value >>> 8);
+		out.write(value >>> 16);
+		out.write(value >>> 24);
+	}
+
+	private static void writeCrc32(OutputStream out, byte[] b, int off,
+			int len) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(b, off, len);
+		writeInt(out, (int) crc.getValue());
+	}
+}
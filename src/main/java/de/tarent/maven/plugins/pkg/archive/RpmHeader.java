@@ -0,0 +1,195 @@
+package de.tarent.maven.plugins.pkg.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Builds the binary representation of an RPM header structure as used for
+ * both the signature and the main header of a package.
+ *
+ * <p>
+ * The entries are written in tag order and the whole header is enclosed in a
+ * single immutable region, like <code>rpmbuild</code> does.
+ * </p>
+ */
+class RpmHeader {
+
+	static final int INT16 = 3;
+
+	static final int INT32 = 4;
+
+	static final int STRING = 6;
+
+	static final int BIN = 7;
+
+	static final int STRING_ARRAY = 8;
+
+	static final int I18NSTRING = 9;
+
+	static final byte[] MAGIC = { (byte) 0x8e, (byte) 0xad, (byte) 0xe8, 1, 0,
+			0, 0, 0 };
+
+	private static final int ENTRY_SIZE = 16;
+
+	private static class Entry {
+
+		final int type;
+
+		final int count;
+
+		final byte[] data;
+
+		Entry(int type, int count, byte[] data) {
+			this.type = type;
+			this.count = count;
+			this.data = data;
+		}
+	}
+
+	private final int regionTag;
+
+	private final SortedMap<Integer, Entry> entries = new TreeMap<Integer, Entry>();
+
+	/**
+	 * @param regionTag
+	 *            the tag of the region enclosing the header: 62 for the
+	 *            signature, 63 for the main header
+	 */
+	RpmHeader(int regionTag) {
+		this.regionTag = regionTag;
+	}
+
+	void addString(int tag, String value) {
+		entries.put(tag, new Entry(STRING, 1, toBytes(value)));
+	}
+
+	/**
+	 * Adds a translatable string. The header must contain an i18n table with
+	 * the single locale <code>C</code>.
+	 */
+	void addI18NString(int tag, String value) {
+		entries.put(tag, new Entry(I18NSTRING, 1, toBytes(value)));
+	}
+
+	void addStringArray(int tag, List<String> values) {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		for (String value : values) {
+			byte[] b = toBytes(value);
+			data.write(b, 0, b.length);
+		}
+		entries.put(tag, new Entry(STRING_ARRAY, values.size(), data
+				.toByteArray()));
+	}
+
+	void addInt32(int tag, int... values) {
+		byte[] data = new byte[values.length * 4];
+		for (int i = 0; i < values.length; i++) {
+			putInt(data, i * 4, values[i]);
+		}
+		entries.put(tag, new Entry(INT32, values.length, data));
+	}
+
+	void addInt16(int tag, int... values) {
+		byte[] data = new byte[values.length * 2];
+		for (int i = 0; i < values.length; i++) {
+			data[i * 2] = (byte) (values[i] >>> 8);
+			data[i * 2 + 1] = (byte) values[i];
+		}
+		entries.put(tag, new Entry(INT16, values.length, data));
+	}
+
+	void addBinary(int tag, byte[] value) {
+		entries.put(tag, new Entry(BIN, value.length, value));
+	}
+
+	/**
+	 * Returns the header including its magic.
+	 *
+	 * @return
+	 */
+	byte[] toByteArray() {
+		int il = entries.size() + 1;
+
+		ByteArrayOutputStream store = new ByteArrayOutputStream();
+		ByteArrayOutputStream index = new ByteArrayOutputStream();
+		DataOutputStream indexOut = new DataOutputStream(index);
+		try {
+			// The region entry comes first but its trailer is stored last.
+			ByteArrayOutputStream entryIndex = new ByteArrayOutputStream();
+			DataOutputStream entryOut = new DataOutputStream(entryIndex);
+			for (Map.Entry<Integer, Entry> e : entries.entrySet()) {
+				Entry entry = e.getValue();
+				int alignment = getAlignment(entry.type);
+				while (store.size() % alignment != 0) {
+					store.write(0);
+				}
+				writeEntry(entryOut, e.getKey(), entry.type, store.size(),
+						entry.count);
+				store.write(entry.data, 0, entry.data.length);
+			}
+
+			int trailerOffset = store.size();
+			DataOutputStream storeOut = new DataOutputStream(store);
+			writeEntry(storeOut, regionTag, BIN, -il * ENTRY_SIZE, ENTRY_SIZE);
+
+			writeEntry(indexOut, regionTag, BIN, trailerOffset, ENTRY_SIZE);
+			entryIndex.writeTo(indexOut);
+
+			ByteArrayOutputStream header = new ByteArrayOutputStream(
+					MAGIC.length + 8 + index.size() + store.size());
+			DataOutputStream headerOut = new DataOutputStream(header);
+			headerOut.write(MAGIC);
+			headerOut.writeInt(il);
+			headerOut.writeInt(store.size());
+			index.writeTo(headerOut);
+			store.writeTo(headerOut);
+			return header.toByteArray();
+		} catch (IOException e) {
+			// Cannot happen with in-memory streams.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void writeEntry(DataOutputStream out, int tag, int type,
+			int offset, int count) throws IOException {
+		out.writeInt(tag);
+		out.writeInt(type);
+		out.writeInt(offset);
+		out.writeInt(count);
+	}
+
+	private static int getAlignment(int type) {
+		switch (type) {
+		case INT16:
+			return 2;
+		case INT32:
+			return 4;
+		default:
+			return 1;
+		}
+	}
+
+	private static void putInt(byte[] b, int off, int value) {
+		b[off] = (byte) (value >>> 24);
+		b[off + 1] = (byte) (value >>> 16);
+		b[off + 2] = (byte) (value >>> 8);
+		b[off + 3] = (byte) value;
+	}
+
+	private static byte[] toBytes(String value) {
+		try {
+			byte[] b = value.getBytes("UTF-8");
+			byte[] result = new byte[b.length + 1];
+			System.arraycopy(b, 0, result, 0, b.length);
+			return result;
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,796 @@
+package de.tarent.maven.plugins.pkg.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.compress.archivers.cpio.CpioArchiveEntry;
+import org.apache.commons.compress.archivers.cpio.CpioArchiveOutputStream;
+import org.apache.commons.compress.archivers.cpio.CpioConstants;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+
+/**
+ * Creates a binary RPM package directly from a staged directory, without the
+ * help of <code>rpmbuild</code>.
+ *
+ * <p>
+ * The package consists of the lead, the signature header with the sizes and
+ * digests of the package, the main header with the metadata and the file list
+ * and the compressed cpio payload. The staged files are read once: their
+ * digests are computed while the payload is written.
+ * </p>
+ *
+ * <p>
+ * Like the <code>%files</code> section of the spec files this plugin generates
+ * the package contains the regular files of the staged directory only, owned
+ * by root. Each file keeps the mode it was staged with: 755 if it is
+ * executable, 644 otherwise.
+ * </p>
+ */
+public class RpmWriter {
+
+	private static final byte[] LEAD_MAGIC = { (byte) 0xed, (byte) 0xab,
+			(byte) 0xee, (byte) 0xdb };
+
+	private static final int LEAD_SIZE = 96;
+
+	private static final int LEAD_NAME_SIZE = 66;
+
+	private static final int FILE_MODE = 0100644;
+
+	private static final int EXECUTABLE_MODE = 0100755;
+
+	/**
+	 * The hash algorithm id of SHA-256 as used for file and payload digests.
+	 */
+	private static final int SHA256_ALGO = 8;
+
+	// Signature header tags
+	private static final int SIGTAG_REGION = 62;
+
+	private static final int SIGTAG_SHA1 = 269;
+
+	private static final int SIGTAG_SHA256 = 273;
+
+	private static final int SIGTAG_SIZE = 1000;
+
+	private static final int SIGTAG_MD5 = 1004;
+
+	private static final int SIGTAG_PAYLOADSIZE = 1007;
+
+	// Main header tags
+	private static final int TAG_REGION = 63;
+
+	private static final int TAG_I18NTABLE = 100;
+
+	private static final int TAG_NAME = 1000;
+
+	private static final int TAG_VERSION = 1001;
+
+	private static final int TAG_RELEASE = 1002;
+
+	private static final int TAG_SUMMARY = 1004;
+
+	private static final int TAG_DESCRIPTION = 1005;
+
+	private static final int TAG_BUILDTIME = 1006;
+
+	private static final int TAG_BUILDHOST = 1007;
+
+	private static final int TAG_SIZE = 1009;
+
+	private static final int TAG_LICENSE = 1014;
+
+	private static final int TAG_PACKAGER = 1015;
+
+	private static final int TAG_GROUP = 1016;
+
+	private static final int TAG_URL = 1020;
+
+	private static final int TAG_OS = 1021;
+
+	private static final int TAG_ARCH = 1022;
+
+	private static final int TAG_PREIN = 1023;
+
+	private static final int TAG_POSTIN = 1024;
+
+	private static final int TAG_PREUN = 1025;
+
+	private static final int TAG_POSTUN = 1026;
+
+	private static final int TAG_FILESIZES = 1028;
+
+	private static final int TAG_FILEMODES = 1030;
+
+	private static final int TAG_FILERDEVS = 1033;
+
+	private static final int TAG_FILEMTIMES = 1034;
+
+	private static final int TAG_FILEDIGESTS = 1035;
+
+	private static final int TAG_FILELINKTOS = 1036;
+
+	private static final int TAG_FILEFLAGS = 1037;
+
+	private static final int TAG_FILEUSERNAME = 1039;
+
+	private static final int TAG_FILEGROUPNAME = 1040;
+
+	private static final int TAG_SOURCERPM = 1044;
+
+	private static final int TAG_PROVIDENAME = 1047;
+
+	private static final int TAG_REQUIREFLAGS = 1048;
+
+	private static final int TAG_REQUIRENAME = 1049;
+
+	private static final int TAG_REQUIREVERSION = 1050;
+
+	private static final int TAG_PREINPROG = 1085;
+
+	private static final int TAG_POSTINPROG = 1086;
+
+	private static final int TAG_PREUNPROG = 1087;
+
+	private static final int TAG_POSTUNPROG = 1088;
+
+	private static final int TAG_FILEDEVICES = 1095;
+
+	private static final int TAG_FILEINODES = 1096;
+
+	private static final int TAG_FILELANGS = 1097;
+
+	private static final int TAG_PREFIXES = 1098;
+
+	private static final int TAG_PROVIDEFLAGS = 1112;
+
+	private static final int TAG_PROVIDEVERSION = 1113;
+
+	private static final int TAG_DIRINDEXES = 1116;
+
+	private static final int TAG_BASENAMES = 1117;
+
+	private static final int TAG_DIRNAMES = 1118;
+
+	private static final int TAG_PAYLOADFORMAT = 1124;
+
+	private static final int TAG_PAYLOADCOMPRESSOR = 1125;
+
+	private static final int TAG_PAYLOADFLAGS = 1126;
+
+	private static final int TAG_FILEDIGESTALGO = 5011;
+
+	private static final int TAG_PAYLOADDIGEST = 5092;
+
+	private static final int TAG_PAYLOADDIGESTALGO = 5093;
+
+	// Dependency flags
+	static final int SENSE_LESS = 1 << 1;
+
+	static final int SENSE_GREATER = 1 << 2;
+
+	static final int SENSE_EQUAL = 1 << 3;
+
+	static final int SENSE_INTERP = 1 << 8;
+
+	static final int SENSE_SCRIPT_PRE = 1 << 9;
+
+	static final int SENSE_SCRIPT_POST = 1 << 10;
+
+	static final int SENSE_SCRIPT_PREUN = 1 << 11;
+
+	static final int SENSE_SCRIPT_POSTUN = 1 << 12;
+
+	static final int SENSE_RPMLIB = 1 << 24;
+
+	private static final Map<String, Integer> OPERATORS = new HashMap<String, Integer>();
+
+	static {
+		OPERATORS.put("<", SENSE_LESS);
+		OPERATORS.put("<<", SENSE_LESS);
+		OPERATORS.put("<=", SENSE_LESS | SENSE_EQUAL);
+		OPERATORS.put("=", SENSE_EQUAL);
+		OPERATORS.put("==", SENSE_EQUAL);
+		OPERATORS.put(">=", SENSE_GREATER | SENSE_EQUAL);
+		OPERATORS.put(">", SENSE_GREATER);
+		OPERATORS.put(">>", SENSE_GREATER);
+	}
+
+	/**
+	 * A file of the package.
+	 */
+	private static class FileInfo {
+
+		final File file;
+
+		/**
+		 * The absolute path in the installed system.
+		 */
+		final String path;
+
+		final long size;
+
+		final int mtime;
+
+		/**
+		 * Like <code>%attr(-,root,root)</code> in a spec file the staged
+		 * file's mode is kept.
+		 */
+		final int mode;
+
+		String digest;
+
+		FileInfo(File file, String path) {
+			this.file = file;
+			this.path = path;
+			this.size = file.length();
+			this.mtime = (int) (file.lastModified() / 1000);
+			this.mode = file.canExecute() ? EXECUTABLE_MODE : FILE_MODE;
+		}
+	}
+
+	private String name;
+
+	private String version;
+
+	private String release = "1";
+
+	private String summary;
+
+	private String description;
+
+	private String license;
+
+	private String group = "Unspecified";
+
+	private String url;
+
+	private String packager;
+
+	private String arch = "noarch";
+
+	private String prefix;
+
+	private String requires;
+
+	private String preinstallScript;
+
+	private String postinstallScript;
+
+	private String preuninstallScript;
+
+	private String postuninstallScript;
+
+	private Compression compression = Compression.GZIP;
+
+	private Integer compressionLevel;
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Sets the version. It must not contain dashes.
+	 *
+	 * @param version
+	 */
+	public void setVersion(String version) {
+		this.version = version;
+	}
+
+	public void setRelease(String release) {
+		this.release = release;
+	}
+
+	public void setSummary(String summary) {
+		this.summary = summary;
+	}
+
+	public void setDescription(String description) {
+		this.description = description;
+	}
+
+	public void setLicense(String license) {
+		this.license = license;
+	}
+
+	public void setGroup(String group) {
+		this.group = group;
+	}
+
+	public void setUrl(String url) {
+		this.url = url;
+	}
+
+	public void setPackager(String packager) {
+		this.packager = packager;
+	}
+
+	public void setArch(String arch) {
+		this.arch = arch;
+	}
+
+	/**
+	 * Sets the installation prefix which makes the package relocatable. A
+	 * prefix of <code>/</code> is ignored.
+	 *
+	 * @param prefix
+	 */
+	public void setPrefix(String prefix) {
+		this.prefix = prefix;
+	}
+
+	/**
+	 * Sets the dependencies as a comma separated list of package names which
+	 * may be followed by an operator and a version, e.g.
+	 * <code>java &gt;= 1.6, foo</code>.
+	 *
+	 * @param requires
+	 */
+	public void setRequires(String requires) {
+		this.requires = requires;
+	}
+
+	public void setPreinstallScript(String preinstallScript) {
+		this.preinstallScript = preinstallScript;
+	}
+
+	public void setPostinstallScript(String postinstallScript) {
+		this.postinstallScript = postinstallScript;
+	}
+
+	public void setPreuninstallScript(String preuninstallScript) {
+		this.preuninstallScript = preuninstallScript;
+	}
+
+	public void setPostuninstallScript(String postuninstallScript) {
+		this.postuninstallScript = postuninstallScript;
+	}
+
+	/**
+	 * Sets the compression of the payload. The default is gzip.
+	 *
+	 * @param compression
+	 */
+	public void setCompression(Compression compression) {
+		this.compression = compression;
+	}
+
+	/**
+	 * Sets the compression level (0-9). By default the compression's own
+	 * default is used.
+	 *
+	 * @param compressionLevel
+	 */
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * Returns the name <code>rpmbuild</code> would give the package:
+	 * <code>name-version-release.arch.rpm</code>.
+	 *
+	 * @return
+	 */
+	public String getPackageFileName() {
+		return getNEVR() + "." + arch + ".rpm";
+	}
+
+	/**
+	 * Creates the package from the given staged directory.
+	 *
+	 * @param root
+	 *            the staged directory which corresponds to <code>/</code>
+	 * @param packageFile
+	 * @throws IOException
+	 */
+	public void write(File root, File packageFile) throws IOException {
+		if (name == null || version == null) {
+			throw new IOException("The package name and version are required");
+		}
+		if (compression == Compression.NONE) {
+			throw new IOException("The payload of RPM packages must be compressed");
+		}
+
+		List<FileInfo> files = new ArrayList<FileInfo>();
+		collectFiles(root, "", files);
+
+		File payloadFile = new File(packageFile.getPath() + ".payload");
+		boolean success = false;
+		try {
+			MessageDigest payloadDigest = getDigest("SHA-256");
+			long payloadSize = writePayload(files, payloadFile, payloadDigest);
+
+			byte[] header = createHeader(files,
+					toHex(payloadDigest.digest())).toByteArray();
+			byte[] signature = createSignature(header, payloadFile,
+					payloadSize).toByteArray();
+
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(
+					packageFile));
+			try {
+				out.write(createLead());
+				out.write(signature);
+				// The signature is padded to a multiple of 8 bytes.
+				for (int i = signature.length; i % 8 != 0; i++) {
+					out.write(0);
+				}
+				out.write(header);
+				InputStream in = new FileInputStream(payloadFile);
+				try {
+					IOUtils.copy(in, out);
+				} finally {
+					in.close();
+				}
+			} finally {
+				out.close();
+			}
+			success = true;
+		} finally {
+			payloadFile.delete();
+			if (!success) {
+				packageFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Collects the regular files below the given directory sorted by their
+	 * path.
+	 */
+	private void collectFiles(File dir, String path, List<FileInfo> files) {
+		File[] children = dir.listFiles();
+		if (children == null) {
+			return;
+		}
+		Arrays.sort(children);
+		for (File child : children) {
+			String childPath = path + "/" + child.getName();
+			if (child.isDirectory()) {
+				collectFiles(child, childPath, files);
+			} else if (child.isFile()) {
+				files.add(new FileInfo(child, childPath));
+			}
+		}
+	}
+
+	/**
+	 * Writes the compressed cpio archive and computes the digests of the
+	 * files on the way.
+	 *
+	 * @return the uncompressed size of the archive
+	 */
+	private long writePayload(List<FileInfo> files, File payloadFile,
+			MessageDigest payloadDigest) throws IOException {
+		int level = compressionLevel != null ? compressionLevel : compression
+				.getDefaultLevel();
+		CountingOutputStream counter = new CountingOutputStream(
+				compression.createOutputStream(new DigestOutputStream(
+						new BufferedOutputStream(new FileOutputStream(
+								payloadFile)), payloadDigest), level));
+		// A block size of 4 avoids any padding after the trailer.
+		CpioArchiveOutputStream cpio = new CpioArchiveOutputStream(counter,
+				CpioConstants.FORMAT_NEW, 4, "UTF-8");
+		try {
+			MessageDigest fileDigest = getDigest("SHA-256");
+			int inode = 1;
+			for (FileInfo f : files) {
+				CpioArchiveEntry entry = new CpioArchiveEntry(
+						CpioConstants.FORMAT_NEW, "." + f.path, f.size);
+				entry.setMode(f.mode);
+				entry.setTime(f.mtime);
+				entry.setInode(inode++);
+				entry.setDeviceMin(1);
+				entry.setNumberOfLinks(1);
+				cpio.putArchiveEntry(entry);
+
+				fileDigest.reset();
+				InputStream in = new DigestInputStream(new FileInputStream(
+						f.file), fileDigest);
+				try {
+					if (IOUtils.copyLarge(in, cpio) != f.size) {
+						throw new IOException("File changed while packaging: "
+								+ f.file);
+					}
+				} finally {
+					in.close();
+				}
+				f.digest = toHex(fileDigest.digest());
+				cpio.closeArchiveEntry();
+			}
+			cpio.finish();
+		} finally {
+			cpio.close();
+		}
+		return counter.getByteCount();
+	}
+
+	private byte[] createLead() throws IOException {
+		byte[] lead = new byte[LEAD_SIZE];
+		System.arraycopy(LEAD_MAGIC, 0, lead, 0, LEAD_MAGIC.length);
+		// Format version 3.0, binary package, architecture number
+		lead[4] = 3;
+		lead[9] = 1;
+		byte[] nevr = getNEVR().getBytes("UTF-8");
+		System.arraycopy(nevr, 0, lead, 10,
+				Math.min(nevr.length, LEAD_NAME_SIZE - 1));
+		// Operating system: Linux, signature type: header style
+		lead[77] = 1;
+		lead[79] = 5;
+		return lead;
+	}
+
+	private RpmHeader createSignature(byte[] header, File payloadFile,
+			long payloadSize) throws IOException {
+		long size = header.length + payloadFile.length();
+		if (size > 0xffffffffL || payloadSize > 0xffffffffL) {
+			throw new IOException("Packages larger than 4 GiB are not supported");
+		}
+
+		MessageDigest md5 = getDigest("MD5");
+		md5.update(header);
+		InputStream in = new DigestInputStream(
+				new FileInputStream(payloadFile), md5);
+		try {
+			IOUtils.copy(in, NullOutputStream.NULL_OUTPUT_STREAM);
+		} finally {
+			in.close();
+		}
+
+		RpmHeader sig = new RpmHeader(SIGTAG_REGION);
+		sig.addString(SIGTAG_SHA1, toHex(getDigest("SHA-1").digest(header)));
+		sig.addString(SIGTAG_SHA256,
+				toHex(getDigest("SHA-256").digest(header)));
+		sig.addInt32(SIGTAG_SIZE, (int) size);
+		sig.addBinary(SIGTAG_MD5, md5.digest());
+		sig.addInt32(SIGTAG_PAYLOADSIZE, (int) payloadSize);
+		return sig;
+	}
+
+	private RpmHeader createHeader(List<FileInfo> files, String payloadDigest)
+			throws IOException {
+		RpmHeader h = new RpmHeader(TAG_REGION);
+		h.addStringArray(TAG_I18NTABLE, Collections.singletonList("C"));
+
+		h.addString(TAG_NAME, name);
+		h.addString(TAG_VERSION, version);
+		h.addString(TAG_RELEASE, release);
+		h.addI18NString(TAG_SUMMARY, summary != null ? summary : name);
+		h.addI18NString(TAG_DESCRIPTION, description != null ? description
+				: name);
+		h.addInt32(TAG_BUILDTIME, (int) (System.currentTimeMillis() / 1000));
+		h.addString(TAG_BUILDHOST, getBuildHost());
+		h.addString(TAG_LICENSE, license != null ? license : "unknown");
+		addOptionalString(h, TAG_PACKAGER, packager);
+		h.addI18NString(TAG_GROUP, group != null ? group : "Unspecified");
+		addOptionalString(h, TAG_URL, url);
+		h.addString(TAG_OS, "linux");
+		h.addString(TAG_ARCH, arch);
+		h.addString(TAG_SOURCERPM, getNEVR() + ".src.rpm");
+
+		addScript(h, TAG_PREIN, TAG_PREINPROG, preinstallScript);
+		addScript(h, TAG_POSTIN, TAG_POSTINPROG, postinstallScript);
+		addScript(h, TAG_PREUN, TAG_PREUNPROG, preuninstallScript);
+		addScript(h, TAG_POSTUN, TAG_POSTUNPROG, postuninstallScript);
+
+		if (prefix != null && !prefix.equals("/")) {
+			h.addStringArray(TAG_PREFIXES, Collections.singletonList(prefix
+					.replaceAll("/+$", "")));
+		}
+
+		addFiles(h, files);
+		addDependencies(h);
+
+		h.addStringArray(TAG_PROVIDENAME, Collections.singletonList(name));
+		h.addInt32(TAG_PROVIDEFLAGS, SENSE_EQUAL);
+		h.addStringArray(TAG_PROVIDEVERSION, Collections
+				.singletonList(version + "-" + release));
+
+		h.addString(TAG_PAYLOADFORMAT, "cpio");
+		h.addString(TAG_PAYLOADCOMPRESSOR, compression.getName());
+		h.addString(TAG_PAYLOADFLAGS, String
+				.valueOf(compressionLevel != null ? compressionLevel
+						: compression.getDefaultLevel()));
+		h.addStringArray(TAG_PAYLOADDIGEST, Collections
+				.singletonList(payloadDigest));
+		h.addInt32(TAG_PAYLOADDIGESTALGO, SHA256_ALGO);
+		return h;
+	}
+
+	private void addFiles(RpmHeader h, List<FileInfo> files)
+			throws IOException {
+		long totalSize = 0;
+		int n = files.size();
+		int[] sizes = new int[n];
+		int[] modes = new int[n];
+		int[] zeros = new int[n];
+		int[] mtimes = new int[n];
+		int[] devices = new int[n];
+		int[] inodes = new int[n];
+		int[] dirIndexes = new int[n];
+		List<String> digests = new ArrayList<String>(n);
+		List<String> empty = new ArrayList<String>(n);
+		List<String> owners = new ArrayList<String>(n);
+		List<String> baseNames = new ArrayList<String>(n);
+		Map<String, Integer> dirNames = new LinkedHashMap<String, Integer>();
+
+		for (int i = 0; i < n; i++) {
+			FileInfo f = files.get(i);
+			if (f.size > 0xffffffffL) {
+				throw new IOException("Files larger than 4 GiB are not supported: "
+						+ f.file);
+			}
+			totalSize += f.size;
+			sizes[i] = (int) f.size;
+			modes[i] = f.mode;
+			mtimes[i] = f.mtime;
+			devices[i] = 1;
+			inodes[i] = i + 1;
+			digests.add(f.digest);
+			empty.add("");
+			owners.add("root");
+
+			int slash = f.path.lastIndexOf('/');
+			String dirName = f.path.substring(0, slash + 1);
+			Integer dirIndex = dirNames.get(dirName);
+			if (dirIndex == null) {
+				dirIndex = dirNames.size();
+				dirNames.put(dirName, dirIndex);
+			}
+			dirIndexes[i] = dirIndex;
+			baseNames.add(f.path.substring(slash + 1));
+		}
+
+		if (totalSize > 0xffffffffL) {
+			throw new IOException("Packages larger than 4 GiB are not supported");
+		}
+		h.addInt32(TAG_SIZE, (int) totalSize);
+
+		// A package without files has no file tags at all.
+		if (n == 0) {
+			return;
+		}
+		h.addInt32(TAG_FILESIZES, sizes);
+		h.addInt16(TAG_FILEMODES, modes);
+		h.addInt16(TAG_FILERDEVS, zeros);
+		h.addInt32(TAG_FILEMTIMES, mtimes);
+		h.addStringArray(TAG_FILEDIGESTS, digests);
+		h.addStringArray(TAG_FILELINKTOS, empty);
+		h.addInt32(TAG_FILEFLAGS, zeros);
+		h.addStringArray(TAG_FILEUSERNAME, owners);
+		h.addStringArray(TAG_FILEGROUPNAME, owners);
+		h.addInt32(TAG_FILEDEVICES, devices);
+		h.addInt32(TAG_FILEINODES, inodes);
+		h.addStringArray(TAG_FILELANGS, empty);
+		h.addInt32(TAG_DIRINDEXES, dirIndexes);
+		h.addStringArray(TAG_BASENAMES, baseNames);
+		h.addStringArray(TAG_DIRNAMES, new ArrayList<String>(dirNames.keySet()));
+		h.addInt32(TAG_FILEDIGESTALGO, SHA256_ALGO);
+	}
+
+	private void addDependencies(RpmHeader h) throws IOException {
+		List<String> names = new ArrayList<String>();
+		List<Integer> flags = new ArrayList<Integer>();
+		List<String> versions = new ArrayList<String>();
+
+		if (requires != null) {
+			for (String dependency : requires.split(",")) {
+				String[] tokens = dependency.replace('(', ' ')
+						.replace(')', ' ').trim().split("\\s+");
+				if (tokens[0].length() == 0) {
+					continue;
+				} else if (tokens.length == 1) {
+					addDependency(names, flags, versions, tokens[0], 0, "");
+				} else if (tokens.length == 3
+						&& OPERATORS.containsKey(tokens[1])) {
+					addDependency(names, flags, versions, tokens[0],
+							OPERATORS.get(tokens[1]), tokens[2]);
+				} else {
+					throw new IOException("Cannot parse the dependency '"
+							+ dependency.trim() + "'");
+				}
+			}
+		}
+
+		int scriptFlags = (preinstallScript != null ? SENSE_SCRIPT_PRE : 0)
+				| (postinstallScript != null ? SENSE_SCRIPT_POST : 0)
+				| (preuninstallScript != null ? SENSE_SCRIPT_PREUN : 0)
+				| (postuninstallScript != null ? SENSE_SCRIPT_POSTUN : 0);
+		if (scriptFlags != 0) {
+			addDependency(names, flags, versions, "/bin/sh", SENSE_INTERP
+					| scriptFlags, "");
+		}
+
+		// The features of rpm this package relies on
+		int rpmlib = SENSE_RPMLIB | SENSE_LESS | SENSE_EQUAL;
+		addDependency(names, flags, versions,
+				"rpmlib(CompressedFileNames)", rpmlib, "3.0.4-1");
+		addDependency(names, flags, versions, "rpmlib(FileDigests)", rpmlib,
+				"4.6.0-1");
+		addDependency(names, flags, versions,
+				"rpmlib(PayloadFilesHavePrefix)", rpmlib, "4.0-1");
+		if (compression == Compression.XZ) {
+			addDependency(names, flags, versions, "rpmlib(PayloadIsXz)",
+					rpmlib, "5.2-1");
+		}
+
+		int[] flagValues = new int[flags.size()];
+		for (int i = 0; i < flagValues.length; i++) {
+			flagValues[i] = flags.get(i);
+		}
+		h.addInt32(TAG_REQUIREFLAGS, flagValues);
+		h.addStringArray(TAG_REQUIRENAME, names);
+		h.addStringArray(TAG_REQUIREVERSION, versions);
+	}
+
+	private static void addDependency(List<String> names, List<Integer> flags,
+			List<String> versions, String name, int flag, String version) {
+		names.add(name);
+		flags.add(flag);
+		versions.add(version);
+	}
+
+	private static void addScript(RpmHeader h, int tag, int progTag,
+			String script) {
+		if (script != null) {
+			h.addString(tag, script);
+			h.addString(progTag, "/bin/sh");
+		}
+	}
+
+	private static void addOptionalString(RpmHeader h, int tag, String value) {
+		if (value != null && value.length() > 0) {
+			h.addString(tag, value);
+		}
+	}
+
+	private String getNEVR() {
+		return name + "-" + version + "-" + release;
+	}
+
+	private static String getBuildHost() {
+		try {
+			return InetAddress.getLocalHost().getHostName();
+		} catch (UnknownHostException e) {
+			return "localhost";
+		}
+	}
+
+	private static MessageDigest getDigest(String algorithm) {
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform supports MD5, SHA-1 and SHA-256.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+			sb.append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+}
@@ -51,6 +51,8 @@ public class WrapperScriptGenerator {
 
 	String customCodeWindows;
 
+	String cdsArchiveFile;
+
 	Properties properties = new Properties();
 
 	public void setProperties(Properties props) {
@@ -198,6 +200,16 @@ public class WrapperScriptGenerator {
 		w.println("fi");
 		w.println();
 
+		if (cdsArchiveFile != null) {
+			w.println("# Class data sharing archive, created when the package was installed.");
+			w.println("if [ -r \"" + cdsArchiveFile + "\" ];");
+			w.println("then");
+			w.println("\tCDS_ARG=\"-XX:SharedArchiveFile=" + cdsArchiveFile
+					+ " -Xshare:auto\"");
+			w.println("fi");
+			w.println();
+		}
+
 		if (customCodeUnix != null) {
 			w.println(customCodeUnix);
 			w.println();
@@ -205,7 +217,7 @@ public class WrapperScriptGenerator {
 
 		w.println("exec ${JAVA} "
 				+ getMemParameter()
-				+ " ${DEBUGARGS} ${VMARGS} ${JMXARGS} ${JMXSSLARGS} ${JMXAUTHARGS} ${BOOTCLASSPATH_ARG} ${CLASSPATH_ARG} ${LIBRARY_PATH_ARG} ${DB_PATH_ARG} ${SYSTEM_PROPERTIES} ${ARGS_OVERRIDES} ${MAIN_CLASS} ${@}");
+				+ " ${CDS_ARG} ${DEBUGARGS} ${VMARGS} ${JMXARGS} ${JMXSSLARGS} ${JMXAUTHARGS} ${BOOTCLASSPATH_ARG} ${CLASSPATH_ARG} ${LIBRARY_PATH_ARG} ${DB_PATH_ARG} ${SYSTEM_PROPERTIES} ${ARGS_OVERRIDES} ${MAIN_CLASS} ${@}");
 
 		w.close();
 	}
@@ -362,6 +374,20 @@ public class WrapperScriptGenerator {
 		this.customCodeUnix = custom;
 	}
 
+	public String getCdsArchiveFile() {
+		return cdsArchiveFile;
+	}
+
+	/**
+	 * Sets the class data sharing archive which is used by the (Unix) start
+	 * script if it exists.
+	 * 
+	 * @param cdsArchiveFile
+	 */
+	public void setCdsArchiveFile(String cdsArchiveFile) {
+		this.cdsArchiveFile = cdsArchiveFile;
+	}
+
 	public String getCustomCodeWindows() {
 		return customCodeWindows;
 	}
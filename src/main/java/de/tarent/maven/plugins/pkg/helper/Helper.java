@@ -10,37 +10,36 @@ import java.net.MalformedURLException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.apache.maven.artifact.Artifact;
-import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
-import org.apache.maven.artifact.resolver.ArtifactResolutionException;
-import org.apache.maven.artifact.resolver.filter.AndArtifactFilter;
-import org.apache.maven.artifact.resolver.filter.ScopeArtifactFilter;
-import org.apache.maven.artifact.resolver.filter.TypeArtifactFilter;
 import org.apache.maven.model.License;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
-import org.apache.maven.project.ProjectBuildingException;
-import org.apache.maven.project.artifact.InvalidDependencyVersionException;
 
 import de.tarent.maven.plugins.pkg.AbstractPackagingMojo;
 import de.tarent.maven.plugins.pkg.AuxFile;
+import de.tarent.maven.plugins.pkg.InstalledSize;
+import de.tarent.maven.plugins.pkg.InstalledSize.Category;
 import de.tarent.maven.plugins.pkg.JarFile;
 import de.tarent.maven.plugins.pkg.Packaging;
 import de.tarent.maven.plugins.pkg.Path;
+import de.tarent.maven.plugins.pkg.StagingMode;
 import de.tarent.maven.plugins.pkg.TargetConfiguration;
 import de.tarent.maven.plugins.pkg.Utils;
 import de.tarent.maven.plugins.pkg.generator.WrapperScriptGenerator;
-import de.tarent.maven.plugins.pkg.map.Entry;
+import de.tarent.maven.plugins.pkg.map.DependencyClassification;
 import de.tarent.maven.plugins.pkg.map.PackageMap;
-import de.tarent.maven.plugins.pkg.map.Visitor;
+import de.tarent.maven.plugins.pkg.metrics.Metrics;
 
 /**
  * The <code>Helper</code> class mainly provides task oriented methods which can
@@ -242,6 +241,38 @@ public class Helper {
 
 	private File targetSBinDir;
 
+	/**
+	 * The dependencies for which {@link #classification} was made.
+	 */
+	private Set<Artifact> classifiedDependencies;
+
+	/**
+	 * Result of the last dependency classification. It is shared between
+	 * {@link #bundleDependencies}, {@link #createClasspathLine} and
+	 * {@link #createDependencyLine} so that the package map is consulted only
+	 * once per set of dependencies.
+	 */
+	private DependencyClassification classification;
+
+	/**
+	 * Accounts the disk space of all files which are put into the package.
+	 */
+	private InstalledSize installedSize = new InstalledSize();
+
+	/**
+	 * Returns the disk space of the files put into the package so far broken
+	 * down by their kind.
+	 * 
+	 * @return
+	 */
+	public InstalledSize getInstalledSize() {
+		return installedSize;
+	}
+
+	public void setInstalledSize(InstalledSize installedSize) {
+		this.installedSize = installedSize;
+	}
+
 	public void setChosenDistro(String chosenDistro) {
 		this.chosenDistro = chosenDistro;
 	}
@@ -445,7 +476,14 @@ public class Helper {
 	 */
 	public long copyArtifacts(Set<Artifact> artifacts)
 			throws MojoExecutionException {
-		return Utils.copyArtifacts(l, artifacts, getDstBundledJarDir());
+		Metrics.enter(Metrics.Phase.STAGING);
+		try {
+			return Metrics.staged(installedSize.add(Category.JARS, Utils
+					.copyArtifacts(l, artifacts, getDstBundledJarDir(),
+							apm.getStagingMode())));
+		} finally {
+			Metrics.exit();
+		}
 	}
 
 	/**
@@ -465,31 +503,50 @@ public class Helper {
 	 * @throws MojoExecutionException
 	 */
 	public long copyFiles() throws MojoExecutionException {
+		Metrics.enter(Metrics.Phase.STAGING);
+		try {
+			return Metrics.staged(stageFiles());
+		} finally {
+			Metrics.exit();
+		}
+	}
+
+	private long stageFiles() throws MojoExecutionException {
+		StagingMode mode = apm.getStagingMode();
 		long size = 0;
-		size += Utils.copyFiles(l, getSrcAuxFilesDir(), getDstAuxDir(),
-				targetConfiguration.getAuxFiles(), "aux file");
+		size += installedSize.add(Category.DATA, Utils.copyFiles(l,
+				getSrcAuxFilesDir(), getDstAuxDir(),
+				targetConfiguration.getAuxFiles(), "aux file", false, mode));
 
-		size += Utils.copyFiles(l, getSrcBinFilesDir(), getDstBinDir(),
-				targetConfiguration.getBinFiles(), "bin file", true);
+		size += installedSize.add(Category.DATA, Utils.copyFiles(l,
+				getSrcBinFilesDir(), getDstBinDir(),
+				targetConfiguration.getBinFiles(), "bin file", true, mode));
 
-		size += Utils.copyFiles(l, getSrcSBinFilesDir(), getDstSBinDir(),
-				targetConfiguration.getSBinFiles(), "sbin file", true);
+		size += installedSize.add(Category.DATA, Utils.copyFiles(l,
+				getSrcSBinFilesDir(), getDstSBinDir(),
+				targetConfiguration.getSBinFiles(), "sbin file", true, mode));
 
-		size += Utils.copyFiles(l, getSrcSysconfFilesDir(), getDstSysconfDir(),
-				targetConfiguration.getSysconfFiles(), "sysconf file");
+		size += installedSize.add(Category.SYSCONF, Utils.copyFiles(l,
+				getSrcSysconfFilesDir(), getDstSysconfDir(),
+				targetConfiguration.getSysconfFiles(), "sysconf file", false,
+				mode));
 
-		size += Utils.copyFiles(l, getSrcDatarootFilesDir(),
-				getDstDatarootDir(), targetConfiguration.getDatarootFiles(),
-				"dataroot file");
+		size += installedSize.add(Category.DATA, Utils.copyFiles(l,
+				getSrcDatarootFilesDir(), getDstDatarootDir(),
+				targetConfiguration.getDatarootFiles(), "dataroot file",
+				false, mode));
 
-		size += Utils.copyFiles(l, getSrcDataFilesDir(), getDstDataDir(),
-				targetConfiguration.getDataFiles(), "data file");
+		size += installedSize.add(Category.DATA, Utils.copyFiles(l,
+				getSrcDataFilesDir(), getDstDataDir(),
+				targetConfiguration.getDataFiles(), "data file", false, mode));
 
-		size += Utils.copyFiles(l, getSrcJNIFilesDir(), getDstJNIDir(),
-				targetConfiguration.getJniFiles(), "JNI library");
+		size += installedSize.add(Category.JNI, Utils.copyFiles(l,
+				getSrcJNIFilesDir(), getDstJNIDir(),
+				targetConfiguration.getJniFiles(), "JNI library", false, mode));
 
-		size += Utils.copyFiles(l, getSrcJarFilesDir(), getDstBundledJarDir(),
-				targetConfiguration.getJarFiles(), "jar file");
+		size += installedSize.add(Category.JARS, Utils.copyFiles(l,
+				getSrcJarFilesDir(), getDstBundledJarDir(),
+				targetConfiguration.getJarFiles(), "jar file", false, mode));
 
 		return size;
 	}
@@ -507,8 +564,18 @@ public class Helper {
 	 * @throws MojoExecutionException
 	 */
 	public long copyScripts() throws MojoExecutionException {
+		Metrics.enter(Metrics.Phase.STAGING);
+		try {
+			return Metrics.staged(stageScripts());
+		} finally {
+			Metrics.exit();
+		}
+	}
+
+	private long stageScripts() throws MojoExecutionException {
 		final File dir = getDstScriptDir();
 		long bytesCopied = 0;
+		boolean cds = isClassDataSharing();
 
 		if (targetConfiguration.getPreinstScript() != null) {
 			bytesCopied += writeScript(
@@ -517,17 +584,17 @@ public class Helper {
 							.getPreinstScript()), new File(dir, "preinst"),
 					this);
 		}
-		if (targetConfiguration.getPrermScript() != null) {
-			bytesCopied += writeScript("pre-remove", new File(
-					getSrcAuxFilesDir(), targetConfiguration.getPrermScript()),
-					new File(dir, "prerm"), this);
+		if (targetConfiguration.getPrermScript() != null || cds) {
+			bytesCopied += writeScript("pre-remove",
+					getSrcScriptFile(targetConfiguration.getPrermScript()),
+					new File(dir, "prerm"), this,
+					cds ? createCdsRemoveCommands() : null);
 		}
-		if (targetConfiguration.getPostinstScript() != null) {
-			bytesCopied += writeScript(
-					"post-install",
-					new File(getSrcAuxFilesDir(), targetConfiguration
-							.getPostinstScript()), new File(dir, "postinst"),
-					this);
+		if (targetConfiguration.getPostinstScript() != null || cds) {
+			bytesCopied += writeScript("post-install",
+					getSrcScriptFile(targetConfiguration.getPostinstScript()),
+					new File(dir, "postinst"), this,
+					cds ? createCdsConfigureCommands() : null);
 		}
 		if (targetConfiguration.getPostrmScript() != null) {
 			bytesCopied += writeScript(
@@ -535,7 +602,100 @@ public class Helper {
 					new File(getSrcAuxFilesDir(), targetConfiguration
 							.getPostrmScript()), new File(dir, "postrm"), this);
 		}
-		return bytesCopied;
+		return installedSize.add(Category.SCRIPTS, bytesCopied);
+	}
+
+	private File getSrcScriptFile(String script) {
+		return script != null ? new File(getSrcAuxFilesDir(), script) : null;
+	}
+
+	/**
+	 * Returns whether a class data sharing archive is created for the
+	 * application. This needs a start script and thus a main class.
+	 * 
+	 * @return
+	 */
+	public boolean isClassDataSharing() {
+		return targetConfiguration.isClassDataSharing()
+				&& targetConfiguration.getMainClass() != null;
+	}
+
+	/**
+	 * Returns the location of the class data sharing archive on the target
+	 * system. It is put next to the bundled jars.
+	 * 
+	 * @return
+	 */
+	public File getTargetCdsArchiveFile() {
+		return new File(getTargetBundledJarDir(), getPackageName() + ".jsa");
+	}
+
+	/**
+	 * Returns the post-install commands which create the class data sharing
+	 * archive. The archive depends on the VM and on the location of the jars,
+	 * so it can only be created on the target system. For this the start
+	 * script is run once with the training arguments. Failures (e.g. a VM
+	 * older than Java 13) only mean that the application starts without the
+	 * archive.
+	 * 
+	 * @return
+	 */
+	public String createCdsInstallCommands() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("# Creates the class data sharing archive for the installed VM.\n");
+		sb.append("cds_archive=\"").append(getTargetCdsArchiveFile())
+				.append("\"\n");
+		sb.append("rm -f \"$cds_archive\"\n");
+		sb.append("cds_timeout=\n");
+		sb.append("if command -v timeout >/dev/null 2>&1; then\n");
+		sb.append("\tcds_timeout=\"timeout 120\"\n");
+		sb.append("fi\n");
+		sb.append("VMARGS=\"-XX:ArchiveClassesAtExit=$cds_archive\" $cds_timeout \"")
+				.append(getTargetWrapperScriptFile()).append("\" ")
+				.append(targetConfiguration.getCdsTrainingArguments())
+				.append(" </dev/null >/dev/null 2>&1 || true\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the post-install commands which create the class data sharing
+	 * archive for Debian-style maintainer scripts. Those are also run with
+	 * <code>abort-upgrade</code>, <code>abort-remove</code> and
+	 * <code>abort-deconfigure</code>, so the application is only started on
+	 * <code>configure</code>. RPM's <code>%post</code> is run on installation
+	 * and upgrade only and uses {@link #createCdsInstallCommands()} directly.
+	 * 
+	 * @return
+	 */
+	public String createCdsConfigureCommands() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("case \"$1\" in\n");
+		sb.append("\tconfigure)\n");
+		for (String line : createCdsInstallCommands().split("\n")) {
+			sb.append("\t\t").append(line).append('\n');
+		}
+		sb.append("\t\t;;\n");
+		sb.append("esac\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the pre-removal commands which delete the class data sharing
+	 * archive as it is not known to the package manager. Upgrades keep it
+	 * (Debian: "upgrade", RPM: 1) as the new version's post-install
+	 * commands, which RPM runs before these, create it anew.
+	 * 
+	 * @return
+	 */
+	public String createCdsRemoveCommands() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("# Removes the class data sharing archive.\n");
+		sb.append("case \"$1\" in\n");
+		sb.append("\tupgrade|failed-upgrade|1) ;;\n");
+		sb.append("\t*) rm -f \"").append(getTargetCdsArchiveFile())
+				.append("\" ;;\n");
+		sb.append("esac\n");
+		return sb.toString();
 	}
 
 	/**
@@ -579,6 +739,16 @@ public class Helper {
 	 */
 	public void generateWrapperScript(Path bcp, Path classpath, boolean windows)
 			throws MojoExecutionException {
+		Metrics.enter(Metrics.Phase.GENERATION);
+		try {
+			writeWrapperScript(classpath, windows);
+		} finally {
+			Metrics.exit();
+		}
+	}
+
+	private void writeWrapperScript(Path classpath, boolean windows)
+			throws MojoExecutionException {
 		WrapperScriptGenerator gen = new WrapperScriptGenerator();
 		gen.setMaxJavaMemory(targetConfiguration.getMaxJavaMemory());
 
@@ -594,10 +764,14 @@ public class Helper {
 		if (targetConfiguration.isAotCompile()) {
 			gen.setClassmapFile("/var/lib/gcj-4.1/classmap.db");
 		}
+		if (isClassDataSharing()) {
+			gen.setCdsArchiveFile(getTargetCdsArchiveFile().toString());
+		}
 		if (targetConfiguration.isAdvancedStarter()) {
 			l.info("setting up advanced starter");
 			Utils.setupStarter(l, targetConfiguration.getMainClass(),
-					getDstStarterDir(), classpath);
+					getDstStarterDir(), classpath,
+					createStagedClasspathEntries(classpath));
 
 			// Sets main class and classpath for the wrapper script.
 			gen.setMainClass("_Starter");
@@ -637,6 +811,30 @@ public class Helper {
 
 	}
 
+	/**
+	 * Maps the classpath entries which are part of this package to the
+	 * locations they have been staged at, so that their classes can be
+	 * indexed.
+	 * 
+	 * @param classpath
+	 * @return
+	 */
+	Map<String, File> createStagedClasspathEntries(Path classpath) {
+		Map<String, File> staged = new HashMap<String, File>();
+		String artifact = getTargetArtifactFile().toString();
+		String bundledJarDir = getTargetBundledJarDir().toString() + "/";
+
+		for (String e : classpath) {
+			if (e.equals(artifact)) {
+				staged.put(e, getDstArtifactFile());
+			} else if (e.startsWith(bundledJarDir)) {
+				staged.put(e, new File(getDstBundledJarDir(), e
+						.substring(bundledJarDir.length())));
+			}
+		}
+		return staged;
+	}
+
 	public String getAotPackageName() {
 		if (aotPackageName == null) {
 			aotPackageName = Utils.gcjise(getArtifactId(),
@@ -1183,6 +1381,22 @@ public class Helper {
 
 	protected final long writeScript(String item, File srcScriptFile,
 			File dstScriptFile, Helper ph) throws MojoExecutionException {
+		return writeScript(item, srcScriptFile, dstScriptFile, ph, null);
+	}
+
+	/**
+	 * Writes a maintainer script which starts with variables describing the
+	 * package, followed by the given generated commands (if any) and the
+	 * content of the given script file (if any).
+	 * 
+	 * <p>
+	 * The generated commands come first so that they are run even if the
+	 * script file ends with an <code>exit</code>.
+	 * </p>
+	 */
+	protected final long writeScript(String item, File srcScriptFile,
+			File dstScriptFile, Helper ph, String generatedCommands)
+			throws MojoExecutionException {
 		Utils.createFile(dstScriptFile, item + " file");
 		// Write a #/bin/sh header
 
@@ -1218,14 +1432,21 @@ public class Helper {
 					+ "\"");
 			writer.println("packaging=\"" + packageMap.getPackaging() + "\"");
 			writer.println();
-			writer.println("# What follows is the content script file "
-					+ srcScriptFile.getName());
-			writer.println();
+			if (generatedCommands != null) {
+				writer.println(generatedCommands);
+			}
 
-			// Now append the real script
-			IOUtils.copy(new FileInputStream(srcScriptFile), writer);
+			if (srcScriptFile != null) {
+				writer.println("# What follows is the content script file "
+						+ srcScriptFile.getName());
+				writer.println();
 
-			return dstScriptFile.length();
+				// Now append the real script
+				IOUtils.copy(new FileInputStream(srcScriptFile), writer);
+			}
+			writer.flush();
+
+			return InstalledSize.round(dstScriptFile.length());
 		} catch (IOException ioe) {
 			throw new MojoExecutionException(
 					"IO error while writing the script file " + dstScriptFile,
@@ -1256,108 +1477,17 @@ public class Helper {
 	protected final void createClasspathLine(final Log l,
 			final File targetJarPath, final Path bcp, final Path cp,
 			File targetArtifactFile) throws MojoExecutionException {
-		// final Set<Artifact> bundled = new HashSet<Artifact>();
-
-		l.info("resolving dependency artifacts");
+		// If all dependencies should be bundled skip adding them to the
+		// classpath thereby overriding what was configured through property
+		// files.
+		if (!targetConfiguration.isIgnoreDependencies()
+				&& !targetConfiguration.isBundleAll()) {
+			DependencyClassification dc = classifyDependencies(resolveProjectDependencies());
 
-		Set<Artifact> dependencies = new HashSet<Artifact>();
-		try {
-			// Notice only compilation dependencies which are Jars.
-			// Shared Libraries ("so") are filtered out because the
-			// JNI dependency is solved by the system already.
-
-			// Here a filter for depencies of the COMPILE scope is created
-			AndArtifactFilter compileFilter = new AndArtifactFilter();
-			compileFilter.add(new ScopeArtifactFilter(Artifact.SCOPE_COMPILE));
-			compileFilter.add(new TypeArtifactFilter("jar"));
-
-			// The result of the COMPILE filter will be added to the depencies
-			// set
-			dependencies.addAll(Utils.findArtifacts(compileFilter, apm
-					.getFactory(), apm.getResolver(), apm.getProject(), apm
-					.getProject().getArtifact(), apm.getLocalRepo(), apm
-					.getRemoteRepos(), apm.getMetadataSource()));
-
-			// Here a filter for depencies of the RUNTIME scope is created
-			AndArtifactFilter runtimeFilter = new AndArtifactFilter();
-			runtimeFilter.add(new ScopeArtifactFilter(Artifact.SCOPE_RUNTIME));
-			runtimeFilter.add(new TypeArtifactFilter("jar"));
-
-			// The result of the RUNTIME filter will be added to the depencies
-			// set
-			dependencies.addAll(Utils.findArtifacts(runtimeFilter, apm
-					.getFactory(), apm.getResolver(), apm.getProject(), apm
-					.getProject().getArtifact(), apm.getLocalRepo(), apm
-					.getRemoteRepos(), apm.getMetadataSource()));
-
-			// Here a filter for depencies of the PROVIDED scope is created
-			AndArtifactFilter providedFilter = new AndArtifactFilter();
-			providedFilter
-					.add(new ScopeArtifactFilter(Artifact.SCOPE_PROVIDED));
-			providedFilter.add(new TypeArtifactFilter("jar"));
-
-			// The result of the PROVIDED filter will be added to the depencies
-			// set
-			dependencies.addAll(Utils.findArtifacts(providedFilter, apm
-					.getFactory(), apm.getResolver(), apm.getProject(), apm
-					.getProject().getArtifact(), apm.getLocalRepo(), apm
-					.getRemoteRepos(), apm.getMetadataSource()));
-
-		} catch (ArtifactNotFoundException anfe) {
-			throw new MojoExecutionException(
-					"Exception while resolving dependencies", anfe);
-		} catch (InvalidDependencyVersionException idve) {
-			throw new MojoExecutionException(
-					"Exception while resolving dependencies", idve);
-		} catch (ProjectBuildingException pbe) {
-			throw new MojoExecutionException(
-					"Exception while resolving dependencies", pbe);
-		} catch (ArtifactResolutionException are) {
-			throw new MojoExecutionException(
-					"Exception while resolving dependencies", are);
+			appendAll(bcp, dc.getBootClasspath());
+			appendAll(cp, dc.getClasspath());
 		}
 
-		Visitor v = new Visitor() {
-			public void bundle(Artifact artifact) {
-				// Nothing to do here. bundleDependencies should take care of
-				// this.
-
-			}
-
-			public void visit(Artifact artifact, Entry entry) {
-				// If all dependencies should be bundled skip adding them to the
-				// classpath
-				// thereby overriding what was configured through property
-				// files.
-				if (targetConfiguration.isBundleAll()) {
-					return;
-				}
-
-				Path b = (entry.isBootClasspath) ? bcp : cp;
-
-				Iterator<String> ite = entry.jarFileNames.iterator();
-				while (ite.hasNext()) {
-					StringBuilder sb = new StringBuilder();
-					String fileName = ite.next();
-
-					// Prepend default Jar path if file is not absolute.
-					if (fileName.charAt(0) != '/') {
-						sb.append(packageMap.getDefaultJarPath());
-						sb.append("/");
-					}
-
-					sb.append(fileName);
-
-					b.append(sb.toString());
-				}
-			}
-
-		};
-
-        if (!targetConfiguration.isIgnoreDependencies()) {
-            packageMap.iterateDependencyArtifacts(l, dependencies, v, true);
-        }
-
 		// Add the custom jar files to the classpath
 		for (Iterator<JarFile> ite = targetConfiguration.getJarFiles()
 				.iterator(); ite.hasNext();) {
@@ -1405,69 +1535,39 @@ public class Helper {
 			final Path bcp, final Path cp, File targetArtifactFile)
 			throws MojoExecutionException {
 
-		final Set<Artifact> bundled = new HashSet<Artifact>();
-
 		l.info("Copying dependencies into package");
 
-		Visitor v = new Visitor() {
-			public void bundle(Artifact artifact) {
-				// Put to artifacts which will be bundled (allows copying and
-				// filesize
-				// summing later).
-				bundled.add(artifact);
-
-				// TODO: Perhaps one want a certain bundled dependency in boot
-				// classpath.
-
-				// Bundled Jars will always live in targetJarPath
-				File file = artifact.getFile();
-				if (file != null) {
-					cp.append(targetJarPath.toString() + "/" + file.getName());
-				} else {
-					l.warn("Cannot bundle artifact " + artifact.getArtifactId());
-				}
-			}
-
-			public void visit(Artifact artifact, Entry entry) {
-
-				/**
-				 * Only if we wish to bundle dependency artifacts we will do so
-				 */
-				if (targetConfiguration.isBundleDependencyArtifacts()) {
+		DependencyClassification dc = classifyDependencies(resolvedDependencies);
 
-					// If all dependencies should be bundled take a short-cut to
-					// bundle()
-					// thereby overriding what was configured through property
-					// files.
-					if (targetConfiguration.isBundleAll()) {
-						bundle(artifact);
-						return;
-					}
+		// Put to artifacts which will be bundled (allows copying and filesize
+		// summing later).
+		final Set<Artifact> bundled = new LinkedHashSet<Artifact>(
+				dc.getBundled());
 
-					Path b = (entry.isBootClasspath) ? bcp : cp;
-
-					Iterator<String> ite = entry.jarFileNames.iterator();
-
-					while (ite.hasNext()) {
-						StringBuilder sb = new StringBuilder();
-						String fileName = ite.next();
-
-						// Prepend default Jar path if file is not absolute.
-						if (fileName.charAt(0) != '/') {
-							sb.append(packageMap.getDefaultJarPath());
-							sb.append("/");
-						}
-
-						sb.append(fileName);
-
-						b.append(sb.toString());
-					}
-				}
+		// Only if we wish to bundle dependency artifacts we will do so
+		if (targetConfiguration.isBundleDependencyArtifacts()) {
+			// If all dependencies should be bundled the packaged ones are
+			// bundled as well thereby overriding what was configured through
+			// property files.
+			if (targetConfiguration.isBundleAll()) {
+				bundled.addAll(dc.getPackaged());
+			} else {
+				appendAll(bcp, dc.getBootClasspath());
+				appendAll(cp, dc.getClasspath());
 			}
+		}
 
-		};
-
-		packageMap.iterateDependencyArtifacts(l, resolvedDependencies, v, true);
+		// TODO: Perhaps one want a certain bundled dependency in boot
+		// classpath.
+		for (Artifact artifact : bundled) {
+			// Bundled Jars will always live in targetJarPath
+			File file = artifact.getFile();
+			if (file != null) {
+				cp.append(targetJarPath.toString() + "/" + file.getName());
+			} else {
+				l.warn("Cannot bundle artifact " + artifact.getArtifactId());
+			}
+		}
 
 		// Add the custom jar files to the classpath
 		for (Iterator<JarFile> ite = targetConfiguration.getJarFiles()
@@ -1485,6 +1585,34 @@ public class Helper {
 		return bundled;
 	}
 
+	/**
+	 * Sorts the given dependencies by means of the package map. The result is
+	 * kept and handed out again as long as the same dependencies are given.
+	 * 
+	 * @param dependencies
+	 * @return
+	 */
+	public DependencyClassification classifyDependencies(
+			Set<Artifact> dependencies) {
+		if (classification == null
+				|| !dependencies.equals(classifiedDependencies)) {
+			Metrics.enter(Metrics.Phase.MAP_CLASSIFICATION);
+			try {
+				classification = packageMap.classify(l, dependencies);
+			} finally {
+				Metrics.exit();
+			}
+			classifiedDependencies = new HashSet<Artifact>(dependencies);
+		}
+		return classification;
+	}
+
+	private static void appendAll(Path path, List<String> entries) {
+		for (String entry : entries) {
+			path.append(entry);
+		}
+	}
+
 	/**
 	 * Creates the "Conflicts"-line for the package control file
 	 * 
@@ -1495,65 +1623,21 @@ public class Helper {
 		return createPackageLine(targetConfiguration.getConflicts());
 	}
 
+	/**
+	 * Returns the project's Jar dependencies of the compile, runtime and
+	 * provided scope.
+	 * 
+	 * <p>
+	 * The dependencies are resolved only once per mojo execution and shared
+	 * among all target configurations.
+	 * </p>
+	 * 
+	 * @return
+	 * @throws MojoExecutionException
+	 */
 	public Set<Artifact> resolveProjectDependencies()
 			throws MojoExecutionException {
-		Set<Artifact> resolvedDeps = new HashSet<Artifact>();
-		try {
-			// Notice only compilation dependencies which are Jars.
-			// Shared Libraries ("so") are filtered out because the
-			// JNI dependency is solved by the system already.
-
-			// Here a filter for depencies of the COMPILE scope is created
-			AndArtifactFilter compileFilter = new AndArtifactFilter();
-			compileFilter.add(new ScopeArtifactFilter(Artifact.SCOPE_COMPILE));
-			compileFilter.add(new TypeArtifactFilter("jar"));
-
-			// The result of the COMPILE filter will be added to the depencies
-			// set
-			resolvedDeps.addAll(Utils.findArtifacts(compileFilter, apm
-					.getFactory(), apm.getResolver(), apm.getProject(), apm
-					.getProject().getArtifact(), apm.getLocalRepo(), apm
-					.getRemoteRepos(), apm.getMetadataSource()));
-
-			// Here a filter for depencies of the RUNTIME scope is created
-			AndArtifactFilter runtimeFilter = new AndArtifactFilter();
-			runtimeFilter.add(new ScopeArtifactFilter(Artifact.SCOPE_RUNTIME));
-			runtimeFilter.add(new TypeArtifactFilter("jar"));
-
-			// The result of the RUNTIME filter will be added to the depencies
-			// set
-			resolvedDeps.addAll(Utils.findArtifacts(runtimeFilter, apm
-					.getFactory(), apm.getResolver(), apm.getProject(), apm
-					.getProject().getArtifact(), apm.getLocalRepo(), apm
-					.getRemoteRepos(), apm.getMetadataSource()));
-
-			// Here a filter for depencies of the PROVIDED scope is created
-			AndArtifactFilter providedFilter = new AndArtifactFilter();
-			providedFilter
-					.add(new ScopeArtifactFilter(Artifact.SCOPE_PROVIDED));
-			providedFilter.add(new TypeArtifactFilter("jar"));
-
-			// The result of the PROVIDED filter will be added to the depencies
-			// set
-			resolvedDeps.addAll(Utils.findArtifacts(providedFilter, apm
-					.getFactory(), apm.getResolver(), apm.getProject(), apm
-					.getProject().getArtifact(), apm.getLocalRepo(), apm
-					.getRemoteRepos(), apm.getMetadataSource()));
-		} catch (ArtifactNotFoundException anfe) {
-			throw new MojoExecutionException(
-					"Exception while resolving dependencies", anfe);
-		} catch (InvalidDependencyVersionException idve) {
-			throw new MojoExecutionException(
-					"Exception while resolving dependencies", idve);
-		} catch (ProjectBuildingException pbe) {
-			throw new MojoExecutionException(
-					"Exception while resolving dependencies", pbe);
-		} catch (ArtifactResolutionException are) {
-			throw new MojoExecutionException(
-					"Exception while resolving dependencies", are);
-		}
-
-		return resolvedDeps;
+		return apm.getProjectDependencies(null);
 	}
 
 	/**
@@ -1617,36 +1701,12 @@ public class Helper {
 		// Add default system dependencies for Java packages.
 		line.append(defaults);
 
-		// Visitor implementation which creates the dependency line.
-		Visitor v = new Visitor() {
-			Set<String> processedDeps = new HashSet<String>();
-
-			public void bundle(Artifact _) {
-				// Nothing to do here. bundleDependencies should take care of
-				// this.
-			}
-
-			public void visit(Artifact artifact, Entry entry) {
-				// Certain Maven Packages have only one package in the target
-				// system.
-				// If that one was already added we should not add it any more.
-				if (processedDeps.contains(entry.dependencyLine)) {
-					return;
-				}
-				if (entry.dependencyLine.length() == 0) {
-					l.warn("Invalid package name for artifact: "
-							+ entry.artifactSpec);
-				}
+		if (!targetConfiguration.isIgnoreDependencies()) {
+			DependencyClassification dc = classifyDependencies(resolvedDependencies);
+			for (String dependency : dc.getDependencyLine()) {
 				line.append(", ");
-				line.append(entry.dependencyLine);
-
-				// Mark as included dependency.
-				processedDeps.add(entry.dependencyLine);
+				line.append(dependency);
 			}
-		};
-
-		if (!targetConfiguration.isIgnoreDependencies()) {
-		    packageMap.iterateDependencyArtifacts(l, resolvedDependencies, v, true);
 		}
 
 		return Utils
@@ -1750,8 +1810,14 @@ public class Helper {
 	 */
 	public long copyProjectArtifact() throws MojoExecutionException {
 		if (!packagingTypeBelongsToIgnoreList()) {
-			return Utils.copyProjectArtifact(l, getSrcArtifactFile(),
-					getDstArtifactFile());
+			Metrics.enter(Metrics.Phase.STAGING);
+			try {
+				return Metrics.staged(installedSize.add(Category.JARS, Utils
+						.copyProjectArtifact(l, getSrcArtifactFile(),
+								getDstArtifactFile(), apm.getStagingMode())));
+			} finally {
+				Metrics.exit();
+			}
 		} else {
 			l.info("Packaging type for this project has been found in the packageTypeIngore list. "
 					+ "No main artifact will be bundled.");
@@ -1776,75 +1842,35 @@ public class Helper {
 	}
 
 	/**
-	 * Creates a .rpmmacros file in the users home directory in order to be able
-	 * to specify a Build Area other than the user's home.
+	 * Returns the <code>--define</code> arguments which make
+	 * <code>rpmbuild</code> use the Build Area of this helper instead of the
+	 * one in the user's home directory.
 	 * 
-	 * If a .rpmmacros file already exists will be backed up. This file can be
-	 * restored using {@link #restorerpmmacrosfile}.
+	 * <p>
+	 * The macros are given on the command line of every invocation, so that
+	 * neither the user's <code>.rpmmacros</code> file is touched nor
+	 * concurrent builds interfere with each other.
+	 * </p>
 	 * 
-	 * @param l
-	 * @param basedirectory
-	 * @throws IOException
+	 * @return
 	 * @throws MojoExecutionException
 	 */
-	public void createRpmMacrosFile() throws IOException,
-			MojoExecutionException {
-		String userHome = System.getProperty("user.home");
-		File original = new File(userHome + "/.rpmmacros");
-
-		if (original.exists()) {
+	public List<String> getRpmMacroDefinitions() throws MojoExecutionException {
+		List<String> args = new ArrayList<String>();
+		String topDir = getBasePkgDir().getAbsolutePath();
+		args.add("--define");
+		args.add("_topdir " + topDir);
+		args.add("--define");
+		args.add("_tmppath " + topDir);
+
+		if (targetConfiguration.getMaintainer() != null) {
 			if (l != null) {
-				l.info("File " + userHome
-						+ "/.rpmmacros found. Creating back-up.");
+				l.info("Maintainer found, its name could be used to sign the RPM.");
 			}
-			File backup = new File(userHome + "/.rpmmacros_bck");
-			FileUtils.copyFile(original, backup);
-		}
-		original.delete();
-		if (!original.exists()) {
-			if (l != null) {
-				l.info("Creating " + userHome + "/.rpmmacros file.");
-			}
-			PrintWriter p = new PrintWriter(original);
-			p.print("%_topdir       ");
-			p.println(getBasePkgDir().getAbsolutePath());
-			p.print("%tmppath       ");
-			p.println(getBasePkgDir().getAbsolutePath());
-
-			if (targetConfiguration.getMaintainer() != null) {
-				if (l != null) {
-					l.info("Maintainer found, its name could be used to sign the RPM.");
-				}
-				p.print("%_gpg_name       ");
-				p.println(targetConfiguration.getMaintainer());
-			}
-
-			p.close();
-		}
-	}
-
-	/**
-	 * 
-	 * Removes the new macros file and restores the backup created by
-	 * {@link #createrpmmacrosfile}
-	 * 
-	 * @param l
-	 * @throws IOException
-	 */
-	public void restoreRpmMacrosFileBackup(Log l) throws IOException {
-		String userHome = System.getProperty("user.home");
-		File original = new File(userHome + "/.rpmmacros");
-		File backup = new File(userHome + "/.rpmmacros_bck");
-		if (backup.exists()) {
-			if (l != null) {
-				l.info("Restoring .rpmmacros backup file.");
-			}
-			if (original.delete()) {
-				FileUtils.copyFile(backup, original);
-			}
-		} else {
-			original.delete();
+			args.add("--define");
+			args.add("_gpg_name " + targetConfiguration.getMaintainer());
 		}
+		return args;
 	}
 
 	public List<AuxFile> generateFilelist() throws MojoExecutionException {
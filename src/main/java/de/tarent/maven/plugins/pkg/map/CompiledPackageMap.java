@@ -0,0 +1,197 @@
+package de.tarent.maven.plugins.pkg.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
+import org.apache.maven.artifact.versioning.VersionRange;
+
+import de.tarent.maven.plugins.pkg.exception.XMLParserException;
+
+/**
+ * Package maps in the binary form written by {@link PackageMapCompiler}.
+ *
+ * <p>
+ * The document starts with a table of contents which lists the offset and
+ * length of every distro. Only the distros which are asked for are decoded,
+ * so looking up a single distro and the ones it inherits from does not pay
+ * for all the others. Documents which are files are memory-mapped, documents
+ * inside a jar file are read into memory as a whole.
+ * </p>
+ */
+class CompiledPackageMap {
+
+	static final int MAGIC = 0x504b4d50; // "PKMP"
+
+	static final int VERSION = 1;
+
+	static final byte PLAIN_ENTRY = 0;
+
+	static final byte BUNDLE_ENTRY = 1;
+
+	static final byte IGNORE_ENTRY = 2;
+
+	private final URL url;
+
+	private final ByteBuffer buffer;
+
+	/**
+	 * Distro to offset and length of its data.
+	 */
+	private final Map<String, int[]> toc = new HashMap<String, int[]>();
+
+	CompiledPackageMap(URL url) throws XMLParserException {
+		this.url = url;
+		try {
+			buffer = load(url);
+
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException("not a compiled package map");
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new IOException("unsupported version " + version);
+			}
+			int count = buffer.getInt();
+			for (int i = 0; i < count; i++) {
+				String distro = readString(buffer);
+				toc.put(distro, new int[] { buffer.getInt(), buffer.getInt() });
+			}
+		} catch (IOException e) {
+			throw new XMLParserException("Error reading compiled package map "
+					+ url, e);
+		} catch (RuntimeException e) {
+			// Truncated documents show up as buffer underflows.
+			throw new XMLParserException("Compiled package map " + url
+					+ " is corrupt", e);
+		}
+	}
+
+	private static ByteBuffer load(URL url) throws IOException {
+		if ("file".equals(url.getProtocol())) {
+			File f = FileUtils.toFile(url);
+			RandomAccessFile raf = new RandomAccessFile(f, "r");
+			try {
+				// The mapping stays valid after the channel is closed.
+				return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+						raf.length());
+			} finally {
+				raf.close();
+			}
+		}
+
+		InputStream is = url.openStream();
+		try {
+			return ByteBuffer.wrap(IOUtils.toByteArray(is));
+		} finally {
+			is.close();
+		}
+	}
+
+	URL getURL() {
+		return url;
+	}
+
+	boolean contains(String distro) {
+		return toc.containsKey(distro);
+	}
+
+	/**
+	 * Decodes the given distro as it was written down, i.e. not merged with
+	 * the distro it inherits from. Every call returns a new instance.
+	 *
+	 * @param distro
+	 * @return the mapping or <code>null</code> if the distro is unknown
+	 * @throws XMLParserException
+	 */
+	Mapping read(String distro) throws XMLParserException {
+		int[] location = toc.get(distro);
+		if (location == null) {
+			return null;
+		}
+
+		// Every reader gets its own position.
+		ByteBuffer b = buffer.duplicate();
+		b.position(location[0]);
+		b.limit(location[0] + location[1]);
+
+		try {
+			Mapping m = new Mapping(distro);
+			m.label = readString(b);
+			m.parent = readString(b);
+			m.packaging = readString(b);
+			m.repoName = readString(b);
+			m.defaultBinPath = readString(b);
+			m.defaultSBinPath = readString(b);
+			m.defaultJarPath = readString(b);
+			m.defaultJNIPath = readString(b);
+			m.defaultDependencyLine = readString(b);
+			byte debianNaming = b.get();
+			m.debianNaming = debianNaming == -1 ? null : Boolean
+					.valueOf(debianNaming == 1);
+			m.hasNoPackages = b.get() != 0;
+
+			int entries = b.getInt();
+			for (int i = 0; i < entries; i++) {
+				m.putEntry(readEntry(b));
+			}
+			return m;
+		} catch (IOException e) {
+			throw new XMLParserException("Error reading distro " + distro
+					+ " from " + url, e);
+		} catch (RuntimeException e) {
+			throw new XMLParserException("Distro " + distro + " in " + url
+					+ " is corrupt", e);
+		}
+	}
+
+	private static Entry readEntry(ByteBuffer b) throws IOException {
+		String artifactSpec = readString(b);
+		String versionSpec = readString(b);
+		VersionRange versionRange = null;
+		if (versionSpec != null) {
+			try {
+				versionRange = VersionRange.createFromVersionSpec(versionSpec);
+			} catch (InvalidVersionSpecificationException e) {
+				throw new IOException("invalid version spec " + versionSpec);
+			}
+		}
+
+		switch (b.get()) {
+		case BUNDLE_ENTRY:
+			return Entry.createBundleEntry(artifactSpec, versionRange);
+		case IGNORE_ENTRY:
+			return Entry.createIgnoreEntry(artifactSpec, versionRange);
+		default:
+			String dependencyLine = readString(b);
+			boolean isBootClasspath = b.get() != 0;
+			int jars = b.getInt();
+			HashSet<String> jarFileNames = new HashSet<String>();
+			for (int i = 0; i < jars; i++) {
+				jarFileNames.add(readString(b));
+			}
+			return new Entry(artifactSpec, versionRange, dependencyLine,
+					jarFileNames, isBootClasspath);
+		}
+	}
+
+	private static String readString(ByteBuffer b) throws IOException {
+		int length = b.getInt();
+		if (length == -1) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		b.get(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
@@ -0,0 +1,165 @@
+package de.tarent.maven.plugins.pkg.map;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * Result of sorting a project's dependencies against a {@link PackageMap}.
+ *
+ * <p>
+ * Every dependency ends up either in the set of bundled artifacts, as an
+ * artifact that is provided by a package of the target distribution or not at
+ * all (ignored entries). For the packaged artifacts the Jar files (with the
+ * default Jar path already prepended to relative names) and the deduplicated
+ * parts of the dependency line are available.
+ * </p>
+ *
+ * <p>
+ * Instances are created by
+ * {@link PackageMap#classify(org.apache.maven.plugin.logging.Log, java.util.Collection)}
+ * and are immutable.
+ * </p>
+ */
+public final class DependencyClassification {
+
+	private final Set<Artifact> bundled;
+
+	private final Set<Artifact> packaged;
+
+	private final List<String> bootClasspath;
+
+	private final List<String> classpath;
+
+	private final List<String> dependencyLine;
+
+	private DependencyClassification(Set<Artifact> bundled,
+			Set<Artifact> packaged, List<String> bootClasspath,
+			List<String> classpath, List<String> dependencyLine) {
+		this.bundled = Collections.unmodifiableSet(bundled);
+		this.packaged = Collections.unmodifiableSet(packaged);
+		this.bootClasspath = Collections.unmodifiableList(bootClasspath);
+		this.classpath = Collections.unmodifiableList(classpath);
+		this.dependencyLine = Collections.unmodifiableList(dependencyLine);
+	}
+
+	/**
+	 * Returns the artifacts which have to be bundled with the application in
+	 * the order they were encountered.
+	 *
+	 * @return
+	 */
+	public Set<Artifact> getBundled() {
+		return bundled;
+	}
+
+	/**
+	 * Returns the artifacts which are provided by packages of the target
+	 * distribution.
+	 *
+	 * @return
+	 */
+	public Set<Artifact> getPackaged() {
+		return packaged;
+	}
+
+	/**
+	 * Returns the Jar files of the packaged artifacts which belong on the
+	 * boot classpath.
+	 *
+	 * @return
+	 */
+	public List<String> getBootClasspath() {
+		return bootClasspath;
+	}
+
+	/**
+	 * Returns the Jar files of the packaged artifacts which belong on the
+	 * classpath.
+	 *
+	 * @return
+	 */
+	public List<String> getClasspath() {
+		return classpath;
+	}
+
+	/**
+	 * Returns the dependency line fragments of the packaged artifacts. Every
+	 * fragment is contained only once.
+	 *
+	 * @return
+	 */
+	public List<String> getDependencyLine() {
+		return dependencyLine;
+	}
+
+	/**
+	 * {@link Visitor} which collects the classification while the
+	 * dependencies are iterated.
+	 */
+	static class Collector implements Visitor {
+
+		private final String defaultJarPath;
+
+		private final Set<Artifact> bundled = new LinkedHashSet<Artifact>();
+
+		private final Set<Artifact> packaged = new LinkedHashSet<Artifact>();
+
+		private final List<String> bootClasspath = new ArrayList<String>();
+
+		private final List<String> classpath = new ArrayList<String>();
+
+		private final Set<String> dependencyLine = new LinkedHashSet<String>();
+
+		private final List<Entry> invalid = new ArrayList<Entry>();
+
+		Collector(String defaultJarPath) {
+			this.defaultJarPath = defaultJarPath;
+		}
+
+		public void bundle(Artifact artifact) {
+			bundled.add(artifact);
+		}
+
+		public void visit(Artifact artifact, Entry entry) {
+			packaged.add(artifact);
+
+			List<String> l = entry.isBootClasspath ? bootClasspath : classpath;
+			for (String fileName : entry.jarFileNames) {
+				// Prepend default Jar path if file is not absolute.
+				if (fileName.charAt(0) != '/') {
+					l.add(defaultJarPath + "/" + fileName);
+				} else {
+					l.add(fileName);
+				}
+			}
+
+			// Certain Maven Packages have only one package in the target
+			// system. If that one was already added it is not added again.
+			if (dependencyLine.add(entry.dependencyLine)
+					&& entry.dependencyLine.length() == 0) {
+				invalid.add(entry);
+			}
+		}
+
+		/**
+		 * Returns the entries which were visited but have an empty
+		 * dependency line.
+		 *
+		 * @return
+		 */
+		List<Entry> getInvalidEntries() {
+			return invalid;
+		}
+
+		DependencyClassification create() {
+			return new DependencyClassification(bundled, packaged,
+					bootClasspath, classpath, new ArrayList<String>(
+							dependencyLine));
+		}
+	}
+}
@@ -69,6 +69,20 @@ class Mapping {
 
 	HashMap<String, HashSet<Entry>> entryMap = new HashMap<String, HashSet<Entry>>();
 
+	/**
+	 * Lookup structure for {@link #getEntry} (groupId to artifactId to
+	 * entries). It is created from {@link #entryMap} on first use and dropped
+	 * whenever an entry is added.
+	 */
+	private volatile Map<String, Map<String, VersionIndex>> index;
+
+	/**
+	 * Whether entries may still be added. Frozen mappings share their entry
+	 * sets with the mappings merged from them and can be handed out to any
+	 * number of threads.
+	 */
+	private volatile boolean frozen;
+
 	/**
 	 * Creates an empty mapping with the given distro name set.
 	 * 
@@ -84,9 +98,10 @@ class Mapping {
 	 * All properties from the child that are set are taken. The others are
 	 * taken from the parent.
 	 * 
-	 * In case of the mapping itself: The entries from the parent are cloned and
-	 * the ones from the child are added to it (possibly replacing existing
-	 * entries).
+	 * In case of the mapping itself: The entries from the parent are taken and
+	 * the ones from the child are added to them (possibly replacing existing
+	 * entries). Child, parent and the new mapping cannot be changed
+	 * afterwards.
 	 * 
 	 * @param child
 	 * @param parent
@@ -119,77 +134,112 @@ class Mapping {
 		defaultDependencyLine = (child.defaultDependencyLine != null) ? child.defaultDependencyLine
 				: parent.defaultDependencyLine;
 
-		// Make a deep copy of the entry map contents. Otherwise parent and
-		// 'this' would
-		// share the HashSet<Entry> instance causing damaging effects to the
-		// parent when stuff
-		// is changed in the child.
-		for (Map.Entry<String, HashSet<Entry>> e : parent.entryMap.entrySet()) {
-			HashSet<Entry> set = new HashSet<Entry>();
-			set.addAll(e.getValue());
-			entryMap.put(e.getKey(), set);
-		}
+		// The entry sets are shared with parent and child instead of being
+		// copied. Only the sets of artifacts which appear in both are created
+		// anew. Sharing is safe as all three mappings are frozen.
+		parent.freeze();
+		child.freeze();
+		entryMap.putAll(parent.entryMap);
 
 		for (Map.Entry<String, HashSet<Entry>> e : child.entryMap.entrySet()) {
-			HashSet<Entry> set = entryMap.get(e.getKey());
-			if (set == null) {
-				set = new HashSet<Entry>();
-				entryMap.put(e.getKey(), set);
+			HashSet<Entry> pset = entryMap.get(e.getKey());
+			HashSet<Entry> tset = e.getValue();
+			if (pset == null) {
+				entryMap.put(e.getKey(), tset);
+				continue;
 			}
 
 			// This part is tricky. We want to achieve that Entry instances from
 			// 'tset' (the child's Entry instances) replace those that are
-			// equivalent to
-			// those in 'set' (the ones inherited from parent). We assume that
-			// the child's
-			// instances are newer.
+			// equivalent to those in 'pset' (the ones inherited from parent).
+			// We assume that the child's instances are newer.
 			// Entry is coded in a way that only the artifactSpec and
-			// versionRange properties
-			// are needed to decide whether two instances are equal (same goes
-			// for hashCode()).
+			// versionRange properties are needed to decide whether two
+			// instances are equal (same goes for hashCode()).
 			//
 			// As such we do a remove operation first, which will delete the
-			// equivalent instances.
-			// Afterwards we add the whole set from child.
+			// equivalent instances. Afterwards we add the whole set from
+			// child.
 			//
 			// The addAll() implementation alone would not *replace* the
 			// existing instances.
-			HashSet<Entry> tset = e.getValue();
+			HashSet<Entry> set = new HashSet<Entry>(pset);
 			set.removeAll(tset);
 			set.addAll(tset);
-
+			entryMap.put(e.getKey(), set);
 		}
 
+		freeze();
 	}
 
+	/**
+	 * Returns the entry whose version range contains the given version. If
+	 * there is none the entry without a version range is returned or
+	 * <code>null</code> if that does not exist either.
+	 * 
+	 * @param groupId
+	 * @param artifactId
+	 * @param artifactVersion
+	 * @return
+	 */
 	Entry getEntry(String groupId, String artifactId,
 			ArtifactVersion artifactVersion) {
-		HashSet<Entry> entryList = entryMap.get(groupId + ":" + artifactId);
-		if (entryList == null) {
+		Map<String, Map<String, VersionIndex>> i = index;
+		if (i == null) {
+			index = i = createIndex();
+		}
+
+		Map<String, VersionIndex> artifacts = i.get(groupId);
+		if (artifacts == null) {
 			return null;
 		}
-		Entry unrangedCandidate = null;
-
-		for (Entry e : entryList) {
-			if (e.versionRange != null) {
-				if (e.versionRange.containsVersion(artifactVersion)) {
-					return e;
-				}
-			} else {
-				unrangedCandidate = e;
-			}
+		VersionIndex versions = artifacts.get(artifactId);
+		if (versions == null) {
+			return null;
 		}
 
-		return unrangedCandidate;
+		return versions.getEntry(artifactVersion);
 	}
 
 	void putEntry(Entry e) {
+		if (frozen) {
+			throw new IllegalStateException("mapping of " + distro
+					+ " cannot be changed anymore");
+		}
+
 		HashSet<Entry> list = entryMap.get(e.artifactSpec);
 		if (list == null) {
 			entryMap.put(e.artifactSpec, list = new HashSet<Entry>());
 		}
 
 		list.add(e);
+		index = null;
+	}
+
+	/**
+	 * Prevents further changes to the entries.
+	 */
+	void freeze() {
+		frozen = true;
+	}
+
+	private Map<String, Map<String, VersionIndex>> createIndex() {
+		Map<String, Map<String, VersionIndex>> i = new HashMap<String, Map<String, VersionIndex>>();
+
+		for (Map.Entry<String, HashSet<Entry>> e : entryMap.entrySet()) {
+			String spec = e.getKey();
+			int colon = spec.indexOf(':');
+			String groupId = spec.substring(0, Math.max(colon, 0));
+			String artifactId = spec.substring(colon + 1);
+
+			Map<String, VersionIndex> artifacts = i.get(groupId);
+			if (artifacts == null) {
+				i.put(groupId, artifacts = new HashMap<String, VersionIndex>());
+			}
+			artifacts.put(artifactId, VersionIndex.create(e.getValue()));
+		}
+
+		return i;
 	}
 
 }
\ No newline at end of file
@@ -77,7 +77,10 @@ import de.tarent.maven.plugins.pkg.exception.XMLParserException;
  * The package map is using at least one default XML document and can optionally
  * read in another document to supplement the first. The latter is done to
  * provide your own mappings without having to recompile the packaging plugin or
- * wait for another release.
+ * wait for another release. The default documents shipped with the plugin are
+ * compiled into a binary form when the plugin is built (see
+ * {@link PackageMapCompiler}), so that only the targeted distribution and its
+ * ancestors have to be read.
  * </p>
  * 
  * <p>
@@ -106,8 +109,8 @@ public class PackageMap {
 	 * between Maven artifacts and package names in the target distribution.
 	 * 
 	 * @param packageMapURL
-	 *            Location of the default package map XML document (must not be
-	 *            null or invalid).
+	 *            Location of the default package map XML document (null for
+	 *            the documents shipped with the plugin).
 	 * @param auxPackageMapURL
 	 *            Location of the supplemental package map XML document
 	 *            (optional, can be null)
@@ -124,13 +127,25 @@ public class PackageMap {
 			throws MojoExecutionException {
 		this.bundleOverrides = bundleOverrides;
 
-		if (packageMapURL == null) {
-			packageMapURL = PackageMap.class
-					.getResource("default-package-maps.xml");
-		}
 		try {
-			mapping = new Parser(packageMapURL, auxPackageMapURL)
-					.getMapping(distribution);
+			Parser parser;
+			// The shipped package maps are compiled when the plugin is built.
+			// They are only read from XML if that did not happen (e.g. when
+			// running from an IDE).
+			URL compiledURL = PackageMap.class
+					.getResource("default-package-maps.bin");
+			if (packageMapURL == null && compiledURL != null) {
+				parser = ParserCache.getCompiledParser(compiledURL,
+						auxPackageMapURL);
+			} else {
+				if (packageMapURL == null) {
+					packageMapURL = PackageMap.class
+							.getResource("default-package-maps.xml");
+				}
+				parser = ParserCache.getParser(packageMapURL,
+						auxPackageMapURL);
+			}
+			mapping = parser.getMapping(distribution);
 		} catch (XMLParserException pe) {
 			throw new MojoExecutionException("Package map creation failed", pe);
 		}
@@ -308,4 +323,29 @@ public class PackageMap {
 		}
 	}
 
+	/**
+	 * Sorts the given dependencies in a single pass into the ones which are
+	 * bundled and the ones which are provided by packages of the target
+	 * distribution.
+	 * 
+	 * <p>
+	 * Dependencies without an entry in the package map are bundled.
+	 * </p>
+	 * 
+	 * @param l
+	 * @param deps
+	 * @return
+	 */
+	public DependencyClassification classify(Log l, Collection<Artifact> deps) {
+		DependencyClassification.Collector c = new DependencyClassification.Collector(
+				getDefaultJarPath());
+		iterateDependencyArtifacts(l, deps, c, true);
+
+		for (Entry e : c.getInvalidEntries()) {
+			l.warn("Invalid package name for artifact: " + e.artifactSpec);
+		}
+
+		return c.create();
+	}
+
 }
@@ -0,0 +1,220 @@
+package de.tarent.maven.plugins.pkg.map;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.Restriction;
+import org.apache.maven.artifact.versioning.VersionRange;
+
+import de.tarent.maven.plugins.pkg.exception.XMLParserException;
+
+/**
+ * Translates a package maps XML document (including everything it includes)
+ * into the binary form read by {@link CompiledPackageMap}.
+ *
+ * <p>
+ * This runs while the plugin itself is built and turns the shipped
+ * <code>default-package-maps.xml</code> into
+ * <code>default-package-maps.bin</code>:
+ * </p>
+ *
+ * <pre>
+ * java de.tarent.maven.plugins.pkg.map.PackageMapCompiler &lt;xml&gt; &lt;bin&gt;
+ * </pre>
+ *
+ * <p>
+ * The distros are stored as they are written down in the documents, i.e. not
+ * merged with the distros they inherit from. That way a single distro can be
+ * read without touching the unrelated ones.
+ * </p>
+ */
+public final class PackageMapCompiler {
+
+	private PackageMapCompiler() {
+		// Intentionally empty.
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 2) {
+			System.err
+					.println("Usage: PackageMapCompiler <package-maps.xml> <package-maps.bin>");
+			System.exit(1);
+		}
+
+		File output = new File(args[1]);
+		compile(new File(args[0]), output);
+		System.out.println("Compiled package maps to " + output);
+	}
+
+	/**
+	 * Compiles the given package maps document into the given file.
+	 *
+	 * @param document
+	 * @param output
+	 * @throws XMLParserException
+	 * @throws IOException
+	 */
+	static void compile(File document, File output) throws XMLParserException,
+			IOException {
+		Parser parser = new Parser(document.toURI().toURL(), null);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		write(parser.mappings, bos);
+		FileUtils.writeByteArrayToFile(output, bos.toByteArray());
+	}
+
+	/**
+	 * Writes the given (not yet merged) mappings in the binary format.
+	 *
+	 * @param mappings
+	 * @param os
+	 * @throws IOException
+	 */
+	static void write(Map<String, Mapping> mappings, OutputStream os)
+			throws IOException {
+		List<String> distros = new ArrayList<String>(mappings.keySet());
+		Collections.sort(distros);
+
+		// The distros are serialized first, so that the offsets of the
+		// table of contents are known.
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(data);
+		int[] offsets = new int[distros.size()];
+		for (int i = 0; i < offsets.length; i++) {
+			offsets[i] = dos.size();
+			writeMapping(dos, mappings.get(distros.get(i)));
+		}
+		dos.flush();
+
+		ByteArrayOutputStream toc = new ByteArrayOutputStream();
+		DataOutputStream tos = new DataOutputStream(toc);
+		tos.writeInt(CompiledPackageMap.MAGIC);
+		tos.writeInt(CompiledPackageMap.VERSION);
+		tos.writeInt(distros.size());
+		for (String distro : distros) {
+			writeString(tos, distro);
+			// Offset and length are patched in below.
+			tos.writeInt(0);
+			tos.writeInt(0);
+		}
+		tos.flush();
+
+		int base = toc.size();
+		DataOutputStream out = new DataOutputStream(os);
+		byte[] header = toc.toByteArray();
+		int pos = 12;
+		for (int i = 0; i < offsets.length; i++) {
+			pos += 4 + distros.get(i).getBytes("UTF-8").length;
+			int end = (i + 1 < offsets.length) ? offsets[i + 1] : dos.size();
+			putInt(header, pos, base + offsets[i]);
+			putInt(header, pos + 4, end - offsets[i]);
+			pos += 8;
+		}
+		out.write(header);
+		data.writeTo(out);
+		out.flush();
+	}
+
+	private static void writeMapping(DataOutputStream dos, Mapping m)
+			throws IOException {
+		writeString(dos, m.label);
+		writeString(dos, m.parent);
+		writeString(dos, m.packaging);
+		writeString(dos, m.repoName);
+		writeString(dos, m.defaultBinPath);
+		writeString(dos, m.defaultSBinPath);
+		writeString(dos, m.defaultJarPath);
+		writeString(dos, m.defaultJNIPath);
+		writeString(dos, m.defaultDependencyLine);
+		dos.writeByte(m.debianNaming == null ? -1 : m.debianNaming
+				.booleanValue() ? 1 : 0);
+		dos.writeBoolean(m.hasNoPackages);
+
+		List<Entry> entries = new ArrayList<Entry>();
+		for (Set<Entry> set : m.entryMap.values()) {
+			entries.addAll(set);
+		}
+		dos.writeInt(entries.size());
+		for (Entry e : entries) {
+			writeString(dos, e.artifactSpec);
+			writeString(dos, toVersionSpec(e.versionRange));
+			if (e.bundleEntry) {
+				dos.writeByte(CompiledPackageMap.BUNDLE_ENTRY);
+			} else if (e.ignoreEntry) {
+				dos.writeByte(CompiledPackageMap.IGNORE_ENTRY);
+			} else {
+				dos.writeByte(CompiledPackageMap.PLAIN_ENTRY);
+				writeString(dos, e.dependencyLine);
+				dos.writeBoolean(e.isBootClasspath);
+				Set<String> jars = e.jarFileNames != null ? e.jarFileNames
+						: new HashSet<String>();
+				dos.writeInt(jars.size());
+				for (String jar : jars) {
+					writeString(dos, jar);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Turns the given version range back into a version spec. Unlike
+	 * {@link VersionRange#toString()} this writes exact versions as
+	 * <code>[1.0]</code>, which is the only form the version spec parser
+	 * accepts.
+	 */
+	static String toVersionSpec(VersionRange range) {
+		if (range == null) {
+			return null;
+		}
+		if (range.getRecommendedVersion() != null) {
+			return range.getRecommendedVersion().toString();
+		}
+
+		StringBuilder sb = new StringBuilder();
+		for (Restriction r : range.getRestrictions()) {
+			if (sb.length() > 0) {
+				sb.append(',');
+			}
+			ArtifactVersion lower = r.getLowerBound();
+			if (lower != null && lower.equals(r.getUpperBound())
+					&& r.isLowerBoundInclusive() && r.isUpperBoundInclusive()) {
+				sb.append('[').append(lower).append(']');
+			} else {
+				sb.append(r);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Writes a string as its length in UTF-8 bytes followed by the bytes.
+	 * <code>null</code> is written as length -1.
+	 */
+	private static void writeString(DataOutputStream dos, String s)
+			throws IOException {
+		if (s == null) {
+			dos.writeInt(-1);
+		} else {
+			byte[] bytes = s.getBytes("UTF-8");
+			dos.writeInt(bytes.length);
+			dos.write(bytes);
+		}
+	}
+
+	private static void putInt(byte[] b, int pos, int value) {
+		b[pos] = (byte) (value >>> 24);
+		b[pos + 1] = (byte) (value >>> 16);
+		b[pos + 2] = (byte) (value >>> 8);
+		b[pos + 3] = (byte) value;
+	}
+}
@@ -31,8 +31,10 @@ package de.tarent.maven.plugins.pkg.map;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -58,18 +60,62 @@ import de.tarent.maven.plugins.pkg.exception.XMLParserException;
 class Parser {
 	Map<String, Mapping> mappings = new HashMap<String, Mapping>();
 
+	/**
+	 * The results of {@link #getMapping(String)}.
+	 */
+	private Map<String, Mapping> merged = new HashMap<String, Mapping>();
+
+	/**
+	 * All documents which have been read, including the included ones.
+	 */
+	List<URL> documents = new ArrayList<URL>();
+
+	/**
+	 * Distros which are not defined in the XML documents are read from here
+	 * on demand (may be <code>null</code>).
+	 */
+	private CompiledPackageMap compiled;
+
+	/**
+	 * Uses compiled package maps as the default document. Only the auxiliary
+	 * document (optional, can be null) is parsed.
+	 * 
+	 * @param compiled
+	 * @param auxMapDocument
+	 * @throws XMLParserException
+	 */
+	Parser(CompiledPackageMap compiled, URL auxMapDocument)
+			throws XMLParserException {
+		this.compiled = compiled;
+		documents.add(compiled.getURL());
+
+		if (auxMapDocument != null) {
+			try {
+				Parser.State s = new State(auxMapDocument);
+				documents.add(auxMapDocument);
+
+				s.nextMatch("package-maps");
+				parsePackageMaps(s);
+			} catch (Exception e) {
+				throw new XMLParserException("Error parsing packageMap.", e);
+			}
+		}
+	}
+
 	Parser(URL packageMapDocument, URL auxMapDocument)
 			throws XMLParserException {
 		// Initialize the XML parsing part.
 		Parser.State s;
 		try {
 			s = new State(packageMapDocument);
+			documents.add(packageMapDocument);
 
 			s.nextMatch("package-maps");
 			parsePackageMaps(s);
 
 			if (auxMapDocument != null) {
 				s = new State(auxMapDocument);
+				documents.add(auxMapDocument);
 
 				s.nextMatch("package-maps");
 				parsePackageMaps(s);
@@ -86,6 +132,7 @@ class Parser {
 			// Automagically handles relative and absolute URLs.
 			URL url = new URL(currentState.url, includeUrl);
 			Parser.State s = new State(url);
+			documents.add(url);
 
 			s.nextMatch("package-maps");
 			parsePackageMaps(s);
@@ -273,20 +320,50 @@ class Parser {
 		}
 	}
 
-	Mapping getMapping(String distro) {
-		Mapping m = (Mapping) mappings.get(distro);
+	/**
+	 * Returns the mapping of the given distro merged with all its ancestors.
+	 * 
+	 * <p>
+	 * The merged mappings are kept and cannot be changed, so every distro is
+	 * merged only once and the same instance is handed out on every call.
+	 * Since each distro is merged with the already merged mapping of its
+	 * parent, every ancestor is merged only once as well.
+	 * </p>
+	 * 
+	 * <p>
+	 * Synchronized as parser instances are shared through the
+	 * {@link ParserCache}.
+	 * </p>
+	 * 
+	 * @param distro
+	 * @return
+	 */
+	synchronized Mapping getMapping(String distro) {
+		Mapping m = merged.get(distro);
+		if (m != null) {
+			return m;
+		}
+
+		try {
+			m = lookupMapping(distro);
+		} catch (XMLParserException e) {
+			throw new IllegalStateException(
+					"compiled package map is corrupt.", e);
+		}
 
 		if (m == null) {
 			mappings.put(distro, m = new Mapping(distro));
 		} else if (m.parent != null) {
-			return new Mapping(m, getMapping(m.parent));
+			m = new Mapping(m, getMapping(m.parent));
 		}
 
+		m.freeze();
+		merged.put(distro, m);
 		return m;
 	}
 
-	private Mapping getMappingImpl(String distro) {
-		Mapping m = (Mapping) mappings.get(distro);
+	private Mapping getMappingImpl(String distro) throws XMLParserException {
+		Mapping m = lookupMapping(distro);
 
 		if (m == null) {
 			mappings.put(distro, m = new Mapping(distro));
@@ -294,6 +371,27 @@ class Parser {
 		return m;
 	}
 
+	/**
+	 * Returns the known mapping of the given distro. Distros which have not
+	 * been seen yet are read from the compiled package maps, if there are
+	 * any.
+	 * 
+	 * @param distro
+	 * @return the mapping or <code>null</code> if the distro is unknown
+	 * @throws XMLParserException
+	 */
+	private Mapping lookupMapping(String distro) throws XMLParserException {
+		Mapping m = mappings.get(distro);
+
+		if (m == null && compiled != null) {
+			m = compiled.read(distro);
+			if (m != null) {
+				mappings.put(distro, m);
+			}
+		}
+		return m;
+	}
+
 	private static class State {
 		String token;
 
@@ -0,0 +1,161 @@
+package de.tarent.maven.plugins.pkg.map;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+
+import de.tarent.maven.plugins.pkg.exception.XMLParserException;
+
+/**
+ * Keeps parsed package map documents for the lifetime of the JVM, so that the
+ * documents are parsed only once per build even when many targets and modules
+ * use them.
+ *
+ * <p>
+ * Parsers are cached by the location of the default and the auxiliary
+ * document. For every document that was read (including the ones pulled in
+ * via <code>&lt;include&gt;</code>) its modification time and size are
+ * remembered. A cached parser is only handed out as long as none of its
+ * documents changed on disk. Otherwise the documents are parsed again.
+ * </p>
+ *
+ * <p>
+ * Documents inside a jar file are checked by the jar file they are contained
+ * in. Documents which are neither files nor contained in a jar file (e.g. ones
+ * served via HTTP) are not checked again once they have been parsed.
+ * </p>
+ */
+final class ParserCache {
+
+	private static final Map<String, CachedParser> CACHE = new HashMap<String, CachedParser>();
+
+	private ParserCache() {
+		// Intentionally empty.
+	}
+
+	/**
+	 * Returns a parser for the given documents, either from the cache or a
+	 * newly created one.
+	 *
+	 * @param packageMapURL
+	 * @param auxPackageMapURL
+	 * @return
+	 * @throws XMLParserException
+	 */
+	static Parser getParser(URL packageMapURL, URL auxPackageMapURL)
+			throws XMLParserException {
+		return getParser(packageMapURL, auxPackageMapURL, false);
+	}
+
+	/**
+	 * Returns a parser which reads the distros from the given compiled
+	 * package maps (see {@link PackageMapCompiler}) and supplements them with
+	 * the given XML document, either from the cache or a newly created one.
+	 *
+	 * @param compiledURL
+	 * @param auxPackageMapURL
+	 * @return
+	 * @throws XMLParserException
+	 */
+	static Parser getCompiledParser(URL compiledURL, URL auxPackageMapURL)
+			throws XMLParserException {
+		return getParser(compiledURL, auxPackageMapURL, true);
+	}
+
+	private static Parser getParser(URL packageMapURL, URL auxPackageMapURL,
+			boolean compiled) throws XMLParserException {
+		String key = packageMapURL.toExternalForm()
+				+ (auxPackageMapURL != null ? "|"
+						+ auxPackageMapURL.toExternalForm() : "");
+
+		synchronized (CACHE) {
+			CachedParser cp = CACHE.get(key);
+			if (cp == null || !cp.isUpToDate()) {
+				Parser parser = compiled ? new Parser(new CompiledPackageMap(
+						packageMapURL), auxPackageMapURL) : new Parser(
+						packageMapURL, auxPackageMapURL);
+				cp = new CachedParser(parser);
+				CACHE.put(key, cp);
+			}
+			return cp.parser;
+		}
+	}
+
+	/**
+	 * Drops all cached parsers.
+	 */
+	static void clear() {
+		synchronized (CACHE) {
+			CACHE.clear();
+		}
+	}
+
+	/**
+	 * Returns the modification time and size of the file behind the given URL
+	 * or <code>null</code> if the URL does not denote a file.
+	 *
+	 * @param url
+	 * @return
+	 */
+	static long[] getStamp(URL url) {
+		File f = toFile(url);
+		if (f == null) {
+			return null;
+		}
+		return new long[] { f.lastModified(), f.length() };
+	}
+
+	private static File toFile(URL url) {
+		if ("file".equals(url.getProtocol())) {
+			return FileUtils.toFile(url);
+		} else if ("jar".equals(url.getProtocol())) {
+			// jar:file:/path/to/file.jar!/path/in/jar
+			String path = url.getPath();
+			int separator = path.indexOf("!/");
+			if (separator != -1) {
+				try {
+					return toFile(new URL(path.substring(0, separator)));
+				} catch (MalformedURLException e) {
+					return null;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static class CachedParser {
+
+		final Parser parser;
+
+		final long[][] stamps;
+
+		CachedParser(Parser parser) {
+			this.parser = parser;
+
+			List<URL> documents = parser.documents;
+			stamps = new long[documents.size()][];
+			for (int i = 0; i < stamps.length; i++) {
+				stamps[i] = getStamp(documents.get(i));
+			}
+		}
+
+		boolean isUpToDate() {
+			List<URL> documents = parser.documents;
+			for (int i = 0; i < stamps.length; i++) {
+				if (stamps[i] != null) {
+					long[] current = getStamp(documents.get(i));
+					if (current[0] != stamps[i][0]
+							|| current[1] != stamps[i][1]) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package de.tarent.maven.plugins.pkg.map;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.Restriction;
+
+/**
+ * Lookup structure for the entries of a single artifact.
+ *
+ * <p>
+ * The version ranges of all entries are broken down into their restrictions
+ * (intervals) which are kept sorted by their lower bound. As long as the
+ * intervals do not overlap, the interval that may contain a version is found
+ * by binary search. Entries without a version range are kept in a separate
+ * slot which is used when no interval matches.
+ * </p>
+ *
+ * <p>
+ * Overlapping intervals are legal in a package map document but it is not
+ * well-defined which entry wins. In that case the intervals are checked one
+ * after the other in the order of their lower bound.
+ * </p>
+ *
+ * <p>
+ * Instances are immutable.
+ * </p>
+ */
+final class VersionIndex {
+
+	private static final Comparator<Interval> LOWER_BOUND_ORDER = new Comparator<Interval>() {
+		public int compare(Interval a, Interval b) {
+			ArtifactVersion al = a.restriction.getLowerBound();
+			ArtifactVersion bl = b.restriction.getLowerBound();
+			if (al == null || bl == null) {
+				// No lower bound means negative infinity.
+				return (al == null ? 0 : 1) - (bl == null ? 0 : 1);
+			}
+
+			int c = al.compareTo(bl);
+			if (c != 0) {
+				return c;
+			}
+
+			// An inclusive bound starts before an exclusive one.
+			return (a.restriction.isLowerBoundInclusive() ? 0 : 1)
+					- (b.restriction.isLowerBoundInclusive() ? 0 : 1);
+		}
+	};
+
+	private final Interval[] intervals;
+
+	/**
+	 * The lower bounds of the intervals, kept separately for the binary
+	 * search.
+	 */
+	private final ArtifactVersion[] lowerBounds;
+
+	private final boolean overlapping;
+
+	private final Entry unranged;
+
+	private VersionIndex(Interval[] intervals, boolean overlapping,
+			Entry unranged) {
+		this.intervals = intervals;
+		this.overlapping = overlapping;
+		this.unranged = unranged;
+
+		lowerBounds = new ArtifactVersion[intervals.length];
+		for (int i = 0; i < intervals.length; i++) {
+			lowerBounds[i] = intervals[i].restriction.getLowerBound();
+		}
+	}
+
+	/**
+	 * Creates the index for the given entries which must all belong to the
+	 * same artifact.
+	 *
+	 * @param entries
+	 * @return
+	 */
+	static VersionIndex create(Collection<Entry> entries) {
+		List<Interval> list = new ArrayList<Interval>();
+		Entry unranged = null;
+
+		for (Entry e : entries) {
+			if (e.versionRange == null) {
+				unranged = e;
+			} else {
+				for (Restriction r : e.versionRange.getRestrictions()) {
+					list.add(new Interval(r, e));
+				}
+			}
+		}
+
+		Collections.sort(list, LOWER_BOUND_ORDER);
+		Interval[] intervals = list.toArray(new Interval[list.size()]);
+
+		return new VersionIndex(intervals, isOverlapping(intervals), unranged);
+	}
+
+	/**
+	 * Checks whether any of the sorted intervals overlap.
+	 */
+	private static boolean isOverlapping(Interval[] intervals) {
+		// The interval with the highest upper bound seen so far.
+		Restriction reach = null;
+
+		for (Interval i : intervals) {
+			Restriction r = i.restriction;
+			if (reach != null) {
+				if (reach.getUpperBound() == null || r.getLowerBound() == null) {
+					return true;
+				}
+
+				int c = reach.getUpperBound().compareTo(r.getLowerBound());
+				if (c > 0
+						|| (c == 0 && reach.isUpperBoundInclusive() && r
+								.isLowerBoundInclusive())) {
+					return true;
+				}
+			}
+
+			if (reach == null || r.getUpperBound() == null
+					|| r.getUpperBound().compareTo(reach.getUpperBound()) >= 0) {
+				reach = r;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the entry whose version range contains the given version, the
+	 * entry without a version range or <code>null</code>.
+	 *
+	 * @param version
+	 *            the version to look up, may be <code>null</code> in which case
+	 *            only unbounded ranges match
+	 * @return
+	 */
+	Entry getEntry(ArtifactVersion version) {
+		if (version == null) {
+			for (Interval i : intervals) {
+				Restriction r = i.restriction;
+				if (r.getLowerBound() == null && r.getUpperBound() == null) {
+					return i.entry;
+				}
+			}
+			return unranged;
+		}
+
+		if (overlapping) {
+			for (Interval i : intervals) {
+				if (i.restriction.containsVersion(version)) {
+					return i.entry;
+				}
+			}
+			return unranged;
+		}
+
+		// Finds the last interval whose lower bound is not above the version.
+		int low = 0;
+		int high = intervals.length - 1;
+		int candidate = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			ArtifactVersion lower = lowerBounds[mid];
+			if (lower == null || lower.compareTo(version) <= 0) {
+				candidate = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		// If the candidate starts exclusively at the version, the interval
+		// before it may end inclusively there.
+		for (int i = candidate; i >= 0 && i >= candidate - 1; i--) {
+			if (intervals[i].restriction.containsVersion(version)) {
+				return intervals[i].entry;
+			}
+		}
+
+		return unranged;
+	}
+
+	private static class Interval {
+
+		final Restriction restriction;
+
+		final Entry entry;
+
+		Interval(Restriction restriction, Entry entry) {
+			this.restriction = restriction;
+			this.entry = entry;
+		}
+	}
+}
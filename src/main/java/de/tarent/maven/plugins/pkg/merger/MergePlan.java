@@ -0,0 +1,137 @@
+package de.tarent.maven.plugins.pkg.merger;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import de.tarent.maven.plugins.pkg.annotations.MergeMe;
+
+/**
+ * Describes how two instances of a class are merged: which fields take part
+ * (the ones annotated with {@link MergeMe}), which {@link IMerge}
+ * implementation merges them and which default they fall back to.
+ *
+ * <p>
+ * Looking this up through reflection is much more expensive than the merge
+ * itself, so the plan is created once per class and kept. The mergers are
+ * stateless and only read the defaults, therefore both are shared by all
+ * merges.
+ * </p>
+ *
+ * @param <T>
+ */
+public final class MergePlan<T> {
+
+	private static final IMerge OBJECT_MERGER = new ObjectMerger();
+
+	private static final IMerge COLLECTION_MERGER = new CollectionMerger();
+
+	private static final IMerge PROPERTIES_MERGER = new PropertiesMerger();
+
+	private static final Map<Class<?>, MergePlan<?>> PLANS = new HashMap<Class<?>, MergePlan<?>>();
+
+	private final Field[] fields;
+
+	private final IMerge[] mergers;
+
+	private final Object[] defaults;
+
+	private MergePlan(Class<T> c) {
+		List<Field> fieldList = new ArrayList<Field>();
+		List<IMerge> mergerList = new ArrayList<IMerge>();
+		List<Object> defaultList = new ArrayList<Object>();
+
+		for (Field field : c.getDeclaredFields()) {
+			MergeMe mergeMe = field.getAnnotation(MergeMe.class);
+			if (mergeMe == null) {
+				continue;
+			}
+			field.setAccessible(true);
+
+			Object defaultValue = mergeMe.defaultValueIsNull() ? null
+					: new Object();
+			IMerge merger;
+
+			if (field.getType() == Properties.class) {
+				if (defaultValue != null) {
+					defaultValue = new Properties();
+				}
+				merger = PROPERTIES_MERGER;
+
+			} else if (field.getType() == List.class) {
+				if (defaultValue != null) {
+					defaultValue = new ArrayList<Object>();
+				}
+				merger = COLLECTION_MERGER;
+
+			} else if (field.getType() == Set.class) {
+				if (defaultValue != null) {
+					defaultValue = new HashSet<Object>();
+				}
+				merger = COLLECTION_MERGER;
+
+			} else if (field.getType() == String.class) {
+				if (defaultValue != null) {
+					defaultValue = mergeMe.defaultString();
+				}
+				merger = OBJECT_MERGER;
+
+			} else if (field.getType() == Boolean.class) {
+				defaultValue = mergeMe.defaultBoolean();
+				merger = OBJECT_MERGER;
+
+			} else {
+				merger = OBJECT_MERGER;
+			}
+
+			fieldList.add(field);
+			mergerList.add(merger);
+			defaultList.add(defaultValue);
+		}
+
+		fields = fieldList.toArray(new Field[fieldList.size()]);
+		mergers = mergerList.toArray(new IMerge[mergerList.size()]);
+		defaults = defaultList.toArray();
+	}
+
+	/**
+	 * Returns the plan for the given class.
+	 *
+	 * @param c
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> MergePlan<T> forClass(Class<T> c) {
+		synchronized (PLANS) {
+			MergePlan<T> plan = (MergePlan<T>) PLANS.get(c);
+			if (plan == null) {
+				plan = new MergePlan<T>(c);
+				PLANS.put(c, plan);
+			}
+			return plan;
+		}
+	}
+
+	/**
+	 * Sets every field of the child to the merge of its own value, the
+	 * parent's value and the field's default.
+	 *
+	 * @param child
+	 * @param parent
+	 * @throws IllegalAccessException
+	 * @throws InstantiationException
+	 */
+	public void merge(T child, T parent) throws IllegalAccessException,
+			InstantiationException {
+		for (int i = 0; i < fields.length; i++) {
+			Field field = fields[i];
+			field.set(child, mergers[i].merge(field.get(child),
+					field.get(parent), defaults[i]));
+		}
+	}
+}
@@ -0,0 +1,309 @@
+package de.tarent.maven.plugins.pkg.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects where the time of a single target configuration's packaging run
+ * goes.
+ *
+ * <p>
+ * The instance for a target configuration is attached to the thread which
+ * processes it. Code which is worth measuring brackets its work with
+ * {@link #enter(Phase)} and {@link #exit()}; both do nothing if no instance is
+ * attached. Phases may nest, the time of a nested phase is not accounted for
+ * the enclosing one. Work which is handed to other threads (e.g. uploads)
+ * attaches the instance there, too.
+ * </p>
+ *
+ * <pre>
+ * Metrics.enter(Metrics.Phase.STAGING);
+ * try {
+ * 	...
+ * } finally {
+ * 	Metrics.exit();
+ * }
+ * </pre>
+ */
+public class Metrics {
+
+	public enum Phase {
+		DEPENDENCY_RESOLUTION, MAP_CLASSIFICATION, STAGING, GENERATION, ARCHIVE, SIGNING, UPLOAD;
+
+		public String getReportName() {
+			return name().toLowerCase();
+		}
+	}
+
+	private static final ThreadLocal<Frame> CURRENT = new ThreadLocal<Frame>();
+
+	/**
+	 * The per-thread state: the attached instance and the phases which are
+	 * currently entered.
+	 */
+	private static final class Frame {
+		final Metrics metrics;
+
+		final List<Phase> phases = new ArrayList<Phase>();
+
+		long since;
+
+		Frame(Metrics metrics) {
+			this.metrics = metrics;
+		}
+
+		/**
+		 * Accounts the time since the last change to the innermost phase.
+		 */
+		void account(long now) {
+			if (!phases.isEmpty()) {
+				metrics.addNanos(phases.get(phases.size() - 1), now - since);
+			}
+			since = now;
+		}
+	}
+
+	private final String target;
+
+	private final String distro;
+
+	private final long startMillis = System.currentTimeMillis();
+
+	private final long startNanos = System.nanoTime();
+
+	private long totalNanos = -1;
+
+	private final long[] phaseNanos = new long[Phase.values().length];
+
+	private final int[] phaseCounts = new int[Phase.values().length];
+
+	private long bytesStaged;
+
+	private int subprocesses;
+
+	private long subprocessNanos;
+
+	public Metrics(String target, String distro) {
+		this.target = target;
+		this.distro = distro;
+	}
+
+	/**
+	 * Attaches the given instance to the current thread.
+	 *
+	 * @param m
+	 */
+	public static void attach(Metrics m) {
+		CURRENT.set(m == null ? null : new Frame(m));
+	}
+
+	/**
+	 * Detaches the instance from the current thread. Phases which have not
+	 * been left are accounted up to now.
+	 */
+	public static void detach() {
+		Frame f = CURRENT.get();
+		if (f != null) {
+			f.account(System.nanoTime());
+			CURRENT.remove();
+		}
+	}
+
+	/**
+	 * Returns the instance attached to the current thread or
+	 * <code>null</code>.
+	 *
+	 * @return
+	 */
+	public static Metrics current() {
+		Frame f = CURRENT.get();
+		return f == null ? null : f.metrics;
+	}
+
+	public static void enter(Phase phase) {
+		Frame f = CURRENT.get();
+		if (f != null) {
+			f.account(System.nanoTime());
+			f.phases.add(phase);
+			f.metrics.count(phase);
+		}
+	}
+
+	public static void exit() {
+		Frame f = CURRENT.get();
+		if (f != null && !f.phases.isEmpty()) {
+			f.account(System.nanoTime());
+			f.phases.remove(f.phases.size() - 1);
+		}
+	}
+
+	/**
+	 * Accounts bytes which have been put into the package's staging
+	 * directories.
+	 *
+	 * @param bytes
+	 * @return the given amount, for convenience
+	 */
+	public static long staged(long bytes) {
+		Metrics m = current();
+		if (m != null) {
+			synchronized (m) {
+				m.bytesStaged += bytes;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Accounts a finished subprocess.
+	 *
+	 * @param nanos
+	 *            the time the subprocess ran
+	 */
+	public static void subprocess(long nanos) {
+		Metrics m = current();
+		if (m != null) {
+			synchronized (m) {
+				m.subprocesses++;
+				m.subprocessNanos += nanos;
+			}
+		}
+	}
+
+	private synchronized void addNanos(Phase phase, long nanos) {
+		phaseNanos[phase.ordinal()] += nanos;
+	}
+
+	private synchronized void count(Phase phase) {
+		phaseCounts[phase.ordinal()]++;
+	}
+
+	/**
+	 * Stops the clock of the whole run.
+	 */
+	public synchronized void finish() {
+		if (totalNanos < 0) {
+			totalNanos = System.nanoTime() - startNanos;
+		}
+	}
+
+	public String getTarget() {
+		return target;
+	}
+
+	public String getDistro() {
+		return distro;
+	}
+
+	public synchronized long getTotalMillis() {
+		return toMillis(totalNanos < 0 ? System.nanoTime() - startNanos
+				: totalNanos);
+	}
+
+	public synchronized long getMillis(Phase phase) {
+		return toMillis(phaseNanos[phase.ordinal()]);
+	}
+
+	public synchronized int getCount(Phase phase) {
+		return phaseCounts[phase.ordinal()];
+	}
+
+	public synchronized long getBytesStaged() {
+		return bytesStaged;
+	}
+
+	public synchronized int getSubprocesses() {
+		return subprocesses;
+	}
+
+	public synchronized long getSubprocessMillis() {
+		return toMillis(subprocessNanos);
+	}
+
+	private static long toMillis(long nanos) {
+		return nanos / 1000000L;
+	}
+
+	/**
+	 * Writes the metrics as a JSON object.
+	 *
+	 * @param f
+	 * @throws IOException
+	 */
+	public synchronized void writeJson(File f) throws IOException {
+		PrintWriter w = new PrintWriter(f, "UTF-8");
+		try {
+			w.println("{");
+			w.println("  \"target\": " + quote(target) + ",");
+			w.println("  \"distro\": " + quote(distro) + ",");
+			w.println("  \"start\": " + startMillis + ",");
+			w.println("  \"totalMillis\": " + getTotalMillis() + ",");
+			w.println("  \"bytesStaged\": " + bytesStaged + ",");
+			w.println("  \"subprocesses\": " + subprocesses + ",");
+			w.println("  \"subprocessMillis\": " + getSubprocessMillis() + ",");
+			w.println("  \"phases\": {");
+			Phase[] phases = Phase.values();
+			for (int i = 0; i < phases.length; i++) {
+				w.println("    " + quote(phases[i].getReportName())
+						+ ": { \"millis\": " + getMillis(phases[i])
+						+ ", \"count\": " + getCount(phases[i]) + " }"
+						+ (i + 1 < phases.length ? "," : ""));
+			}
+			w.println("  }");
+			w.println("}");
+		} finally {
+			w.close();
+		}
+		if (w.checkError()) {
+			throw new IOException("Error writing " + f);
+		}
+	}
+
+	/**
+	 * Writes the metrics as CSV with one <code>metric,millis,count</code>
+	 * line per phase followed by the totals.
+	 *
+	 * @param f
+	 * @throws IOException
+	 */
+	public synchronized void writeCsv(File f) throws IOException {
+		PrintWriter w = new PrintWriter(f, "UTF-8");
+		try {
+			w.println("metric,millis,count");
+			for (Phase p : Phase.values()) {
+				w.println(p.getReportName() + "," + getMillis(p) + ","
+						+ getCount(p));
+			}
+			w.println("subprocesses," + getSubprocessMillis() + ","
+					+ subprocesses);
+			w.println("bytes_staged,," + bytesStaged);
+			w.println("total," + getTotalMillis() + ",");
+		} finally {
+			w.close();
+		}
+		if (w.checkError()) {
+			throw new IOException("Error writing " + f);
+		}
+	}
+
+	private static String quote(String s) {
+		if (s == null) {
+			return "null";
+		}
+		StringBuilder sb = new StringBuilder("\"");
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+}
@@ -51,12 +51,8 @@
 package de.tarent.maven.plugins.pkg.packager;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -64,7 +60,6 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
@@ -76,10 +71,14 @@ import de.tarent.maven.plugins.pkg.SysconfFile;
 import de.tarent.maven.plugins.pkg.TargetConfiguration;
 import de.tarent.maven.plugins.pkg.Utils;
 import de.tarent.maven.plugins.pkg.WorkspaceSession;
+import de.tarent.maven.plugins.pkg.archive.Compression;
+import de.tarent.maven.plugins.pkg.archive.DebArchiveWriter;
 import de.tarent.maven.plugins.pkg.generator.ControlFileGenerator;
 import de.tarent.maven.plugins.pkg.helper.ArtifactInclusionStrategy;
 import de.tarent.maven.plugins.pkg.helper.Helper;
 import de.tarent.maven.plugins.pkg.map.PackageMap;
+import de.tarent.maven.plugins.pkg.metrics.Metrics;
+import de.tarent.maven.plugins.pkg.signing.DebOriginSigner;
 import de.tarent.maven.plugins.pkg.signing.DebianSigner;
 
 /**
@@ -89,10 +88,6 @@ import de.tarent.maven.plugins.pkg.signing.DebianSigner;
  */
 public class DebPackager extends Packager {
 
-	private static final String GPGORIGIN_AR = "_gpgorigin.ar";
-	private static final String GPGORIGIN = "_gpgorigin";
-	private static final String COMBINEDCONTENTSFILENAME = "combined-contents";
-
 	public void execute(Log l, WorkspaceSession workspaceSession)
 			throws MojoExecutionException {
 
@@ -193,6 +188,8 @@ public class DebPackager extends Packager {
 			ph.generateWrapperScript(bcp, cp, false);
 		}
 
+		l.info("installed size: " + ph.getInstalledSize());
+
 		generateControlFile(l, targetConfiguration, ph, controlFile,
 				packageName, packageVersion,
 				ph.createDependencyLine(result.getResolvedDependencies()),
@@ -255,6 +252,20 @@ public class DebPackager extends Packager {
 	public void checkEnvironment(Log l, WorkspaceSession workspaceSession)
 			throws MojoExecutionException {
 
+		if (isExternalBuilder(workspaceSession.getTargetConfiguration(), false)) {
+			checkDpkgDeb(l, workspaceSession);
+		}
+
+		// Some external tools are only needed if the package is to be signed
+		if (workspaceSession.getTargetConfiguration().isSign()) {
+			Utils.checkProgramAvailability("dpkg-distaddfile");
+			Utils.checkProgramAvailability("gpg");
+		}
+	}
+
+	private void checkDpkgDeb(Log l, WorkspaceSession workspaceSession)
+			throws MojoExecutionException {
+		Utils.checkProgramAvailability("fakeroot");
 		Utils.checkProgramAvailability("dpkg-deb");
 		String output = Utils.getProgramVersionOutput("dpkg-deb");
 
@@ -281,12 +292,6 @@ public class DebPackager extends Packager {
 								+ "your package will not be built correctly.");
 			}
 		}
-		// Some external tools are only needed if the package is to be signed
-		if (workspaceSession.getTargetConfiguration().isSign()) {
-			Utils.checkProgramAvailability("dpkg-distaddfile");
-			Utils.checkProgramAvailability("gpg");
-			Utils.checkProgramAvailability("ar");
-		}
 	}
 
 	/**
@@ -306,32 +311,37 @@ public class DebPackager extends Packager {
 			String dependencyLine, String recommendsLine, String suggestsLine,
 			String providesLine, String conflictsLine, String replacesLine,
 			long byteAmount) throws MojoExecutionException {
-		ControlFileGenerator cgen = new ControlFileGenerator();
-		cgen.setPackageName(packageName);
-		cgen.setVersion(packageVersion);
-		cgen.setSection(targetConfiguration.getSection());
-		cgen.setDependencies(dependencyLine);
-		cgen.setRecommends(recommendsLine);
-		cgen.setSuggests(suggestsLine);
-		cgen.setProvides(providesLine);
-		cgen.setConflicts(conflictsLine);
-		cgen.setReplaces(replacesLine);
-		cgen.setMaintainer(targetConfiguration.getMaintainer());
-		cgen.setShortDescription(ph.getProjectDescription());
-		cgen.setDescription(ph.getProjectDescription());
-		cgen.setArchitecture(targetConfiguration.getArchitecture());
-		cgen.setInstalledSize(Utils.getInstalledSize(byteAmount));
-
-		l.info("creating control file: " + controlFile.getAbsolutePath());
-		Utils.createFile(controlFile, "control");
-
+		Metrics.enter(Metrics.Phase.GENERATION);
 		try {
-			cgen.generate(controlFile);
-		} catch (IOException ioe) {
-			throw new MojoExecutionException(
-					"IOException while creating control file.", ioe);
-		}
+			ControlFileGenerator cgen = new ControlFileGenerator();
+			cgen.setPackageName(packageName);
+			cgen.setVersion(packageVersion);
+			cgen.setSection(targetConfiguration.getSection());
+			cgen.setDependencies(dependencyLine);
+			cgen.setRecommends(recommendsLine);
+			cgen.setSuggests(suggestsLine);
+			cgen.setProvides(providesLine);
+			cgen.setConflicts(conflictsLine);
+			cgen.setReplaces(replacesLine);
+			cgen.setMaintainer(targetConfiguration.getMaintainer());
+			cgen.setShortDescription(ph.getProjectDescription());
+			cgen.setDescription(ph.getProjectDescription());
+			cgen.setArchitecture(targetConfiguration.getArchitecture());
+			cgen.setInstalledSize(Utils.getInstalledSize(byteAmount));
+
+			l.info("creating control file: " + controlFile.getAbsolutePath());
+			Utils.createFile(controlFile, "control");
 
+			try {
+				cgen.generate(controlFile);
+			} catch (IOException ioe) {
+				throw new MojoExecutionException(
+						"IOException while creating control file.", ioe);
+			}
+
+		} finally {
+			Metrics.exit();
+		}
 	}
 
 	/**
@@ -351,78 +361,137 @@ public class DebPackager extends Packager {
 	private void generateConffilesFile(Log l, File conffilesFile,
 			TargetConfiguration targetConfiguration, Helper ph)
 			throws MojoExecutionException {
-		List<SysconfFile> sysconffiles = (List<SysconfFile>) targetConfiguration
-				.getSysconfFiles();
-		if (sysconffiles.isEmpty()) {
-			l.info("No sysconf files defined - not creating file.");
-			return;
-		}
+		Metrics.enter(Metrics.Phase.GENERATION);
+		try {
+			List<SysconfFile> sysconffiles = (List<SysconfFile>) targetConfiguration
+					.getSysconfFiles();
+			if (sysconffiles.isEmpty()) {
+				l.info("No sysconf files defined - not creating file.");
+				return;
+			}
 
-		StringBuilder sb = new StringBuilder(sysconffiles.size() * 10);
-		for (SysconfFile scf : sysconffiles) {
-			File targetFile;
-			if (scf.isRename()) {
-				targetFile = new File(ph.getTargetSysconfDir(), scf.getTo());
-			} else {
-				File srcFile = new File(ph.getSrcSysconfFilesDir(),
-						scf.getFrom());
-				File targetPath = new File(ph.getTargetSysconfDir(),
-						scf.getTo());
-				targetFile = new File(targetPath, srcFile.getName());
+			StringBuilder sb = new StringBuilder(sysconffiles.size() * 10);
+			for (SysconfFile scf : sysconffiles) {
+				File targetFile;
+				if (scf.isRename()) {
+					targetFile = new File(ph.getTargetSysconfDir(), scf.getTo());
+				} else {
+					File srcFile = new File(ph.getSrcSysconfFilesDir(),
+							scf.getFrom());
+					File targetPath = new File(ph.getTargetSysconfDir(),
+							scf.getTo());
+					targetFile = new File(targetPath, srcFile.getName());
+				}
+				sb.append(targetFile.getAbsolutePath());
+				sb.append("\n");
 			}
-			sb.append(targetFile.getAbsolutePath());
-			sb.append("\n");
-		}
 
-		if (!conffilesFile.getParentFile().mkdirs()) {
-			throw new MojoExecutionException(
-					"Could not create directory for conffiles file.");
-		}
-		try {
-			conffilesFile.createNewFile();
-		} catch (IOException ioe) {
-			throw new MojoExecutionException(
-					"IOException while creating conffiles file.", ioe);
+			if (!conffilesFile.getParentFile().mkdirs()) {
+				throw new MojoExecutionException(
+						"Could not create directory for conffiles file.");
+			}
+			try {
+				conffilesFile.createNewFile();
+			} catch (IOException ioe) {
+				throw new MojoExecutionException(
+						"IOException while creating conffiles file.", ioe);
+			}
+
+			try {
+				FileUtils.writeStringToFile(conffilesFile, sb.toString());
+			} catch (IOException ioe) {
+				throw new MojoExecutionException(
+						"IOException while writing to conffiles file.", ioe);
+			}
+		} finally {
+			Metrics.exit();
 		}
+	}
 
-		try {
-			FileUtils.writeStringToFile(conffilesFile, sb.toString());
-		} catch (IOException ioe) {
-			throw new MojoExecutionException(
-					"IOException while writing to conffiles file.", ioe);
+	/**
+	 * Returns the file named the way <code>dpkg-deb</code> names it. The
+	 * additional package created for AOT-compiled code is not taken into
+	 * account so that <code>null</code> is returned in that case.
+	 */
+	@Override
+	public File getPackageFile(WorkspaceSession workspaceSession)
+			throws MojoExecutionException {
+		TargetConfiguration tc = workspaceSession.getTargetConfiguration();
+		if (tc.isAotCompile()) {
+			return null;
 		}
+
+		Helper ph = workspaceSession.getHelper();
+		String version = ph.getPackageVersion();
+		version = version.substring(version.indexOf(':') + 1);
+
+		return new File(ph.getOutputDirectory(), ph.getPackageName() + "_"
+				+ version + "_" + tc.getArchitecture() + ".deb");
 	}
 
 	private void createPackage(Log l, WorkspaceSession workspaceSession,
 			File base, TargetConfiguration targetConfiguration)
 			throws MojoExecutionException {
-		l.info("calling dpkg-deb to create binary package");
-		Helper ph = workspaceSession.getHelper();
+		Metrics.enter(Metrics.Phase.ARCHIVE);
+		try {
+			Helper ph = workspaceSession.getHelper();
+			Compression compression = getCompression(targetConfiguration);
+			Integer compressionLevel = targetConfiguration.getCompressionLevel();
+
+			if (isExternalBuilder(targetConfiguration, false)) {
+				l.info("calling dpkg-deb to create binary package");
+				List<String> args = new ArrayList<String>();
+				args.add("fakeroot");
+				args.add("dpkg-deb");
+				// Otherwise dpkg-deb picks its own default.
+				if (targetConfiguration.getCompression() != null) {
+					args.add("-Z" + compression.getName());
+				}
+				if (compressionLevel != null) {
+					args.add("-z" + compressionLevel);
+				}
+				args.add("--build");
+				args.add(base.getName());
+				args.add(ph.getOutputDirectory().getAbsolutePath());
+				Utils.exec(args.toArray(new String[args.size()]),
+						base.getParentFile(), "'fakeroot dpkg --build' failed.",
+						"Error creating the .deb file.");
+			} else {
+				l.info("creating binary package from " + base.getAbsolutePath());
+				try {
+					DebArchiveWriter writer = new DebArchiveWriter();
+					writer.setCompression(compression);
+					if (compressionLevel != null) {
+						writer.setCompressionLevel(compressionLevel);
+					}
+					File packageFile = writer.write(base, ph.getOutputDirectory());
+					l.info("created binary package " + packageFile.getName());
+				} catch (IOException ioe) {
+					throw new MojoExecutionException(
+							"Error creating the .deb file.", ioe);
+				}
+			}
 
-		Utils.exec(
-				new String[] { "fakeroot", "dpkg-deb", "--build",
-						base.getName(),
-						ph.getOutputDirectory().getAbsolutePath() },
-				base.getParentFile(), "'fakeroot dpkg --build' failed.",
-				"Error creating the .deb file.");
+			if (targetConfiguration.isSign()) {
+				// This bundles the signature with the package
+				bundleSignatureWithPackage(workspaceSession);
 
-		if (targetConfiguration.isSign()) {
-			// This bundles the signature with the package
-			bundleSignatureWithPackage(workspaceSession);
+				/*
+				 * This creates a signed .changes file - needed when uploading to
+				 * repository. Unfortunatelly debsign, the program used to perform
+				 * this action won't allow entering the passphrase through an
+				 * automated process. TODO:Find a way to do this, or change the
+				 * packager executable to also sign
+				 */
 
-			/*
-			 * This creates a signed .changes file - needed when uploading to
-			 * repository. Unfortunatelly debsign, the program used to perform
-			 * this action won't allow entering the passphrase through an
-			 * automated process. TODO:Find a way to do this, or change the
-			 * packager executable to also sign
-			 */
+				DebianSigner db = new DebianSigner(workspaceSession, false);
+				db.start(l);
 
-			DebianSigner db = new DebianSigner(workspaceSession, false);
-			db.start(l);
+			}
 
+		} finally {
+			Metrics.exit();
 		}
-
 	}
 
 	/**
@@ -433,22 +502,11 @@ public class DebPackager extends Packager {
 	 * POM
 	 * </p>
 	 * <p>
-	 * These are the steps followed by this method:<br/>
-	 * <ul>
-	 * <li>Take an existing .deb and unpack it:<br/>
-	 * $ ar x my_package_1_0_0.deb</li>
-	 * <li>Concatenate its contents (the order is important), and output to a
-	 * temp file:<br/>
-	 * $ cat debian-binary control.tar.gz data.tar.gz > /tmp/combined-contents<br/>
-	 * </li>
-	 * <li>Create a GPG signature of the concatenated file, calling it
-	 * _gpgorigin:<br/>
-	 * $ gpg -abs -o _gpgorigin /tmp/combined-contents</li>
-	 * <li>Finally, archive the _gpgorigin file and append it to the original
-	 * deb file<br/>
-	 * $ ar rc _gpgorigin.ar _gpgorigin<br/>
-	 * </li>
-	 * </ul>
+	 * The members of the package are streamed into <code>gpg -abs</code> in
+	 * archive order (equivalent to
+	 * <code>cat debian-binary control.tar.gz data.tar.gz | gpg -abs</code>) and
+	 * the resulting signature is appended to the package as the
+	 * <code>_gpgorigin</code> member. See {@link DebOriginSigner}.
 	 * </p>
 	 * 
 	 * @param workspaceSession
@@ -463,120 +521,16 @@ public class DebPackager extends Packager {
 		String maintainer = workspaceSession.getTargetConfiguration()
 				.getMaintainer();
 		AbstractPackagingMojo apm = workspaceSession.getMojo();
-		Utils.exec(new String[] { "ar", "x", packageFilename },
-				tempRoot.getParentFile(), "Error extracting package",
-				"Error extracting package");
-		try {
-			File combinedContents = new File(tempRoot.getParentFile(),
-					COMBINEDCONTENTSFILENAME);
-			FileWriter fw = new FileWriter(combinedContents);
-
-			InputStream stream = Utils.exec(new String[] { "cat",
-					"debian-binary", "control.tar.gz", "data.tar.gz" },
-					tempRoot.getParentFile(),
-					"Error creating concatenated content",
-					"Error creating concatenated content");
-			IOUtils.copy(stream, fw);
-			fw.close();
-		} catch (IOException e) {
-			throw new MojoExecutionException(e.getMessage(), e);
-		}
-
-		// If signPassPhrase has been set we don't expect any interaction with
-		// the user
-		// therefore we call gpg with --tty
-		if (apm.getSignPassPhrase() != null) {
-			Utils.exec(
-					new String[] { "gpg", "--no-tty", "--passphrase",
-							apm.getSignPassPhrase(), "--default-key",
-							maintainer, "--no-use-agent", "-abs", "-o",
-							GPGORIGIN, COMBINEDCONTENTSFILENAME },
-					tempRoot.getParentFile(),
-					"Error signing concatenated file",
-					"Error writing concatenated file");
-
-		} else {
-			Utils.exec(new String[] { "gpg", "--default-key", maintainer,
-					"-abs", "-o", GPGORIGIN, COMBINEDCONTENTSFILENAME },
-					tempRoot.getParentFile(),
-					"Error signing concatenated file",
-					"Error writing concatenated file");
-		}
-
-		Utils.exec(new String[] { "ar", "rc", GPGORIGIN_AR, GPGORIGIN },
-				tempRoot.getParentFile(),
-				"Error putting package back together",
-				"Error writing package parts into package");
 
-		// We will create a FileInputStream in order to read the ar containing
-		// the signature
-		FileInputStream fis = null;
+		File packageFile = new File(tempRoot.getParentFile(), packageFilename);
 		try {
-			fis = new FileInputStream(new File(tempRoot.getParentFile(),
-					GPGORIGIN_AR));
-		} catch (FileNotFoundException e1) {
-			throw new MojoExecutionException(
-					"Ar containing signature not found");
-		}
-
-		// We will avoid copying the header of the ar file
-		try {
-			fis.skip(8);
-		} catch (IOException e1) {
-			e1.printStackTrace();
-		}
-
-		/*
-		 * We will create a FileOutputStream in order to write in the debian
-		 * package
-		 */
-		FileOutputStream fos = null;
-		try {
-			fos = new FileOutputStream(new File(tempRoot.getParentFile(),
-					packageFilename), true);
-		} catch (FileNotFoundException e) {
-			IOUtils.closeQuietly(fis);
-			throw new MojoExecutionException(
-					"Package file to be signed could not be found");
-		}
-
-		// We copy one stream into the other
-		try {
-			int unit;
-			while ((unit = fis.read()) != -1) {
-				fos.write(unit);
-			}
-		} catch (IOException e) {
+			new DebOriginSigner(maintainer, apm.getSignPassPhrase())
+					.sign(packageFile);
+		} catch (IOException ioe) {
 			throw new MojoExecutionException(
-					"Error appending _gpgorigin to archive");
-		} finally {
-			try {
-				fis.close();
-			} catch (IOException e) {
-				throw new MojoExecutionException(
-						"Error closing input stream from _gpgorigin archive");
-			}
-			try {
-				fos.close();
-			} catch (IOException e) {
-				throw new MojoExecutionException(
-						"Error closing output stream to debian package");
-			}
+					"Error bundling the signature with the package: "
+							+ ioe.getMessage(), ioe);
 		}
-
-		// Here we clean the artifacts created while signing
-		File f = new File(tempRoot.getParentFile(), "debian-binary");
-		f.delete();
-		f = new File(tempRoot.getParentFile(), "control.tar.gz");
-		f.delete();
-		f = new File(tempRoot.getParentFile(), "data.tar.gz");
-		f.delete();
-		f = new File(tempRoot.getParentFile(), GPGORIGIN);
-		f.delete();
-		f = new File(tempRoot.getParentFile(), GPGORIGIN_AR);
-		f.delete();
-		f = new File(tempRoot.getParentFile(), COMBINEDCONTENTSFILENAME);
-		f.delete();
 	}
 
 }
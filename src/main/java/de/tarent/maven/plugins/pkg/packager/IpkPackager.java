@@ -65,9 +65,12 @@ import de.tarent.maven.plugins.pkg.Path;
 import de.tarent.maven.plugins.pkg.TargetConfiguration;
 import de.tarent.maven.plugins.pkg.Utils;
 import de.tarent.maven.plugins.pkg.WorkspaceSession;
+import de.tarent.maven.plugins.pkg.archive.Compression;
+import de.tarent.maven.plugins.pkg.archive.IpkArchiveWriter;
 import de.tarent.maven.plugins.pkg.generator.ControlFileGenerator;
 import de.tarent.maven.plugins.pkg.helper.ArtifactInclusionStrategy;
 import de.tarent.maven.plugins.pkg.helper.Helper;
+import de.tarent.maven.plugins.pkg.metrics.Metrics;
 
 /**
  * Creates a Debian package file (.deb)
@@ -138,7 +141,7 @@ public class IpkPackager extends Packager {
 				ph.createDependencyLine(result.getResolvedDependencies()),
 				byteAmount);
 
-		createPackage(l, ph, ph.getBasePkgDir());
+		createPackage(l, ph, distroConfig, ph.getBasePkgDir());
 
 		/*
 		 * When the Mojo fails to complete its task the work directory will be
@@ -169,12 +172,21 @@ public class IpkPackager extends Packager {
 			error = true;
 		}
 
-		/*
-		 * The ipkg-build tool, needed by this class is delivered within this
-		 * package in the ipkg-utils-050831.tar.gz archive. It will be extracted
-		 * to a temporary location and deleted as soon as the vm exits.
-		 */
+		if (error) {
+			throw new MojoExecutionException("Aborting due to earlier errors.");
+		}
+
+		if (isExternalBuilder(targetConfiguration, false)) {
+			extractIpkgBuild();
+		}
+	}
 
+	/**
+	 * The ipkg-build tool, needed by the external builder is delivered within
+	 * this package in the ipkg-utils-050831.tar.gz archive. It will be
+	 * extracted to a temporary location and deleted as soon as the vm exits.
+	 */
+	private void extractIpkgBuild() throws MojoExecutionException {
 		ArchiveFile IpkUtilsGZip;
 		try {
 			IpkUtilsGZip = new GZipTarFile(new File(IpkPackager.class
@@ -188,10 +200,6 @@ public class IpkPackager extends Packager {
 				"ipkg-utils-050831/ipkg-build");
 		// The tool needs to be executable
 		IPKGBUILD.setExecutable(true);
-
-		if (error) {
-			throw new MojoExecutionException("Aborting due to earlier errors.");
-		}
 	}
 
 	/**
@@ -203,50 +211,95 @@ public class IpkPackager extends Packager {
 			File controlFile, String packageName, String packageVersion,
 			String dependencyLine, long byteAmount)
 			throws MojoExecutionException {
-		ControlFileGenerator cgen = new ControlFileGenerator();
-		cgen.setPackageName(packageName);
-		cgen.setVersion(packageVersion);
-		cgen.setSection(dc.getSection());
-		cgen.setDependencies(dependencyLine);
-		cgen.setMaintainer(dc.getMaintainer());
-		cgen.setArchitecture(dc.getArchitecture());
-		cgen.setOE(packageName + "-" + packageVersion);
-
-		String url = ph.getProjectUrl();
-		if (url == null) {
-			l.warn("Project has no <url> field. However IPK packages require this. Using a dummy for now.");
-			url = "http://not-yet-set.org/" + packageName;
-		}
-		cgen.setSource(url);
-		cgen.setHomepage(url);
+		Metrics.enter(Metrics.Phase.GENERATION);
+		try {
+			ControlFileGenerator cgen = new ControlFileGenerator();
+			cgen.setPackageName(packageName);
+			cgen.setVersion(packageVersion);
+			cgen.setSection(dc.getSection());
+			cgen.setDependencies(dependencyLine);
+			cgen.setMaintainer(dc.getMaintainer());
+			cgen.setArchitecture(dc.getArchitecture());
+			cgen.setOE(packageName + "-" + packageVersion);
+
+			String url = ph.getProjectUrl();
+			if (url == null) {
+				l.warn("Project has no <url> field. However IPK packages require this. Using a dummy for now.");
+				url = "http://not-yet-set.org/" + packageName;
+			}
+			cgen.setSource(url);
+			cgen.setHomepage(url);
 
-		String desc = ph.getProjectDescription();
-		if (desc == null) {
-			l.warn("Project has no <description> field. However IPK packages require this. Using a placeholder for now.");
-			desc = "No description given yet.";
-		}
-		cgen.setShortDescription(desc);
+			String desc = ph.getProjectDescription();
+			if (desc == null) {
+				l.warn("Project has no <description> field. However IPK packages require this. Using a placeholder for now.");
+				desc = "No description given yet.";
+			}
+			cgen.setShortDescription(desc);
 
-		l.info("creating control file: " + controlFile.getAbsolutePath());
-		Utils.createFile(controlFile, "control");
+			l.info("creating control file: " + controlFile.getAbsolutePath());
+			Utils.createFile(controlFile, "control");
 
-		try {
-			cgen.generate(controlFile);
-		} catch (IOException ioe) {
-			throw new MojoExecutionException(
-					"IOException while creating control file.", ioe);
+			try {
+				cgen.generate(controlFile);
+			} catch (IOException ioe) {
+				throw new MojoExecutionException(
+						"IOException while creating control file.", ioe);
+			}
+		} finally {
+			Metrics.exit();
 		}
 	}
 
-	private void createPackage(Log l, Helper ph, File base)
+	/**
+	 * Returns the file named the way <code>ipkg-build</code> names it.
+	 */
+	@Override
+	public File getPackageFile(WorkspaceSession workspaceSession)
 			throws MojoExecutionException {
-		l.info("calling ipkg-build to create binary package");
+		Helper ph = workspaceSession.getHelper();
+		String version = ph.getPackageVersion();
+		version = version.substring(version.indexOf(':') + 1);
+
+		return new File(ph.getOutputDirectory(), ph.getPackageName() + "_"
+				+ version + "_"
+				+ workspaceSession.getTargetConfiguration().getArchitecture()
+				+ ".ipk");
+	}
 
-		Utils.exec(new String[] { IPKGBUILD.getAbsolutePath(), "-o", "root",
-				"-g", "root", base.getName(),
-				ph.getOutputDirectory().getAbsolutePath() },
-				base.getParentFile(), "'ipkg-build failed.",
-				"Error creating the .ipk file.");
+	private void createPackage(Log l, Helper ph, TargetConfiguration tc,
+			File base) throws MojoExecutionException {
+		Metrics.enter(Metrics.Phase.ARCHIVE);
+		try {
+			Compression compression = getCompression(tc);
+			Integer compressionLevel = tc.getCompressionLevel();
+
+			if (isExternalBuilder(tc, false)) {
+				l.info("calling ipkg-build to create binary package");
+
+				Utils.exec(new String[] { IPKGBUILD.getAbsolutePath(), "-o",
+						"root", "-g", "root", base.getName(),
+						ph.getOutputDirectory().getAbsolutePath() },
+						base.getParentFile(), "'ipkg-build failed.",
+						"Error creating the .ipk file.");
+			} else {
+				l.info("creating binary package from " + base.getAbsolutePath());
+				try {
+					IpkArchiveWriter writer = new IpkArchiveWriter();
+					writer.setCompression(compression);
+					if (compressionLevel != null) {
+						writer.setCompressionLevel(compressionLevel);
+					}
+					File packageFile = writer.write(base, ph.getOutputDirectory());
+					l.info("created binary package " + packageFile.getName());
+				} catch (IOException ioe) {
+					throw new MojoExecutionException(
+							"Error creating the .ipk file.", ioe);
+				}
+			}
+		} finally {
+			Metrics.exit();
+		}
 	}
 
 }
@@ -67,6 +67,7 @@ import de.tarent.maven.plugins.pkg.TargetConfiguration;
 import de.tarent.maven.plugins.pkg.Utils;
 import de.tarent.maven.plugins.pkg.WorkspaceSession;
 import de.tarent.maven.plugins.pkg.helper.Helper;
+import de.tarent.maven.plugins.pkg.metrics.Metrics;
 
 public class IzPackPackager extends Packager {
 	private static final String IZPACK_EMBEDDED_JAR = "izpack-embedded.jar";
@@ -354,47 +355,62 @@ public class IzPackPackager extends Packager {
 	private void createInstaller(Log l, String javaExec, File izPackHomeDir,
 			File izPackBaseDir, File izPackDescriptorFile,
 			File izPackInstallerFile) throws MojoExecutionException {
-		l.info("calling IzPack compiler to create installer package");
-
-		// Command-line argument ordering and naming suitable for IzPack 3.9.0
-		Utils.exec(
-				new String[] { javaExec, "-jar",
-						izPackHomeDir.getAbsolutePath() + "/lib/compiler.jar",
-						izPackDescriptorFile.getAbsolutePath(), "-h",
-						izPackHomeDir.getAbsolutePath(), "-b",
-						izPackBaseDir.getAbsolutePath(), "-o",
-						izPackInstallerFile.getAbsolutePath() }, izPackHomeDir,
-				"Unable to run IzPack.",
-				"IOException while trying to run IzPack.");
+		Metrics.enter(Metrics.Phase.ARCHIVE);
+		try {
+			l.info("calling IzPack compiler to create installer package");
+
+			// Command-line argument ordering and naming suitable for IzPack 3.9.0
+			Utils.exec(
+					new String[] { javaExec, "-jar",
+							izPackHomeDir.getAbsolutePath() + "/lib/compiler.jar",
+							izPackDescriptorFile.getAbsolutePath(), "-h",
+							izPackHomeDir.getAbsolutePath(), "-b",
+							izPackBaseDir.getAbsolutePath(), "-o",
+							izPackInstallerFile.getAbsolutePath() }, izPackHomeDir,
+					"Unable to run IzPack.",
+					"IOException while trying to run IzPack.");
 
+		} finally {
+			Metrics.exit();
+		}
 	}
 
 	private void createWindowsExecutable(Log l, String p7zipExec,
 			File izPackHomeDir, File installerFile, File windowsInstallerFile)
 			throws MojoExecutionException {
-		l.info("calling izpack2exe.py to create Windows installer binary");
+		Metrics.enter(Metrics.Phase.ARCHIVE);
+		try {
+			l.info("calling izpack2exe.py to create Windows installer binary");
 
-		Utils.exec(new String[] { "python", "izpack2exe.py",
-				"--file=" + installerFile.getAbsolutePath(),
-				"--output=" + windowsInstallerFile.getAbsolutePath(),
-				"--with-7z=" + p7zipExec, "--no-upx" }, new File(izPackHomeDir,
-				"utils/izpack2exe"), "Unable to run izpack2exe script",
-				"IOException while trying to run iz2pack2exe script.");
+			Utils.exec(new String[] { "python", "izpack2exe.py",
+					"--file=" + installerFile.getAbsolutePath(),
+					"--output=" + windowsInstallerFile.getAbsolutePath(),
+					"--with-7z=" + p7zipExec, "--no-upx" }, new File(izPackHomeDir,
+					"utils/izpack2exe"), "Unable to run izpack2exe script",
+					"IOException while trying to run iz2pack2exe script.");
 
+		} finally {
+			Metrics.exit();
+		}
 	}
 
 	private void createOSXExecutable(Log l, File izPackHomeDir,
 			File installerFile, File osxInstallerFile)
 			throws MojoExecutionException {
-		l.info("calling izpack2app.py to create OS X installer binary");
-
-		Utils.exec(
-				new String[] { "python", "izpack2app.py",
-						installerFile.getAbsolutePath(),
-						osxInstallerFile.getAbsolutePath(), }, new File(
-						izPackHomeDir, "utils/izpack2app"),
-				"Unable to run izpack2app script",
-				"IOException while trying to run iz2pack2app script.");
+		Metrics.enter(Metrics.Phase.ARCHIVE);
+		try {
+			l.info("calling izpack2app.py to create OS X installer binary");
+
+			Utils.exec(
+					new String[] { "python", "izpack2app.py",
+							installerFile.getAbsolutePath(),
+							osxInstallerFile.getAbsolutePath(), }, new File(
+							izPackHomeDir, "utils/izpack2app"),
+					"Unable to run izpack2app script",
+					"IOException while trying to run iz2pack2app script.");
+		} finally {
+			Metrics.exit();
+		}
 	}
 
 }
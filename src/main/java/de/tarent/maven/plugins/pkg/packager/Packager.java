@@ -25,17 +25,103 @@
 
 package de.tarent.maven.plugins.pkg.packager;
 
+import java.io.File;
+
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 
+import de.tarent.maven.plugins.pkg.TargetConfiguration;
 import de.tarent.maven.plugins.pkg.WorkspaceSession;
+import de.tarent.maven.plugins.pkg.archive.Compression;
 
 public abstract class Packager {
 
+	/**
+	 * Value of {@link TargetConfiguration#getPackageBuilder()} which selects
+	 * the in-process creation of the package file.
+	 */
+	public static final String INTERNAL_BUILDER = "internal";
+
+	/**
+	 * Value of {@link TargetConfiguration#getPackageBuilder()} which selects
+	 * the distribution's own tool for creating the package file.
+	 */
+	public static final String EXTERNAL_BUILDER = "external";
+
 	public abstract void execute(Log l, WorkspaceSession workspaceSession)
 			throws MojoExecutionException;
 
 	public abstract void checkEnvironment(Log l,
 			WorkspaceSession workspaceSession) throws MojoExecutionException;
 
+	/**
+	 * Returns the package file the packager creates for the given session or
+	 * <code>null</code> if the packager cannot tell in advance (e.g. because
+	 * it creates more than one file).
+	 * 
+	 * <p>
+	 * The result is used to decide whether the package is up to date and its
+	 * creation can be skipped.
+	 * </p>
+	 * 
+	 * @param workspaceSession
+	 * @return
+	 * @throws MojoExecutionException
+	 */
+	public File getPackageFile(WorkspaceSession workspaceSession)
+			throws MojoExecutionException {
+		return null;
+	}
+
+	/**
+	 * Tells whether the package file is to be created by an external tool.
+	 * 
+	 * @param tc
+	 * @param externalByDefault
+	 *            the answer if the target configuration does not say
+	 * @return
+	 * @throws MojoExecutionException
+	 *             if the configured builder is unknown
+	 */
+	protected boolean isExternalBuilder(TargetConfiguration tc,
+			boolean externalByDefault) throws MojoExecutionException {
+		String builder = tc.getPackageBuilder();
+		if (builder == null) {
+			return externalByDefault;
+		} else if (EXTERNAL_BUILDER.equals(builder)) {
+			return true;
+		} else if (INTERNAL_BUILDER.equals(builder)) {
+			return false;
+		}
+
+		throw new MojoExecutionException("Unknown package builder: " + builder
+				+ " (valid values are " + INTERNAL_BUILDER + " and "
+				+ EXTERNAL_BUILDER + ")");
+	}
+
+	/**
+	 * Returns the compression configured in the target configuration or
+	 * <code>gzip</code> if none is configured.
+	 * 
+	 * @param tc
+	 * @return
+	 * @throws MojoExecutionException
+	 *             if the compression or its level is unknown
+	 */
+	protected Compression getCompression(TargetConfiguration tc)
+			throws MojoExecutionException {
+		Integer level = tc.getCompressionLevel();
+		if (level != null && (level < 0 || level > 9)) {
+			throw new MojoExecutionException("Invalid compression level: "
+					+ level + " (valid values are 0 to 9)");
+		}
+
+		try {
+			return tc.getCompression() == null ? Compression.GZIP : Compression
+					.fromString(tc.getCompression());
+		} catch (IllegalArgumentException e) {
+			throw new MojoExecutionException(e.getMessage());
+		}
+	}
+
 }
@@ -52,6 +52,9 @@ package de.tarent.maven.plugins.pkg.packager;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
@@ -65,9 +68,11 @@ import de.tarent.maven.plugins.pkg.Path;
 import de.tarent.maven.plugins.pkg.TargetConfiguration;
 import de.tarent.maven.plugins.pkg.Utils;
 import de.tarent.maven.plugins.pkg.WorkspaceSession;
+import de.tarent.maven.plugins.pkg.archive.RpmWriter;
 import de.tarent.maven.plugins.pkg.generator.SpecFileGenerator;
 import de.tarent.maven.plugins.pkg.helper.ArtifactInclusionStrategy;
 import de.tarent.maven.plugins.pkg.helper.Helper;
+import de.tarent.maven.plugins.pkg.metrics.Metrics;
 
 /**
  * Creates a RPM package file
@@ -145,6 +150,11 @@ public class RPMPackager extends Packager {
 			ph.generateWrapperScript(bcp, cp, false);
 		}
 
+		if (!isExternalBuilder(distroConfig, true)) {
+			writePackage(l, workspaceSession, result.getResolvedDependencies());
+			return;
+		}
+
 		File specFile = new File(ph.getBaseSpecsDir(), ph.getPackageName()
 				+ ".spec");
 
@@ -172,15 +182,23 @@ public class RPMPackager extends Packager {
 
 		} catch (Exception ex) {
 			throw new MojoExecutionException(ex.toString(), ex);
-		} finally {
-			try {
-				ph.restoreRpmMacrosFileBackup(l);
-			} catch (IOException e) {
-				throw new MojoExecutionException(e.toString(), e);
-			}
 		}
 	}
 
+	/**
+	 * Returns the file the package is copied to after <code>rpmbuild</code>
+	 * created it.
+	 */
+	@Override
+	public File getPackageFile(WorkspaceSession workspaceSession)
+			throws MojoExecutionException {
+		Helper ph = workspaceSession.getHelper();
+		ph.setStrategy(Helper.RPM_STRATEGY);
+
+		return new File(workspaceSession.getMojo().getTempRoot()
+				.getParentFile(), ph.getPackageFileName());
+	}
+
 	/**
 	 * Copies the created artifact from
 	 * 
@@ -215,27 +233,109 @@ public class RPMPackager extends Packager {
 	}
 
 	/**
-	 * Will prepare the custom Build Area by creating the .rpmmacrosfile and
-	 * will check for rpmbuild to exist.
+	 * Will check for rpmbuild to exist.
+	 * 
+	 * <p>
+	 * Nothing of this is needed if the package is written by the plugin itself.
+	 * </p>
 	 */
 	@Override
 	public void checkEnvironment(Log l, WorkspaceSession workspaceSession)
 			throws MojoExecutionException {
 		Helper ph = workspaceSession.getHelper();
+		TargetConfiguration dc = workspaceSession.getTargetConfiguration();
+
+		checkneededfields(ph, dc);
+		if (!isExternalBuilder(dc, true)) {
+			if (dc.isSign()) {
+				throw new MojoExecutionException(
+						"Signing RPM packages requires the external package builder.");
+			}
+			return;
+		}
+
+		Utils.checkProgramAvailability("gpg");
+		Utils.checkProgramAvailability("rpmbuild");
+		l.info(Utils.getProgramVersionOutput("rpm"));
+	}
 
-		checkneededfields(ph, workspaceSession.getTargetConfiguration());
+	/**
+	 * Writes the package from the staged files without calling
+	 * <code>rpmbuild</code>. The metadata is the same as in the spec file.
+	 * 
+	 * @param l
+	 * @param workspaceSession
+	 * @param resolvedDependencies
+	 * @return the package file
+	 * @throws MojoExecutionException
+	 */
+	private File writePackage(Log l, WorkspaceSession workspaceSession,
+			Set<Artifact> resolvedDependencies) throws MojoExecutionException {
+		Metrics.enter(Metrics.Phase.ARCHIVE);
 		try {
-			Utils.checkProgramAvailability("gpg");
-			Utils.checkProgramAvailability("rpmbuild");
-			l.info(IOUtils.toString(
-					Utils.exec(new String[] { "rpm", "--version" }, null,
-							"Calling rpm --version failed", "ioError", null))
-					.trim());
-			ph.createRpmMacrosFile();
-
-		} catch (IOException e) {
-			throw new MojoExecutionException(e.getMessage());
+			Helper ph = workspaceSession.getHelper();
+			TargetConfiguration dc = workspaceSession.getTargetConfiguration();
+			File packageFile = getPackageFile(workspaceSession);
+			Integer compressionLevel = dc.getCompressionLevel();
+
+			RpmWriter writer = new RpmWriter();
+			writer.setName(ph.getPackageName());
+			writer.setVersion(ph.getPackageVersion().replace("-", "_"));
+			if (dc.getRevision() != null) {
+				writer.setRelease(dc.getRevision());
+			}
+			writer.setSummary(ph.getProjectDescription());
+			writer.setDescription(ph.getProjectDescription());
+			writer.setLicense(ph.getLicense());
+			writer.setUrl(ph.getProjectUrl());
+			writer.setGroup(dc.getSection());
+			writer.setRequires(ph.createDependencyLine(resolvedDependencies));
+			writer.setArch(ph.getArchitecture());
+			writer.setPrefix(dc.getPrefix());
+			writer.setPackager(dc.getMaintainer());
+			writer.setCompression(getCompression(dc));
+			if (compressionLevel != null) {
+				writer.setCompressionLevel(compressionLevel);
+			}
+
+			l.info("creating binary package from " + ph.getBaseBuildDir());
+			try {
+				writer.setPreinstallScript(readScript(ph, dc.getPreinstScript()));
+				String postinst = readScript(ph, dc.getPostinstScript());
+				String prerm = readScript(ph, dc.getPrermScript());
+				if (ph.isClassDataSharing()) {
+					postinst = ph.createCdsInstallCommands()
+							+ (postinst != null ? postinst : "");
+					prerm = ph.createCdsRemoveCommands()
+							+ (prerm != null ? prerm : "");
+				}
+				writer.setPostinstallScript(postinst);
+				writer.setPreuninstallScript(prerm);
+				writer.setPostuninstallScript(readScript(ph, dc.getPostrmScript()));
+
+				writer.write(ph.getBaseBuildDir(), packageFile);
+			} catch (IOException ioe) {
+				throw new MojoExecutionException("Error creating the .rpm file.",
+						ioe);
+			}
+			l.info("RPM file created at " + packageFile.getAbsolutePath());
+			return packageFile;
+		} finally {
+			Metrics.exit();
+		}
+	}
+
+	/**
+	 * Returns the content of the given maintainer script or <code>null</code>
+	 * if there is none, like {@link SpecFileGenerator} does.
+	 */
+	private String readScript(Helper ph, String scriptName) throws IOException {
+		File srcAuxFilesDir = ph.getSrcAuxFilesDir();
+		if (srcAuxFilesDir == null || scriptName == null
+				|| scriptName.length() == 0 || !srcAuxFilesDir.exists()) {
+			return null;
 		}
+		return FileUtils.readFileToString(new File(srcAuxFilesDir, scriptName));
 	}
 
 	/**
@@ -252,52 +352,63 @@ public class RPMPackager extends Packager {
 	private void generateSPECFile(Log l, Helper ph, TargetConfiguration dc,
 			Set<Artifact> resolvedDependencies, File specFile)
 			throws MojoExecutionException, IOException {
-		l.info("Creating SPEC file: " + specFile.getAbsolutePath());
-		SpecFileGenerator sgen = new SpecFileGenerator();
-		sgen.setLogger(l);
+		Metrics.enter(Metrics.Phase.GENERATION);
 		try {
-			sgen.setLogger(l);
-			sgen.setBuildroot("%{_builddir}");
-			// sgen.setCleancommands(generateCleanCommands(ph, dc));
-
-			// Following parameters MUST be provided for rpmbuild to work:
-			l.info("Adding mandatory parameters to SPEC file.");
-			sgen.setPackageName(ph.getPackageName());
-			sgen.setVersion(ph.getPackageVersion());
-			sgen.setSummary(ph.getProjectDescription());
-			sgen.setDescription(ph.getProjectDescription());
-			sgen.setLicense(ph.getLicense());
-			sgen.setRelease(dc.getRevision());
-			sgen.setSource(dc.getSource());
-			sgen.setUrl(ph.getProjectUrl());
-			sgen.setGroup(dc.getSection());
-			sgen.setDependencies(ph.createDependencyLine(resolvedDependencies));
-
-			// Following parameters are not mandatory
-			l.info("Adding optional parameters to SPEC file.");
-			sgen.setArch(ph.getArchitecture());
-			sgen.setPrefix(dc.getPrefix());
-			sgen.setPackager(dc.getMaintainer());
-			sgen.setFiles(ph.generateFilelist());
-
-			sgen.setPreinstallcommandsFromFile(ph.getSrcAuxFilesDir(),
-					dc.getPreinstScript());
-			sgen.setPostinstallcommandsFromFile(ph.getSrcAuxFilesDir(),
-					dc.getPostinstScript());
-			sgen.setPreuninstallcommandsFromFile(ph.getSrcAuxFilesDir(),
-					dc.getPrermScript());
-			sgen.setPostuninstallcommandsFromFile(ph.getSrcAuxFilesDir(),
-					dc.getPostrmScript());
-
 			l.info("Creating SPEC file: " + specFile.getAbsolutePath());
-			Utils.createFile(specFile, "spec");
-			sgen.generate(specFile);
+			SpecFileGenerator sgen = new SpecFileGenerator();
+			sgen.setLogger(l);
+			try {
+				sgen.setLogger(l);
+				sgen.setBuildroot("%{_builddir}");
+				// sgen.setCleancommands(generateCleanCommands(ph, dc));
+
+				// Following parameters MUST be provided for rpmbuild to work:
+				l.info("Adding mandatory parameters to SPEC file.");
+				sgen.setPackageName(ph.getPackageName());
+				sgen.setVersion(ph.getPackageVersion());
+				sgen.setSummary(ph.getProjectDescription());
+				sgen.setDescription(ph.getProjectDescription());
+				sgen.setLicense(ph.getLicense());
+				sgen.setRelease(dc.getRevision());
+				sgen.setSource(dc.getSource());
+				sgen.setUrl(ph.getProjectUrl());
+				sgen.setGroup(dc.getSection());
+				sgen.setDependencies(ph.createDependencyLine(resolvedDependencies));
+
+				// Following parameters are not mandatory
+				l.info("Adding optional parameters to SPEC file.");
+				sgen.setArch(ph.getArchitecture());
+				sgen.setPrefix(dc.getPrefix());
+				sgen.setPackager(dc.getMaintainer());
+				sgen.setFiles(ph.generateFilelist());
+
+				sgen.setPreinstallcommandsFromFile(ph.getSrcAuxFilesDir(),
+						dc.getPreinstScript());
+				sgen.setPostinstallcommandsFromFile(ph.getSrcAuxFilesDir(),
+						dc.getPostinstScript());
+				sgen.setPreuninstallcommandsFromFile(ph.getSrcAuxFilesDir(),
+						dc.getPrermScript());
+				sgen.setPostuninstallcommandsFromFile(ph.getSrcAuxFilesDir(),
+						dc.getPostrmScript());
+				if (ph.isClassDataSharing()) {
+					sgen.getPostinstallcommands().addAll(0,
+							Arrays.asList(ph.createCdsInstallCommands().split("\n")));
+					sgen.getPreuninstallcommands().addAll(0,
+							Arrays.asList(ph.createCdsRemoveCommands().split("\n")));
+				}
+
+				l.info("Creating SPEC file: " + specFile.getAbsolutePath());
+				Utils.createFile(specFile, "spec");
+				sgen.generate(specFile);
+
+			} catch (IOException ioe) {
+				throw new MojoExecutionException(
+						"IOException while creating SPEC file.", ioe);
+			}
 
-		} catch (IOException ioe) {
-			throw new MojoExecutionException(
-					"IOException while creating SPEC file.", ioe);
+		} finally {
+			Metrics.exit();
 		}
-
 	}
 
 	/**
@@ -306,6 +417,9 @@ public class RPMPackager extends Packager {
 	 * If the parameter "sign" is set as true in pom, package will be signed
 	 * with the Maintainer (Packager) name provided.
 	 * 
+	 * The Build Area is passed as macro definitions on the command line, see
+	 * {@link Helper#getRpmMacroDefinitions()}.
+	 * 
 	 * @param l
 	 * @param ph
 	 * @param specFile
@@ -313,31 +427,36 @@ public class RPMPackager extends Packager {
 	 */
 	private void createPackage(Log l, WorkspaceSession workspaceSession,
 			File specFile) throws MojoExecutionException {
+		Metrics.enter(Metrics.Phase.ARCHIVE);
+		try {
+			Helper ph = workspaceSession.getHelper();
+			TargetConfiguration dc = workspaceSession.getTargetConfiguration();
+			AbstractPackagingMojo apm = workspaceSession.getMojo();
+			l.info("Calling rpmbuild to create binary package");
+			l.info("Builddir is " + ph.getBaseBuildDir().toString());
+			List<String> args = new ArrayList<String>();
+			args.add("rpmbuild");
+			args.addAll(ph.getRpmMacroDefinitions());
+			args.add("-bb");
+			if (dc.isSign()) {
+				args.add("--sign");
+			}
+			args.add("--buildroot");
+			args.add(ph.getBaseBuildDir().toString());
+			args.add(specFile.toString());
+			String[] command = args.toArray(new String[args.size()]);
+
+			if (apm.getSignPassPhrase() != null && dc.isSign()) {
+				Utils.exec(command, "'rpmbuild -bb' failed.",
+						"Error creating rpm file.", apm.getSignPassPhrase());
+			} else {
+				Utils.exec(command, "'rpmbuild -bb' failed.",
+						"Error creating rpm file.");
+			}
 
-		Helper ph = workspaceSession.getHelper();
-		TargetConfiguration dc = workspaceSession.getTargetConfiguration();
-		AbstractPackagingMojo apm = workspaceSession.getMojo();
-		l.info("Calling rpmbuild to create binary package");
-		l.info("Builddir is " + ph.getBaseBuildDir().toString());
-		String[] command;
-		if (dc.isSign()) {
-			command = new String[] { "rpmbuild", "-bb", "--sign",
-					"--buildroot", ph.getBaseBuildDir().toString(),
-					specFile.toString() };
-
-		} else {
-			command = new String[] { "rpmbuild", "-bb", "--buildroot",
-					ph.getBaseBuildDir().toString(), specFile.toString() };
-		}
-
-		if (apm.getSignPassPhrase() != null && dc.isSign()) {
-			Utils.exec(command, "'rpmbuild -bb' failed.",
-					"Error creating rpm file.", apm.getSignPassPhrase());
-		} else {
-			Utils.exec(command, "'rpmbuild -bb' failed.",
-					"Error creating rpm file.");
+		} finally {
+			Metrics.exit();
 		}
-
 	}
 
 	private void checkneededfields(Helper ph, TargetConfiguration dc)
@@ -0,0 +1,173 @@
+package de.tarent.maven.plugins.pkg.signing;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.compress.archivers.ar.ArArchiveEntry;
+import org.apache.commons.compress.archivers.ar.ArArchiveInputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import de.tarent.maven.plugins.pkg.Utils;
+import de.tarent.maven.plugins.pkg.archive.ArWriter;
+import de.tarent.maven.plugins.pkg.metrics.Metrics;
+
+/**
+ * Puts a detached OpenPGP signature of the contents of a Debian package into
+ * the package itself as the <code>_gpgorigin</code> member (as understood by
+ * <code>debsig-verify</code> and <code>dpkg-sig</code>).
+ *
+ * <p>
+ * The signed data is the concatenation of all members of the package in
+ * archive order. The members are streamed straight from the package into
+ * <code>gpg</code> so that the package is read exactly once and no member is
+ * unpacked into a temporary file. <code>gpg</code> is run through
+ * {@link Utils#exec(String[], File, InputStream, String, String)} and killed
+ * once the configured timeout is exceeded.
+ * </p>
+ */
+public class DebOriginSigner {
+
+	/**
+	 * The name of the member holding the signature.
+	 */
+	public static final String GPGORIGIN = "_gpgorigin";
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private final String[] command;
+
+	/**
+	 * Creates a signer which uses the given key of the user's gpg keyring.
+	 *
+	 * <p>
+	 * If a passphrase is given no interaction with the user is expected and
+	 * gpg is called with <code>--no-tty</code>.
+	 * </p>
+	 *
+	 * @param keyId
+	 * @param passPhrase
+	 *            or <code>null</code>
+	 */
+	public DebOriginSigner(String keyId, String passPhrase) {
+		List<String> args = new ArrayList<String>();
+		args.add("gpg");
+		if (passPhrase != null) {
+			args.addAll(Arrays.asList("--no-tty", "--passphrase", passPhrase,
+					"--no-use-agent"));
+		}
+		args.addAll(Arrays.asList("--default-key", keyId, "-abs"));
+		command = args.toArray(new String[args.size()]);
+	}
+
+	/**
+	 * Creates a signer which runs the given command. The command must read the
+	 * data from its standard input and write the armored detached signature
+	 * to its standard output.
+	 *
+	 * @param command
+	 */
+	DebOriginSigner(String[] command) {
+		this.command = command;
+	}
+
+	/**
+	 * Signs the given package and appends the signature to it.
+	 *
+	 * @param deb
+	 * @throws IOException
+	 */
+	public void sign(File deb) throws IOException {
+		Metrics.enter(Metrics.Phase.SIGNING);
+		try {
+			byte[] signature = createSignature(deb);
+
+			ArWriter writer = ArWriter.append(deb);
+			try {
+				writer.putBytes(GPGORIGIN, signature);
+			} finally {
+				writer.close();
+			}
+		} finally {
+			Metrics.exit();
+		}
+	}
+
+	private byte[] createSignature(File deb) throws IOException {
+		byte[] signature;
+		try {
+			// Runs with the timeout of all external programs and drains the
+			// outputs while the data is being written.
+			signature = IOUtils.toByteArray(Utils.exec(command, null,
+					new SignedDataInputStream(deb), "Error signing package "
+							+ deb, "Error signing package " + deb));
+		} catch (MojoExecutionException e) {
+			String errors = e.getLongMessage();
+			throw new IOException(e.getMessage()
+					+ (errors == null || errors.length() == 0 ? "" : ": "
+							+ errors), e);
+		}
+
+		if (signature.length == 0) {
+			throw new IOException("No signature was created for package "
+					+ deb);
+		}
+		return signature;
+	}
+
+	/**
+	 * The data to be signed: the members of a package in archive order,
+	 * without the existing signatures.
+	 */
+	private static class SignedDataInputStream extends InputStream {
+
+		private final InputStream is;
+
+		private final ArArchiveInputStream ar;
+
+		private boolean inMember;
+
+		SignedDataInputStream(File deb) throws IOException {
+			is = new BufferedInputStream(new FileInputStream(deb), BUFFER_SIZE);
+			ar = new ArArchiveInputStream(is);
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int n = read(b, 0, 1);
+			return n == -1 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			while (true) {
+				if (!inMember) {
+					ArArchiveEntry entry = ar.getNextArEntry();
+					if (entry == null) {
+						return -1;
+					}
+					// Existing signatures are not part of the signed data.
+					inMember = !entry.getName().startsWith("_");
+					continue;
+				}
+				int n = ar.read(b, off, len);
+				if (n != -1) {
+					return n;
+				}
+				inMember = false;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			is.close();
+		}
+	}
+}
@@ -33,8 +33,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -45,6 +48,7 @@ import de.tarent.maven.plugins.pkg.Utils;
 import de.tarent.maven.plugins.pkg.WorkspaceSession;
 import de.tarent.maven.plugins.pkg.generator.ChangelogFileGenerator;
 import de.tarent.maven.plugins.pkg.generator.SourceControlFileGenerator;
+import de.tarent.maven.plugins.pkg.metrics.Metrics;
 
 /**
  * Generates a changes-file for the package generated by the pkg-goal and signs
@@ -70,12 +74,6 @@ public class DebianSigner {
 	 */
 	protected static String changesGenCmd = "dpkg-genchanges";
 
-	/**
-	 * The command to use for generating a date-string which complies to the
-	 * RFC-2822 specification.
-	 */
-	protected static String rfc2822DateCmd = "date";
-
 	protected static final String AUTOMATICGENERATIONDISCLAIMER = "Package automatically generated with pkg-maven-plugin. "
 			+ "No changes were provided when packaging.";
 
@@ -149,16 +147,20 @@ public class DebianSigner {
 	 * @throws MojoExecutionException
 	 */
 	public void start(Log l) throws MojoExecutionException {
+		Metrics.enter(Metrics.Phase.SIGNING);
+		try {
+			generateFileList(l, buildDir);
 
-		generateFileList(l, buildDir);
-
-		generateSourceControlFile(l, buildDir);
+			generateSourceControlFile(l, buildDir);
 
-		generateChangelogFile(l, buildDir);
+			generateChangelogFile(l, buildDir);
 
-		generateChangesFile(l, buildDir);
+			generateChangesFile(l, buildDir);
 
-		signPackage(l, buildDir);
+			signPackage(l, buildDir);
+		} finally {
+			Metrics.exit();
+		}
 	}
 
 	/**
@@ -247,8 +249,8 @@ public class DebianSigner {
 	}
 
 	/**
-	 * Excecutes the command defined in the <code>rfc2822DateCmd</code>-variable
-	 * to generate a date-string complying to the RFC-2822 specification.
+	 * Generates a date-string complying to the RFC-2822 specification, like
+	 * <code>date -R</code> does.
 	 * 
 	 * @param l
 	 * @param base
@@ -257,25 +259,9 @@ public class DebianSigner {
 	 */
 	protected String getRFC2822Date(Log l, File base)
 			throws MojoExecutionException {
-		l.info("calling 'date -R' to get RFC‐2822 date");
-
-		InputStream processOutput = Utils.exec(new String[] { rfc2822DateCmd,
-				"-R" }, base, "Generating RFC-2822 date failed",
-				"Error generating RFC-2822 date.");
-
-		if (processOutput != null) {
-			try {
-				return new BufferedReader(new InputStreamReader(processOutput))
-						.readLine();
-			} catch (IOException e) {
-				throw new MojoExecutionException(
-						"Generating RFC-2822 date failed. ", e);
-			}
-		} else {
-			throw new MojoExecutionException(
-					"Generating RFC-2822 date failed (No output from "
-							+ rfc2822DateCmd + ").");
-		}
+		// Day and month names must not be localized.
+		return new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z", Locale.US)
+				.format(new Date());
 	}
 
 	/**
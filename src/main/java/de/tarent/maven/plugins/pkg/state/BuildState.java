@@ -0,0 +1,118 @@
+package de.tarent.maven.plugins.pkg.state;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * The build-state manifest of a single target configuration and
+ * distribution.
+ *
+ * <p>
+ * It records the digest of all inputs which went into a package together with
+ * the location, size and modification time of the resulting package file. As
+ * long as the digest of the current inputs is the same and the package file
+ * was not touched since, building the package again would yield the same
+ * result and can be skipped.
+ * </p>
+ */
+public final class BuildState {
+
+	private static final String DIGEST = "digest";
+
+	private static final String PACKAGE_FILE = "package.file";
+
+	private static final String PACKAGE_LENGTH = "package.length";
+
+	private static final String PACKAGE_LAST_MODIFIED = "package.lastModified";
+
+	private final File file;
+
+	/**
+	 * Creates the manifest for the given target and distribution in the given
+	 * state directory.
+	 *
+	 * @param stateDir
+	 * @param target
+	 * @param distro
+	 */
+	public BuildState(File stateDir, String target, String distro) {
+		file = new File(stateDir, target + "_" + distro + ".properties");
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Tells whether the recorded package file was built from inputs with the
+	 * given digest and is still unchanged.
+	 *
+	 * @param digest
+	 * @param packageFile
+	 * @return
+	 * @throws IOException
+	 */
+	public boolean isUpToDate(String digest, File packageFile)
+			throws IOException {
+		if (!file.exists() || !packageFile.isFile()) {
+			return false;
+		}
+
+		Properties p = new Properties();
+		InputStream is = new FileInputStream(file);
+		try {
+			p.load(is);
+		} finally {
+			is.close();
+		}
+
+		return digest.equals(p.getProperty(DIGEST))
+				&& packageFile.getAbsolutePath().equals(
+						p.getProperty(PACKAGE_FILE))
+				&& String.valueOf(packageFile.length()).equals(
+						p.getProperty(PACKAGE_LENGTH))
+				&& String.valueOf(packageFile.lastModified()).equals(
+						p.getProperty(PACKAGE_LAST_MODIFIED));
+	}
+
+	/**
+	 * Records that the given package file was built from inputs with the given
+	 * digest.
+	 *
+	 * @param digest
+	 * @param packageFile
+	 * @throws IOException
+	 */
+	public void record(String digest, File packageFile) throws IOException {
+		Properties p = new Properties();
+		p.setProperty(DIGEST, digest);
+		p.setProperty(PACKAGE_FILE, packageFile.getAbsolutePath());
+		p.setProperty(PACKAGE_LENGTH, String.valueOf(packageFile.length()));
+		p.setProperty(PACKAGE_LAST_MODIFIED,
+				String.valueOf(packageFile.lastModified()));
+
+		File parent = file.getParentFile();
+		if (!parent.exists() && !parent.mkdirs()) {
+			throw new IOException("Unable to create directory " + parent);
+		}
+
+		OutputStream os = new FileOutputStream(file);
+		try {
+			p.store(os, "pkg-maven-plugin build state");
+		} finally {
+			os.close();
+		}
+	}
+
+	/**
+	 * Removes the manifest, e.g. because building the package failed.
+	 */
+	public void invalidate() {
+		file.delete();
+	}
+}
@@ -0,0 +1,135 @@
+package de.tarent.maven.plugins.pkg.state;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Remembers the SHA-256 checksums of files together with their size and
+ * modification time, so that unchanged files (e.g. the Jars in the local
+ * repository) are not read again on every build.
+ *
+ * <p>
+ * The cache is kept in a properties file. Instances are thread-safe.
+ * </p>
+ */
+public final class ChecksumCache {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final File file;
+
+	private final Properties entries = new Properties();
+
+	private boolean loaded;
+
+	private boolean modified;
+
+	public ChecksumCache(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Returns the hex encoded SHA-256 checksum of the given file.
+	 *
+	 * @param f
+	 * @return
+	 * @throws IOException
+	 */
+	public synchronized String getChecksum(File f) throws IOException {
+		load();
+
+		String key = f.getAbsolutePath();
+		String stamp = f.length() + ":" + f.lastModified() + ":";
+		String value = entries.getProperty(key);
+		if (value != null && value.startsWith(stamp)) {
+			return value.substring(stamp.length());
+		}
+
+		String checksum = computeChecksum(f);
+		entries.setProperty(key, stamp + checksum);
+		modified = true;
+		return checksum;
+	}
+
+	/**
+	 * Writes the cache back to its file if it was changed.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void save() throws IOException {
+		if (!modified) {
+			return;
+		}
+
+		File parent = file.getParentFile();
+		if (!parent.exists() && !parent.mkdirs()) {
+			throw new IOException("Unable to create directory " + parent);
+		}
+
+		OutputStream os = new FileOutputStream(file);
+		try {
+			entries.store(os, "pkg-maven-plugin checksum cache");
+		} finally {
+			os.close();
+		}
+		modified = false;
+	}
+
+	private void load() throws IOException {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+
+		if (file.exists()) {
+			InputStream is = new FileInputStream(file);
+			try {
+				entries.load(is);
+			} finally {
+				is.close();
+			}
+		}
+	}
+
+	static String computeChecksum(File f) throws IOException {
+		MessageDigest md = createDigest();
+		InputStream is = new FileInputStream(f);
+		try {
+			byte[] buffer = new byte[65536];
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				md.update(buffer, 0, read);
+			}
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+		return toHex(md.digest());
+	}
+
+	static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static String toHex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+}
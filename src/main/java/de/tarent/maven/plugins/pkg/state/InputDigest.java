@@ -0,0 +1,195 @@
+package de.tarent.maven.plugins.pkg.state;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Accumulates named input values and files into a single SHA-256 digest.
+ *
+ * <p>
+ * Values are rendered into a canonical textual form first: collections
+ * element by element, maps sorted by key and other objects (e.g.
+ * {@link de.tarent.maven.plugins.pkg.AuxFile} instances) field by field.
+ * Files are represented by their checksum as provided by a
+ * {@link ChecksumCache}.
+ * </p>
+ */
+public final class InputDigest {
+
+	private static final Comparator<Field> FIELD_ORDER = new Comparator<Field>() {
+		public int compare(Field a, Field b) {
+			return a.getName().compareTo(b.getName());
+		}
+	};
+
+	private final MessageDigest md = ChecksumCache.createDigest();
+
+	private final ChecksumCache checksums;
+
+	public InputDigest(ChecksumCache checksums) {
+		this.checksums = checksums;
+	}
+
+	/**
+	 * Adds a named value.
+	 *
+	 * @param name
+	 * @param value
+	 */
+	public void add(String name, Object value) {
+		StringBuilder sb = new StringBuilder(name);
+		sb.append('=');
+		render(sb, value);
+		sb.append('\n');
+		update(sb.toString());
+	}
+
+	/**
+	 * Adds the checksum of a file or a marker if it does not exist.
+	 *
+	 * @param name
+	 * @param f
+	 * @throws IOException
+	 */
+	public void addFile(String name, File f) throws IOException {
+		if (f != null && f.isFile()) {
+			add(name, checksums.getChecksum(f));
+		} else {
+			add(name, "<missing>");
+		}
+	}
+
+	/**
+	 * Adds the relative names and checksums of all files below the given
+	 * directory.
+	 *
+	 * @param name
+	 * @param dir
+	 * @throws IOException
+	 */
+	public void addDirectory(String name, File dir) throws IOException {
+		if (!dir.isDirectory()) {
+			add(name, "<missing>");
+			return;
+		}
+		addDirectory(name, dir, "");
+	}
+
+	private void addDirectory(String name, File dir, String prefix)
+			throws IOException {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			throw new IOException("Unable to list directory " + dir);
+		}
+		Arrays.sort(files);
+
+		for (File f : files) {
+			String path = prefix + f.getName();
+			if (f.isDirectory()) {
+				addDirectory(name, f, path + "/");
+			} else {
+				addFile(name + ":" + path, f);
+			}
+		}
+	}
+
+	/**
+	 * Returns the hex encoded digest of everything that was added.
+	 *
+	 * @return
+	 */
+	public String getDigest() {
+		return ChecksumCache.toHex(md.digest());
+	}
+
+	private void update(String s) {
+		try {
+			md.update(s.getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			// UTF-8 is always supported.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void render(StringBuilder sb, Object value) {
+		if (value == null) {
+			sb.append("<null>");
+		} else if (value instanceof String || value instanceof Boolean
+				|| value instanceof Number || value instanceof Character) {
+			// Escapes the separators so that values cannot be confused.
+			sb.append(value.toString().replace("\\", "\\\\")
+					.replace("\n", "\\n").replace(",", "\\,"));
+		} else if (value instanceof Set<?>) {
+			// Sets have no defined order, so their elements are sorted.
+			List<String> elements = new ArrayList<String>();
+			for (Object o : (Set<?>) value) {
+				StringBuilder element = new StringBuilder();
+				render(element, o);
+				elements.add(element.toString());
+			}
+			Collections.sort(elements);
+			sb.append('[');
+			for (String element : elements) {
+				sb.append(element);
+				sb.append(',');
+			}
+			sb.append(']');
+		} else if (value instanceof Collection<?>) {
+			sb.append('[');
+			for (Object o : (Collection<?>) value) {
+				render(sb, o);
+				sb.append(',');
+			}
+			sb.append(']');
+		} else if (value instanceof Map<?, ?>) {
+			Map<String, Object> sorted = new TreeMap<String, Object>();
+			for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+				sorted.put(String.valueOf(e.getKey()), e.getValue());
+			}
+			sb.append('{');
+			for (Map.Entry<String, Object> e : sorted.entrySet()) {
+				render(sb, e.getKey());
+				sb.append(':');
+				render(sb, e.getValue());
+				sb.append(',');
+			}
+			sb.append('}');
+		} else {
+			sb.append(value.getClass().getName());
+			sb.append('{');
+			for (Class<?> c = value.getClass(); c != Object.class; c = c
+					.getSuperclass()) {
+				Field[] fields = c.getDeclaredFields();
+				Arrays.sort(fields, FIELD_ORDER);
+				for (Field field : fields) {
+					if (Modifier.isStatic(field.getModifiers())) {
+						continue;
+					}
+					field.setAccessible(true);
+					sb.append(field.getName());
+					sb.append(':');
+					try {
+						render(sb, field.get(value));
+					} catch (IllegalAccessException e) {
+						throw new IllegalStateException(e);
+					}
+					sb.append(',');
+				}
+			}
+			sb.append('}');
+		}
+	}
+}
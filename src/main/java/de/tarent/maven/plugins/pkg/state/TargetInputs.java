@@ -0,0 +1,206 @@
+package de.tarent.maven.plugins.pkg.state;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.License;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+
+import de.tarent.maven.plugins.pkg.AbstractPackagingMojo;
+import de.tarent.maven.plugins.pkg.AuxFile;
+import de.tarent.maven.plugins.pkg.TargetConfiguration;
+import de.tarent.maven.plugins.pkg.Utils;
+import de.tarent.maven.plugins.pkg.WorkspaceSession;
+import de.tarent.maven.plugins.pkg.annotations.MergeMe;
+import de.tarent.maven.plugins.pkg.helper.Helper;
+import de.tarent.maven.plugins.pkg.map.DependencyClassification;
+import de.tarent.maven.plugins.pkg.map.PackageMap;
+
+/**
+ * Computes the digest of everything that goes into the package of a single
+ * target configuration.
+ *
+ * <p>
+ * The digest covers:
+ * <ul>
+ * <li>the plugin itself,</li>
+ * <li>the project's coordinates and its artifact,</li>
+ * <li>all merged {@link MergeMe} fields of the target configuration and the
+ * names of the packages it relates to,</li>
+ * <li>the resolved dependencies and their checksums,</li>
+ * <li>the package map properties and entries used for the dependencies
+ * and</li>
+ * <li>all files in the auxiliary, sysconf, bin, sbin, data, dataroot, JNI, Jar
+ * and IzPack source directories as well as absolute file references.</li>
+ * </ul>
+ * </p>
+ */
+public final class TargetInputs {
+
+	private static final Comparator<Artifact> ARTIFACT_ORDER = new Comparator<Artifact>() {
+		public int compare(Artifact a, Artifact b) {
+			return a.getId().compareTo(b.getId());
+		}
+	};
+
+	private TargetInputs() {
+		// Intentionally empty.
+	}
+
+	/**
+	 * Returns the hex encoded digest of the inputs of the target configuration
+	 * in the given session.
+	 *
+	 * @param ws
+	 * @param checksums
+	 * @return
+	 * @throws MojoExecutionException
+	 */
+	public static String digest(WorkspaceSession ws, ChecksumCache checksums)
+			throws MojoExecutionException {
+		AbstractPackagingMojo mojo = ws.getMojo();
+		MavenProject project = mojo.getProject();
+		TargetConfiguration tc = ws.getTargetConfiguration();
+		PackageMap pm = ws.getPackageMap();
+		Helper ph = ws.getHelper();
+
+		InputDigest d = new InputDigest(checksums);
+		try {
+			d.addFile("plugin", getPluginFile());
+
+			d.add("project.groupId", project.getGroupId());
+			d.add("project.artifactId", project.getArtifactId());
+			d.add("project.version", project.getVersion());
+			d.add("project.description", project.getDescription());
+			d.add("project.url", project.getUrl());
+			for (License license : project.getLicenses()) {
+				d.add("project.license", license.getName());
+				d.add("project.license.url", license.getUrl());
+			}
+			d.addFile("project.artifact", ph.getSrcArtifactFile());
+
+			addTargetConfiguration(d, tc);
+			d.add("relations", Utils.createPackageNames(
+					project.getArtifactId(), ws.getResolvedRelations(),
+					pm.isDebianNaming()));
+
+			d.add("distro", ph.getChosenDistro());
+			d.add("map.packaging", pm.getPackaging());
+			d.add("map.distroLabel", pm.getDistroLabel());
+			d.add("map.repositoryName", pm.getRepositoryName());
+			d.add("map.defaultDependencyLine", pm.getDefaultDependencyLine());
+			d.add("map.defaultJarPath", pm.getDefaultJarPath());
+			d.add("map.defaultJNIPath", pm.getDefaultJNIPath());
+			d.add("map.defaultBinPath", pm.getDefaultBinPath());
+			d.add("map.debianNaming", pm.isDebianNaming());
+
+			List<Artifact> deps = new ArrayList<Artifact>(
+					ph.resolveProjectDependencies());
+			Collections.sort(deps, ARTIFACT_ORDER);
+			for (Artifact a : deps) {
+				d.addFile("dependency:" + a.getId(), a.getFile());
+			}
+
+			DependencyClassification dc = ph
+					.classifyDependencies(new LinkedHashSet<Artifact>(deps));
+			List<String> bundled = new ArrayList<String>();
+			for (Artifact a : dc.getBundled()) {
+				bundled.add(a.getId());
+			}
+			d.add("map.bundled", bundled);
+			d.add("map.bootClasspath", dc.getBootClasspath());
+			d.add("map.classpath", dc.getClasspath());
+			d.add("map.dependencyLine", dc.getDependencyLine());
+
+			addSourceDirectories(d, ph);
+			addAbsoluteFiles(d, tc);
+		} catch (IOException ioe) {
+			throw new MojoExecutionException(
+					"Unable to compute the digest of the package inputs", ioe);
+		}
+
+		return d.getDigest();
+	}
+
+	private static void addTargetConfiguration(InputDigest d,
+			TargetConfiguration tc) throws MojoExecutionException {
+		for (Field field : TargetConfiguration.class.getDeclaredFields()) {
+			if (field.getAnnotation(MergeMe.class) != null) {
+				field.setAccessible(true);
+				try {
+					d.add("tc." + field.getName(), field.get(tc));
+				} catch (IllegalAccessException e) {
+					throw new MojoExecutionException(e.getMessage(), e);
+				}
+			}
+		}
+	}
+
+	private static void addSourceDirectories(InputDigest d, Helper ph)
+			throws IOException {
+		// Most of the directories default to the same location.
+		Set<File> dirs = new LinkedHashSet<File>();
+		dirs.add(ph.getSrcAuxFilesDir().getAbsoluteFile());
+		dirs.add(ph.getSrcSysconfFilesDir().getAbsoluteFile());
+		dirs.add(ph.getSrcBinFilesDir().getAbsoluteFile());
+		dirs.add(ph.getSrcSBinFilesDir().getAbsoluteFile());
+		dirs.add(ph.getSrcDataFilesDir().getAbsoluteFile());
+		dirs.add(ph.getSrcDatarootFilesDir().getAbsoluteFile());
+		dirs.add(ph.getSrcJNIFilesDir().getAbsoluteFile());
+		dirs.add(ph.getSrcJarFilesDir().getAbsoluteFile());
+		dirs.add(ph.getSrcIzPackFilesDir().getAbsoluteFile());
+
+		for (File dir : dirs) {
+			d.addDirectory("dir:" + dir.getPath(), dir);
+		}
+	}
+
+	private static void addAbsoluteFiles(InputDigest d, TargetConfiguration tc)
+			throws IOException {
+		List<AuxFile> files = new ArrayList<AuxFile>();
+		files.addAll(tc.getAuxFiles());
+		files.addAll(tc.getSysconfFiles());
+		files.addAll(tc.getBinFiles());
+		files.addAll(tc.getSBinFiles());
+		files.addAll(tc.getDataFiles());
+		files.addAll(tc.getDatarootFiles());
+		files.addAll(tc.getJniFiles());
+		files.addAll(tc.getJarFiles());
+
+		for (AuxFile af : files) {
+			File f = new File(af.getFrom());
+			if (f.isAbsolute()) {
+				d.addFile("file:" + f.getPath(), f);
+			}
+		}
+	}
+
+	/**
+	 * Returns the Jar file the plugin was loaded from or <code>null</code>.
+	 */
+	private static File getPluginFile() {
+		CodeSource cs = TargetInputs.class.getProtectionDomain()
+				.getCodeSource();
+		URL url = cs != null ? cs.getLocation() : null;
+		if (url == null || !"file".equals(url.getProtocol())) {
+			return null;
+		}
+		try {
+			return new File(url.toURI());
+		} catch (URISyntaxException e) {
+			return null;
+		}
+	}
+}
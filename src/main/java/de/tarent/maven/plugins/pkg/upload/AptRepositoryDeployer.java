@@ -0,0 +1,85 @@
+package de.tarent.maven.plugins.pkg.upload;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import de.tarent.maven.plugins.pkg.WorkspaceSession;
+
+/**
+ * Deploys a .deb to a local flat APT repository and updates the repository's
+ * index with {@link AptRepositoryIndexer}. Unlike {@link RepreproDeployer} no
+ * external tools are needed.
+ */
+public class AptRepositoryDeployer implements IConcurrentPkgUploader {
+
+	protected final Log l;
+
+	protected final String packagingType;
+
+	protected final String repo;
+
+	protected final File packageFile;
+
+	public AptRepositoryDeployer(WorkspaceSession ws, String repo) {
+		this.l = ws.getMojo().getLog();
+		this.packagingType = ws.getPackageMap().getPackaging();
+		this.repo = repo;
+		this.packageFile = new File(ws.getMojo().getBuildDir(), ws
+				.getHelper().getPackageFileName());
+	}
+
+	/**
+	 * Copies the .deb into the package directory of the repository and
+	 * updates the index.
+	 *
+	 * @throws MojoExecutionException
+	 */
+	@Override
+	public void uploadPackage() throws MojoExecutionException {
+		checkPrerequisites();
+
+		AptRepositoryIndexer indexer = new AptRepositoryIndexer(new File(repo));
+		l.info("Deploying " + packageFile.getAbsolutePath() + " to "
+				+ indexer.getPackageDirectory().getAbsolutePath());
+		try {
+			// Uploads run concurrently and must not update the same index at
+			// the same time.
+			synchronized (AptRepositoryDeployer.class) {
+				FileUtils.copyFileToDirectory(packageFile,
+						indexer.getPackageDirectory());
+				int scanned = indexer.update();
+				l.info("Repository index updated, " + scanned
+						+ " package(s) read.");
+			}
+		} catch (IOException e) {
+			throw new MojoExecutionException("Deploying .deb to \"" + repo
+					+ "\" failed", e);
+		}
+	}
+
+	/**
+	 * Checks for the deb file and the repository location
+	 *
+	 * @throws MojoExecutionException
+	 */
+	public void checkPrerequisites() throws MojoExecutionException {
+		if (repo.isEmpty()) {
+			throw new MojoExecutionException(
+					"Repository location can not be empty. Aborting.");
+		}
+
+		if (!packagingType.equals("deb")) {
+			throw new MojoExecutionException("Uploading packaging-type '"
+					+ packagingType + "' to an APT repository not supported.");
+		}
+
+		if (!packageFile.exists()) {
+			throw new MojoExecutionException("Package file '" + packageFile
+					+ "' does not exist.");
+		}
+	}
+}
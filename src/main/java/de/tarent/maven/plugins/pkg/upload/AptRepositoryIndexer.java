@@ -0,0 +1,357 @@
+package de.tarent.maven.plugins.pkg.upload;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TimeZone;
+
+import org.apache.commons.compress.archivers.ar.ArArchiveEntry;
+import org.apache.commons.compress.archivers.ar.ArArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+
+import de.tarent.maven.plugins.pkg.archive.Compression;
+
+/**
+ * Maintains the index of a flat APT repository, like
+ * <code>dpkg-scanpackages</code> does.
+ *
+ * <p>
+ * All Debian packages in the package directory of the repository (by default
+ * <code>binary</code>) are listed in the files <code>Packages</code>,
+ * <code>Packages.gz</code> and <code>Packages.xz</code> next to them. A
+ * <code>Release</code> file holds the checksums of these. The repository can
+ * be used with a sources.list line like
+ * <code>deb [trusted=yes] file:/path/to/repository binary/</code>.
+ * </p>
+ *
+ * <p>
+ * Each package is read in a single pass which extracts the control file and
+ * computes the checksums. The resulting entries are cached together with the
+ * size and modification time of the package, so that an update only reads
+ * new and changed packages.
+ * </p>
+ */
+public class AptRepositoryIndexer {
+
+	public static final String DEFAULT_DIRECTORY = "binary";
+
+	static final String CACHE_FILE = ".packages-cache";
+
+	/**
+	 * Updates several digests with everything read, including skipped bytes.
+	 */
+	private static class ChecksummingInputStream extends FilterInputStream {
+
+		private final MessageDigest[] digests;
+
+		ChecksummingInputStream(InputStream in, MessageDigest... digests) {
+			super(new BufferedInputStream(in, 65536));
+			this.digests = digests;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				for (MessageDigest md : digests) {
+					md.update((byte) b);
+				}
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				for (MessageDigest md : digests) {
+					md.update(b, off, n);
+				}
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			byte[] buffer = new byte[(int) Math.min(n, 65536)];
+			long skipped = 0;
+			while (skipped < n) {
+				int read = read(buffer, 0,
+						(int) Math.min(buffer.length, n - skipped));
+				if (read == -1) {
+					break;
+				}
+				skipped += read;
+			}
+			return skipped;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+	}
+
+	private final File repository;
+
+	private final String directory;
+
+	public AptRepositoryIndexer(File repository) {
+		this(repository, DEFAULT_DIRECTORY);
+	}
+
+	public AptRepositoryIndexer(File repository, String directory) {
+		this.repository = repository;
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the directory the packages are put into.
+	 *
+	 * @return
+	 */
+	public File getPackageDirectory() {
+		return new File(repository, directory);
+	}
+
+	/**
+	 * Brings the index files up to date with the packages in the package
+	 * directory.
+	 *
+	 * @return the number of packages which had to be read
+	 * @throws IOException
+	 */
+	public int update() throws IOException {
+		File dir = getPackageDirectory();
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Unable to create directory " + dir);
+		}
+
+		File cacheFile = new File(dir, CACHE_FILE);
+		Properties cache = new Properties();
+		if (cacheFile.exists()) {
+			InputStream is = new FileInputStream(cacheFile);
+			try {
+				cache.load(is);
+			} finally {
+				is.close();
+			}
+		}
+
+		File[] debs = dir.listFiles(new FileFilter() {
+			public boolean accept(File f) {
+				return f.isFile() && f.getName().endsWith(".deb");
+			}
+		});
+		Arrays.sort(debs);
+
+		int scanned = 0;
+		Set<String> names = new HashSet<String>();
+		StringBuilder packages = new StringBuilder();
+		for (File deb : debs) {
+			String name = deb.getName();
+			names.add(name);
+
+			String stamp = deb.length() + ":" + deb.lastModified() + ":";
+			String value = cache.getProperty(name);
+			String stanza;
+			if (value != null && value.startsWith(stamp)) {
+				stanza = value.substring(stamp.length());
+			} else {
+				stanza = scan(deb);
+				cache.setProperty(name, stamp + stanza);
+				scanned++;
+			}
+			packages.append(stanza).append('\n');
+		}
+		cache.keySet().retainAll(names);
+
+		byte[] content = packages.toString().getBytes("UTF-8");
+		Map<String, byte[]> indexes = new LinkedHashMap<String, byte[]>();
+		indexes.put("Packages", writeIndex(dir, "Packages", content,
+				Compression.NONE));
+		indexes.put("Packages.gz", writeIndex(dir, "Packages.gz", content,
+				Compression.GZIP));
+		indexes.put("Packages.xz", writeIndex(dir, "Packages.xz", content,
+				Compression.XZ));
+		writeRelease(dir, indexes);
+
+		OutputStream os = new FileOutputStream(cacheFile);
+		try {
+			cache.store(os, "pkg-maven-plugin APT repository cache");
+		} finally {
+			os.close();
+		}
+
+		return scanned;
+	}
+
+	/**
+	 * Reads the control file and computes the checksums of the given package
+	 * in a single pass and returns its entry for the <code>Packages</code>
+	 * file.
+	 *
+	 * @param deb
+	 * @return
+	 * @throws IOException
+	 */
+	String scan(File deb) throws IOException {
+		MessageDigest md5 = createDigest("MD5");
+		MessageDigest sha1 = createDigest("SHA-1");
+		MessageDigest sha256 = createDigest("SHA-256");
+
+		String control = null;
+		InputStream in = new ChecksummingInputStream(new FileInputStream(deb),
+				md5, sha1, sha256);
+		try {
+			ArArchiveInputStream ar = new ArArchiveInputStream(in);
+			ArArchiveEntry member;
+			while ((member = ar.getNextArEntry()) != null) {
+				if (member.getName().startsWith("control.tar")) {
+					control = readControl(ar, member.getName());
+				}
+			}
+			// Whatever follows the last member is part of the checksums.
+			IOUtils.copy(in, NullOutputStream.NULL_OUTPUT_STREAM);
+		} finally {
+			in.close();
+		}
+
+		if (control == null) {
+			throw new IOException(deb + " does not contain a control file");
+		}
+
+		StringBuilder stanza = new StringBuilder(control.trim());
+		stanza.append("\nFilename: ").append(directory).append('/')
+				.append(deb.getName());
+		stanza.append("\nSize: ").append(deb.length());
+		stanza.append("\nMD5sum: ").append(toHex(md5.digest()));
+		stanza.append("\nSHA1: ").append(toHex(sha1.digest()));
+		stanza.append("\nSHA256: ").append(toHex(sha256.digest()));
+		stanza.append('\n');
+		return stanza.toString();
+	}
+
+	private String readControl(InputStream member, String name)
+			throws IOException {
+		InputStream decompressed;
+		if (name.endsWith(".gz")) {
+			decompressed = new GzipCompressorInputStream(member);
+		} else if (name.endsWith(".xz")) {
+			decompressed = new XZCompressorInputStream(member);
+		} else if (name.equals("control.tar")) {
+			decompressed = member;
+		} else {
+			throw new IOException("Unsupported control member " + name);
+		}
+
+		// Not closed as this would close the surrounding streams as well.
+		TarArchiveInputStream tar = new TarArchiveInputStream(decompressed);
+		TarArchiveEntry entry;
+		while ((entry = tar.getNextTarEntry()) != null) {
+			if (entry.getName().equals("./control")
+					|| entry.getName().equals("control")) {
+				return IOUtils.toString(tar, "UTF-8");
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Writes an index file atomically, so that clients never see a partially
+	 * written file.
+	 *
+	 * @return the content of the file
+	 */
+	private byte[] writeIndex(File dir, String name, byte[] content,
+			Compression compression) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		OutputStream os = compression.createOutputStream(bos,
+				compression.getDefaultLevel());
+		try {
+			os.write(content);
+		} finally {
+			os.close();
+		}
+		byte[] bytes = bos.toByteArray();
+
+		File file = new File(dir, name);
+		File tmp = new File(dir, name + ".tmp");
+		FileUtils.writeByteArrayToFile(tmp, bytes);
+		if (!tmp.renameTo(file)) {
+			file.delete();
+			if (!tmp.renameTo(file)) {
+				throw new IOException("Unable to rename " + tmp + " to " + file);
+			}
+		}
+		return bytes;
+	}
+
+	private void writeRelease(File dir, Map<String, byte[]> indexes)
+			throws IOException {
+		SimpleDateFormat format = new SimpleDateFormat(
+				"EEE, dd MMM yyyy HH:mm:ss 'UTC'", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+		StringBuilder release = new StringBuilder();
+		release.append("Date: ").append(format.format(new Date()))
+				.append('\n');
+		String[][] sections = { { "MD5Sum", "MD5" }, { "SHA1", "SHA-1" },
+				{ "SHA256", "SHA-256" } };
+		for (String[] section : sections) {
+			release.append(section[0]).append(":\n");
+			for (Map.Entry<String, byte[]> index : indexes.entrySet()) {
+				byte[] content = index.getValue();
+				release.append(' ')
+						.append(toHex(createDigest(section[1]).digest(content)))
+						.append(' ').append(content.length).append(' ')
+						.append(index.getKey()).append('\n');
+			}
+		}
+
+		writeIndex(dir, "Release", release.toString().getBytes("UTF-8"),
+				Compression.NONE);
+	}
+
+	private static MessageDigest createDigest(String algorithm) {
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform supports MD5, SHA-1 and SHA-256.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+			sb.append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+}
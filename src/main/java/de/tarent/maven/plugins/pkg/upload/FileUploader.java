@@ -0,0 +1,158 @@
+package de.tarent.maven.plugins.pkg.upload;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import de.tarent.maven.plugins.pkg.WorkspaceSession;
+
+/**
+ * Copies a package into a local directory given as <code>file://</code> URL.
+ *
+ * <p>
+ * A package which already exists in the directory with the same checksum is
+ * not copied again. The package is written to a <code>.part</code> file first
+ * and renamed when complete, so an interrupted upload never leaves a broken
+ * package behind and is continued by the next attempt.
+ * </p>
+ */
+public class FileUploader implements IConcurrentPkgUploader {
+
+	public static final String URI_SCHEME = "file://";
+
+	static final String PART_SUFFIX = ".part";
+
+	private final Log l;
+
+	private final File packageFile;
+
+	private final File directory;
+
+	public FileUploader(WorkspaceSession ws, String url) {
+		this(ws.getMojo().getLog(), new File(ws.getMojo().getBuildDir(), ws
+				.getHelper().getPackageFileName()), new File(url
+				.substring(URI_SCHEME.length())));
+	}
+
+	FileUploader(Log l, File packageFile, File directory) {
+		this.l = l;
+		this.packageFile = packageFile;
+		this.directory = directory;
+	}
+
+	@Override
+	public void uploadPackage() throws MojoExecutionException {
+		File target = new File(directory, packageFile.getName());
+		File part = new File(directory, packageFile.getName() + PART_SUFFIX);
+
+		try {
+			if (target.isFile() && target.length() == packageFile.length()
+					&& Arrays.equals(digest(target, -1), digest(packageFile, -1))) {
+				l.info(target.getAbsolutePath()
+						+ " is up to date, skipping upload.");
+				return;
+			}
+
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IOException("Unable to create directory " + directory);
+			}
+
+			long offset = getResumeOffset(part);
+			if (offset > 0) {
+				l.info("Resuming upload of " + packageFile.getName()
+						+ " at byte " + offset);
+			}
+			copy(part, offset);
+
+			if (target.exists() && !target.delete()) {
+				throw new IOException("Unable to replace " + target);
+			}
+			if (!part.renameTo(target)) {
+				throw new IOException("Unable to rename " + part + " to "
+						+ target);
+			}
+			l.info("Upload of " + packageFile.getName() + " to "
+					+ directory.getAbsolutePath() + " successful!");
+		} catch (IOException e) {
+			throw new MojoExecutionException("Error while uploading file: "
+					+ e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Returns the length of the given partial upload if it is the beginning
+	 * of the package. Otherwise the upload starts over.
+	 */
+	private long getResumeOffset(File part) throws IOException {
+		if (!part.isFile()) {
+			return 0;
+		}
+
+		long length = part.length();
+		if (length <= packageFile.length()
+				&& Arrays.equals(digest(part, -1), digest(packageFile, length))) {
+			return length;
+		}
+
+		if (!part.delete()) {
+			throw new IOException("Unable to remove " + part);
+		}
+		return 0;
+	}
+
+	private void copy(File part, long offset) throws IOException {
+		InputStream in = new FileInputStream(packageFile);
+		try {
+			IOUtils.skipFully(in, offset);
+			OutputStream out = new FileOutputStream(part, offset > 0);
+			try {
+				IOUtils.copyLarge(in, out);
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Returns the SHA-256 checksum of the given file or of its first
+	 * <code>length</code> bytes if <code>length</code> is not negative.
+	 */
+	private static byte[] digest(File f, long length) throws IOException {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256.
+			throw new IllegalStateException(e);
+		}
+
+		InputStream in = new BufferedInputStream(new FileInputStream(f));
+		try {
+			byte[] buffer = new byte[65536];
+			long remaining = length < 0 ? Long.MAX_VALUE : length;
+			int read;
+			while (remaining > 0
+					&& (read = in.read(buffer, 0,
+							(int) Math.min(buffer.length, remaining))) != -1) {
+				md.update(buffer, 0, read);
+				remaining -= read;
+			}
+		} finally {
+			in.close();
+		}
+		return md.digest();
+	}
+}
@@ -0,0 +1,10 @@
+package de.tarent.maven.plugins.pkg.upload;
+
+/**
+ * An uploader which only uses the plugin's own code and may therefore run
+ * concurrently with other uploads. Its upload is idempotent, so a failed
+ * upload may simply be repeated.
+ */
+public interface IConcurrentPkgUploader extends IPkgUploader {
+
+}
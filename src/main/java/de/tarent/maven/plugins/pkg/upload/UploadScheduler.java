@@ -0,0 +1,218 @@
+package de.tarent.maven.plugins.pkg.upload;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import de.tarent.maven.plugins.pkg.metrics.Metrics;
+
+/**
+ * Runs uploads on a bounded number of threads and retries failed uploads.
+ *
+ * <p>
+ * The uploads of all target configurations can be submitted as they become
+ * known. {@link #await()} waits for all of them and reports the first failure
+ * once every upload has either succeeded or run out of attempts. Between two
+ * attempts of an upload the scheduler waits, starting with the configured
+ * delay and doubling it for every further attempt.
+ * </p>
+ *
+ * <p>
+ * Only {@link IConcurrentPkgUploader}s are handled this way. Every other
+ * uploader runs other mojos or external tools which neither may run
+ * concurrently nor are safe to repeat (e.g. <code>reprepro includedeb</code>
+ * ). These are queued and run once each by {@link #runSerialized()}, which
+ * must be called on Maven's thread.
+ * </p>
+ */
+public class UploadScheduler {
+
+	private final Log l;
+
+	private final int retries;
+
+	private final long retryDelay;
+
+	private final ExecutorService executor;
+
+	private final List<Future<Void>> uploads = new ArrayList<Future<Void>>();
+
+	private final List<SerializedUpload> serialized = new ArrayList<SerializedUpload>();
+
+	/**
+	 * An upload which has to wait for {@link UploadScheduler#runSerialized()}.
+	 */
+	private static class SerializedUpload {
+		final IPkgUploader uploader;
+
+		final Metrics metrics;
+
+		SerializedUpload(IPkgUploader uploader, Metrics metrics) {
+			this.uploader = uploader;
+			this.metrics = metrics;
+		}
+	}
+
+	/**
+	 * @param l
+	 * @param threads
+	 *            the maximum number of concurrent uploads
+	 * @param retries
+	 *            how often a failed upload is repeated
+	 * @param retryDelay
+	 *            the delay before the first retry in milliseconds
+	 */
+	public UploadScheduler(Log l, int threads, int retries, long retryDelay) {
+		this.l = l;
+		this.retries = Math.max(0, retries);
+		this.retryDelay = retryDelay;
+		this.executor = Executors.newFixedThreadPool(Math.max(1, threads),
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "pkg-upload");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+	}
+
+	/**
+	 * Schedules an upload. Its time is accounted to the {@link Metrics} of
+	 * the submitting thread.
+	 *
+	 * @param description
+	 *            names the upload in log messages
+	 * @param uploader
+	 */
+	public synchronized void submit(final String description,
+			final IPkgUploader uploader) {
+		if (!(uploader instanceof IConcurrentPkgUploader)) {
+			serialized.add(new SerializedUpload(uploader, Metrics.current()));
+			return;
+		}
+
+		final Metrics metrics = Metrics.current();
+		uploads.add(executor.submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				Metrics.attach(metrics);
+				Metrics.enter(Metrics.Phase.UPLOAD);
+				try {
+					upload(description, uploader);
+				} finally {
+					Metrics.exit();
+					Metrics.detach();
+				}
+				return null;
+			}
+		}));
+	}
+
+	/**
+	 * Runs the uploads which must not run concurrently on the calling thread,
+	 * in the order they have been submitted. Each is run once, the first
+	 * failure stops the remaining ones.
+	 *
+	 * @throws MojoExecutionException
+	 *             the failure of the upload
+	 */
+	public void runSerialized() throws MojoExecutionException {
+		List<SerializedUpload> pending;
+		synchronized (this) {
+			pending = new ArrayList<SerializedUpload>(serialized);
+			serialized.clear();
+		}
+
+		for (SerializedUpload upload : pending) {
+			Metrics.attach(upload.metrics);
+			Metrics.enter(Metrics.Phase.UPLOAD);
+			try {
+				upload.uploader.uploadPackage();
+			} finally {
+				Metrics.exit();
+				Metrics.detach();
+			}
+		}
+	}
+
+	/**
+	 * Waits for all submitted uploads and shuts the scheduler down. Queued
+	 * uploads which have not been run by {@link #runSerialized()} are
+	 * dropped.
+	 *
+	 * @throws MojoExecutionException
+	 *             the failure of the first upload which did not succeed
+	 */
+	public void await() throws MojoExecutionException {
+		List<Future<Void>> pending;
+		synchronized (this) {
+			pending = new ArrayList<Future<Void>>(uploads);
+		}
+
+		MojoExecutionException failure = null;
+		try {
+			for (Future<Void> upload : pending) {
+				try {
+					upload.get();
+				} catch (ExecutionException e) {
+					if (failure == null) {
+						failure = toMojoExecutionException(e.getCause());
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while uploading", e);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private void upload(String description, IPkgUploader uploader)
+			throws MojoExecutionException, InterruptedException {
+		long delay = retryDelay;
+		for (int attempt = 0;; attempt++) {
+			try {
+				uploader.uploadPackage();
+				return;
+			} catch (MojoExecutionException e) {
+				if (attempt >= retries) {
+					throw e;
+				}
+				l.warn("Uploading " + description + " failed ("
+						+ e.getMessage() + "), retrying in " + delay + " ms.");
+			}
+			sleep(delay);
+			delay *= 2;
+		}
+	}
+
+	/**
+	 * Waits before the next attempt of an upload.
+	 *
+	 * @param millis
+	 * @throws InterruptedException
+	 */
+	protected void sleep(long millis) throws InterruptedException {
+		Thread.sleep(millis);
+	}
+
+	private static MojoExecutionException toMojoExecutionException(
+			Throwable cause) {
+		if (cause instanceof MojoExecutionException) {
+			return (MojoExecutionException) cause;
+		}
+		return new MojoExecutionException("SerializedUpload failed: " + cause, cause);
+	}
+}
@@ -29,8 +29,6 @@ public class HelperTest extends AbstractMvnPkgPluginTestCase {
 
 	TargetConfiguration targetConfiguration;
 
-	boolean previousfilefound;
-
 	String homedir = System.getProperty("user.home");
 
 	File f = new File(homedir + "/.rpmmacros");
@@ -128,62 +126,55 @@ public class HelperTest extends AbstractMvnPkgPluginTestCase {
 		helper = new Helper();
 		helper.init(packaging, delegatingPackageMap, targetConfiguration,
 				resolvedConfigurations, "foobar");
-		previousfilefound = false;
-		if (f.exists()) {
-			FileUtils
-					.moveFile(f, new File(homedir + "/.rpmmacros_Test_backup"));
-			previousfilefound = true;
-		}
 	}
 
 	@After
 	public void tearDown() throws Exception {
 		super.tearDown();
-		if (previousfilefound) {
-			f.delete();
-			FileUtils
-					.moveFile(new File(homedir + "/.rpmmacros_Test_backup"), f);
-		}
 	}
 
 	@Test
-	public void creatingRpmmacrosfileWithoutMaintainerAndRemovingSuccessfully()
+	public void creatingRpmMacroDefinitionsWithoutMaintainer()
 			throws IOException, MojoExecutionException {
 		// Depends on fixates TargetConfiguration.
 		targetConfiguration.fixate();
 
+		boolean existed = f.exists();
+		long lastModified = f.lastModified();
 		helper.setBasePkgDir(new File("/"));
-		helper.createRpmMacrosFile();
-		Assert.assertTrue("File not found", f.exists());
-		helper.restoreRpmMacrosFileBackup(null);
+		List<String> args = helper.getRpmMacroDefinitions();
+		Assert.assertEquals(4, args.size());
+		Assert.assertEquals("--define", args.get(0));
+		Assert.assertEquals("_topdir /", args.get(1));
+
+		// The user's macros file is left alone.
+		Assert.assertEquals(existed, f.exists());
+		Assert.assertEquals(lastModified, f.lastModified());
 	}
 
 	@Test
-	public void creatingRpmmacrosfileWitMaintainerAndRemovingSuccessfully()
+	public void creatingRpmMacroDefinitionsWithMaintainer()
 			throws IOException, MojoExecutionException {
 		targetConfiguration.setMaintainer("Dummy maintainer");
 		targetConfiguration.fixate();
 
 		helper.setBasePkgDir(new File("/"));
-		helper.createRpmMacrosFile();
-		Assert.assertTrue(f.exists());
-		Assert.assertTrue("String not found",
-				filecontains(f, "%_gpg_name       Dummy maintainer"));
-		helper.restoreRpmMacrosFileBackup(null);
+		Assert.assertTrue("String not found", helper.getRpmMacroDefinitions()
+				.contains("_gpg_name Dummy maintainer"));
 	}
 
 	/**
-	 * Checks whether macro file generation works without exception with an
+	 * Checks whether macro generation works without exception with an
 	 * unconfigured {@link TargetConfiguration}.
 	 * 
 	 * @throws IOException
 	 * @throws MojoExecutionException
 	 */
-	public void testCreatingRpmmacrosfileWithoutBaseDir() throws IOException,
-			MojoExecutionException {
+	public void testCreatingRpmMacroDefinitionsWithoutBaseDir()
+			throws IOException, MojoExecutionException {
 		targetConfiguration.fixate();
 
-		helper.createRpmMacrosFile();
+		helper.getRpmMacroDefinitions();
 	}
 
 	@Test
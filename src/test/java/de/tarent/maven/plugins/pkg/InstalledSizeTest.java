@@ -0,0 +1,103 @@
+package de.tarent.maven.plugins.pkg;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tarent.maven.plugins.pkg.InstalledSize.Category;
+
+public class InstalledSizeTest {
+
+	private File dir;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = File.createTempFile("installed-size", "");
+		dir.delete();
+		dir.mkdirs();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testRound() {
+		Assert.assertEquals(0, InstalledSize.round(0));
+		Assert.assertEquals(1024, InstalledSize.round(1));
+		Assert.assertEquals(1024, InstalledSize.round(1024));
+		Assert.assertEquals(2048, InstalledSize.round(1025));
+		Assert.assertEquals(2, Utils.getInstalledSize(1025));
+	}
+
+	@Test
+	public void testCategories() {
+		InstalledSize size = new InstalledSize();
+		Assert.assertEquals(2048, size.add(Category.JARS, 2048));
+		size.add(Category.JARS, 1024);
+		size.add(Category.SCRIPTS, 1024);
+
+		Assert.assertEquals(3072, size.get(Category.JARS));
+		Assert.assertEquals(0, size.get(Category.JNI));
+		Assert.assertEquals(4096, size.getTotal());
+	}
+
+	/**
+	 * Tests that copying a directory accounts every file in whole blocks and
+	 * every directory with a single block while skipping filtered files.
+	 */
+	@Test
+	public void testCopyDirectory() throws IOException, MojoExecutionException {
+		File src = new File(dir, "src");
+		FileUtils.writeStringToFile(new File(src, "data/a.txt"), "a");
+		FileUtils.writeByteArrayToFile(new File(src, "data/sub/b.bin"),
+				new byte[1500]);
+		FileUtils.writeStringToFile(new File(src, "data/c.txt~"), "backup");
+		new File(src, "data/.svn").mkdirs();
+
+		AuxFile af = new AuxFile("share");
+		af.setFrom("data");
+
+		File dst = new File(dir, "dst");
+		long size = Utils.copyFiles(new SystemStreamLog(), src, dst,
+				Arrays.asList(af), "data file");
+
+		// data/, data/sub/, a.txt (1 block) and b.bin (2 blocks)
+		Assert.assertEquals(5 * 1024, size);
+		Assert.assertTrue(new File(dst, "share/data/sub/b.bin").exists());
+		Assert.assertFalse(new File(dst, "share/data/c.txt~").exists());
+		Assert.assertFalse(new File(dst, "share/data/.svn").exists());
+	}
+
+	@Test
+	public void testUnpackedSize() throws IOException {
+		File zip = new File(dir, "natives.zip");
+		ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip));
+		try {
+			zos.putNextEntry(new ZipEntry("lib/"));
+			zos.closeEntry();
+			zos.putNextEntry(new ZipEntry("lib/libfoo.so"));
+			zos.write(new byte[3000]);
+			zos.closeEntry();
+			zos.putNextEntry(new ZipEntry("README"));
+			zos.write(new byte[10]);
+			zos.closeEntry();
+		} finally {
+			zos.close();
+		}
+
+		Assert.assertEquals((1 + 3 + 1) * 1024, Utils.getUnpackedSize(zip));
+	}
+}
@@ -0,0 +1,124 @@
+package de.tarent.maven.plugins.pkg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.After;
+import org.junit.Test;
+
+public class ProgramProbesTest {
+
+	@After
+	public void tearDown() {
+		ProgramProbes.clear();
+	}
+
+	@Test
+	public void testLocate() {
+		File sh = ProgramProbes.locate("sh");
+		assertNotNull(sh);
+		assertTrue(sh.canExecute());
+		assertSame(sh, ProgramProbes.locate("sh"));
+		assertEquals(sh, ProgramProbes.locate(sh.getAbsolutePath()));
+
+		assertNull(ProgramProbes.locate("pkg-maven-plugin-no-such-program"));
+	}
+
+	@Test(expected = MojoExecutionException.class)
+	public void testCheckProgramAvailability() throws MojoExecutionException {
+		Utils.checkProgramAvailability("sh");
+		Utils.checkProgramAvailability("pkg-maven-plugin-no-such-program");
+	}
+
+	@Test
+	public void testVersionIsMemoized() throws IOException,
+			MojoExecutionException {
+		File dir = new File(System.getProperty("java.io.tmpdir"),
+				"ProgramProbesTest" + System.nanoTime());
+		dir.mkdirs();
+		try {
+			File counter = new File(dir, "counter");
+			File program = new File(dir, "program");
+			FileUtils.writeStringToFile(program, "#!/bin/sh\necho run >> "
+					+ counter.getAbsolutePath() + "\necho 'program 1.0'\n");
+			Utils.makeExecutable(program, "program");
+
+			String path = program.getAbsolutePath();
+			assertEquals("program 1.0", ProgramProbes.version(path));
+			assertEquals("program 1.0", Utils.getProgramVersionOutput(path));
+			assertEquals(1, FileUtils.readLines(counter).size());
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	/**
+	 * Tests that a program whose version probe hangs does not keep another
+	 * program's version from being probed.
+	 */
+	@Test
+	public void testSlowVersionDoesNotBlockOthers() throws Exception {
+		File dir = new File(System.getProperty("java.io.tmpdir"),
+				"ProgramProbesTest" + System.nanoTime());
+		dir.mkdirs();
+		try {
+			File started = new File(dir, "started");
+			File release = new File(dir, "release");
+			File slow = new File(dir, "slow");
+			FileUtils.writeStringToFile(slow, "#!/bin/sh\ntouch "
+					+ started.getAbsolutePath() + "\ni=0\nwhile [ ! -e "
+					+ release.getAbsolutePath() + " -a $i -lt 100 ]; do\n"
+					+ "\tsleep 0.1\n\ti=$((i + 1))\ndone\necho 'slow 1.0'\n");
+			Utils.makeExecutable(slow, "slow");
+			File fast = new File(dir, "fast");
+			FileUtils.writeStringToFile(fast, "#!/bin/sh\necho 'fast 1.0'\n");
+			Utils.makeExecutable(fast, "fast");
+
+			final String slowPath = slow.getAbsolutePath();
+			final String[] slowVersion = new String[1];
+			Thread t = new Thread() {
+				@Override
+				public void run() {
+					try {
+						slowVersion[0] = ProgramProbes.version(slowPath);
+					} catch (MojoExecutionException e) {
+						// Checked below.
+					}
+				}
+			};
+			t.start();
+			while (!started.exists()) {
+				Thread.sleep(10);
+			}
+
+			assertEquals("fast 1.0",
+					ProgramProbes.version(fast.getAbsolutePath()));
+			assertTrue(t.isAlive());
+
+			FileUtils.touch(release);
+			t.join();
+			assertEquals("slow 1.0", slowVersion[0]);
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testVersionOfMissingProgram() {
+		try {
+			ProgramProbes.version("pkg-maven-plugin-no-such-program");
+			fail();
+		} catch (MojoExecutionException e) {
+			// Expected.
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package de.tarent.maven.plugins.pkg;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
+import org.apache.maven.artifact.resolver.filter.ScopeArtifactFilter;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProjectDependenciesTest {
+
+	private static Artifact artifact(String artifactId, String scope,
+			String type) {
+		return new DefaultArtifact("group", artifactId,
+				VersionRange.createFromVersion("1.0"), scope, type, null,
+				new DefaultArtifactHandler(type));
+	}
+
+	/**
+	 * Tests that the dependency graph is resolved only once and that the
+	 * scope-filtered views are derived from the remembered result.
+	 */
+	@Test
+	public void testResolvedOnce() throws MojoExecutionException {
+		final Set<Artifact> graph = new HashSet<Artifact>();
+		graph.add(artifact("compile", Artifact.SCOPE_COMPILE, "jar"));
+		graph.add(artifact("runtime", Artifact.SCOPE_RUNTIME, "jar"));
+		graph.add(artifact("provided", Artifact.SCOPE_PROVIDED, "jar"));
+		graph.add(artifact("test", Artifact.SCOPE_TEST, "jar"));
+		graph.add(artifact("native", Artifact.SCOPE_COMPILE, "so"));
+
+		final int[] calls = new int[1];
+		AbstractPackagingMojo mojo = new AbstractPackagingMojo() {
+			@Override
+			protected void executeTargetConfiguration(
+					WorkspaceSession workspaceSession) {
+				// Not used.
+			}
+		};
+		mojo.project = new MavenProject();
+		mojo.resolver = (ArtifactResolver) Proxy.newProxyInstance(
+				ArtifactResolver.class.getClassLoader(),
+				new Class<?>[] { ArtifactResolver.class },
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method,
+							Object[] args) {
+						Assert.assertEquals("resolveTransitively",
+								method.getName());
+						calls[0]++;
+
+						// Applies the filter the way the resolver would do.
+						ArtifactFilter filter = (ArtifactFilter) args[args.length - 1];
+						Set<Artifact> artifacts = new HashSet<Artifact>();
+						for (Artifact a : graph) {
+							if (filter.include(a)) {
+								artifacts.add(a);
+							}
+						}
+						ArtifactResolutionResult result = new ArtifactResolutionResult();
+						result.setArtifacts(artifacts);
+						return result;
+					}
+				});
+
+		Set<Artifact> all = mojo.getProjectDependencies(null);
+		Assert.assertEquals(3, all.size());
+
+		Set<Artifact> runtime = mojo
+				.getProjectDependencies(new ScopeArtifactFilter(
+						Artifact.SCOPE_RUNTIME));
+		Assert.assertEquals(2, runtime.size());
+		Assert.assertFalse(runtime.contains(artifact("provided",
+				Artifact.SCOPE_PROVIDED, "jar")));
+
+		// Changes to the returned sets must not leak into the cache.
+		all.clear();
+		Assert.assertEquals(3, mojo.getProjectDependencies(null).size());
+
+		Assert.assertEquals(1, calls[0]);
+	}
+}
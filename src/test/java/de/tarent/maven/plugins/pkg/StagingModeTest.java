@@ -0,0 +1,90 @@
+package de.tarent.maven.plugins.pkg;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StagingModeTest {
+
+	private File dir;
+
+	private File src;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = File.createTempFile("staging", "");
+		dir.delete();
+		dir.mkdirs();
+
+		src = new File(dir, "src");
+		FileUtils.writeStringToFile(new File(src, "foo.jar"), "foo");
+		FileUtils.writeStringToFile(new File(src, "conf/bar.conf"), "bar");
+		FileUtils.writeStringToFile(new File(src, "baz.sh"), "#!/bin/sh");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(dir);
+	}
+
+	private AuxFile auxFile(String from, String to) {
+		AuxFile af = new AuxFile(to);
+		af.setFrom(from);
+		return af;
+	}
+
+	/**
+	 * Tests that all modes stage the same content.
+	 */
+	@Test
+	public void testContent() throws IOException {
+		for (StagingMode mode : StagingMode.values()) {
+			File dst = new File(dir, mode.name());
+			mode.stageFiles(new SystemStreamLog(),
+					Arrays.asList(new File(src, "foo.jar")), dst);
+			Assert.assertEquals("foo",
+					FileUtils.readFileToString(new File(dst, "foo.jar")));
+		}
+	}
+
+	/**
+	 * Tests that linked files share the source file while files which are
+	 * made executable are copied.
+	 */
+	@Test
+	public void testLink() throws MojoExecutionException, IOException {
+		File dst = new File(dir, "dst");
+		Utils.copyFiles(new SystemStreamLog(), src, dst,
+				Arrays.asList(auxFile("foo.jar", "lib"), auxFile("conf", "etc")),
+				"aux file", false, StagingMode.LINK);
+
+		Assert.assertTrue(Files.isSameFile(new File(src, "foo.jar").toPath(),
+				new File(dst, "lib/foo.jar").toPath()));
+		Assert.assertTrue(Files.isSameFile(
+				new File(src, "conf/bar.conf").toPath(), new File(dst,
+						"etc/conf/bar.conf").toPath()));
+
+		Utils.copyFiles(new SystemStreamLog(), src, dst,
+				Arrays.asList(auxFile("baz.sh", "bin")), "bin file", true,
+				StagingMode.LINK);
+		File script = new File(dst, "bin/baz.sh");
+		Assert.assertTrue(script.canExecute());
+		Assert.assertFalse(Files.isSameFile(new File(src, "baz.sh").toPath(),
+				script.toPath()));
+		Assert.assertFalse(new File(src, "baz.sh").canExecute());
+	}
+
+	@Test(expected = MojoExecutionException.class)
+	public void testUnknownMode() throws MojoExecutionException {
+		StagingMode.fromString("symlink");
+	}
+}
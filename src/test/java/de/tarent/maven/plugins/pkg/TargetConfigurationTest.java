@@ -38,6 +38,26 @@ public class TargetConfigurationTest {
 		tc.getArchitecture();
 	}
 
+	/**
+	 * Tests that the compression stays unset unless it is configured, so
+	 * that external package builders use their own default.
+	 * 
+	 * @throws MojoExecutionException
+	 */
+	@Test
+	public void testCompressionMerge() throws MojoExecutionException {
+		TargetConfiguration parent = new TargetConfiguration();
+		TargetConfiguration child = new TargetConfiguration();
+		Assert.assertNull(Utils.mergeConfigurations(child, parent)
+				.getCompression());
+
+		parent = new TargetConfiguration();
+		parent.setCompression("xz");
+		child = new TargetConfiguration();
+		Assert.assertEquals("xz", Utils.mergeConfigurations(child, parent)
+				.getCompression());
+	}
+
 	/**
 	 * Tests whether the JNI file sets are really merged.
 	 * 
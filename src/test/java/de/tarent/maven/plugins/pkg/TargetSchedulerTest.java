@@ -0,0 +1,182 @@
+package de.tarent.maven.plugins.pkg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.tarent.maven.plugins.pkg.upload.IPkgUploader;
+import de.tarent.maven.plugins.pkg.upload.UploadScheduler;
+
+public class TargetSchedulerTest {
+
+	private TargetConfiguration createTargetConfiguration(String target,
+			String... relations) throws MojoExecutionException {
+		TargetConfiguration tc = new TargetConfiguration(target);
+		tc.setRelations(new ArrayList<String>(Arrays.asList(relations)));
+		tc.fixate();
+		return tc;
+	}
+
+	/**
+	 * Tests that relations are always finished before the target
+	 * configurations depending on them are started.
+	 */
+	@Test
+	public void testRelationsFirst()
+			throws MojoExecutionException, MojoFailureException {
+		for (int threads = 1; threads <= 4; threads++) {
+			TargetScheduler scheduler = new TargetScheduler(threads);
+			scheduler.add(createTargetConfiguration("a"), "d");
+			scheduler.add(createTargetConfiguration("b"), "d");
+			scheduler.add(createTargetConfiguration("c", "a", "b"), "d");
+			scheduler.add(createTargetConfiguration("e", "c"), "d");
+			scheduler.add(createTargetConfiguration("f"), "d");
+
+			final List<String> finished = Collections
+					.synchronizedList(new ArrayList<String>());
+			int count = scheduler.execute(new TargetScheduler.Task() {
+				public void run(TargetConfiguration tc, String distro)
+						throws MojoExecutionException {
+					for (String relation : tc.getRelations()) {
+						Assert.assertTrue(finished.contains(relation));
+					}
+					finished.add(tc.getTarget());
+				}
+			});
+
+			Assert.assertEquals(5, count);
+			Assert.assertEquals(5, finished.size());
+		}
+	}
+
+	/**
+	 * Tests that a single thread runs the build chains one after the other,
+	 * like the targets were processed before the scheduler existed.
+	 */
+	@Test
+	public void testSerialOrder()
+			throws MojoExecutionException, MojoFailureException {
+		TargetScheduler scheduler = new TargetScheduler(1);
+		scheduler.add(createTargetConfiguration("x"), "d");
+		scheduler.add(createTargetConfiguration("a", "x"), "d");
+		scheduler.add(createTargetConfiguration("y"), "d");
+		scheduler.add(createTargetConfiguration("b", "y"), "d");
+
+		final List<String> finished = new ArrayList<String>();
+		scheduler.execute(new TargetScheduler.Task() {
+			public void run(TargetConfiguration tc, String distro) {
+				finished.add(tc.getTarget());
+			}
+		});
+
+		Assert.assertEquals(Arrays.asList("x", "a", "y", "b"), finished);
+	}
+
+	/**
+	 * Tests that uploads which must not run concurrently are run on the
+	 * calling thread although the target configurations are processed on
+	 * two threads, like the upload goal does.
+	 */
+	@Test
+	public void testSerializedUploads() throws MojoExecutionException,
+			MojoFailureException {
+		TargetScheduler scheduler = new TargetScheduler(2);
+		scheduler.add(createTargetConfiguration("a"), "d");
+		scheduler.add(createTargetConfiguration("b"), "d");
+
+		final Thread caller = Thread.currentThread();
+		final List<Thread> uploadThreads = Collections
+				.synchronizedList(new ArrayList<Thread>());
+		final UploadScheduler uploads = new UploadScheduler(
+				new SystemStreamLog(), 2, 0, 0);
+		scheduler.execute(new TargetScheduler.Task() {
+			public void run(TargetConfiguration tc, String distro) {
+				uploads.submit(tc.getTarget(), new IPkgUploader() {
+					public void uploadPackage() {
+						uploadThreads.add(Thread.currentThread());
+					}
+				});
+			}
+		});
+
+		Assert.assertTrue(uploadThreads.isEmpty());
+		uploads.runSerialized();
+		uploads.await();
+		Assert.assertEquals(Arrays.asList(caller, caller), uploadThreads);
+	}
+
+	/**
+	 * Tests that adding a target configuration twice results in a single
+	 * execution only.
+	 */
+	@Test
+	public void testNoDuplicates()
+			throws MojoExecutionException, MojoFailureException {
+		TargetScheduler scheduler = new TargetScheduler(2);
+		TargetConfiguration a = createTargetConfiguration("a");
+		scheduler.add(a, "d");
+		scheduler.add(createTargetConfiguration("b", "a"), "d");
+		scheduler.add(a, "d");
+
+		final AtomicInteger runs = new AtomicInteger();
+		scheduler.execute(new TargetScheduler.Task() {
+			public void run(TargetConfiguration tc, String distro) {
+				runs.incrementAndGet();
+			}
+		});
+
+		Assert.assertEquals(2, runs.get());
+	}
+
+	/**
+	 * Tests that a failure is propagated and that the target configurations
+	 * depending on the failed one are not started.
+	 */
+	@Test
+	public void testFailure()
+			throws MojoExecutionException, MojoFailureException {
+		TargetScheduler scheduler = new TargetScheduler(3);
+		scheduler.add(createTargetConfiguration("a"), "d");
+		scheduler.add(createTargetConfiguration("b", "a"), "d");
+
+		final List<String> started = Collections
+				.synchronizedList(new ArrayList<String>());
+		try {
+			scheduler.execute(new TargetScheduler.Task() {
+				public void run(TargetConfiguration tc, String distro)
+						throws MojoExecutionException, MojoFailureException {
+					started.add(tc.getTarget());
+					throw new MojoExecutionException("failed: "
+							+ tc.getTarget());
+				}
+			});
+			Assert.fail("Expected MojoExecutionException");
+		} catch (MojoExecutionException e) {
+			Assert.assertEquals("failed: a", e.getMessage());
+		}
+
+		Assert.assertEquals(Arrays.asList("a"), started);
+	}
+
+	@Test(expected = MojoExecutionException.class)
+	public void testCycle()
+			throws MojoExecutionException, MojoFailureException {
+		TargetScheduler scheduler = new TargetScheduler(1);
+		scheduler.add(createTargetConfiguration("a", "b"), "d");
+		scheduler.add(createTargetConfiguration("b", "a"), "d");
+
+		scheduler.execute(new TargetScheduler.Task() {
+			public void run(TargetConfiguration tc, String distro) {
+				// Never reached.
+			}
+		});
+	}
+}
@@ -0,0 +1,104 @@
+package de.tarent.maven.plugins.pkg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Test;
+
+public class UtilsExecTest {
+
+	@Test
+	public void testLargeOutput() throws MojoExecutionException, IOException {
+		// More than a pipe buffer on both streams must not block.
+		String script = "i=0; while [ $i -lt 4000 ]; do "
+				+ "echo 0123456789012345678901234567890123456789; "
+				+ "echo 0123456789012345678901234567890123456789 >&2; "
+				+ "i=$((i+1)); done";
+		String out = IOUtils.toString(Utils.exec(new String[] { "sh", "-c",
+				script }, null, "failure", "io failure", null, 60000));
+		assertEquals(4000 * 41, out.length());
+	}
+
+	@Test
+	public void testUserInput() throws MojoExecutionException, IOException {
+		String out = IOUtils.toString(Utils.exec(new String[] { "cat" },
+				null, "failure", "io failure", "secret"));
+		assertEquals("secret\n", out);
+	}
+
+	@Test
+	public void testExitValue() {
+		try {
+			Utils.exec(new String[] { "sh", "-c", "echo broken >&2; exit 3" },
+					null, "failure", "io failure", null, 60000);
+			fail();
+		} catch (MojoExecutionException e) {
+			assertEquals("(Subprocess exit value = 3) failure", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testTimeout() {
+		long start = System.currentTimeMillis();
+		try {
+			// The grandchild keeps the pipes open unless it is killed, too.
+			Utils.exec(new String[] { "sh", "-c", "sleep 30 & wait" }, null,
+					"failure", "io failure", null, 500);
+			fail();
+		} catch (MojoExecutionException e) {
+			assertTrue(e.getMessage().startsWith(
+					"(Subprocess killed after 500 ms)"));
+		}
+		assertTrue(System.currentTimeMillis() - start < 5000);
+	}
+
+	@Test
+	public void testProcessPumpTail() throws InterruptedException {
+		ProcessPump pump = new ProcessPump("test",
+				new ByteArrayInputStream("0123456789".getBytes()), 4,
+				true);
+		pump.start();
+		pump.finish(5000);
+		assertTrue(pump.isTruncated());
+		assertEquals("6789", pump.toString());
+	}
+
+	@Test
+	public void testProcessPumpLeftBehind() throws InterruptedException {
+		// A read which neither ends nor is ended by close(), like a pipe
+		// inherited by a surviving grandchild on Java 8.
+		final CountDownLatch release = new CountDownLatch(1);
+		ProcessPump pump = new ProcessPump("test", new InputStream() {
+			@Override
+			public int read() throws IOException {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e.getMessage());
+				}
+				return -1;
+			}
+		}, 4, false);
+		pump.start();
+		try {
+			long start = System.currentTimeMillis();
+			pump.finish(200);
+			assertTrue(System.currentTimeMillis() - start < 1000);
+
+			start = System.currentTimeMillis();
+			pump.finish(0);
+			assertTrue(System.currentTimeMillis() - start < 100);
+			assertTrue(pump.isAlive());
+		} finally {
+			release.countDown();
+		}
+	}
+}
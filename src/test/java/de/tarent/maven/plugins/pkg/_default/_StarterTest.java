@@ -1,13 +1,33 @@
 package de.tarent.maven.plugins.pkg._default;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.junit.Assert;
 import org.junit.Test;
 
+import de.tarent.maven.plugins.pkg.Path;
+import de.tarent.maven.plugins.pkg.Utils;
+
 public class _StarterTest {
 
 	/**
@@ -61,6 +81,184 @@ public class _StarterTest {
 		Assert.assertArrayEquals(args, last_args);
 	}
 
+	/**
+	 * Tests that the package index is generated for the staged classpath
+	 * entries and that the indexed class loader finds classes through it.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testStarter_index() throws Exception {
+		File root = new File(System.getProperty("java.io.tmpdir"),
+				"_StarterTest" + System.nanoTime());
+		try {
+			String classFile = _StarterTest.class.getName().replace('.', '/')
+					+ ".class";
+			File a = new File(root, "a.jar");
+			File b = new File(root, "b.jar");
+			writeJar(a, classFile);
+			writeJar(b, "org/example/Foo.class", "Bar.class");
+
+			Path classpath = new Path();
+			classpath.append("/usr/share/java/app/a.jar");
+			classpath.append("/usr/share/java/app/b.jar");
+			classpath.append("/usr/share/java/other.jar");
+			Map<String, File> staged = new HashMap<String, File>();
+			staged.put("/usr/share/java/app/a.jar", a);
+			staged.put("/usr/share/java/app/b.jar", b);
+
+			File starterDir = new File(root, "_starter");
+			Utils.setupStarter(new SystemStreamLog(), "Main", starterDir,
+					classpath, staged);
+
+			Assert.assertTrue(new File(starterDir,
+					"_Starter$IndexedClassLoader.class").exists());
+			List<?> lines = FileUtils.readLines(new File(starterDir,
+					"_classindex"));
+			Assert.assertTrue(lines.contains("-2"));
+			Assert.assertTrue(lines.contains(" 1"));
+			Assert.assertTrue(lines.contains("org.example 1"));
+			Assert.assertTrue(lines.contains(_StarterTest.class.getPackage()
+					.getName() + " 0"));
+
+			// The loader is given a matching index.
+			Map<String, int[]> packages = new HashMap<String, int[]>();
+			packages.put(_StarterTest.class.getPackage().getName(),
+					new int[] { 0 });
+			packages.put("org.example", new int[] { 1 });
+			ClassLoader loader = createIndexedClassLoader(new URL[] {
+					a.toURI().toURL(), b.toURI().toURL(),
+					new File(root, "missing.jar").toURI().toURL() }, packages,
+					new LinkedList<Integer>(Arrays.asList(2)));
+			Method findClass = Class.forName("_Starter$IndexedClassLoader")
+					.getDeclaredMethod("findClass", String.class);
+			findClass.setAccessible(true);
+
+			Class<?> c = (Class<?>) findClass.invoke(loader,
+					_StarterTest.class.getName());
+			Assert.assertSame(loader, c.getClassLoader());
+			Assert.assertNotNull(c.getPackage());
+
+			try {
+				findClass.invoke(loader, "org.example.Missing");
+				Assert.fail("A class which does not exist has been found.");
+			} catch (InvocationTargetException e) {
+				Assert.assertTrue(e.getCause() instanceof ClassNotFoundException);
+			}
+		} finally {
+			FileUtils.deleteDirectory(root);
+		}
+	}
+
+	@Test
+	public void testStarter_indexFallback() throws Exception {
+		File root = new File(System.getProperty("java.io.tmpdir"),
+				"_StarterTest" + System.nanoTime());
+		try {
+			String classFile = _StarterTest.class.getName().replace('.', '/')
+					+ ".class";
+			File lib = new File(root, "lib.jar");
+			File app = new File(root, "app.jar");
+			File mr = new File(root, "mr.jar");
+			writeJar(lib, classFile);
+			writeJar(app, manifest("Class-Path", "lib.jar"), classFile);
+			writeJar(mr, manifest("Multi-Release", "true"), classFile);
+
+			Path classpath = new Path();
+			classpath.append("/usr/share/java/app/app.jar");
+			classpath.append("/usr/share/java/app/mr.jar");
+			classpath.append("/usr/share/java/app/lib.jar");
+			Map<String, File> staged = new HashMap<String, File>();
+			staged.put("/usr/share/java/app/app.jar", app);
+			staged.put("/usr/share/java/app/mr.jar", mr);
+			staged.put("/usr/share/java/app/lib.jar", lib);
+
+			// Jars with a Class-Path or for several Java versions are not
+			// indexed.
+			File starterDir = new File(root, "_starter");
+			Utils.setupStarter(new SystemStreamLog(), "Main", starterDir,
+					classpath, staged);
+			List<?> lines = FileUtils.readLines(new File(starterDir,
+					"_classindex"));
+			Assert.assertTrue(lines.contains("-0"));
+			Assert.assertTrue(lines.contains("-1"));
+			Assert.assertTrue(lines.contains(_StarterTest.class.getPackage()
+					.getName() + " 2"));
+
+			Method findClass = Class.forName("_Starter$IndexedClassLoader")
+					.getDeclaredMethod("findClass", String.class);
+			findClass.setAccessible(true);
+
+			// A class which is only reachable through the Class-Path of a
+			// jar is found by the plain lookup.
+			ClassLoader loader = createIndexedClassLoader(new URL[] { app
+					.toURI().toURL() }, new HashMap<String, int[]>(),
+					new LinkedList<Integer>());
+			Class<?> c = (Class<?>) findClass.invoke(loader,
+					_StarterTest.class.getName());
+			Assert.assertSame(loader, c.getClassLoader());
+
+			// Classes of a multi-release jar are left to the plain lookup.
+			loader = createIndexedClassLoader(new URL[] { mr.toURI().toURL() },
+					new HashMap<String, int[]>(), new LinkedList<Integer>(
+							Arrays.asList(0)));
+			c = (Class<?>) findClass.invoke(loader,
+					_StarterTest.class.getName());
+			Assert.assertSame(loader, c.getClassLoader());
+		} finally {
+			FileUtils.deleteDirectory(root);
+		}
+	}
+
+	private ClassLoader createIndexedClassLoader(URL[] urls,
+			Map<String, int[]> packages, LinkedList<Integer> unindexed)
+			throws Exception {
+		Constructor<?> ctor = Class.forName("_Starter$IndexedClassLoader")
+				.getDeclaredConstructor(URL[].class, Map.class,
+						LinkedList.class);
+		ctor.setAccessible(true);
+		return (ClassLoader) ctor.newInstance(urls, packages, unindexed);
+	}
+
+	private Manifest manifest(String name, String value) {
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION,
+				"1.0");
+		manifest.getMainAttributes().putValue(name, value);
+		return manifest;
+	}
+
+	private void writeJar(File jar, String... classFiles) throws IOException {
+		writeJar(jar, null, classFiles);
+	}
+
+	private void writeJar(File jar, Manifest manifest, String... classFiles)
+			throws IOException {
+		jar.getParentFile().mkdirs();
+		ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar));
+		try {
+			if (manifest != null) {
+				zos.putNextEntry(new ZipEntry(JarFile.MANIFEST_NAME));
+				manifest.write(zos);
+				zos.closeEntry();
+			}
+			for (String classFile : classFiles) {
+				zos.putNextEntry(new ZipEntry(classFile));
+				InputStream is = _StarterTest.class.getResourceAsStream("/"
+						+ _StarterTest.class.getName().replace('.', '/')
+						+ ".class");
+				try {
+					IOUtils.copy(is, zos);
+				} finally {
+					is.close();
+				}
+				zos.closeEntry();
+			}
+		} finally {
+			zos.close();
+		}
+	}
+
 	public static String[] last_args;
 
 	public static void main(String[] args) {
@@ -0,0 +1,149 @@
+package de.tarent.maven.plugins.pkg.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.IOUtils;
+import org.tukaani.xz.XZInputStream;
+
+public class CompressionTest extends TestCase {
+
+	private static final int BLOCK_SIZE = 65536;
+
+	/**
+	 * Data spanning several blocks with a partial last block.
+	 */
+	private byte[] createData() {
+		byte[] data = new byte[3 * BLOCK_SIZE + 12345];
+		Random random = new Random(42);
+		for (int i = 0; i < data.length; i++) {
+			// Compressible but not trivially so.
+			data[i] = (byte) ('a' + random.nextInt(8));
+		}
+		return data;
+	}
+
+	private byte[] write(OutputStream os, ByteArrayOutputStream bos,
+			byte[] data, int chunk) throws IOException {
+		for (int off = 0; off < data.length; off += chunk) {
+			os.write(data, off, Math.min(chunk, data.length - off));
+		}
+		os.close();
+		return bos.toByteArray();
+	}
+
+	private byte[] compress(Compression c, byte[] data, int chunk)
+			throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		return write(c.createOutputStream(bos, c.getDefaultLevel()), bos,
+				data, chunk);
+	}
+
+	public void testGzip() throws IOException {
+		byte[] data = createData();
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		byte[] compressed = write(new ParallelGzipOutputStream(bos, 9, 2,
+				BLOCK_SIZE), bos, data, 10000);
+		assertTrue(compressed.length < data.length / 2);
+
+		// GZIPInputStream reads all members of a multi-member file.
+		InputStream is = new GZIPInputStream(new ByteArrayInputStream(
+				compressed));
+		assertTrue(Arrays.equals(data, IOUtils.toByteArray(is)));
+	}
+
+	public void testXz() throws IOException {
+		byte[] data = createData();
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		byte[] compressed = write(new ParallelXzOutputStream(bos, 6, 2,
+				BLOCK_SIZE), bos, data, 10000);
+		assertTrue(compressed.length < data.length / 2);
+
+		// XZInputStream verifies the block checks, the index and the footer.
+		InputStream is = new XZInputStream(new ByteArrayInputStream(
+				compressed));
+		assertTrue(Arrays.equals(data, IOUtils.toByteArray(is)));
+	}
+
+	/**
+	 * Several streams share the pool and its memory without blocking each
+	 * other, even with a single thread.
+	 */
+	public void testSharedPool() throws Exception {
+		final byte[] data = createData();
+		int threads = CompressorPool.getThreads();
+		CompressorPool.setThreads(1);
+		try {
+			assertEquals(1, CompressorPool.getThreads());
+
+			List<Future<byte[]>> results = new ArrayList<Future<byte[]>>();
+			ExecutorService writers = Executors.newFixedThreadPool(4);
+			try {
+				for (int i = 0; i < 8; i++) {
+					results.add(writers.submit(new Callable<byte[]>() {
+						public byte[] call() throws IOException {
+							ByteArrayOutputStream bos = new ByteArrayOutputStream();
+							return write(new ParallelXzOutputStream(bos, 6, 4,
+									BLOCK_SIZE), bos, data, 10000);
+						}
+					}));
+				}
+				for (Future<byte[]> result : results) {
+					InputStream is = new XZInputStream(
+							new ByteArrayInputStream(result.get(60,
+									TimeUnit.SECONDS)));
+					assertTrue(Arrays.equals(data, IOUtils.toByteArray(is)));
+				}
+			} finally {
+				writers.shutdownNow();
+			}
+		} finally {
+			CompressorPool.setThreads(threads);
+		}
+	}
+
+	public void testEmpty() throws IOException {
+		for (Compression c : Compression.values()) {
+			byte[] compressed = compress(c, new byte[0], 1);
+			if (c == Compression.GZIP) {
+				assertEquals(0, IOUtils.toByteArray(new GZIPInputStream(
+						new ByteArrayInputStream(compressed))).length);
+			} else if (c == Compression.XZ) {
+				assertEquals(0, IOUtils.toByteArray(new XZInputStream(
+						new ByteArrayInputStream(compressed))).length);
+			}
+		}
+	}
+
+	public void testDictSize() {
+		assertEquals(0, ParallelXzOutputStream.encodeDictSize(4096));
+		assertEquals(1, ParallelXzOutputStream.encodeDictSize(6144));
+		assertEquals(2, ParallelXzOutputStream.encodeDictSize(6145));
+		assertEquals(22, ParallelXzOutputStream.encodeDictSize(8 << 20));
+	}
+
+	public void testFromString() {
+		assertEquals(Compression.XZ, Compression.fromString("xz"));
+		try {
+			Compression.fromString("bzip2");
+			fail("Expected an IllegalArgumentException");
+		} catch (IllegalArgumentException expected) {
+			// Expected.
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package de.tarent.maven.plugins.pkg.archive;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.compress.archivers.ar.ArArchiveEntry;
+import org.apache.commons.compress.archivers.ar.ArArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class DebArchiveWriterTest extends TestCase {
+
+	private File root;
+
+	private File base;
+
+	@Before
+	public void setUp() throws IOException {
+		root = new File(System.getProperty("java.io.tmpdir"),
+				"DebArchiveWriterTest" + System.nanoTime());
+		base = new File(root, "foo-1.0");
+
+		FileUtils.writeStringToFile(new File(base, "DEBIAN/control"),
+				"Package: foo\nVersion: 1:1.0-r1\nArchitecture: all\n"
+						+ "Description: foo\n multi line\n");
+		File postinst = new File(base, "DEBIAN/postinst");
+		FileUtils.writeStringToFile(postinst, "#!/bin/sh\n");
+		postinst.setExecutable(true);
+
+		FileUtils.writeStringToFile(new File(base,
+				"usr/share/java/foo/foo.jar"), "jar");
+		File script = new File(base, "usr/bin/foo");
+		FileUtils.writeStringToFile(script, "#!/bin/sh\nexit 0\n");
+		script.setExecutable(true);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(root);
+	}
+
+	@Test
+	public void testWrite() throws IOException {
+		File deb = new DebArchiveWriter().write(base, root);
+		assertEquals("foo_1.0-r1_all.deb", deb.getName());
+
+		List<String> members = new ArrayList<String>();
+		Map<String, TarArchiveEntry> control = null;
+		Map<String, TarArchiveEntry> data = null;
+
+		ArArchiveInputStream ar = new ArArchiveInputStream(
+				new FileInputStream(deb));
+		try {
+			ArArchiveEntry member;
+			while ((member = ar.getNextArEntry()) != null) {
+				members.add(member.getName());
+				assertEquals(0, member.getUserId());
+				assertEquals(0, member.getGroupId());
+
+				if (member.getName().equals("debian-binary")) {
+					assertEquals("2.0\n", IOUtils.toString(ar, "US-ASCII"));
+				} else if (member.getName().equals("control.tar.gz")) {
+					control = readTarball(ar);
+				} else if (member.getName().equals("data.tar.gz")) {
+					data = readTarball(ar);
+				}
+			}
+		} finally {
+			ar.close();
+		}
+
+		assertEquals("debian-binary", members.get(0));
+		assertEquals("control.tar.gz", members.get(1));
+		assertEquals("data.tar.gz", members.get(2));
+		assertEquals(3, members.size());
+
+		assertTrue(control.containsKey("./control"));
+		assertEquals(0755, control.get("./postinst").getMode() & 0777);
+
+		assertFalse(data.containsKey("./DEBIAN/"));
+		assertFalse(data.containsKey("./DEBIAN/control"));
+		assertTrue(data.get("./usr/share/java/foo/").isDirectory());
+		assertEquals(0644, data.get("./usr/share/java/foo/foo.jar").getMode()
+				& 0777);
+		assertEquals(0755, data.get("./usr/bin/foo").getMode() & 0777);
+
+		for (TarArchiveEntry e : data.values()) {
+			assertEquals("root", e.getUserName());
+			assertEquals(0, e.getLongUserId());
+			assertEquals(0, e.getLongGroupId());
+		}
+	}
+
+	@Test
+	public void testXz() throws IOException {
+		DebArchiveWriter writer = new DebArchiveWriter();
+		writer.setCompression(Compression.XZ);
+		writer.setCompressionLevel(1);
+		File deb = writer.write(base, root);
+
+		List<String> members = new ArrayList<String>();
+		Map<String, TarArchiveEntry> data = null;
+		ArArchiveInputStream ar = new ArArchiveInputStream(
+				new FileInputStream(deb));
+		try {
+			ArArchiveEntry member;
+			while ((member = ar.getNextArEntry()) != null) {
+				members.add(member.getName());
+				if (member.getName().equals("data.tar.xz")) {
+					data = readTarball(new TarArchiveInputStream(
+							new XZCompressorInputStream(ar)));
+				}
+			}
+		} finally {
+			ar.close();
+		}
+
+		assertEquals(Arrays.asList("debian-binary", "control.tar.gz",
+				"data.tar.xz"), members);
+		assertTrue(data.containsKey("./usr/share/java/foo/foo.jar"));
+	}
+
+	@Test
+	public void testMissingControlFile() {
+		new File(base, "DEBIAN/control").delete();
+		try {
+			new DebArchiveWriter().write(base, root);
+			fail("expected IOException");
+		} catch (IOException expected) {
+			// Expected.
+		}
+	}
+
+	private Map<String, TarArchiveEntry> readTarball(ArArchiveInputStream ar)
+			throws IOException {
+		// Not closed as this would close the surrounding ar stream as well.
+		return readTarball(new TarArchiveInputStream(
+				new GzipCompressorInputStream(ar)));
+	}
+
+	private Map<String, TarArchiveEntry> readTarball(TarArchiveInputStream tar)
+			throws IOException {
+		Map<String, TarArchiveEntry> entries = new HashMap<String, TarArchiveEntry>();
+		TarArchiveEntry e;
+		while ((e = tar.getNextTarEntry()) != null) {
+			entries.put(e.getName(), e);
+		}
+		return entries;
+	}
+}
@@ -0,0 +1,109 @@
+package de.tarent.maven.plugins.pkg.archive;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.compress.archivers.ar.ArArchiveEntry;
+import org.apache.commons.compress.archivers.ar.ArArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class IpkArchiveWriterTest extends TestCase {
+
+	private File root;
+
+	private File base;
+
+	@Before
+	public void setUp() throws IOException {
+		root = new File(System.getProperty("java.io.tmpdir"),
+				"IpkArchiveWriterTest" + System.nanoTime());
+		base = new File(root, "foo-1.0");
+
+		FileUtils.writeStringToFile(new File(base, "CONTROL/control"),
+				"Package: foo\nVersion: 1:1.0-r1\nArchitecture: all\n"
+						+ "Maintainer: Jane Doe\nSection: misc\n"
+						+ "Description: foo\n");
+		FileUtils.writeStringToFile(new File(base,
+				"usr/share/java/foo/foo.jar"), "jar");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(root);
+	}
+
+	@Test
+	public void testWrite() throws IOException {
+		File ipk = new IpkArchiveWriter().write(base, root);
+		assertEquals("foo_1.0-r1_all.ipk", ipk.getName());
+
+		List<String> members = new ArrayList<String>();
+		Set<String> control = null;
+		Set<String> data = null;
+
+		ArArchiveInputStream ar = new ArArchiveInputStream(
+				new FileInputStream(ipk));
+		try {
+			ArArchiveEntry member;
+			while ((member = ar.getNextArEntry()) != null) {
+				members.add(member.getName());
+				if (member.getName().equals("control.tar.gz")) {
+					control = readNames(ar);
+				} else if (member.getName().equals("data.tar.gz")) {
+					data = readNames(ar);
+				}
+			}
+		} finally {
+			ar.close();
+		}
+
+		// Same order as ipkg-build
+		assertEquals(Arrays.asList("debian-binary", "data.tar.gz",
+				"control.tar.gz"), members);
+		assertTrue(control.contains("./control"));
+		assertTrue(data.contains("./usr/share/java/foo/foo.jar"));
+		assertFalse(data.contains("./CONTROL/control"));
+	}
+
+	@Test
+	public void testMissingField() throws IOException {
+		FileUtils.writeStringToFile(new File(base, "CONTROL/control"),
+				"Package: foo\nVersion: 1.0\nArchitecture: all\n"
+						+ "Maintainer: Jane Doe\nDescription: foo\n");
+		try {
+			new IpkArchiveWriter().write(base, root);
+			fail("expected IOException");
+		} catch (IOException expected) {
+			assertTrue(expected.getMessage().contains("Section"));
+		}
+	}
+
+	private Set<String> readNames(ArArchiveInputStream ar) throws IOException {
+		// Not closed as this would close the surrounding ar stream as well.
+		TarArchiveInputStream tar = new TarArchiveInputStream(
+				new GzipCompressorInputStream(ar));
+		Set<String> names = new HashSet<String>();
+		TarArchiveEntry e;
+		while ((e = tar.getNextTarEntry()) != null) {
+			names.add(e.getName());
+		}
+		return names;
+	}
+}
@@ -0,0 +1,316 @@
+package de.tarent.maven.plugins.pkg.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.compress.archivers.cpio.CpioArchiveEntry;
+import org.apache.commons.compress.archivers.cpio.CpioArchiveInputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.tukaani.xz.XZInputStream;
+
+@RunWith(BlockJUnit4ClassRunner.class)
+public class RpmWriterTest extends TestCase {
+
+	/**
+	 * A parsed header: the values by tag and the raw bytes.
+	 */
+	private static class Header {
+
+		final Map<Integer, Object> values = new HashMap<Integer, Object>();
+
+		byte[] bytes;
+
+		String getString(int tag) {
+			return (String) values.get(tag);
+		}
+
+		List<String> getStrings(int tag) {
+			return Arrays.asList((String[]) values.get(tag));
+		}
+
+		int[] getInts(int tag) {
+			return (int[]) values.get(tag);
+		}
+	}
+
+	private File root;
+
+	private File base;
+
+	private File rpm;
+
+	@Before
+	public void setUp() throws IOException {
+		root = new File(System.getProperty("java.io.tmpdir"), "RpmWriterTest"
+				+ System.nanoTime());
+		base = new File(root, "BUILD");
+		rpm = new File(root, "foo-1.0-2.noarch.rpm");
+
+		FileUtils.writeStringToFile(new File(base,
+				"usr/share/java/foo/foo.jar"), "jar");
+		FileUtils.writeStringToFile(new File(base, "usr/bin/foo"),
+				"#!/bin/sh\nexit 0\n");
+		new File(base, "usr/bin/foo").setExecutable(true, false);
+		new File(base, "var/lib/foo").mkdirs();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(root);
+	}
+
+	private RpmWriter createWriter() {
+		RpmWriter writer = new RpmWriter();
+		writer.setName("foo");
+		writer.setVersion("1.0");
+		writer.setRelease("2");
+		writer.setSummary("Foo");
+		writer.setLicense("GPL");
+		writer.setRequires("java >= 1.6, bar, baz (<< 2)");
+		writer.setPostinstallScript("echo installed");
+		return writer;
+	}
+
+	@Test
+	public void testWrite() throws Exception {
+		RpmWriter writer = createWriter();
+		assertEquals(rpm.getName(), writer.getPackageFileName());
+		writer.write(base, rpm);
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+				FileUtils.readFileToByteArray(rpm)));
+		byte[] lead = new byte[96];
+		in.readFully(lead);
+		assertEquals(0xedabeedb, readInt(lead, 0));
+		assertEquals("foo-1.0-2", new String(lead, 10, 9, "US-ASCII"));
+		assertEquals(0, lead[19]);
+
+		Header sig = readHeader(in);
+		in.skipBytes((8 - sig.bytes.length % 8) % 8);
+		Header header = readHeader(in);
+		byte[] payload = IOUtils.toByteArray(in);
+
+		// Signature
+		assertEquals(hex("SHA-1", header.bytes), sig.getString(269));
+		assertEquals(hex("SHA-256", header.bytes), sig.getString(273));
+		assertEquals(header.bytes.length + payload.length, sig.getInts(1000)[0]);
+		MessageDigest md5 = MessageDigest.getInstance("MD5");
+		md5.update(header.bytes);
+		assertTrue(Arrays.equals(md5.digest(payload), (byte[]) sig.values
+				.get(1004)));
+
+		// Metadata
+		assertEquals("foo", header.getString(1000));
+		assertEquals("1.0", header.getString(1001));
+		assertEquals("2", header.getString(1002));
+		assertEquals("Foo", header.getString(1004));
+		assertEquals("noarch", header.getString(1022));
+		assertEquals("echo installed", header.getString(1024));
+		assertEquals("/bin/sh", header.getString(1086));
+		assertEquals("gzip", header.getString(1125));
+		assertEquals(hex("SHA-256", payload), header.getStrings(5092).get(0));
+
+		List<String> requires = header.getStrings(1049);
+		assertEquals(Arrays.asList("java", "bar", "baz", "/bin/sh"), requires
+				.subList(0, 4));
+		assertEquals("1.6", header.getStrings(1050).get(0));
+		assertEquals(RpmWriter.SENSE_GREATER | RpmWriter.SENSE_EQUAL, header
+				.getInts(1048)[0]);
+		assertEquals(0, header.getInts(1048)[1]);
+		assertEquals(RpmWriter.SENSE_LESS, header.getInts(1048)[2]);
+		assertTrue(requires.contains("rpmlib(PayloadFilesHavePrefix)"));
+
+		// File list, sorted by path and without directories
+		List<String> dirNames = header.getStrings(1118);
+		List<String> baseNames = header.getStrings(1117);
+		int[] dirIndexes = header.getInts(1116);
+		List<String> paths = new ArrayList<String>();
+		for (int i = 0; i < baseNames.size(); i++) {
+			paths.add(dirNames.get(dirIndexes[i]) + baseNames.get(i));
+		}
+		assertEquals(Arrays.asList("/usr/bin/foo",
+				"/usr/share/java/foo/foo.jar"), paths);
+		assertEquals(3, header.getInts(1028)[1]);
+		assertEquals(20, header.getInts(1009)[0]);
+		assertEquals(hex("SHA-256", "jar".getBytes("US-ASCII")), header
+				.getStrings(1035).get(1));
+
+		// The modes of the staged files are kept.
+		assertEquals(0100755, header.getInts(1030)[0]);
+		assertEquals(0100644, header.getInts(1030)[1]);
+
+		// Payload
+		Map<String, String> contents = readPayload(new GZIPInputStream(
+				new ByteArrayInputStream(payload)));
+		assertEquals(2, contents.size());
+		assertEquals("jar", contents.get("./usr/share/java/foo/foo.jar"));
+		assertEquals("#!/bin/sh\nexit 0\n", contents.get("./usr/bin/foo"));
+		Map<String, Integer> modes = readPayloadModes(new GZIPInputStream(
+				new ByteArrayInputStream(payload)));
+		assertEquals(0100755, modes.get("./usr/bin/foo").intValue());
+		assertEquals(0100644, modes.get("./usr/share/java/foo/foo.jar")
+				.intValue());
+	}
+
+	@Test
+	public void testXz() throws Exception {
+		RpmWriter writer = createWriter();
+		writer.setCompression(Compression.XZ);
+		writer.write(base, rpm);
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+				FileUtils.readFileToByteArray(rpm)));
+		in.skipBytes(96);
+		Header sig = readHeader(in);
+		in.skipBytes((8 - sig.bytes.length % 8) % 8);
+		Header header = readHeader(in);
+
+		assertEquals("xz", header.getString(1125));
+		assertTrue(header.getStrings(1049).contains("rpmlib(PayloadIsXz)"));
+		Map<String, String> contents = readPayload(new XZInputStream(in));
+		assertEquals("jar", contents.get("./usr/share/java/foo/foo.jar"));
+	}
+
+	@Test
+	public void testInvalidDependency() throws IOException {
+		RpmWriter writer = createWriter();
+		writer.setRequires("foo | bar");
+		try {
+			writer.write(base, rpm);
+			fail("Expected an IOException");
+		} catch (IOException expected) {
+			assertFalse(rpm.exists());
+		}
+	}
+
+	private Map<String, String> readPayload(InputStream in) throws IOException {
+		Map<String, String> contents = new HashMap<String, String>();
+		CpioArchiveInputStream cpio = new CpioArchiveInputStream(in);
+		CpioArchiveEntry entry;
+		while ((entry = cpio.getNextCPIOEntry()) != null) {
+			contents.put(entry.getName(), IOUtils.toString(cpio, "UTF-8"));
+		}
+		return contents;
+	}
+
+	private Map<String, Integer> readPayloadModes(InputStream in)
+			throws IOException {
+		Map<String, Integer> modes = new HashMap<String, Integer>();
+		CpioArchiveInputStream cpio = new CpioArchiveInputStream(in);
+		CpioArchiveEntry entry;
+		while ((entry = cpio.getNextCPIOEntry()) != null) {
+			modes.put(entry.getName(), (int) entry.getMode());
+		}
+		return modes;
+	}
+
+	/**
+	 * Reads a header and checks the region trailer.
+	 */
+	private Header readHeader(DataInputStream in) throws IOException {
+		byte[] intro = new byte[16];
+		in.readFully(intro);
+		assertEquals(0x8eade801, readInt(intro, 0));
+		int il = readInt(intro, 8);
+		int dl = readInt(intro, 12);
+
+		byte[] index = new byte[il * 16];
+		in.readFully(index);
+		byte[] store = new byte[dl];
+		in.readFully(store);
+
+		Header header = new Header();
+		header.bytes = new byte[16 + index.length + dl];
+		System.arraycopy(intro, 0, header.bytes, 0, 16);
+		System.arraycopy(index, 0, header.bytes, 16, index.length);
+		System.arraycopy(store, 0, header.bytes, 16 + index.length, dl);
+
+		// The region entry points to the trailer at the end of the store.
+		int regionOffset = readInt(index, 8);
+		assertEquals(dl - 16, regionOffset);
+		assertEquals(-il * 16, readInt(store, regionOffset + 8));
+
+		for (int i = 1; i < il; i++) {
+			int tag = readInt(index, i * 16);
+			int type = readInt(index, i * 16 + 4);
+			int offset = readInt(index, i * 16 + 8);
+			int count = readInt(index, i * 16 + 12);
+			header.values.put(tag, readValue(store, type, offset, count));
+		}
+		return header;
+	}
+
+	private Object readValue(byte[] store, int type, int offset, int count)
+			throws IOException {
+		switch (type) {
+		case RpmHeader.INT16:
+			int[] shorts = new int[count];
+			for (int i = 0; i < count; i++) {
+				shorts[i] = ((store[offset + i * 2] & 0xff) << 8)
+						| (store[offset + i * 2 + 1] & 0xff);
+			}
+			return shorts;
+		case RpmHeader.INT32:
+			assertEquals(0, offset % 4);
+			int[] ints = new int[count];
+			for (int i = 0; i < count; i++) {
+				ints[i] = readInt(store, offset + i * 4);
+			}
+			return ints;
+		case RpmHeader.BIN:
+			return Arrays.copyOfRange(store, offset, offset + count);
+		case RpmHeader.STRING:
+		case RpmHeader.I18NSTRING:
+			return readStrings(store, offset, 1)[0];
+		case RpmHeader.STRING_ARRAY:
+			return readStrings(store, offset, count);
+		default:
+			throw new IOException("Unexpected type " + type);
+		}
+	}
+
+	private String[] readStrings(byte[] store, int offset, int count)
+			throws IOException {
+		String[] strings = new String[count];
+		for (int i = 0; i < count; i++) {
+			int end = offset;
+			while (store[end] != 0) {
+				end++;
+			}
+			strings[i] = new String(store, offset, end - offset, "UTF-8");
+			offset = end + 1;
+		}
+		return strings;
+	}
+
+	private static int readInt(byte[] b, int off) {
+		return ((b[off] & 0xff) << 24) | ((b[off + 1] & 0xff) << 16)
+				| ((b[off + 2] & 0xff) << 8) | (b[off + 3] & 0xff);
+	}
+
+	private static String hex(String algorithm, byte[] data) throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : MessageDigest.getInstance(algorithm).digest(data)) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+}
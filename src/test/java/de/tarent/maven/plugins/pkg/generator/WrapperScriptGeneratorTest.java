@@ -0,0 +1,62 @@
+package de.tarent.maven.plugins.pkg.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tarent.maven.plugins.pkg.Path;
+
+public class WrapperScriptGeneratorTest {
+
+	WrapperScriptGenerator generator;
+	File script;
+
+	@Before
+	public void setUp() throws IOException {
+		generator = new WrapperScriptGenerator();
+		generator.setMainClass("org.example.Main");
+		generator.setClasspath(new Path(new File(
+				"/usr/share/java/example/example.jar")));
+		generator.setLibraryPath(new Path());
+		script = File.createTempFile("WrapperScriptGeneratorTest", ".sh");
+	}
+
+	@After
+	public void tearDown() {
+		script.delete();
+	}
+
+	@Test
+	public void testWithoutCdsArchive() throws IOException {
+		generator.generate(script);
+
+		String content = FileUtils.readFileToString(script);
+		assertFalse(content.contains("SharedArchiveFile"));
+		assertTrue(content.contains("${CDS_ARG}"));
+	}
+
+	@Test
+	public void testCdsArchive() throws IOException, InterruptedException {
+		generator.setCdsArchiveFile("/usr/share/java/example/example.jsa");
+		generator.generate(script);
+
+		String content = FileUtils.readFileToString(script);
+		assertTrue(content
+				.contains("if [ -r \"/usr/share/java/example/example.jsa\" ];"));
+		assertTrue(content.contains("CDS_ARG=\"-XX:SharedArchiveFile="
+				+ "/usr/share/java/example/example.jsa -Xshare:auto\""));
+
+		// The script must still be valid.
+		Process p = new ProcessBuilder("sh", "-n", script.getAbsolutePath())
+				.start();
+		assertEquals(0, p.waitFor());
+	}
+}
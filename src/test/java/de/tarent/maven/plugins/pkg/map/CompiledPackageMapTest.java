@@ -0,0 +1,146 @@
+package de.tarent.maven.plugins.pkg.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+
+import de.tarent.maven.plugins.pkg.exception.XMLParserException;
+
+public class CompiledPackageMapTest extends TestCase {
+
+	private File compiledFile;
+
+	private File auxFile;
+
+	private Parser xmlParser;
+
+	@Override
+	protected void setUp() throws Exception {
+		compiledFile = File.createTempFile("pm-compiled", ".bin");
+		auxFile = File.createTempFile("pm-aux", ".xml");
+
+		URL xml = PackageMap.class.getResource("default-package-maps.xml");
+		PackageMapCompiler.compile(FileUtils.toFile(xml), compiledFile);
+		xmlParser = new Parser(xml, null);
+	}
+
+	@Override
+	protected void tearDown() {
+		compiledFile.delete();
+		auxFile.delete();
+	}
+
+	/**
+	 * Tests that every distro reads the same from the compiled form as from
+	 * the XML documents.
+	 */
+	public void testSameAsXml() throws Exception {
+		Parser compiledParser = new Parser(new CompiledPackageMap(compiledFile
+				.toURI().toURL()), null);
+
+		String[] distros = xmlParser.mappings.keySet().toArray(new String[0]);
+		assertTrue(distros.length > 10);
+		for (String distro : distros) {
+			assertSameMapping(xmlParser.getMapping(distro),
+					compiledParser.getMapping(distro));
+		}
+	}
+
+	/**
+	 * Tests that only the requested distro and its ancestors are read.
+	 */
+	public void testLazy() throws Exception {
+		Parser compiledParser = new Parser(new CompiledPackageMap(compiledFile
+				.toURI().toURL()), null);
+		assertTrue(compiledParser.mappings.isEmpty());
+
+		Mapping m = compiledParser.getMapping("centos_6_2");
+		assertEquals("centos_6_1", m.parent);
+		assertEquals("rpm", m.packaging);
+		assertEquals(3, compiledParser.mappings.size());
+	}
+
+	/**
+	 * Tests that an auxiliary document supplements the compiled form just
+	 * like it supplements the XML documents.
+	 */
+	public void testAuxMap() throws Exception {
+		FileUtils.writeStringToFile(auxFile, "<package-maps>"
+				+ "<version>1.0</version>"
+				+ "<distro><id>auxtest</id><label>aux</label>"
+				+ "<inherit>ubuntu_trusty</inherit></distro>"
+				+ "<distro><id>ubuntu_trusty</id><label>changed</label>"
+				+ "<packaging>deb</packaging><map><entry>"
+				+ "<artifactSpec>org.example:aux</artifactSpec>"
+				+ "<dependencyLine>libaux-java</dependencyLine>"
+				+ "</entry></map></distro>" + "</package-maps>");
+		URL aux = auxFile.toURI().toURL();
+
+		Parser compiledParser = new Parser(new CompiledPackageMap(compiledFile
+				.toURI().toURL()), aux);
+		Parser xmlAuxParser = new Parser(PackageMap.class
+				.getResource("default-package-maps.xml"), aux);
+
+		Mapping m = compiledParser.getMapping("auxtest");
+		assertEquals("aux", m.label);
+		assertEquals("libaux-java",
+				m.getEntry("org.example", "aux", new DefaultArtifactVersion("1"))
+						.dependencyLine);
+		assertSameMapping(xmlAuxParser.getMapping("auxtest"), m);
+		assertSameMapping(xmlAuxParser.getMapping("ubuntu_trusty"),
+				compiledParser.getMapping("ubuntu_trusty"));
+	}
+
+	public void testCorrupt() throws IOException {
+		FileUtils.writeStringToFile(compiledFile, "<package-maps/>");
+		try {
+			new CompiledPackageMap(compiledFile.toURI().toURL());
+			fail("A corrupt document has been accepted.");
+		} catch (XMLParserException e) {
+			// Expected.
+		}
+	}
+
+	private static void assertSameMapping(Mapping expected, Mapping actual) {
+		assertEquals(expected.distro, actual.distro);
+		assertEquals(expected.label, actual.label);
+		assertEquals(expected.parent, actual.parent);
+		assertEquals(expected.packaging, actual.packaging);
+		assertEquals(expected.repoName, actual.repoName);
+		assertEquals(expected.defaultBinPath, actual.defaultBinPath);
+		assertEquals(expected.defaultSBinPath, actual.defaultSBinPath);
+		assertEquals(expected.defaultJarPath, actual.defaultJarPath);
+		assertEquals(expected.defaultJNIPath, actual.defaultJNIPath);
+		assertEquals(expected.defaultDependencyLine,
+				actual.defaultDependencyLine);
+		assertEquals(expected.debianNaming, actual.debianNaming);
+		assertEquals(expected.hasNoPackages, actual.hasNoPackages);
+		assertEquals(describe(expected.entryMap), describe(actual.entryMap));
+	}
+
+	private static Map<String, String> describe(
+			Map<String, ? extends Set<Entry>> entryMap) {
+		Map<String, String> description = new TreeMap<String, String>();
+		for (Set<Entry> entries : entryMap.values()) {
+			for (Entry e : entries) {
+				String[] jars = e.jarFileNames != null ? e.jarFileNames
+						.toArray(new String[0]) : new String[0];
+				Arrays.sort(jars);
+				description.put(e.artifactSpec + " " + e.versionRange,
+						e.dependencyLine + " " + e.isBootClasspath + " "
+								+ e.bundleEntry + " " + e.ignoreEntry + " "
+								+ Arrays.toString(jars));
+			}
+		}
+		return description;
+	}
+}
@@ -0,0 +1,87 @@
+package de.tarent.maven.plugins.pkg.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+public class DependencyClassificationTest extends TestCase {
+
+	private Artifact artifact(String groupId, String artifactId, String version) {
+		return new DefaultArtifact(groupId, artifactId,
+				VersionRange.createFromVersion(version), Artifact.SCOPE_COMPILE,
+				"jar", null, new DefaultArtifactHandler("jar"));
+	}
+
+	/**
+	 * Tests that a single pass sorts the dependencies into bundled and
+	 * packaged ones and collects their Jar files and dependency line.
+	 */
+	public void testClassify() throws Exception {
+		PackageMap pm = new PackageMap(
+				DependencyClassificationTest.class
+						.getResource("pm-MappingTest.xml"),
+				null, "mappingtest", Collections.singleton("overridden"));
+
+		Artifact cc2 = artifact("commons-collections", "commons-collections",
+				"2.0");
+		Artifact cc3 = artifact("commons-collections", "commons-collections",
+				"3.1");
+		Artifact junit4 = artifact("junit", "junit", "4.1");
+		Artifact junit5 = artifact("junit", "junit", "5.0");
+		Artifact unknown = artifact("foo", "unknown", "1.0");
+		Artifact overridden = artifact("junit", "overridden", "4.1");
+
+		List<Artifact> deps = new ArrayList<Artifact>(Arrays.asList(cc2,
+				unknown, cc3, junit4, overridden, junit5));
+
+		DependencyClassification dc = pm.classify(new SystemStreamLog(), deps);
+
+		assertEquals(Arrays.asList(unknown, overridden),
+				new ArrayList<Artifact>(dc.getBundled()));
+		assertEquals(Arrays.asList(cc2, cc3, junit4, junit5),
+				new ArrayList<Artifact>(dc.getPackaged()));
+		assertEquals(Arrays.asList("/usr/share/java/commons-collections3.jar",
+				"/usr/share/java/commons-collections3.jar",
+				"/usr/share/java/junit4.jar", "/usr/share/java/junit5.jar"),
+				dc.getClasspath());
+		assertTrue(dc.getBootClasspath().isEmpty());
+		assertEquals(Arrays.asList("libcommons-collections-java",
+				"libcommons-collections3-java", "junit4", "junit5"),
+				dc.getDependencyLine());
+
+		try {
+			dc.getBundled().clear();
+			fail("classification must be immutable");
+		} catch (UnsupportedOperationException e) {
+			// Expected.
+		}
+	}
+
+	/**
+	 * Tests that a dependency line fragment is listed only once.
+	 */
+	public void testDuplicateDependencyLine() throws Exception {
+		PackageMap pm = new PackageMap(
+				DependencyClassificationTest.class
+						.getResource("pm-MappingTest.xml"),
+				null, "mappingtest", Collections.<String> emptySet());
+
+		DependencyClassification dc = pm.classify(new SystemStreamLog(),
+				Arrays.asList(artifact("commons-collections",
+						"commons-collections", "3.1"), artifact(
+						"commons-collections", "commons-collections", "3.2")));
+
+		assertEquals(Arrays.asList("libcommons-collections3-java"),
+				dc.getDependencyLine());
+		assertEquals(2, dc.getClasspath().size());
+	}
+}
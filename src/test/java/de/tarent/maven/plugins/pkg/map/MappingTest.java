@@ -338,6 +338,28 @@ public class MappingTest extends TestCase {
 				e.dependencyLine);
 	}
 
+	/**
+	 * Tests that merged mappings are created once and cannot be changed, as
+	 * they are shared.
+	 */
+	public void testMergedMappingShared() throws Exception {
+		Parser p = new Parser(
+				PackageMap.class.getResource("default-package-maps.xml"), null);
+
+		Mapping m = p.getMapping("ubuntu_jaunty");
+		assertSame(m, p.getMapping("ubuntu_jaunty"));
+		assertEquals("ubuntu_intrepid", m.parent);
+		// The ancestors are merged once, too.
+		assertEquals("ubuntu_hardy", p.getMapping("ubuntu_intrepid").parent);
+
+		try {
+			m.putEntry(Entry.createBundleEntry("groupid:new", null));
+			fail("A shared mapping has been changed.");
+		} catch (IllegalStateException e) {
+			// Expected.
+		}
+	}
+
 	private HashSet<String> createHashSet(String[] entries) {
 		HashSet<String> hs = new HashSet<String>();
 		for (String e : entries)
@@ -0,0 +1,79 @@
+package de.tarent.maven.plugins.pkg.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+public class ParserCacheTest extends TestCase {
+
+	private File auxFile;
+
+	protected void setUp() throws IOException {
+		ParserCache.clear();
+		auxFile = File.createTempFile("pm-aux", ".xml");
+		writeAuxMap("aux");
+	}
+
+	protected void tearDown() {
+		auxFile.delete();
+		ParserCache.clear();
+	}
+
+	private void writeAuxMap(String label) throws IOException {
+		FileUtils.writeStringToFile(auxFile, "<package-maps>"
+				+ "<version>1.0</version>" + "<distro><id>auxtest</id><label>"
+				+ label + "</label><packaging>deb</packaging></distro>"
+				+ "</package-maps>");
+	}
+
+	/**
+	 * Tests that the same documents are parsed only once.
+	 */
+	public void testCached() throws Exception {
+		URL url = ParserCacheTest.class.getResource("pm-MappingTest.xml");
+
+		Parser p1 = ParserCache.getParser(url, null);
+		Parser p2 = ParserCache.getParser(url, null);
+		assertSame(p1, p2);
+
+		Parser p3 = ParserCache.getParser(url, auxFile.toURI().toURL());
+		assertNotSame(p1, p3);
+		assertSame(p3, ParserCache.getParser(url, auxFile.toURI().toURL()));
+	}
+
+	/**
+	 * Tests that a changed auxiliary document is parsed again.
+	 */
+	public void testAuxMapChanged() throws Exception {
+		URL url = ParserCacheTest.class.getResource("pm-MappingTest.xml");
+		URL auxUrl = auxFile.toURI().toURL();
+
+		Parser p1 = ParserCache.getParser(url, auxUrl);
+		assertEquals("aux", p1.getMapping("auxtest").label);
+
+		writeAuxMap("changed aux");
+		// Make sure the change is noticed even on file systems with a coarse
+		// timestamp granularity.
+		auxFile.setLastModified(auxFile.lastModified() - 10000);
+
+		Parser p2 = ParserCache.getParser(url, auxUrl);
+		assertNotSame(p1, p2);
+		assertEquals("changed aux", p2.getMapping("auxtest").label);
+	}
+
+	/**
+	 * Tests that documents inside a jar file are checked through the jar file.
+	 */
+	public void testJarStamp() throws Exception {
+		URL url = new URL("jar:" + auxFile.toURI().toURL() + "!/foo.xml");
+		long[] stamp = ParserCache.getStamp(url);
+		assertEquals(auxFile.lastModified(), stamp[0]);
+		assertEquals(auxFile.length(), stamp[1]);
+
+		assertNull(ParserCache.getStamp(new URL("http://localhost/foo.xml")));
+	}
+}
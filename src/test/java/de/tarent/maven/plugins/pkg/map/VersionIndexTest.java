@@ -0,0 +1,100 @@
+package de.tarent.maven.plugins.pkg.map;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
+import org.apache.maven.artifact.versioning.VersionRange;
+
+public class VersionIndexTest extends TestCase {
+
+	private Entry entry(String spec, String dependencyLine)
+			throws InvalidVersionSpecificationException {
+		return new Entry("g:a", spec == null ? null
+				: VersionRange.createFromVersionSpec(spec), dependencyLine,
+				new HashSet<String>(), false);
+	}
+
+	private String lookup(VersionIndex index, String version) {
+		Entry e = index.getEntry(version == null ? null
+				: new DefaultArtifactVersion(version));
+		return e == null ? null : e.dependencyLine;
+	}
+
+	/**
+	 * Tests the handling of touching bounds and the unranged fallback.
+	 */
+	public void testBounds() throws InvalidVersionSpecificationException {
+		List<Entry> entries = new ArrayList<Entry>();
+		entries.add(entry("[,1.0]", "a"));
+		entries.add(entry("(1.0,2.0)", "b"));
+		entries.add(entry("[2.0]", "c"));
+		entries.add(entry("[3.0,4.0),[5.0,)", "d"));
+		entries.add(entry(null, "fallback"));
+		VersionIndex index = VersionIndex.create(entries);
+
+		assertEquals("a", lookup(index, "0.1"));
+		assertEquals("a", lookup(index, "1.0"));
+		assertEquals("b", lookup(index, "1.0.1"));
+		assertEquals("b", lookup(index, "1.9"));
+		assertEquals("c", lookup(index, "2.0"));
+		assertEquals("fallback", lookup(index, "2.5"));
+		assertEquals("d", lookup(index, "3.0"));
+		assertEquals("fallback", lookup(index, "4.0"));
+		assertEquals("d", lookup(index, "5.0"));
+		assertEquals("d", lookup(index, "100"));
+		assertEquals("fallback", lookup(index, null));
+	}
+
+	/**
+	 * Tests that overlapping ranges still yield a matching entry.
+	 */
+	public void testOverlapping() throws InvalidVersionSpecificationException {
+		List<Entry> entries = new ArrayList<Entry>();
+		entries.add(entry("[1.0,3.0)", "a"));
+		entries.add(entry("[2.0,4.0)", "b"));
+		VersionIndex index = VersionIndex.create(entries);
+
+		assertEquals("a", lookup(index, "1.5"));
+		assertEquals("a", lookup(index, "2.5"));
+		assertEquals("b", lookup(index, "3.5"));
+		assertNull(lookup(index, "4.0"));
+	}
+
+	/**
+	 * Compares the index with a linear scan over a synthetic set of thousands
+	 * of non-overlapping ranges.
+	 */
+	public void testAgainstLinearScan()
+			throws InvalidVersionSpecificationException {
+		List<Entry> entries = new ArrayList<Entry>();
+		for (int i = 0; i < 5000; i++) {
+			// Every other interval is left out to have gaps.
+			if (i % 2 == 0) {
+				entries.add(entry("[" + i + ".0," + i + ".5)", "e" + i));
+			}
+		}
+		VersionIndex index = VersionIndex.create(entries);
+
+		Random r = new Random(4711);
+		for (int i = 0; i < 10000; i++) {
+			ArtifactVersion v = new DefaultArtifactVersion(r.nextInt(5000) + "."
+					+ r.nextInt(10));
+
+			Entry expected = null;
+			for (Entry e : entries) {
+				if (e.versionRange.containsVersion(v)) {
+					expected = e;
+					break;
+				}
+			}
+			assertSame(v.toString(), expected, index.getEntry(v));
+		}
+	}
+}
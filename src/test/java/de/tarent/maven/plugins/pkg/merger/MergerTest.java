@@ -1,6 +1,7 @@
 package de.tarent.maven.plugins.pkg.merger;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 import junit.framework.TestCase;
@@ -9,6 +10,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.BlockJUnit4ClassRunner;
 
+import de.tarent.maven.plugins.pkg.annotations.MergeMe;
+
 @RunWith(BlockJUnit4ClassRunner.class)
 public class MergerTest extends TestCase {
 	@Test
@@ -66,4 +69,54 @@ public class MergerTest extends TestCase {
 		assertTrue(((ArrayList<String>) child).contains(childString));
 	}
 
+	static class Mergeable {
+		@MergeMe(defaultString = "none")
+		String name;
+
+		@MergeMe(defaultBoolean = true)
+		Boolean flag;
+
+		@MergeMe
+		List<String> items;
+
+		@MergeMe(defaultValueIsNull = true)
+		Integer level;
+
+		String notMerged;
+	}
+
+	@Test
+	public void MergePlanTest() throws InstantiationException,
+			IllegalAccessException {
+		MergePlan<Mergeable> plan = MergePlan.forClass(Mergeable.class);
+		assertSame(plan, MergePlan.forClass(Mergeable.class));
+
+		Mergeable parent = new Mergeable();
+		parent.items = new ArrayList<String>();
+		parent.items.add("parent");
+		parent.level = 3;
+		parent.notMerged = "parent";
+
+		Mergeable child = new Mergeable();
+		child.items = new ArrayList<String>();
+		child.items.add("child");
+		child.flag = Boolean.FALSE;
+
+		plan.merge(child, parent);
+		assertEquals("none", child.name);
+		assertEquals(Boolean.FALSE, child.flag);
+		assertEquals(Integer.valueOf(3), child.level);
+		assertEquals(2, child.items.size());
+		assertNull(child.notMerged);
+
+		// The shared default must not be handed out.
+		Mergeable first = new Mergeable();
+		plan.merge(first, new Mergeable());
+		first.items.add("first");
+		Mergeable second = new Mergeable();
+		plan.merge(second, new Mergeable());
+		assertTrue(second.items.isEmpty());
+		assertEquals(Boolean.TRUE, second.flag);
+		assertNull(second.level);
+	}
 }
@@ -0,0 +1,90 @@
+package de.tarent.maven.plugins.pkg.metrics;
+
+import java.io.File;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+import de.tarent.maven.plugins.pkg.metrics.Metrics.Phase;
+
+public class MetricsTest extends TestCase {
+
+	@Override
+	protected void tearDown() {
+		Metrics.detach();
+	}
+
+	public void testNotAttached() {
+		assertNull(Metrics.current());
+
+		// Nothing happens without an attached instance.
+		Metrics.enter(Phase.STAGING);
+		Metrics.exit();
+		assertEquals(42, Metrics.staged(42));
+		Metrics.subprocess(1000);
+	}
+
+	public void testNestedPhases() throws InterruptedException {
+		Metrics m = new Metrics("test", "ubuntu_trusty");
+		Metrics.attach(m);
+		assertSame(m, Metrics.current());
+
+		Metrics.enter(Phase.ARCHIVE);
+		Thread.sleep(50);
+		Metrics.enter(Phase.SIGNING);
+		Thread.sleep(100);
+		Metrics.subprocess(3000000L);
+		Metrics.exit();
+		Metrics.exit();
+		Metrics.enter(Phase.ARCHIVE);
+		Metrics.staged(1000);
+		Metrics.exit();
+		Metrics.detach();
+		m.finish();
+
+		assertEquals(2, m.getCount(Phase.ARCHIVE));
+		assertEquals(1, m.getCount(Phase.SIGNING));
+		assertEquals(0, m.getCount(Phase.UPLOAD));
+
+		// The time of the nested phase is not accounted twice.
+		assertTrue(m.getMillis(Phase.SIGNING) >= 100);
+		assertTrue(m.getMillis(Phase.ARCHIVE) >= 50);
+		assertTrue(m.getMillis(Phase.ARCHIVE) < 100);
+		assertTrue(m.getTotalMillis() >= 150);
+
+		assertEquals(1000, m.getBytesStaged());
+		assertEquals(1, m.getSubprocesses());
+		assertEquals(3, m.getSubprocessMillis());
+	}
+
+	public void testReports() throws Exception {
+		Metrics m = new Metrics("te\"st", "debian_wheezy");
+		Metrics.attach(m);
+		Metrics.enter(Phase.UPLOAD);
+		Metrics.staged(12345);
+		Metrics.exit();
+		Metrics.detach();
+		m.finish();
+
+		File json = File.createTempFile("MetricsTest", ".json");
+		File csv = File.createTempFile("MetricsTest", ".csv");
+		try {
+			m.writeJson(json);
+			String content = FileUtils.readFileToString(json, "UTF-8");
+			assertTrue(content.contains("\"target\": \"te\\\"st\","));
+			assertTrue(content.contains("\"bytesStaged\": 12345,"));
+			assertTrue(content.contains("\"upload\": { \"millis\": "));
+
+			m.writeCsv(csv);
+			List<?> lines = FileUtils.readLines(csv, "UTF-8");
+			assertEquals("metric,millis,count", lines.get(0));
+			assertEquals(Phase.values().length + 4, lines.size());
+			assertTrue(lines.contains("bytes_staged,,12345"));
+		} finally {
+			json.delete();
+			csv.delete();
+		}
+	}
+}
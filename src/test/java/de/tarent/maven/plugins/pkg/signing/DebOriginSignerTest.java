@@ -0,0 +1,116 @@
+package de.tarent.maven.plugins.pkg.signing;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.compress.archivers.ar.ArArchiveEntry;
+import org.apache.commons.compress.archivers.ar.ArArchiveInputStream;
+import org.apache.commons.io.IOUtils;
+
+import de.tarent.maven.plugins.pkg.Utils;
+import de.tarent.maven.plugins.pkg.archive.ArWriter;
+
+public class DebOriginSignerTest extends TestCase {
+
+	private File deb;
+
+	protected void setUp() throws IOException {
+		deb = File.createTempFile("signer", ".deb");
+
+		byte[] data = new byte[100001];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+
+		ArWriter writer = ArWriter.create(deb);
+		writer.putBytes("debian-binary", "2.0\n".getBytes("US-ASCII"));
+		writer.putBytes("control.tar.gz", new byte[] { 1, 2, 3 });
+		writer.putBytes("data.tar.gz", data);
+		writer.close();
+	}
+
+	protected void tearDown() {
+		deb.delete();
+	}
+
+	/**
+	 * Tests that the concatenated members are handed to the signing command
+	 * and its output is appended as the last member. <code>cat</code> stands
+	 * in for gpg so that the signed data can be checked.
+	 */
+	public void testSign() throws IOException {
+		new DebOriginSigner(new String[] { "cat" }).sign(deb);
+
+		List<String> names = new ArrayList<String>();
+		List<byte[]> contents = new ArrayList<byte[]>();
+		ArArchiveInputStream ar = new ArArchiveInputStream(
+				new FileInputStream(deb));
+		try {
+			ArArchiveEntry entry;
+			while ((entry = ar.getNextArEntry()) != null) {
+				names.add(entry.getName());
+				contents.add(IOUtils.toByteArray(ar));
+			}
+		} finally {
+			ar.close();
+		}
+
+		assertEquals(4, names.size());
+		assertEquals(DebOriginSigner.GPGORIGIN, names.get(3));
+
+		int length = 0;
+		for (int i = 0; i < 3; i++) {
+			length += contents.get(i).length;
+		}
+		byte[] expected = new byte[length];
+		int pos = 0;
+		for (int i = 0; i < 3; i++) {
+			byte[] c = contents.get(i);
+			System.arraycopy(c, 0, expected, pos, c.length);
+			pos += c.length;
+		}
+		assertTrue(Arrays.equals(expected, contents.get(3)));
+	}
+
+	/**
+	 * Tests that a failing signing command leaves the package untouched.
+	 */
+	public void testFailure() throws IOException {
+		long length = deb.length();
+		try {
+			new DebOriginSigner(new String[] { "sh", "-c",
+					"echo 'secret key not available' >&2; exit 2" }).sign(deb);
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("secret key not available"));
+		}
+		assertEquals(length, deb.length());
+	}
+
+	/**
+	 * Tests that a hanging signing command is killed once the timeout of
+	 * external programs is exceeded.
+	 */
+	public void testTimeout() throws IOException {
+		long length = deb.length();
+		long start = System.currentTimeMillis();
+		Utils.setExecTimeout(500);
+		try {
+			new DebOriginSigner(new String[] { "sh", "-c",
+					"cat > /dev/null; sleep 30" }).sign(deb);
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("killed after 500 ms"));
+		} finally {
+			Utils.setExecTimeout(0);
+		}
+		assertTrue(System.currentTimeMillis() - start < 10000);
+		assertEquals(length, deb.length());
+	}
+}
@@ -0,0 +1,122 @@
+package de.tarent.maven.plugins.pkg.state;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+import de.tarent.maven.plugins.pkg.AuxFile;
+
+public class BuildStateTest extends TestCase {
+
+	private File dir;
+
+	protected void setUp() throws IOException {
+		dir = File.createTempFile("pkg-state", "");
+		dir.delete();
+		dir.mkdirs();
+	}
+
+	protected void tearDown() throws IOException {
+		FileUtils.deleteDirectory(dir);
+	}
+
+	/**
+	 * Tests that checksums are only computed again when size or modification
+	 * time of a file change and that the cache survives being saved.
+	 */
+	public void testChecksumCache() throws IOException {
+		File f = new File(dir, "a.jar");
+		FileUtils.writeStringToFile(f, "foo");
+		long lastModified = f.lastModified();
+
+		File cacheFile = new File(dir, "state/checksums.properties");
+		ChecksumCache cache = new ChecksumCache(cacheFile);
+		String checksum = cache.getChecksum(f);
+		assertEquals(ChecksumCache.computeChecksum(f), checksum);
+		cache.save();
+		assertTrue(cacheFile.exists());
+
+		// Same size and modification time: The cached value is used.
+		FileUtils.writeStringToFile(f, "bar");
+		f.setLastModified(lastModified);
+		assertEquals(checksum, new ChecksumCache(cacheFile).getChecksum(f));
+
+		f.setLastModified(lastModified - 10000);
+		assertFalse(checksum.equals(new ChecksumCache(cacheFile)
+				.getChecksum(f)));
+	}
+
+	/**
+	 * Tests that the digest depends on values and file contents but not on the
+	 * iteration order of sets.
+	 */
+	public void testInputDigest() throws IOException {
+		File src = new File(dir, "src");
+		src.mkdirs();
+		FileUtils.writeStringToFile(new File(src, "postinst"), "#!/bin/sh");
+
+		ChecksumCache cache = new ChecksumCache(new File(dir, "checksums"));
+
+		AuxFile af = new AuxFile("/usr/bin");
+		af.setFrom("foo");
+
+		InputDigest d1 = new InputDigest(cache);
+		d1.add("set", new HashSet<String>(Arrays.asList("a", "b", "c")));
+		d1.add("aux", Arrays.asList(af));
+		d1.addDirectory("src", src);
+
+		InputDigest d2 = new InputDigest(cache);
+		d2.add("set", new HashSet<String>(Arrays.asList("c", "b", "a")));
+		d2.add("aux", Arrays.asList(af));
+		d2.addDirectory("src", src);
+
+		String digest = d1.getDigest();
+		assertEquals(digest, d2.getDigest());
+
+		af.setExecutable(true);
+		InputDigest d3 = new InputDigest(cache);
+		d3.add("set", new HashSet<String>(Arrays.asList("a", "b", "c")));
+		d3.add("aux", Arrays.asList(af));
+		d3.addDirectory("src", src);
+		assertFalse(digest.equals(d3.getDigest()));
+
+		af.setExecutable(false);
+		FileUtils.writeStringToFile(new File(src, "postinst"), "#!/bin/bash");
+		InputDigest d4 = new InputDigest(cache);
+		d4.add("set", new HashSet<String>(Arrays.asList("a", "b", "c")));
+		d4.add("aux", Arrays.asList(af));
+		d4.addDirectory("src", src);
+		assertFalse(digest.equals(d4.getDigest()));
+	}
+
+	/**
+	 * Tests that a package is only up to date for the recorded digest and as
+	 * long as the package file is not touched.
+	 */
+	public void testUpToDate() throws IOException {
+		File pkg = new File(dir, "foo_1.0_all.deb");
+		BuildState state = new BuildState(new File(dir, "state"), "foo",
+				"debian");
+
+		assertFalse(state.isUpToDate("1234", pkg));
+
+		FileUtils.writeStringToFile(pkg, "package");
+		assertFalse(state.isUpToDate("1234", pkg));
+
+		state.record("1234", pkg);
+		assertTrue(state.isUpToDate("1234", pkg));
+		assertFalse(state.isUpToDate("5678", pkg));
+
+		pkg.setLastModified(pkg.lastModified() - 10000);
+		assertFalse(state.isUpToDate("1234", pkg));
+
+		state.record("1234", pkg);
+		state.invalidate();
+		assertFalse(state.isUpToDate("1234", pkg));
+	}
+}
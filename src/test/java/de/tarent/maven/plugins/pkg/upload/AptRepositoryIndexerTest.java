@@ -0,0 +1,109 @@
+package de.tarent.maven.plugins.pkg.upload;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.tukaani.xz.XZInputStream;
+
+import de.tarent.maven.plugins.pkg.archive.DebArchiveWriter;
+
+public class AptRepositoryIndexerTest extends TestCase {
+
+	private File root;
+
+	private File repo;
+
+	private AptRepositoryIndexer indexer;
+
+	@Override
+	protected void setUp() throws IOException {
+		root = new File(System.getProperty("java.io.tmpdir"),
+				"AptRepositoryIndexerTest" + System.nanoTime());
+		repo = new File(root, "repo");
+		indexer = new AptRepositoryIndexer(repo);
+		indexer.getPackageDirectory().mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws IOException {
+		FileUtils.deleteDirectory(root);
+	}
+
+	private File createDeb(String name, String version) throws IOException {
+		File base = new File(root, name + "-" + version);
+		FileUtils.writeStringToFile(new File(base, "DEBIAN/control"),
+				"Package: " + name + "\nVersion: " + version
+						+ "\nArchitecture: all\nDescription: " + name
+						+ "\n test package\n");
+		FileUtils.writeStringToFile(new File(base, "usr/share/" + name
+				+ "/file"), name);
+		return new DebArchiveWriter().write(base,
+				indexer.getPackageDirectory());
+	}
+
+	public void testUpdate() throws Exception {
+		File foo = createDeb("foo", "1.0");
+		createDeb("bar", "2.0");
+		assertEquals(2, indexer.update());
+
+		File dir = indexer.getPackageDirectory();
+		String packages = FileUtils.readFileToString(new File(dir, "Packages"),
+				"UTF-8");
+		assertTrue(packages.startsWith("Package: bar\n"));
+		assertTrue(packages.contains(" test package\nFilename: binary/"
+				+ foo.getName() + "\nSize: " + foo.length() + "\n"));
+		assertTrue(packages.contains("SHA256: "
+				+ hex(FileUtils.readFileToByteArray(foo))));
+		// Stanzas are separated by a blank line.
+		assertEquals(2, packages.split("\n\n").length);
+
+		assertEquals(packages, IOUtils.toString(new GZIPInputStream(
+				new FileInputStream(new File(dir, "Packages.gz"))), "UTF-8"));
+		assertEquals(packages, IOUtils.toString(new XZInputStream(
+				new FileInputStream(new File(dir, "Packages.xz"))), "UTF-8"));
+
+		String release = FileUtils.readFileToString(new File(dir, "Release"),
+				"UTF-8");
+		assertTrue(release.contains(" "
+				+ hex(packages.getBytes("UTF-8")) + " "
+				+ packages.getBytes("UTF-8").length + " Packages\n"));
+
+		// Unchanged packages are not read again.
+		assertEquals(0, indexer.update());
+		assertEquals(packages, FileUtils.readFileToString(new File(dir,
+				"Packages"), "UTF-8"));
+
+		foo.setLastModified(foo.lastModified() - 10000);
+		assertEquals(1, indexer.update());
+
+		// Removed packages vanish from the index.
+		foo.delete();
+		assertEquals(0, indexer.update());
+		packages = FileUtils.readFileToString(new File(dir, "Packages"),
+				"UTF-8");
+		assertFalse(packages.contains("Package: foo"));
+		assertTrue(packages.contains("Package: bar"));
+	}
+
+	public void testEmptyRepository() throws IOException {
+		assertEquals(0, indexer.update());
+		assertEquals(0, new File(indexer.getPackageDirectory(), "Packages")
+				.length());
+		assertTrue(new File(indexer.getPackageDirectory(), "Release").exists());
+	}
+
+	private static String hex(byte[] data) throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,96 @@
+package de.tarent.maven.plugins.pkg.upload;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+public class FileUploaderTest extends TestCase {
+
+	private File root;
+
+	private File packageFile;
+
+	private File repo;
+
+	private FileUploader uploader;
+
+	private byte[] content;
+
+	@Override
+	protected void setUp() throws IOException {
+		root = new File(System.getProperty("java.io.tmpdir"),
+				"FileUploaderTest" + System.nanoTime());
+		packageFile = new File(root, "test_1.0_all.deb");
+		repo = new File(root, "repo");
+
+		content = new byte[200000];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) (i * 31);
+		}
+		FileUtils.writeByteArrayToFile(packageFile, content);
+
+		uploader = new FileUploader(new SystemStreamLog(), packageFile, repo);
+	}
+
+	@Override
+	protected void tearDown() throws IOException {
+		FileUtils.deleteDirectory(root);
+	}
+
+	private File getTarget() {
+		return new File(repo, packageFile.getName());
+	}
+
+	private File getPart() {
+		return new File(repo, packageFile.getName()
+				+ FileUploader.PART_SUFFIX);
+	}
+
+	public void testUpload() throws Exception {
+		uploader.uploadPackage();
+
+		assertTrue(Arrays.equals(content,
+				FileUtils.readFileToByteArray(getTarget())));
+		assertFalse(getPart().exists());
+	}
+
+	public void testSkipUnchanged() throws Exception {
+		uploader.uploadPackage();
+		getTarget().setLastModified(1000);
+
+		uploader.uploadPackage();
+		assertEquals(1000, getTarget().lastModified());
+
+		// A different package of the same size is uploaded.
+		content[0]++;
+		FileUtils.writeByteArrayToFile(packageFile, content);
+		uploader.uploadPackage();
+		assertTrue(Arrays.equals(content,
+				FileUtils.readFileToByteArray(getTarget())));
+	}
+
+	public void testResume() throws Exception {
+		FileUtils.writeByteArrayToFile(getPart(),
+				Arrays.copyOf(content, 70000));
+
+		uploader.uploadPackage();
+		assertTrue(Arrays.equals(content,
+				FileUtils.readFileToByteArray(getTarget())));
+		assertFalse(getPart().exists());
+	}
+
+	public void testDiscardForeignPart() throws Exception {
+		byte[] garbage = new byte[1000];
+		Arrays.fill(garbage, (byte) 1);
+		FileUtils.writeByteArrayToFile(getPart(), garbage);
+
+		uploader.uploadPackage();
+		assertTrue(Arrays.equals(content,
+				FileUtils.readFileToByteArray(getTarget())));
+	}
+}
@@ -0,0 +1,143 @@
+package de.tarent.maven.plugins.pkg.upload;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+public class UploadSchedulerTest extends TestCase {
+
+	private final List<Long> delays = new ArrayList<Long>();
+
+	private UploadScheduler createScheduler(int threads, int retries) {
+		return new UploadScheduler(new SystemStreamLog(), threads, retries, 100) {
+			@Override
+			protected void sleep(long millis) {
+				synchronized (delays) {
+					delays.add(millis);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Fails the given number of times before it succeeds.
+	 */
+	private static class FlakyUploader implements IConcurrentPkgUploader {
+
+		final AtomicInteger attempts = new AtomicInteger();
+
+		private final int failures;
+
+		FlakyUploader(int failures) {
+			this.failures = failures;
+		}
+
+		public void uploadPackage() throws MojoExecutionException {
+			if (attempts.incrementAndGet() <= failures) {
+				throw new MojoExecutionException("attempt "
+						+ attempts.get());
+			}
+		}
+	}
+
+	public void testRetryWithBackoff() throws MojoExecutionException {
+		UploadScheduler scheduler = createScheduler(1, 2);
+		FlakyUploader uploader = new FlakyUploader(2);
+		scheduler.submit("flaky", uploader);
+		scheduler.await();
+
+		assertEquals(3, uploader.attempts.get());
+		assertEquals(2, delays.size());
+		assertEquals(100L, delays.get(0).longValue());
+		assertEquals(200L, delays.get(1).longValue());
+	}
+
+	public void testFailureAfterRetries() throws MojoExecutionException {
+		UploadScheduler scheduler = createScheduler(2, 1);
+		FlakyUploader failing = new FlakyUploader(5);
+		FlakyUploader working = new FlakyUploader(0);
+		scheduler.submit("failing", failing);
+		scheduler.submit("working", working);
+		try {
+			scheduler.await();
+			fail("The failed upload has not been reported.");
+		} catch (MojoExecutionException e) {
+			assertEquals("attempt 2", e.getMessage());
+		}
+		assertEquals(2, failing.attempts.get());
+		assertEquals(1, working.attempts.get());
+	}
+
+	public void testConcurrency() throws Exception {
+		final int threads = 3;
+		final CountDownLatch started = new CountDownLatch(threads);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+
+		UploadScheduler scheduler = createScheduler(threads, 0);
+		for (int i = 0; i < threads * 2; i++) {
+			scheduler.submit("upload " + i, new IConcurrentPkgUploader() {
+				public void uploadPackage() throws MojoExecutionException {
+					int now = running.incrementAndGet();
+					synchronized (maxRunning) {
+						maxRunning.set(Math.max(maxRunning.get(), now));
+					}
+					started.countDown();
+					try {
+						release.await(10, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						throw new MojoExecutionException("interrupted", e);
+					}
+					running.decrementAndGet();
+				}
+			});
+		}
+
+		// All threads are used at the same time ...
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		release.countDown();
+		scheduler.await();
+
+		// ... but never more than that.
+		assertEquals(threads, maxRunning.get());
+	}
+
+	public void testSerializedUploadIsNotRepeated()
+			throws MojoExecutionException {
+		UploadScheduler scheduler = createScheduler(2, 2);
+		final AtomicInteger attempts = new AtomicInteger();
+		final List<Thread> threads = new ArrayList<Thread>();
+		IPkgUploader failing = new IPkgUploader() {
+			public void uploadPackage() throws MojoExecutionException {
+				attempts.incrementAndGet();
+				threads.add(Thread.currentThread());
+				throw new MojoExecutionException("reprepro failed");
+			}
+		};
+
+		scheduler.submit("serialized", failing);
+		scheduler.submit("second", failing);
+		assertEquals(0, attempts.get());
+
+		try {
+			scheduler.runSerialized();
+			fail("The failed upload has not been reported.");
+		} catch (MojoExecutionException e) {
+			assertEquals("reprepro failed", e.getMessage());
+		}
+		scheduler.await();
+
+		// Once only, on the calling thread, and nothing after the failure.
+		assertEquals(1, attempts.get());
+		assertSame(Thread.currentThread(), threads.get(0));
+		assertTrue(delays.isEmpty());
+	}
+}